@@ -0,0 +1,344 @@
+package parallel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Learns the number of chunks and threads that run a class of parallel for loop the fastest.
+ * Each run of the loop is timed and the settings are improved by hill climbing, doubling or halving
+ * the chunk and thread counts and keeping any change that makes the loop run faster per iteration.
+ * @author michaellynch
+ *
+ */
+public class AutoTuner {
+
+    /**
+     * Number of timed runs that each setting is given. The fastest run is used to judge the setting.
+     */
+    private static final int SAMPLES_PER_SETTING = 3;
+
+    /**
+     * The fraction a setting must improve on the best setting by before it is accepted.
+     */
+    private static final double REQUIRED_IMPROVEMENT = 0.05;
+
+    /**
+     * The most settings tried after the starting setting before the tuner keeps the best one it has found,
+     * so that noisy timings cannot keep it climbing for long.
+     */
+    private static final int MAX_SETTINGS = 10;
+
+    /**
+     * The most timed runs of a loop before its tuner converges.
+     */
+    static final int MAX_RUNS_TO_CONVERGE = SAMPLES_PER_SETTING * (MAX_SETTINGS + 1);
+
+    private static final int MORE_CHUNKS = 0;
+    private static final int FEWER_CHUNKS = 1;
+    private static final int MORE_THREADS = 2;
+    private static final int FEWER_THREADS = 3;
+    private static final int NO_OF_MOVES = 4;
+
+    private static Map<Class<?>, AutoTuner> allTuners = new ConcurrentHashMap<>();
+
+    private String taskName;
+    private int cores;
+    private int tunedIterations;
+
+    private boolean tuneChunks;
+    private boolean tuneThreads;
+    private int maxThreads;
+
+    private int bestChunks;
+    private int bestThreads;
+    private double bestCost;
+
+    private int trialChunks;
+    private int trialThreads;
+    private double trialCost;
+    private int trialSamples;
+    private int settingsTried;
+
+    private int move;
+    private int failedMoves;
+    private boolean converged;
+
+    /**
+     * Creates a tuner starting from the given settings.
+     * @param taskName The class name of the loop being tuned.
+     * @param noOfChunks The number of chunks to start from.
+     * @param noOfThreads The number of threads to start from.
+     * @param tuneChunks True if the number of chunks can be changed by the tuner.
+     * @param tuneThreads True if the number of threads can be changed by the tuner.
+     * @param maxThreads The most threads the tuner will try to use.
+     * @param iterations The number of iterations in the loop.
+     */
+    AutoTuner(String taskName, int noOfChunks, int noOfThreads, boolean tuneChunks, boolean tuneThreads, int maxThreads, int iterations) {
+        this.taskName = taskName;
+        cores = ParallelExecutor.getDefaultNoOfThreads();
+        tunedIterations = iterations;
+
+        this.tuneChunks = tuneChunks;
+        this.tuneThreads = tuneThreads;
+        this.maxThreads = Math.max(1, maxThreads);
+
+        bestChunks = Math.max(1, noOfChunks);
+        bestThreads = Math.max(1, Math.min(noOfThreads, this.maxThreads));
+        bestCost = Double.MAX_VALUE;
+
+        trialChunks = bestChunks;
+        trialThreads = bestThreads;
+        trialCost = Double.MAX_VALUE;
+        trialSamples = 0;
+        settingsTried = 0;
+
+        move = MORE_CHUNKS;
+        failedMoves = 0;
+        converged = !tuneChunks && !tuneThreads;
+    }
+
+    /**
+     * Gets the tuner for the given class of parallel for loop, creating it if this is the first time the loop has been run.
+     * New tuners start from the settings in the TuningProfile when it has valid settings for the loop.
+     * @param taskClass The class of the parallel for loop.
+     * @param noOfChunks The number of chunks the loop was created with or ParallelExecutor.AUTO.
+     * @param noOfThreads The number of threads the loop was run with or ParallelExecutor.AUTO.
+     * @param iterations The number of iterations in the loop.
+     * @return The tuner for the class of loop.
+     */
+    public static AutoTuner getTuner(Class<?> taskClass, int noOfChunks, int noOfThreads, int iterations) {
+        AutoTuner tuner = allTuners.get(taskClass);
+        if(tuner == null) {
+            int maxThreads = ParallelExecutor.getDefaultNoOfThreads();
+            int startThreads = (noOfThreads == ParallelExecutor.AUTO) ? maxThreads : noOfThreads;
+            int startChunks = (noOfChunks == ParallelExecutor.AUTO) ? startThreads * 4 : noOfChunks;
+
+            TuningProfile.Entry entry = null;
+            TuningProfile profile = TuningProfile.getProfile();
+            if(profile != null) {
+                entry = profile.getEntry(taskClass.getName(), iterations, maxThreads);
+            }
+            if(entry != null) {
+                if(noOfChunks == ParallelExecutor.AUTO) startChunks = entry.getNoOfChunks();
+                if(noOfThreads == ParallelExecutor.AUTO) startThreads = entry.getNoOfThreads();
+            }
+
+            AutoTuner newTuner = new AutoTuner(taskClass.getName(), startChunks, startThreads,
+                noOfChunks == ParallelExecutor.AUTO,
+                noOfThreads == ParallelExecutor.AUTO,
+                Math.max(maxThreads, startThreads),
+                iterations);
+            if(entry != null && entry.isConverged()) {
+                newTuner.converged = true;
+                newTuner.tunedIterations = entry.getIterations();
+            }
+
+            allTuners.putIfAbsent(taskClass, newTuner);
+            tuner = allTuners.get(taskClass);
+        }
+
+        return tuner;
+    }
+
+    /**
+     * Stores the current settings of every tuner in the TuningProfile and writes the profile file.
+     * Does nothing if no profile file has been given.
+     */
+    public static void saveProfile() {
+        TuningProfile profile = TuningProfile.getProfile();
+        if(profile == null) return;
+
+        for(AutoTuner tuner:allTuners.values()) {
+            profile.putEntry(tuner.taskName, tuner.getProfileEntry());
+        }
+        profile.save();
+    }
+
+    private synchronized TuningProfile.Entry getProfileEntry() {
+        return new TuningProfile.Entry(bestChunks, bestThreads, cores, tunedIterations, converged);
+    }
+
+    /**
+     * Removes everything that has been learnt about the given class of parallel for loop.
+     * @param taskClass The class of the parallel for loop.
+     */
+    public static void reset(Class<?> taskClass) {
+        allTuners.remove(taskClass);
+    }
+
+    /**
+     * Starts a timed run of the loop using the setting that the tuner currently wants measured.
+     * A converged tuner starts tuning again from its best setting when the loop's size has moved too far from the size it was tuned for.
+     * @param iterations The number of iterations in the run.
+     * @return The trial holding the settings to run the loop with.
+     */
+    public synchronized Trial beginTrial(int iterations) {
+        if(!TuningProfile.isSimilarSize(iterations, tunedIterations)) {
+            retune(iterations);
+        }
+
+        int chunks = converged ? bestChunks : trialChunks;
+        chunks = Math.max(1, Math.min(chunks, Math.max(1, iterations)));
+        int threads = converged ? bestThreads : trialThreads;
+
+        return new Trial(this, converged ? bestChunks : trialChunks, threads, chunks, iterations);
+    }
+
+    /**
+     * Starts looking for better settings again from the best setting, for a loop whose size has changed.
+     */
+    private void retune(int iterations) {
+        tunedIterations = iterations;
+        if(!tuneChunks && !tuneThreads) {
+            return;
+        }
+
+        bestCost = Double.MAX_VALUE;
+        trialChunks = bestChunks;
+        trialThreads = bestThreads;
+        trialCost = Double.MAX_VALUE;
+        trialSamples = 0;
+        settingsTried = 0;
+
+        move = MORE_CHUNKS;
+        failedMoves = 0;
+        converged = false;
+    }
+
+    private void report(int chunks, int threads, int iterations, long nanos) {
+        TuningProfile.Entry convergedEntry = measure(chunks, threads, iterations, nanos);
+
+        //the profile file is written outside of the tuner's lock so that the runs of the loop do not wait on it
+        TuningProfile profile = TuningProfile.getProfile();
+        if(convergedEntry != null && profile != null) {
+            profile.putEntry(taskName, convergedEntry);
+            profile.save();
+        }
+    }
+
+    /**
+     * Records the time of a run and moves on to the next setting once the current one has been measured enough times.
+     * @return The entry to store in the TuningProfile if the tuner has just converged, otherwise null.
+     */
+    private synchronized TuningProfile.Entry measure(int chunks, int threads, int iterations, long nanos) {
+        if(converged || chunks != trialChunks || threads != trialThreads) {
+            //the run was measuring a setting that is no longer being tried
+            return null;
+        }
+
+        double cost = (double)nanos / Math.max(1, iterations);
+        trialCost = Math.min(trialCost, cost);
+        trialSamples++;
+
+        if(trialSamples < SAMPLES_PER_SETTING) {
+            return null;
+        }
+
+        if(bestCost == Double.MAX_VALUE) {
+            //the starting setting has now been measured
+            bestCost = trialCost;
+        } else if(trialCost < bestCost * (1 - REQUIRED_IMPROVEMENT)) {
+            //keep moving in the same direction while it improves
+            bestChunks = trialChunks;
+            bestThreads = trialThreads;
+            bestCost = trialCost;
+            failedMoves = 0;
+            settingsTried++;
+        } else {
+            failedMoves++;
+            move = (move + 1) % NO_OF_MOVES;
+            settingsTried++;
+        }
+
+        nextTrial();
+
+        return converged ? getProfileEntry() : null;
+    }
+
+    private void nextTrial() {
+        trialCost = Double.MAX_VALUE;
+        trialSamples = 0;
+
+        while(failedMoves < NO_OF_MOVES && settingsTried < MAX_SETTINGS) {
+            trialChunks = bestChunks;
+            trialThreads = bestThreads;
+
+            switch(move) {
+            case MORE_CHUNKS:
+                if(tuneChunks) trialChunks = bestChunks * 2;
+                break;
+            case FEWER_CHUNKS:
+                if(tuneChunks) trialChunks = Math.max(1, bestChunks / 2);
+                break;
+            case MORE_THREADS:
+                if(tuneThreads) trialThreads = Math.min(maxThreads, bestThreads * 2);
+                break;
+            case FEWER_THREADS:
+                if(tuneThreads) trialThreads = Math.max(1, bestThreads / 2);
+                break;
+            }
+
+            if(trialChunks != bestChunks || trialThreads != bestThreads) {
+                return;
+            }
+
+            //the move cannot change anything from the best setting
+            failedMoves++;
+            move = (move + 1) % NO_OF_MOVES;
+        }
+
+        converged = true;
+    }
+
+    /**
+     * Checks if the tuner has stopped looking for better settings.
+     * @return True if the tuner has found the best settings it can.
+     */
+    public synchronized boolean isConverged() {
+        return converged;
+    }
+
+    public synchronized int getBestNoOfChunks() {
+        return bestChunks;
+    }
+
+    public synchronized int getBestNoOfThreads() {
+        return bestThreads;
+    }
+
+    /**
+     * A single timed run of a parallel for loop using settings chosen by an AutoTuner.
+     */
+    public static class Trial {
+        private AutoTuner tuner;
+        private int tunerChunks;
+        private int noOfThreads;
+        private int noOfChunks;
+        private int iterations;
+        private long startTime;
+
+        private Trial(AutoTuner tuner, int tunerChunks, int noOfThreads, int noOfChunks, int iterations) {
+            this.tuner = tuner;
+            this.tunerChunks = tunerChunks;
+            this.noOfThreads = noOfThreads;
+            this.noOfChunks = noOfChunks;
+            this.iterations = iterations;
+            startTime = System.nanoTime();
+        }
+
+        public int getNoOfChunks() {
+            return noOfChunks;
+        }
+
+        public int getNoOfThreads() {
+            return noOfThreads;
+        }
+
+        /**
+         * Ends the run, passing its time on to the tuner.
+         */
+        public void complete() {
+            tuner.report(tunerChunks, noOfThreads, iterations, System.nanoTime() - startTime);
+        }
+    }
+}
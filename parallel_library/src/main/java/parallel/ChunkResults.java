@@ -0,0 +1,168 @@
+package parallel;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A reorder buffer that the chunks of a farm publish their results into as they finish, so the results can be
+ * consumed while later chunks are still running rather than once the whole farm has completed.
+ * The results can be iterated in the order of the chunks, where each result is given as soon as it and every
+ * result before it are ready, or in the order the chunks finished.
+ * @author michaellynch
+ *
+ * @param <R> The type of the results.
+ */
+public class ChunkResults<R> {
+
+    private Object[] results;
+    private Throwable[] failures;
+    private boolean[] published;
+    private int[] completionOrder;
+    private int noOfPublished;
+
+    /**
+     * Creates an empty buffer.
+     * @param noOfChunks The number of chunks that will publish a result.
+     */
+    public ChunkResults(int noOfChunks) {
+        results = new Object[noOfChunks];
+        failures = new Throwable[noOfChunks];
+        published = new boolean[noOfChunks];
+        completionOrder = new int[noOfChunks];
+        noOfPublished = 0;
+    }
+
+    /**
+     * Publishes the result of a chunk, waking any consumer waiting for it.
+     * @param chunkIndex The index of the chunk.
+     * @param result The chunk's result.
+     */
+    public synchronized void publish(int chunkIndex, R result) {
+        results[chunkIndex] = result;
+        markPublished(chunkIndex);
+    }
+
+    /**
+     * Publishes the failure of a chunk, which is thrown to the consumer in place of the chunk's result.
+     * @param chunkIndex The index of the chunk.
+     * @param failure The exception thrown by the chunk.
+     */
+    public synchronized void fail(int chunkIndex, Throwable failure) {
+        failures[chunkIndex] = failure;
+        markPublished(chunkIndex);
+    }
+
+    /**
+     * Publishes the given failure for every chunk that has not yet published its result, used once none of them will run.
+     * @param failure The exception that stopped the chunks from running.
+     */
+    public synchronized void failUnpublished(Throwable failure) {
+        for(int i = 0; i < published.length; i++) {
+            if(!published[i]) {
+                fail(i, failure);
+            }
+        }
+    }
+
+    private void markPublished(int chunkIndex) {
+        if(published[chunkIndex]) {
+            throw new IllegalStateException("Chunk " + chunkIndex + " has already published its result.");
+        }
+
+        published[chunkIndex] = true;
+        completionOrder[noOfPublished] = chunkIndex;
+        noOfPublished++;
+        notifyAll();
+    }
+
+    public int getNoOfChunks() {
+        return results.length;
+    }
+
+    /**
+     * @return True once every chunk has published its result.
+     */
+    public synchronized boolean isComplete() {
+        return noOfPublished == results.length;
+    }
+
+    /**
+     * Waits for the result of a chunk.
+     * @param chunkIndex The index of the chunk.
+     * @return The chunk's result.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized R get(int chunkIndex) {
+        while(!published[chunkIndex]) {
+            try {
+                wait();
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if(failures[chunkIndex] != null) {
+            throw new RuntimeException("Chunk " + chunkIndex + " failed.", failures[chunkIndex]);
+        }
+        return (R)results[chunkIndex];
+    }
+
+    /**
+     * Waits for the index of the chunk that was published at the given position in the completion order.
+     */
+    private synchronized int getCompletedChunk(int position) {
+        while(noOfPublished <= position) {
+            try {
+                wait();
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return completionOrder[position];
+    }
+
+    /**
+     * @return The results in the order of the chunks, where next waits until the next chunk has published its result.
+     */
+    public Iterable<R> inIndexOrder() {
+        return () -> new Iterator<R>() {
+            private int nextChunk = 0;
+
+            @Override
+            public boolean hasNext() {
+                return nextChunk < results.length;
+            }
+
+            @Override
+            public R next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(nextChunk++);
+            }
+        };
+    }
+
+    /**
+     * @return The results in the order the chunks finished, where next waits until another chunk has published its result.
+     */
+    public Iterable<R> inCompletionOrder() {
+        return () -> new Iterator<R>() {
+            private int nextPosition = 0;
+
+            @Override
+            public boolean hasNext() {
+                return nextPosition < results.length;
+            }
+
+            @Override
+            public R next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(getCompletedChunk(nextPosition++));
+            }
+        };
+    }
+}
@@ -0,0 +1,415 @@
+package parallel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+import parallel.threadallocation.ThreadAllocator;
+
+/**
+ * Skeleton code to be extended to run a recursive divide and conquer algorithm in parallel, such as a quicksort,
+ * a walk over a tree or a recursive n-body force calculation.
+ * A problem that is not a base case is split into subproblems whose results are combined once they have all been solved.
+ * <p>
+ * A fixed number of workers is given to the ThreadAllocator, each with its own deque of subproblems. A worker pushes the
+ * subproblems it splits off onto its own deque and solves the first itself, and other workers steal the oldest, and so largest,
+ * subproblems from the other end. A worker waiting for a subproblem to be solved solves other subproblems in the meantime
+ * rather than blocking its thread, so the recursion never waits on a thread that is not doing any work.
+ * <p>
+ * To keep the cost of creating subproblems bounded however deep the recursion goes, a subproblem is solved by plain
+ * sequential recursion once it is deeper than the maximum parallel depth, smaller than the sequential size,
+ * estimated to take less than the sequential cost threshold, or once its worker already has enough subproblems waiting
+ * to be stolen. Sizes are only known if size is overridden, and the cost estimate is calibrated from the measured run times
+ * of the subproblems of this class that were solved sequentially, taking the cost of a subproblem to be proportional to its size.
+ * @author michaellynch
+ *
+ * @param <P> The type of the problems.
+ * @param <R> The type of the results.
+ */
+public abstract class DivideAndConquerTask<P, R> extends FarmTask {
+
+    public static final int UNKNOWN_SIZE = -1;
+
+    /**
+     * The number of levels beyond enough to give every worker a subproblem that the recursion is split in parallel by default,
+     * so that there are many more subproblems than workers to balance between them.
+     */
+    private static final int EXTRA_PARALLEL_DEPTH = 4;
+
+    /**
+     * The most subproblems a worker leaves on its deque to be stolen before it solves the rest of its recursion sequentially.
+     */
+    private static final int MAX_WAITING_SUBPROBLEMS = 3;
+
+    private static final int IDLE_SPINS = 64;
+    private static final long IDLE_PARK_NANOS = 50000;
+
+    private P problem;
+    private R result;
+
+    private int maxParallelDepth;
+    private int sequentialSize;
+    private long sequentialCostThreshold;
+
+    private int noOfWorkers;
+    private int depthForRun;
+    private int nextWorker;
+    private ThreadAllocator ta;
+    private Subproblem<P, R> root;
+    private List<ConcurrentLinkedDeque<Subproblem<P, R>>> deques;
+
+    /**
+     * A subproblem that can be solved by whichever worker takes it off a deque.
+     */
+    private static final class Subproblem<P, R> {
+        private final P problem;
+        private final int depth;
+        private R result;
+        private Throwable failure;
+        private volatile boolean solved;
+
+        private Subproblem(P problem, int depth) {
+            this.problem = problem;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Creates a new divide and conquer over the given problem.
+     * @param problem The whole problem to solve.
+     */
+    public DivideAndConquerTask(P problem) {
+        this.problem = problem;
+        result = null;
+        maxParallelDepth = ParallelForFarmTask.USE_DEFAULT;
+        sequentialSize = 0;
+        sequentialCostThreshold = ParallelForFarmTask.USE_DEFAULT;
+    }
+
+    /**
+     * Overridden to split a problem that is not a base case into smaller subproblems.
+     * @param problem The problem to split.
+     * @return The subproblems, which are solved in parallel and so must not depend on each other.
+     */
+    protected abstract List<P> split(P problem);
+
+    /**
+     * Overridden to check if a problem is small enough to be solved directly.
+     * @param problem The problem to check.
+     * @return True if the problem is solved with solveBase rather than being split.
+     */
+    protected abstract boolean isBase(P problem);
+
+    /**
+     * Overridden to solve a base case directly.
+     * @param problem The problem to solve, for which isBase is true.
+     * @return The result of the problem.
+     */
+    protected abstract R solveBase(P problem);
+
+    /**
+     * Overridden to combine the results of the subproblems of a problem into its result.
+     * @param problem The problem that was split.
+     * @param results The results of the subproblems, in the order split gave them.
+     * @return The result of the problem.
+     */
+    protected abstract R combine(P problem, List<R> results);
+
+    /**
+     * Can be overridden with the size of a problem, such as the length of the range of an array it covers,
+     * so that small problems can be solved sequentially without being split in parallel.
+     * @param problem The problem.
+     * @return The size of the problem or UNKNOWN_SIZE.
+     */
+    protected int size(P problem) {
+        return UNKNOWN_SIZE;
+    }
+
+    /**
+     * Sets the depth of recursion below which subproblems are solved sequentially rather than split in parallel.
+     * @param depth The number of levels split in parallel, or USE_DEFAULT for enough levels to give every worker several subproblems.
+     */
+    public void setMaxParallelDepth(int depth) {
+        maxParallelDepth = depth;
+    }
+
+    /**
+     * Sets the size below which subproblems are solved sequentially rather than split in parallel.
+     * @param size The minimum size of a subproblem to split in parallel, or 0 to disable. Has no effect unless size is overridden.
+     */
+    public void setSequentialSize(int size) {
+        sequentialSize = size;
+    }
+
+    /**
+     * Sets the estimated run time below which subproblems are solved sequentially rather than split in parallel.
+     * Has no effect unless size is overridden.
+     * @param nanos The minimum estimated run time in nanoseconds to split in parallel, 0 to disable or USE_DEFAULT to use the ParallelExecutor's value.
+     */
+    public void setSequentialCostThreshold(long nanos) {
+        sequentialCostThreshold = nanos;
+    }
+
+    /**
+     * @return The result of the whole problem, or null if it has not been solved.
+     */
+    public R getResult() {
+        return result;
+    }
+
+    public P getProblem() {
+        return problem;
+    }
+
+    @Override
+    protected int prepareExecution(int noOfThreads) {
+        noOfWorkers = (noOfThreads == ParallelExecutor.AUTO) ? ParallelExecutor.getDefaultNoOfThreads() : noOfThreads;
+        depthForRun = getMaxParallelDepth(noOfWorkers);
+        result = null;
+
+        return noOfThreads;
+    }
+
+    private int getMaxParallelDepth(int workers) {
+        if(maxParallelDepth != ParallelForFarmTask.USE_DEFAULT) {
+            return maxParallelDepth;
+        }
+
+        int depthToFillWorkers = 32 - Integer.numberOfLeadingZeros(Math.max(1, workers) - 1);
+        return depthToFillWorkers + EXTRA_PARALLEL_DEPTH;
+    }
+
+    @Override
+    protected boolean shouldRunSequentially() {
+        return noOfWorkers <= 1 || isBase(problem) || !shouldSplitInParallel(problem, 0);
+    }
+
+    @Override
+    protected void runSequentially() {
+        result = timedSolveSequentially(problem);
+    }
+
+    @Override
+    protected void completeExecution() {
+        ta = null;
+        root = null;
+        deques = null;
+    }
+
+    @Override
+    protected void allocateTasks(ThreadAllocator ta) {
+        this.ta = ta;
+        int workers = Math.max(1, Math.min(noOfWorkers, ta.getNoOfThreads()));
+
+        //the root is put on a deque before any worker starts so that whichever worker starts first can steal it
+        deques = new ArrayList<>(workers);
+        for(int i = 0; i < workers; i++) {
+            deques.add(new ConcurrentLinkedDeque<>());
+        }
+        root = new Subproblem<>(problem, 0);
+        deques.get(0).addLast(root);
+
+        for(int i = 0; i < workers; i++) {
+            nextWorker = i;
+            dataInputUsed = false;
+
+            ta.execute(this);
+
+            waitForDataInputUsed();
+        }
+    }
+
+    @Override
+    protected Object[] readInputData() {
+        Object[] inputData = new Object[3];
+        inputData[0] = nextWorker;
+        inputData[1] = root;
+        inputData[2] = deques;
+
+        return inputData;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void operation(Object[] inputValues) {
+        int worker = (int)inputValues[0];
+        Subproblem<P, R> runRoot = (Subproblem<P, R>)inputValues[1];
+        List<ConcurrentLinkedDeque<Subproblem<P, R>>> runDeques = (List<ConcurrentLinkedDeque<Subproblem<P, R>>>)inputValues[2];
+
+        int idleCount = 0;
+        while(!runRoot.solved) {
+            Subproblem<P, R> subproblem = take(runDeques, worker);
+            if(subproblem != null) {
+                solve(subproblem, runDeques, worker);
+                idleCount = 0;
+            } else if(ta.isCancelled(this)) {
+                return;
+            } else {
+                idle(++idleCount);
+            }
+        }
+
+        if(runRoot.failure != null) {
+            rethrow(runRoot.failure);
+        } else {
+            result = runRoot.result;
+        }
+    }
+
+    private void solve(Subproblem<P, R> subproblem, List<ConcurrentLinkedDeque<Subproblem<P, R>>> runDeques, int worker) {
+        try {
+            subproblem.result = solve(subproblem.problem, subproblem.depth, runDeques, worker);
+        } catch(RuntimeException | Error e) {
+            //a failure on a worker thread would stop the thread, so it is passed up to the subproblem's parent
+            subproblem.failure = e;
+        }
+        subproblem.solved = true;
+    }
+
+    private R solve(P problem, int depth, List<ConcurrentLinkedDeque<Subproblem<P, R>>> runDeques, int worker) {
+        if(isBase(problem)) {
+            return solveBase(problem);
+        }
+        if(!shouldSplitInParallel(problem, depth) || runDeques.get(worker).size() >= MAX_WAITING_SUBPROBLEMS) {
+            return timedSolveSequentially(problem);
+        }
+
+        List<P> subproblems = split(problem);
+        if(subproblems.isEmpty()) {
+            return combine(problem, Collections.emptyList());
+        }
+
+        //every subproblem but the first is left to be stolen while this worker solves the first itself
+        List<Subproblem<P, R>> forked = new ArrayList<>(subproblems.size() - 1);
+        for(int i = 1; i < subproblems.size(); i++) {
+            Subproblem<P, R> subproblem = new Subproblem<>(subproblems.get(i), depth + 1);
+            forked.add(subproblem);
+            runDeques.get(worker).addLast(subproblem);
+        }
+
+        List<R> results = new ArrayList<>(subproblems.size());
+        results.add(solve(subproblems.get(0), depth + 1, runDeques, worker));
+        for(Subproblem<P, R> subproblem:forked) {
+            join(subproblem, runDeques, worker);
+            if(subproblem.failure != null) {
+                rethrow(subproblem.failure);
+            }
+            results.add(subproblem.result);
+        }
+
+        return combine(problem, results);
+    }
+
+    /**
+     * Waits for a subproblem to be solved, solving the subproblems on this worker's deque or stolen from other workers in the meantime.
+     */
+    private void join(Subproblem<P, R> subproblem, List<ConcurrentLinkedDeque<Subproblem<P, R>>> runDeques, int worker) {
+        int idleCount = 0;
+        while(!subproblem.solved) {
+            Subproblem<P, R> other = take(runDeques, worker);
+            if(other != null) {
+                solve(other, runDeques, worker);
+                idleCount = 0;
+            } else if(ta.isCancelled(this)) {
+                throw new CancellationException("The divide and conquer was cancelled before all of its subproblems had been solved.");
+            } else {
+                idle(++idleCount);
+            }
+        }
+    }
+
+    /**
+     * Takes the newest subproblem from the worker's own deque, or steals the oldest subproblem from another worker's deque.
+     */
+    private Subproblem<P, R> take(List<ConcurrentLinkedDeque<Subproblem<P, R>>> runDeques, int worker) {
+        Subproblem<P, R> subproblem = runDeques.get(worker).pollLast();
+        if(subproblem != null) {
+            return subproblem;
+        }
+
+        int noOfDeques = runDeques.size();
+        int firstVictim = ThreadLocalRandom.current().nextInt(noOfDeques);
+        for(int i = 0; i < noOfDeques; i++) {
+            int victim = (firstVictim + i) % noOfDeques;
+            if(victim != worker) {
+                subproblem = runDeques.get(victim).pollFirst();
+                if(subproblem != null) {
+                    return subproblem;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private void idle(int idleCount) {
+        if(idleCount < IDLE_SPINS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private boolean shouldSplitInParallel(P problem, int depth) {
+        if(depth >= depthForRun) {
+            return false;
+        }
+
+        int problemSize = size(problem);
+        if(problemSize == UNKNOWN_SIZE) {
+            return true;
+        }
+        if(problemSize < sequentialSize) {
+            return false;
+        }
+
+        long costThreshold = sequentialCostThreshold;
+        if(costThreshold == ParallelForFarmTask.USE_DEFAULT) {
+            costThreshold = ParallelExecutor.getSequentialCostThreshold();
+        }
+        if(costThreshold > 0) {
+            double nanosPerUnit = IterationCostModel.getNanosPerIteration(getClass());
+            if(nanosPerUnit >= 0 && nanosPerUnit * problemSize < costThreshold) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private R timedSolveSequentially(P problem) {
+        long startTime = System.nanoTime();
+        R sequentialResult = solveSequentially(problem);
+        int problemSize = size(problem);
+        if(problemSize != UNKNOWN_SIZE) {
+            IterationCostModel.recordChunk(getClass(), problemSize, System.nanoTime() - startTime);
+        }
+
+        return sequentialResult;
+    }
+
+    private R solveSequentially(P problem) {
+        if(isBase(problem)) {
+            return solveBase(problem);
+        }
+
+        List<P> subproblems = split(problem);
+        List<R> results = new ArrayList<>(subproblems.size());
+        for(P subproblem:subproblems) {
+            results.add(solveSequentially(subproblem));
+        }
+
+        return combine(problem, results);
+    }
+
+    private static void rethrow(Throwable failure) {
+        if(failure instanceof Error) {
+            throw (Error)failure;
+        }
+        throw (RuntimeException)failure;
+    }
+}
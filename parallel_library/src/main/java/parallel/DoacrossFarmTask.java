@@ -0,0 +1,197 @@
+package parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import parallel.threadallocation.ThreadAllocator;
+
+/**
+ * Skeleton code to be extended to run a for loop in parallel where iteration i depends on the
+ * result of iteration i - distance, such as a recurrence on an array.
+ * The loop is split into blocks of distance iterations which are dealt out to the workers in turn,
+ * so that consecutive blocks run on different workers. Each iteration must call awaitDependence before
+ * it reads the results of earlier iterations and postIteration once its results are written, which lets
+ * the workers run their blocks as an overlapping pipeline rather than one after another.
+ * A task that is about to wait on the blocks of a worker that no task has taken on yet takes on that worker's
+ * blocks itself, so the loop finishes however few of its tasks are given a thread.
+ * @author michaellynch
+ *
+ */
+public abstract class DoacrossFarmTask extends ParallelForFarmTask {
+
+    /**
+     * Number of longs between the progress counters of the workers so that each counter has its own cache line.
+     */
+    private static final int PROGRESS_STRIDE = 16;
+
+    private static final int SPIN_LIMIT = 1000;
+
+    private int distance;
+    private int noOfWorkers;
+    private AtomicLongArray progress;
+    private AtomicInteger takenWorkers;
+
+    /**
+     * Creates a new doacross loop with start iteration rangeStart and end iteration rangeEnd.
+     * @param rangeStart Iteration start point.
+     * @param rangeEnd Iteration end point.
+     * @param noOfChunks The most workers to run the loop's blocks on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param distance The number of iterations between an iteration and the earlier iteration it depends on.
+     */
+    public DoacrossFarmTask(int rangeStart, int rangeEnd, int noOfChunks, int distance) {
+        super(rangeStart, rangeEnd, noOfChunks);
+        if(distance < 1) {
+            throw new IllegalArgumentException("The dependence distance of a doacross loop must be at least 1.");
+        }
+        this.distance = distance;
+        resetProgress(1);
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    /**
+     * Waits until every iteration at least distance before the given iteration has been posted.
+     * @param iteration The iteration about to read the results of earlier iterations.
+     */
+    protected void awaitDependence(int iteration) {
+        long dependence = (long)iteration - distance;
+        if(dependence < getTotalLoopRangeStart()) return;
+
+        //the first iteration of a block also waits for the end of the block two before it,
+        //after that each block only needs the iterations of the block just before it
+        if((iteration - getTotalLoopRangeStart()) % distance == 0) {
+            awaitIteration(dependence - 1);
+        }
+        awaitIteration(dependence);
+    }
+
+    private void awaitIteration(long iteration) {
+        if(iteration < getTotalLoopRangeStart()) return;
+
+        int slot = getWorkerOf(iteration) * PROGRESS_STRIDE;
+        for(int i = 0; progress.get(slot) <= iteration; i++) {
+            if(i >= SPIN_LIMIT) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Marks the given iteration as finished, allowing the iteration that depends on it to continue.
+     * @param iteration The iteration whose results have been written.
+     */
+    protected void postIteration(int iteration) {
+        progress.lazySet(getWorkerOf(iteration) * PROGRESS_STRIDE, (long)iteration + 1);
+    }
+
+    private int getWorkerOf(long iteration) {
+        return (int)(((iteration - getTotalLoopRangeStart()) / distance) % noOfWorkers);
+    }
+
+    /**
+     * Sets every worker's progress to the start of the loop.
+     */
+    private void resetProgress(int workers) {
+        noOfWorkers = workers;
+        takenWorkers = new AtomicInteger(0);
+        progress = new AtomicLongArray(workers * PROGRESS_STRIDE);
+        for(int i = 0; i < workers; i++) {
+            progress.set(i * PROGRESS_STRIDE, getTotalLoopRangeStart());
+        }
+    }
+
+    @Override
+    protected void operation(Object[] inputValues) {
+        int worker = takenWorkers.getAndIncrement();
+        if(worker >= noOfWorkers) {
+            //the worker's blocks were taken on by a task that started before this one
+            return;
+        }
+
+        int rangeStart = getTotalLoopRangeStart();
+        int rangeEnd = getTotalLoopRangeEnd();
+
+        //the next block of each worker this task has taken on, where the blocks are run in the order of the loop
+        List<Long> nextBlocks = new ArrayList<>();
+        nextBlocks.add((long)worker);
+        while(true) {
+            int next = 0;
+            for(int i = 1; i < nextBlocks.size(); i++) {
+                if(nextBlocks.get(i) < nextBlocks.get(next)) next = i;
+            }
+            long block = nextBlocks.get(next);
+            long blockStart = rangeStart + block * distance;
+            if(blockStart >= rangeEnd) {
+                return;
+            }
+
+            //a block waits on the blocks before it, so their workers must be taken on by a running task,
+            //workers are taken in order so the earlier blocks of a worker taken here are run before this block
+            if(takeWorkersBefore(block, nextBlocks)) {
+                continue;
+            }
+
+            operation((int)blockStart, (int)Math.min(blockStart + distance, rangeEnd));
+            nextBlocks.set(next, block + noOfWorkers);
+        }
+    }
+
+    /**
+     * Takes on every worker of the blocks before the given block that no task has taken yet.
+     * @return True if a worker was taken, whose first block is then added to the next blocks.
+     */
+    private boolean takeWorkersBefore(long block, List<Long> nextBlocks) {
+        boolean tookWorker = false;
+        int taken = takenWorkers.get();
+        while(taken < Math.min(block, noOfWorkers)) {
+            if(takenWorkers.compareAndSet(taken, taken + 1)) {
+                nextBlocks.add((long)taken);
+                tookWorker = true;
+            }
+            taken = takenWorkers.get();
+        }
+
+        return tookWorker;
+    }
+
+    @Override
+    protected Object[] readInputData() {
+        return new Object[0];
+    }
+
+    @Override
+    protected void runSequentially() {
+        resetProgress(1);
+        super.runSequentially();
+    }
+
+    @Override
+    protected void allocateTasks(ThreadAllocator ta) {
+        int chunks = getChunksForRun();
+        if(chunks == ParallelExecutor.AUTO) {
+            chunks = ParallelExecutor.getDefaultNoOfThreads();
+        }
+
+        //there is nothing to gain from more workers than the farm is allowed to run at once on the allocator's threads
+        int total = getTotalLoopRangeEnd() - getTotalLoopRangeStart();
+        int blocks = (int)(((long)total + distance - 1) / distance);
+        int workers = Math.min(chunks, Math.min(ta.getNoOfThreads(), blocks));
+        if(getConcurrencyLimit() > 0) {
+            workers = Math.min(workers, getConcurrencyLimit());
+        }
+        workers = Math.max(1, workers);
+        resetProgress(workers);
+
+        for(int i = 0; i < workers; i++) {
+            dataInputUsed = false;
+
+            ta.execute(this);
+
+            waitForDataInputUsed();
+        }
+    }
+}
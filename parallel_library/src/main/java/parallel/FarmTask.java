@@ -1,5 +1,7 @@
 package parallel;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import parallel.threadallocation.ThreadAllocator;
 
 /**
@@ -10,6 +12,10 @@ import parallel.threadallocation.ThreadAllocator;
 public abstract class FarmTask implements Runnable {
 
     private Thread ownedThread;
+    private volatile Priority priority;
+    private volatile int concurrencyLimit;
+    private volatile boolean cancelled;
+    private final AtomicReference<Throwable> taskFailure = new AtomicReference<>();
     protected volatile boolean dataInputUsed;
     private Object dataInputMonitor = new Object();
 
@@ -31,6 +37,56 @@ public abstract class FarmTask implements Runnable {
      */
     protected abstract Object[] readInputData();
 
+    /**
+     * Checks if the farm is small enough that running it on the ThreadAllocator would cost more than the work itself.
+     * @return True if the farm should be run inline on the calling thread using runSequentially.
+     */
+    protected boolean shouldRunSequentially() {
+        return false;
+    }
+
+    /**
+     * Runs all of the farm's work on the calling thread without involving the ThreadAllocator's threads.
+     * Only called when shouldRunSequentially returns true.
+     * By default the farm's tasks are allocated to an inline ThreadAllocator, which runs each task as soon as it is executed,
+     * so farms whose tasks wait on each other must override this.
+     */
+    protected void runSequentially() {
+        allocateTasks(ThreadAllocator.createInline());
+    }
+
+    /**
+     * Called by the ParallelExecutor before the farm's tasks are allocated to choose how the farm is run.
+     * @param noOfThreads The number of threads requested for the farm, which may be ParallelExecutor.AUTO.
+     * @return The number of threads the farm should be run on, or ParallelExecutor.AUTO for the default.
+     */
+    protected int prepareExecution(int noOfThreads) {
+        return noOfThreads;
+    }
+
+    /**
+     * Called by the ParallelExecutor once all the tasks in the farm have completed.
+     */
+    protected void completeExecution() {
+    }
+
+    /**
+     * Gets the group of tasks that the next task of this farm shares thread affinity with.
+     * @return An object identifying the group, or null if the task can be run on any thread.
+     */
+    public Object getAffinityGroup() {
+        return null;
+    }
+
+    /**
+     * Gets the position of the next task of this farm within its affinity group.
+     * The task is preferably run on the thread that last ran the task at the same position in the group.
+     * @return The position of the task in its affinity group.
+     */
+    public int getAffinityIndex() {
+        return 0;
+    }
+
     @Override
 	public void run() {
         Object[] inputValues;
@@ -41,13 +97,48 @@ public abstract class FarmTask implements Runnable {
         synchronized(dataInputMonitor) {
             dataInputMonitor.notifyAll();
         }
-        operation(inputValues);
+        try {
+            operation(inputValues);
+        } catch(RuntimeException | Error e) {
+            //a failure on a worker thread would stop the thread, so it is thrown to the caller once every task has finished
+            taskFailure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * Takes up the input data of the latest task without running its operation, used by the ThreadAllocator
+     * in place of run for a task whose farm has been cancelled.
+     */
+    public void skip() {
+        synchronized(this) {
+            readInputData();
+        }
+        dataInputUsed = true;
+        synchronized(dataInputMonitor) {
+            dataInputMonitor.notifyAll();
+        }
     }
 
     public Object getDataInputMonitor() {
         return dataInputMonitor;
     }
 
+    /**
+     * Waits until the latest task given to the ThreadAllocator has read its input data,
+     * after which the input data for the next task can be set.
+     */
+    protected void waitForDataInputUsed() {
+        synchronized(dataInputMonitor) {
+            while(!dataInputUsed) {
+                try {
+                    dataInputMonitor.wait();
+                } catch(InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
     /**
      * Checks to ensure the previously inputted data has been taken up by the latest farm started.
      * @return true if the inputed has been read by the latest farm
@@ -58,6 +149,74 @@ public abstract class FarmTask implements Runnable {
 
     public FarmTask() {
         ownedThread = null;
+        priority = Priority.NORMAL;
+        concurrencyLimit = 0;
+        cancelled = false;
+    }
+
+    /**
+     * Cancels the farm, so that its tasks that have not started yet, and those of the farms nested within it, are skipped.
+     * Tasks that are already running are left to finish.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Clears the cancellation of the farm before it is run again.
+     */
+    void clearCancelled() {
+        cancelled = false;
+    }
+
+    /**
+     * Throws the first exception thrown by one of the farm's tasks since the farm was last run.
+     * The exception is thrown as it is, as it would be had the farm been run on the calling thread.
+     */
+    void throwTaskFailure() {
+        Throwable failure = taskFailure.getAndSet(null);
+        if(failure instanceof Error) {
+            throw (Error)failure;
+        }
+        if(failure != null) {
+            throw (RuntimeException)failure;
+        }
+    }
+
+    /**
+     * Clears any exception left by the farm's tasks before it is run again.
+     */
+    void clearTaskFailure() {
+        taskFailure.set(null);
+    }
+
+    /**
+     * Sets the most tasks of the farm that the ThreadAllocator runs at once, however many threads it has.
+     * Set by the ParallelExecutor to the number of threads the farm is run on.
+     * @param concurrencyLimit The most tasks that can run at once, or ParallelExecutor.AUTO for no limit.
+     */
+    public void setConcurrencyLimit(int concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * Sets the priority with which the farm's tasks are given threads, which applies to tasks executed after the change.
+     * @param priority The priority of the farm.
+     */
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
+    public Priority getPriority() {
+        return priority;
     }
 
     public void setOwnedThread() {
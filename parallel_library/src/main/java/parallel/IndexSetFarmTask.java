@@ -0,0 +1,99 @@
+package parallel;
+
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * Skeleton code to be extended to run a for loop in parallel over a sparse set of indices, such as a loop that
+ * only does work for the iterations whose flag in a mask is set. The indices are gathered into an array before
+ * the loop is run and the loop is split over their positions in that array, so every chunk is given the same number
+ * of active indices however they are spread over the range, rather than an equal span of the range that may hold
+ * most of the work or none of it.
+ * @author michaellynch
+ *
+ */
+public abstract class IndexSetFarmTask extends ParallelForFarmTask {
+
+    private int[] indices;
+
+    /**
+     * Creates a new parallel for loop over the given indices.
+     * @param indices The indices to run the loop over in the order they are given, which must not be changed while the loop is running.
+     * @param noOfChunks The number of chunks to split the indices into which will run in parallel, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public IndexSetFarmTask(int[] indices, int noOfChunks) {
+        super(0, indices.length, noOfChunks);
+        this.indices = indices;
+    }
+
+    /**
+     * Creates a new parallel for loop over the set bits of a BitSet in increasing order.
+     * @param indices The set of indices to run the loop over, which is copied so it can be changed once the loop is created.
+     * @param noOfChunks The number of chunks to split the indices into which will run in parallel, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public IndexSetFarmTask(BitSet indices, int noOfChunks) {
+        this(indices.stream().toArray(), noOfChunks);
+    }
+
+    /**
+     * Creates a new parallel for loop over the indices of a stream in the order they are given.
+     * @param indices The indices to run the loop over, which are all read before the loop is created.
+     * @param noOfChunks The number of chunks to split the indices into which will run in parallel, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public IndexSetFarmTask(IntStream indices, int noOfChunks) {
+        this(indices.toArray(), noOfChunks);
+    }
+
+    /**
+     * Creates a new parallel for loop over the iterations from rangeStart to rangeEnd whose flag in the mask is set,
+     * equivalent to a loop whose body is guarded by if(mask[i]).
+     * @param mask The flags of the iterations, which are read before the loop is created.
+     * @param rangeStart Iteration start point.
+     * @param rangeEnd Iteration end point.
+     * @param noOfChunks The number of chunks to split the indices into which will run in parallel, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public IndexSetFarmTask(boolean[] mask, int rangeStart, int rangeEnd, int noOfChunks) {
+        this(getSetIndices(mask, rangeStart, rangeEnd), noOfChunks);
+    }
+
+    private static int[] getSetIndices(boolean[] mask, int rangeStart, int rangeEnd) {
+        int count = 0;
+        for(int i = rangeStart; i < rangeEnd; i++) {
+            if(mask[i]) count++;
+        }
+
+        int[] indices = new int[count];
+        int position = 0;
+        for(int i = rangeStart; i < rangeEnd; i++) {
+            if(mask[i]) {
+                indices[position++] = i;
+            }
+        }
+
+        return indices;
+    }
+
+    /**
+     * Overridden with the for loop operation over the indices of a chunk.
+     * @param indices Every index of the loop, shared between the chunks, which must not be changed.
+     * @param positionStart The position in indices of the chunk's first index.
+     * @param positionEnd The position in indices just after the chunk's last index.
+     */
+    protected abstract void operation(int[] indices, int positionStart, int positionEnd);
+
+    @Override
+    protected final void operation(int rangeStart, int rangeEnd) {
+        operation(indices, rangeStart, rangeEnd);
+    }
+
+    /**
+     * @return The number of indices the loop is run over.
+     */
+    public int getNoOfIndices() {
+        return indices.length;
+    }
+
+    public int[] getIndices() {
+        return indices;
+    }
+}
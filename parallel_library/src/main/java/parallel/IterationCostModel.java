@@ -0,0 +1,80 @@
+package parallel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a running estimate of how long a single loop iteration takes for each kind of parallel for loop.
+ * The estimates are calibrated from the measured run times of the chunks that have been executed.
+ * @author michaellynch
+ *
+ */
+public class IterationCostModel {
+
+    private static final double SMOOTHING = 0.25;
+
+    private static Map<Class<?>, IterationCostModel> allCostModels = new ConcurrentHashMap<>();
+
+    private double nanosPerIteration;
+    private long samples;
+
+    private IterationCostModel() {
+        nanosPerIteration = 0;
+        samples = 0;
+    }
+
+    private synchronized void record(int iterations, long nanos) {
+        double measured = (double)nanos / iterations;
+        if(samples == 0) {
+            nanosPerIteration = measured;
+        } else {
+            nanosPerIteration += SMOOTHING * (measured - nanosPerIteration);
+        }
+        samples++;
+    }
+
+    private synchronized double estimate() {
+        if(samples == 0) {
+            return -1;
+        }
+        return nanosPerIteration;
+    }
+
+    /**
+     * Records the time taken to run a chunk of a parallel for loop.
+     * @param taskClass The class of the parallel for loop that the chunk belongs to.
+     * @param iterations The number of iterations in the chunk.
+     * @param nanos The time taken to run the chunk in nanoseconds.
+     */
+    public static void recordChunk(Class<?> taskClass, int iterations, long nanos) {
+        if(iterations <= 0) return;
+
+        IterationCostModel model = allCostModels.get(taskClass);
+        if(model == null) {
+            allCostModels.putIfAbsent(taskClass, new IterationCostModel());
+            model = allCostModels.get(taskClass);
+        }
+        model.record(iterations, nanos);
+    }
+
+    /**
+     * Gets the estimated time taken to run a single iteration of the given parallel for loop.
+     * @param taskClass The class of the parallel for loop.
+     * @return The estimated time of one iteration in nanoseconds or -1 if no chunks of the loop have been measured yet.
+     */
+    public static double getNanosPerIteration(Class<?> taskClass) {
+        IterationCostModel model = allCostModels.get(taskClass);
+        if(model == null) {
+            return -1;
+        }
+        return model.estimate();
+    }
+
+    /**
+     * Removes all of the measurements taken for the given parallel for loop.
+     * @param taskClass The class of the parallel for loop.
+     */
+    public static void reset(Class<?> taskClass) {
+        allCostModels.remove(taskClass);
+    }
+}
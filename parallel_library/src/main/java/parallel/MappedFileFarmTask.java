@@ -0,0 +1,203 @@
+package parallel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import parallel.threadallocation.ThreadAllocator;
+
+/**
+ * Skeleton code to be extended to process a file of delimited records in parallel, such as the lines of a log file.
+ * The file is split into chunks whose bounds are moved forward to just after a delimiter, so no record is split
+ * between two chunks. Each chunk is memory mapped and given to a worker as a read only buffer over the file,
+ * so the file is read, parsed and processed by every worker at once without copying it onto the heap first.
+ * @author michaellynch
+ *
+ */
+public abstract class MappedFileFarmTask extends FarmTask {
+
+    /**
+     * The largest chunk that is split from the file, leaving room below the largest mappable buffer for a chunk to
+     * grow while its end is moved forward to a delimiter.
+     */
+    private static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE / 2;
+
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    private Path file;
+    private byte delimiter;
+    private int noOfChunks;
+    private int chunksForRun;
+
+    private ByteBuffer nextChunk;
+    private long nextChunkStart;
+
+    /**
+     * Creates a new farm over the records of a file.
+     * @param file The file to process, which must not be changed while the farm is running.
+     * @param delimiter The byte that ends each record, such as '\n' for lines.
+     * @param noOfChunks The number of chunks to split the file into, or ParallelExecutor.AUTO for a number based on the threads.
+     */
+    public MappedFileFarmTask(Path file, byte delimiter, int noOfChunks) {
+        this.file = file;
+        this.delimiter = delimiter;
+        this.noOfChunks = noOfChunks;
+        chunksForRun = noOfChunks;
+    }
+
+    /**
+     * Overridden with the operation over the records of one chunk.
+     * @param chunk A read only buffer over the chunk's bytes, which ends just after a delimiter unless it is the end of the file.
+     * @param chunkStart The position in the file of the first byte of the chunk.
+     */
+    protected abstract void operation(ByteBuffer chunk, long chunkStart);
+
+    @Override
+    protected void operation(Object[] inputValues) {
+        operation((ByteBuffer)inputValues[0], (long)inputValues[1]);
+    }
+
+    @Override
+    protected Object[] readInputData() {
+        Object[] inputData = new Object[2];
+        inputData[0] = nextChunk;
+        inputData[1] = nextChunkStart;
+
+        return inputData;
+    }
+
+    @Override
+    protected int prepareExecution(int noOfThreads) {
+        int threads = (noOfThreads == ParallelExecutor.AUTO) ? ParallelExecutor.getDefaultNoOfThreads() : noOfThreads;
+        chunksForRun = (noOfChunks == ParallelExecutor.AUTO) ? threads * 4 : noOfChunks;
+
+        long fileSize = getFileSize();
+        long minChunks = (fileSize + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE;
+        chunksForRun = (int)Math.max(1, Math.max(chunksForRun, minChunks));
+        chunksForRun = (int)Math.min(chunksForRun, Math.max(1, fileSize));
+
+        return noOfThreads;
+    }
+
+    @Override
+    protected boolean shouldRunSequentially() {
+        return chunksForRun == 1;
+    }
+
+    @Override
+    protected void runSequentially() {
+        long[] chunkBounds = getChunkBounds(chunksForRun);
+        ByteBuffer[] chunks = mapChunks(chunkBounds);
+
+        for(int i = 0; i < chunks.length; i++) {
+            operation(chunks[i], chunkBounds[i]);
+        }
+    }
+
+    @Override
+    protected void allocateTasks(ThreadAllocator ta) {
+        //every chunk is mapped before any are started so that an IOException leaves nothing running
+        long[] chunkBounds = getChunkBounds(chunksForRun);
+        ByteBuffer[] chunks = mapChunks(chunkBounds);
+
+        for(int i = 0; i < chunks.length; i++) {
+            nextChunk = chunks[i];
+            nextChunkStart = chunkBounds[i];
+            dataInputUsed = false;
+
+            ta.execute(this);
+
+            waitForDataInputUsed();
+        }
+        nextChunk = null;
+    }
+
+    private long getFileSize() {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.size();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Splits the file into chunks of about the same size, with each bound moved forward to just after the next delimiter.
+     * @return The start of each chunk followed by the end of the file.
+     */
+    private long[] getChunkBounds(int chunks) {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long[] chunkBounds = new long[chunks + 1];
+            ByteBuffer scanBuffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+            for(int i = 1; i < chunks; i++) {
+                long position = Math.max(fileSize / chunks * i, chunkBounds[i - 1]);
+                chunkBounds[i] = findRecordEnd(channel, position, fileSize, scanBuffer);
+            }
+            chunkBounds[chunks] = fileSize;
+
+            return chunkBounds;
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finds the position just after the first delimiter at or after the byte before the given position,
+     * so a position that already starts a record is kept.
+     * @return The start of the next record or the end of the file if there are no more delimiters.
+     */
+    private long findRecordEnd(FileChannel channel, long position, long fileSize, ByteBuffer scanBuffer) throws IOException {
+        if(position == 0) {
+            return 0;
+        }
+
+        long scanPosition = position - 1;
+        while(scanPosition < fileSize) {
+            scanBuffer.clear();
+            int read = channel.read(scanBuffer, scanPosition);
+            if(read <= 0) {
+                break;
+            }
+
+            for(int i = 0; i < read; i++) {
+                if(scanBuffer.get(i) == delimiter) {
+                    return scanPosition + i + 1;
+                }
+            }
+            scanPosition += read;
+        }
+
+        return fileSize;
+    }
+
+    private ByteBuffer[] mapChunks(long[] chunkBounds) {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer[] chunks = new ByteBuffer[chunkBounds.length - 1];
+            for(int i = 0; i < chunks.length; i++) {
+                long chunkSize = chunkBounds[i + 1] - chunkBounds[i];
+                if(chunkSize > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("A record starting near position " + chunkBounds[i] + " is too long to be mapped.");
+                }
+
+                //a mapping stays valid once the channel is closed
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, chunkBounds[i], chunkSize);
+            }
+
+            return chunks;
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public byte getDelimiter() {
+        return delimiter;
+    }
+}
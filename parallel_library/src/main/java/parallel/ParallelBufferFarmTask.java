@@ -0,0 +1,90 @@
+package parallel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Skeleton code to be extended to run a for loop in parallel over fixed size records held in a ByteBuffer,
+ * which can be a direct buffer so that large data sets are kept off the heap.
+ * The loop iterates over the records and each chunk is given a slice of the buffer holding its records,
+ * which shares the buffer's memory rather than copying it. The bounds between chunks are placed on multiples
+ * of both the record size and the cache line size from the start of the records, so no record or cache line
+ * is split between two chunks when the buffer itself starts on a cache line, as direct buffers usually do.
+ * @author michaellynch
+ *
+ */
+public abstract class ParallelBufferFarmTask extends ParallelForFarmTask {
+
+    /**
+     * The number of bytes in a cache line that the bounds between chunks are aligned to.
+     */
+    public static final int CACHE_LINE_SIZE = 64;
+
+    private ByteBuffer buffer;
+    private int recordSize;
+    private int recordsStart;
+
+    /**
+     * Creates a new parallel for loop over the records between the buffer's position and limit.
+     * @param buffer The buffer holding the records, which must not be changed while the loop is running.
+     * @param recordSize The number of bytes in each record.
+     * @param noOfChunks The number of chunks to split the records into which will run in parallel, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public ParallelBufferFarmTask(ByteBuffer buffer, int recordSize, int noOfChunks) {
+        super(0, getNoOfRecords(buffer, recordSize), noOfChunks);
+        this.buffer = buffer;
+        this.recordSize = recordSize;
+        recordsStart = buffer.position();
+    }
+
+    private static int getNoOfRecords(ByteBuffer buffer, int recordSize) {
+        if(recordSize < 1) {
+            throw new IllegalArgumentException("The record size must be at least 1 byte.");
+        }
+        if(buffer.remaining() % recordSize != 0) {
+            throw new IllegalArgumentException("The buffer does not hold a whole number of records.");
+        }
+
+        return buffer.remaining() / recordSize;
+    }
+
+    /**
+     * Overridden with the for loop operation over the records of a chunk.
+     * @param records A slice of the buffer holding the chunk's records, starting at position 0 and with the buffer's byte order.
+     * @param firstRecord The index of the first record in the slice, counted from the buffer's position.
+     */
+    protected abstract void operation(ByteBuffer records, int firstRecord);
+
+    @Override
+    protected final void operation(int rangeStart, int rangeEnd) {
+        //duplicate so that each chunk has its own position and limit over the same memory
+        ByteBuffer records = buffer.duplicate();
+        records.limit(recordsStart + rangeEnd * recordSize);
+        records.position(recordsStart + rangeStart * recordSize);
+
+        operation(records.slice().order(buffer.order()), rangeStart);
+    }
+
+    @Override
+    int getChunkAlignment() {
+        //the smallest number of records that fills a whole number of cache lines
+        return CACHE_LINE_SIZE / gcd(recordSize, CACHE_LINE_SIZE);
+    }
+
+    private static int gcd(int a, int b) {
+        while(b != 0) {
+            int remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+
+        return a;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getRecordSize() {
+        return recordSize;
+    }
+}
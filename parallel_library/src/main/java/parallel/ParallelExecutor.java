@@ -1,6 +1,11 @@
 package parallel;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import parallel.threadallocation.CpuQuota;
+import parallel.threadallocation.TaskThread;
 import parallel.threadallocation.ThreadAllocator;
 
 /**
@@ -8,41 +13,210 @@ import parallel.threadallocation.ThreadAllocator;
  */
 public class ParallelExecutor {
 
+    /**
+     * Passed as the number of chunks or threads to have the value learnt at runtime by the AutoTuner.
+     */
+    public static final int AUTO = 0;
+
     private static ThreadAllocator ta = null;
     private static Object threadAllocationLock = new Object();
+    private static int poolSize = AUTO;
+
+    /**
+     * Threads that only hand the tasks of farms over to the ThreadAllocator, for farms that are started without waiting for them.
+     */
+    private static final ExecutorService allocationThreads = Executors.newCachedThreadPool(allocation -> {
+        Thread thread = new Thread(allocation, "farm-allocation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static volatile int sequentialThreshold = 0;
+    private static volatile long sequentialCostThreshold = 0;
 
     /**
      * Executes the given farm task on the number of threads given.
+     * The number of threads is the most of the farm's tasks that run at once, even if the ThreadAllocator has more threads.
+     * Waits for the farms nested within the farm's tasks as well, and throws a CancellationException if the farm was cancelled while it ran.
+     * An exception thrown by one of the farm's tasks is thrown once every task has finished.
      * @param farmTask The farm task to execute in parallel.
-     * @param noOfThreads The number of threads to run the parallel task on.
+     * @param noOfThreads The number of threads to run the parallel task on, or AUTO to have it learnt at runtime.
      * @return The farm task with the data that it has changed over the course of execution.
      */
     public static <N extends FarmTask> N executeParallel(N farmTask, int noOfThreads) {
+        farmTask.clearCancelled();
+        farmTask.clearTaskFailure();
+        noOfThreads = farmTask.prepareExecution(noOfThreads);
+
+        if(farmTask.shouldRunSequentially()) {
+            farmTask.runSequentially();
+            farmTask.completeExecution();
+            farmTask.throwTaskFailure();
+            return farmTask;
+        }
+
+        ThreadAllocator threadAllocator = getThreadAllocator(farmTask, noOfThreads);
+
+        farmTask.allocateTasks(threadAllocator);
+
+        threadAllocator.waitUntilComplete(farmTask);
+
+        farmTask.completeExecution();
+        farmTask.throwTaskFailure();
+
+        if(farmTask.isCancelled()) {
+            throw new CancellationException("The farm was cancelled before all of its tasks had run.");
+        }
+
+        return farmTask;
+    }
+    
+    /**
+     * Executes the given farm task on the number of threads given, with its tasks given threads ahead of or behind the tasks of other farms.
+     * @param farmTask The farm task to execute in parallel.
+     * @param noOfThreads The number of threads to run the parallel task on, or AUTO to have it learnt at runtime.
+     * @param priority The priority of the farm's tasks.
+     * @return The farm task with the data that it has changed over the course of execution.
+     */
+    public static <N extends FarmTask> N executeParallel(N farmTask, int noOfThreads, Priority priority) {
+        farmTask.setPriority(priority);
+
+        return executeParallel(farmTask, noOfThreads);
+    }
+
+    /**
+     * Runs blocks of code that do not depend on each other at the same time, returning once all of them have run.
+     * An exception thrown by a section is thrown once every section has finished.
+     * @param noOfThreads The most sections to run at once, or AUTO for the default number of threads.
+     * @param sections The sections to run.
+     */
+    public static void executeSections(int noOfThreads, Runnable... sections) {
+        executeParallel(new ParallelSections(sections), noOfThreads);
+    }
+
+    /**
+     * Runs farms that do not depend on each other at the same time, each on the default number of threads,
+     * returning once all of them have completed.
+     * @param farmTasks The farms to run.
+     */
+    public static void invokeAll(FarmTask... farmTasks) {
+        TaskGraph graph = new TaskGraph();
+        for(FarmTask farmTask:farmTasks) {
+            graph.addTask(farmTask);
+        }
+
+        graph.execute();
+    }
+
+    /**
+     * Gets the ThreadAllocator that farms are run on, creating it or adding threads to it so it has at least the given number of threads.
+     * If the pool size has been set the ThreadAllocator is kept at that size instead.
+     * @param noOfThreads The number of threads needed, or AUTO for the default.
+     * @return The ThreadAllocator.
+     */
+    static ThreadAllocator getThreadAllocator(int noOfThreads) {
+        if(noOfThreads == AUTO) {
+            noOfThreads = getDefaultNoOfThreads();
+        }
+
         synchronized(threadAllocationLock) {
+            if(poolSize != AUTO) {
+                noOfThreads = poolSize;
+            }
+
             if(ta == null) {
                 ta = new ThreadAllocator(noOfThreads);
             } else if(ta.getNoOfThreads() < noOfThreads) {
                 ta.setNoOfThreadsImmediately(noOfThreads);
             }
+
+            return ta;
         }
+    }
 
-        farmTask.allocateTasks(ta);
+    /**
+     * Gets the ThreadAllocator for the given farm and limits the farm to running the given number of tasks at once on it.
+     * @param farmTask The farm about to be run.
+     * @param noOfThreads The number of threads the farm is run on, or AUTO for the default.
+     * @return The ThreadAllocator.
+     */
+    static ThreadAllocator getThreadAllocator(FarmTask farmTask, int noOfThreads) {
+        farmTask.setConcurrencyLimit(noOfThreads);
 
-        ta.waitUntilComplete(farmTask);
+        return getThreadAllocator(noOfThreads);
+    }
 
-        return farmTask;
+    /**
+     * Allocates the tasks of a farm without holding up the calling thread, which allocateTasks would do as it waits for
+     * each task to be given a thread before executing the next.
+     * The allocation is run on a background thread that only hands the tasks over to the ThreadAllocator, unless the caller is
+     * one of the ThreadAllocator's threads, in which case it is run inline so that the farm is nested within the farm the caller is running.
+     * @param allocation Allocates the farm's tasks, followed by anything that must wait until they have all been executed.
+     */
+    static void allocateInBackground(Runnable allocation) {
+        if(Thread.currentThread() instanceof TaskThread) {
+            allocation.run();
+        } else {
+            allocationThreads.execute(allocation);
+        }
     }
-    
+
+    /**
+     * Sets the number of threads in the ThreadAllocator that every farm shares, so that it no longer grows to the
+     * number of threads a farm is run on. The number of threads a farm is run on still limits how many of its tasks run at once.
+     * Reducing the number of threads does not wait for the running tasks, whose threads are shut down once they have finished.
+     * @param noOfThreads The number of threads, limited to the CPU quota, or AUTO to have the pool grow to the largest farm again.
+     */
+    public static void setPoolSize(int noOfThreads) {
+        synchronized(threadAllocationLock) {
+            poolSize = noOfThreads;
+            if(ta == null || noOfThreads == AUTO) return;
+
+            if(ta.getNoOfThreads() < noOfThreads) {
+                ta.setNoOfThreadsImmediately(noOfThreads);
+            } else if(ta.getNoOfThreads() > noOfThreads) {
+                ta.reduceNoOfThreads(noOfThreads);
+            }
+        }
+    }
+
+    public static int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Opens a parallel region that runs the given loop on the same threads each time it is iterated.
+     * Used in place of executeParallel when the same loop is run many times in a row.
+     * The region must be closed once it is no longer needed.
+     * @param loop The loop to run on each iteration of the region.
+     * @param noOfThreads The number of threads to run the loop on, including the calling thread, or AUTO for the default.
+     * @return The opened region.
+     */
+    public static ParallelRegion openRegion(ParallelForFarmTask loop, int noOfThreads) {
+        if(noOfThreads == AUTO) {
+            noOfThreads = getDefaultNoOfThreads();
+        }
+
+        return new ParallelRegion(loop, CpuQuota.getDefault().clamp(noOfThreads));
+    }
+
     /**
      * @deprecated
      */
     public static <N extends ParallelForFarmTask> N parallel_for(int rangeStart, int rangeEnd, N patternRunner, int noOfChunks, int noOfThreads) {
+        if(rangeEnd - rangeStart < sequentialThreshold) {
+            patternRunner.operation(rangeStart, rangeEnd);
+            return patternRunner;
+        }
+
+        ThreadAllocator forTa;
         synchronized(threadAllocationLock) {
             if(ta == null) {
                 ta = new ThreadAllocator(noOfThreads);
             } else if(ta.getNoOfThreads() < noOfThreads) {
                 ta.setNoOfThreadsImmediately(noOfThreads);
             }
+            forTa = ta;
         }
 
         int total = rangeEnd - rangeStart;
@@ -56,7 +230,7 @@ public class ParallelExecutor {
                 patternRunner.setRange(rangeStart + i*range, rangeStart + ((i+1)*range));
             }
 
-            ta.execute(patternRunner);
+            forTa.execute(patternRunner);
 
             synchronized(patternRunner.getDataInputMonitor()) {
                 while(!patternRunner.isDataInputUsed()) {
@@ -70,22 +244,85 @@ public class ParallelExecutor {
 
         }
 
-        ta.waitUntilComplete(patternRunner);
+        forTa.waitUntilComplete(patternRunner);
+        patternRunner.throwTaskFailure();
 
         return patternRunner;
     }
 
+    /**
+     * Sets the file that the settings learnt for AUTO loops are saved to and loaded from.
+     * The file can also be given with the parallel.tuning.profile system property.
+     * @param path Path of the profile file, or null to not keep a profile.
+     */
+    public static void setTuningProfile(String path) {
+        TuningProfile.setProfilePath(path);
+    }
+
+    /**
+     * Gets the number of threads used when a farm is run with AUTO threads.
+     * @return The number of processors available to the JVM, limited by the CPU quota and cpuset of its cgroup.
+     */
+    public static int getDefaultNoOfThreads() {
+        return CpuQuota.getDefault().getDefaultThreads();
+    }
+
+    /**
+     * Sets the default number of iterations below which parallel for loops are run inline on the calling thread.
+     * Loops that set their own threshold are not affected.
+     * @param iterations The minimum number of iterations to run in parallel, 0 to always run in parallel.
+     */
+    public static void setSequentialThreshold(int iterations) {
+        sequentialThreshold = iterations;
+    }
+
+    public static int getSequentialThreshold() {
+        return sequentialThreshold;
+    }
+
+    /**
+     * Sets the default estimated run time below which parallel for loops are run inline on the calling thread.
+     * Loops that set their own threshold are not affected.
+     * @param nanos The minimum estimated run time in nanoseconds to run in parallel, 0 to disable the estimate.
+     */
+    public static void setSequentialCostThreshold(long nanos) {
+        sequentialCostThreshold = nanos;
+    }
+
+    public static long getSequentialCostThreshold() {
+        return sequentialCostThreshold;
+    }
+
     /**
      * Shuts down the ParallelExecutor along with its children threads once all the tasks on the children threads have finished.
+     * A farm executed afterwards is run on a new ThreadAllocator.
      */
     public static void shutdown() {
-        ta.shutdownGraceful();
+        AutoTuner.saveProfile();
+        ThreadAllocator shutdownTa = takeThreadAllocator();
+        if(shutdownTa == null) return;
+        shutdownTa.shutdownGraceful();
     }
 
     /**
      * Shuts down the ParallelExecutor along with its children threads immediately without waiting for tasks on the children threads to finish.
+     * A farm executed afterwards is run on a new ThreadAllocator.
      */
     public static void shutdownNow() {
-        ta.shutdown();
+        AutoTuner.saveProfile();
+        ThreadAllocator shutdownTa = takeThreadAllocator();
+        if(shutdownTa == null) return;
+        shutdownTa.shutdown();
+    }
+
+    /**
+     * Removes the shared ThreadAllocator so that it can be shut down without holding the lock that farms take to get it.
+     */
+    private static ThreadAllocator takeThreadAllocator() {
+        synchronized(threadAllocationLock) {
+            ThreadAllocator takenTa = ta;
+            ta = null;
+            return takenTa;
+        }
     }
 }
\ No newline at end of file
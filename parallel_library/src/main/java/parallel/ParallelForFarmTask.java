@@ -1,5 +1,9 @@
 package parallel;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntToDoubleFunction;
+
 import parallel.threadallocation.ThreadAllocator;
 
 /**
@@ -8,16 +12,49 @@ import parallel.threadallocation.ThreadAllocator;
  *
  */
 public abstract class ParallelForFarmTask extends FarmTask {
+    /**
+     * Used for the sequential thresholds of a loop to take the default value set on the ParallelExecutor.
+     */
+    public static final int USE_DEFAULT = -1;
+
+    /**
+     * The number of blocks a range of a SPLITTABLE loop is claimed in, which is how often the range's progress is published.
+     */
+    private static final int BLOCKS_PER_RANGE = 16;
+
+    private static final WorkerLocal<int[]> scratchInts = new WorkerLocal<>(() -> new int[0]);
+    private static final WorkerLocal<long[]> scratchLongs = new WorkerLocal<>(() -> new long[0]);
+    private static final WorkerLocal<double[]> scratchDoubles = new WorkerLocal<>(() -> new double[0]);
+
     private int rangeStart;
     private int rangeEnd;
 
     private int totalLoopRangeStart;
     private int totalLoopRangeEnd;
     private int noOfChunks;
+    private int chunksForRun;
+    private AutoTuner.Trial tuningTrial;
+
+    private int sequentialThreshold;
+    private long sequentialCostThreshold;
+
+    private Schedule schedule;
+    private int chunkIndex;
+
+    private IntToDoubleFunction iterationCost;
+    private double[] cumulativeCost;
+
+    private AtomicReferenceArray<SplittableRange> runningRanges;
+    private AtomicInteger unstartedChunks;
 
     @Override
     protected void operation(Object[] inputValues) {
-        operation((int)inputValues[0], (int)inputValues[1]);
+        AtomicReferenceArray<SplittableRange> ranges = runningRanges;
+        if(ranges != null) {
+            splittableOperation(ranges, (int)inputValues[0], (int)inputValues[1], (int)inputValues[2]);
+        } else {
+            runChunk((int)inputValues[2], (int)inputValues[0], (int)inputValues[1]);
+        }
     }
 
     /**
@@ -25,12 +62,20 @@ public abstract class ParallelForFarmTask extends FarmTask {
      * The loop is split into the given number of chunks to be executed as separate tasks in the parallel farm.
      * @param rangeStart Iteration start point.
      * @param rangeEnd Iteration end point.
-     * @param noOfChunks The number of chunks to split the for loop into which will run in parallel.
+     * @param noOfChunks The number of chunks to split the for loop into which will run in parallel, or ParallelExecutor.AUTO to have it learnt at runtime.
      */
     public ParallelForFarmTask(int rangeStart, int rangeEnd, int noOfChunks) {
         totalLoopRangeStart = rangeStart;
         totalLoopRangeEnd = rangeEnd;
         this.noOfChunks = noOfChunks;
+        chunksForRun = noOfChunks;
+        tuningTrial = null;
+        sequentialThreshold = USE_DEFAULT;
+        sequentialCostThreshold = USE_DEFAULT;
+        schedule = Schedule.STATIC;
+        chunkIndex = 0;
+        iterationCost = null;
+        cumulativeCost = null;
     }
 
     /**
@@ -40,15 +85,98 @@ public abstract class ParallelForFarmTask extends FarmTask {
      */
     protected abstract void operation(int rangeStart, int rangeEnd);
 
+    /**
+     * Runs one chunk of the loop on the current thread.
+     * @param chunkIndex The index of the chunk, counting from the start of the loop.
+     */
+    void runChunk(int chunkIndex, int rangeStart, int rangeEnd) {
+        timedOperation(rangeStart, rangeEnd);
+    }
+
+    private void timedOperation(int rangeStart, int rangeEnd) {
+        long startTime = System.nanoTime();
+        operation(rangeStart, rangeEnd);
+        IterationCostModel.recordChunk(getClass(), rangeEnd - rangeStart, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Runs a chunk of a SPLITTABLE loop, then keeps splitting the tails off the other running chunks
+     * until none are left that are worth splitting.
+     * The chunk's slot in the running ranges is reused for each range that is split off.
+     */
+    private void splittableOperation(AtomicReferenceArray<SplittableRange> ranges, int rangeStart, int rangeEnd, int slot) {
+        AtomicInteger unstarted = unstartedChunks;
+        unstarted.decrementAndGet();
+
+        SplittableRange range = new SplittableRange(rangeStart, rangeEnd);
+        try {
+            while(range != null) {
+                ranges.set(slot, range);
+                runRange(range);
+
+                //a chunk still waiting on the ThreadAllocator is cheaper to run than a split
+                range = (unstarted.get() == 0) ? splitLargestRange(ranges, slot) : null;
+            }
+        } finally {
+            ranges.set(slot, null);
+        }
+    }
+
+    /**
+     * Runs a range in blocks, so that the iterations after the current block can be split off by another thread.
+     */
+    private void runRange(SplittableRange range) {
+        int blockSize = (int)Math.max(1, range.getRemaining() / BLOCKS_PER_RANGE);
+
+        int iterations = 0;
+        long startTime = System.nanoTime();
+        while(range.claimBlock(blockSize)) {
+            operation(range.getBlockStart(), range.getBlockEnd());
+            iterations += range.getBlockEnd() - range.getBlockStart();
+        }
+        IterationCostModel.recordChunk(getClass(), iterations, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Splits the second half off the running range with the most iterations left.
+     * @return The range that was split off or null if no running range has enough iterations left to split.
+     */
+    private static SplittableRange splitLargestRange(AtomicReferenceArray<SplittableRange> ranges, int ownSlot) {
+        while(true) {
+            SplittableRange largest = null;
+            long largestRemaining = 1;
+            for(int i = 0; i < ranges.length(); i++) {
+                SplittableRange range = ranges.get(i);
+                if(i == ownSlot || range == null) continue;
+
+                long remaining = range.getRemaining();
+                if(remaining > largestRemaining) {
+                    largest = range;
+                    largestRemaining = remaining;
+                }
+            }
+            if(largest == null) {
+                return null;
+            }
+
+            SplittableRange split = largest.trySplit(2);
+            if(split != null) {
+                return split;
+            }
+            //the owner claimed the last of the range first, so look again
+        }
+    }
+
     @Override
 	protected Object[] readInputData() {
-        Object[] inputData = new Object[2];
+        Object[] inputData = new Object[3];
         inputData[0] = rangeStart;
         inputData[1] = rangeEnd;
+        inputData[2] = chunkIndex;
 
 		return inputData;
     }
-    
+
     /**
      * Set the start and end ranges of the next farm to be started.
      * @param rangeStart Start of loop iterations for the next farm
@@ -60,30 +188,309 @@ public abstract class ParallelForFarmTask extends FarmTask {
         dataInputUsed = false;
     }
 
+    /**
+     * Gets a scratch array belonging to the current thread, which is reused by every loop run on that thread
+     * rather than allocating a new array for each chunk.
+     * The array may be longer than requested and holds whatever was last written to it, and the same array
+     * is returned to every caller on the thread, so it must not be kept once the chunk has finished.
+     * @param length The fewest elements the array needs.
+     * @return The current thread's scratch array.
+     */
+    protected int[] getScratchInts(int length) {
+        int[] scratch = scratchInts.get();
+        if(scratch.length < length) {
+            scratch = new int[Math.max(length, scratch.length * 2)];
+            scratchInts.set(scratch);
+        }
+
+        return scratch;
+    }
+
+    /**
+     * Gets a scratch array belonging to the current thread, as with getScratchInts.
+     * @param length The fewest elements the array needs.
+     * @return The current thread's scratch array.
+     */
+    protected long[] getScratchLongs(int length) {
+        long[] scratch = scratchLongs.get();
+        if(scratch.length < length) {
+            scratch = new long[Math.max(length, scratch.length * 2)];
+            scratchLongs.set(scratch);
+        }
+
+        return scratch;
+    }
+
+    /**
+     * Gets a scratch array belonging to the current thread, as with getScratchInts.
+     * @param length The fewest elements the array needs.
+     * @return The current thread's scratch array.
+     */
+    protected double[] getScratchDoubles(int length) {
+        double[] scratch = scratchDoubles.get();
+        if(scratch.length < length) {
+            scratch = new double[Math.max(length, scratch.length * 2)];
+            scratchDoubles.set(scratch);
+        }
+
+        return scratch;
+    }
+
+    int getTotalLoopRangeStart() {
+        return totalLoopRangeStart;
+    }
+
+    int getTotalLoopRangeEnd() {
+        return totalLoopRangeEnd;
+    }
+
+    int getChunksForRun() {
+        return chunksForRun;
+    }
+
+    /**
+     * Gets the number of iterations that the bounds between chunks are kept to a multiple of, measured from the start of the loop.
+     * @return The chunk alignment, 1 for none.
+     */
+    int getChunkAlignment() {
+        return 1;
+    }
+
+    /**
+     * Sets the number of iterations below which the loop is run inline on the calling thread rather than in parallel.
+     * @param iterations The minimum number of iterations to run in parallel, 0 to always run in parallel or USE_DEFAULT to use the ParallelExecutor's value.
+     */
+    public void setSequentialThreshold(int iterations) {
+        sequentialThreshold = iterations;
+    }
+
+    /**
+     * Sets the estimated run time below which the loop is run inline on the calling thread rather than in parallel.
+     * The estimate is calibrated from the measured run times of previous chunks of this class of loop.
+     * @param nanos The minimum estimated run time in nanoseconds to run in parallel, 0 to disable or USE_DEFAULT to use the ParallelExecutor's value.
+     */
+    public void setSequentialCostThreshold(long nanos) {
+        sequentialCostThreshold = nanos;
+    }
+
+    /**
+     * Sets an estimate of the work done by each iteration, so that the loop is split into chunks of equal estimated work
+     * rather than equal numbers of iterations. This evens out loops such as triangular loop nests where the later
+     * iterations do more work than the earlier ones.
+     * The estimate only needs to be proportional to the work done and is called once for each iteration every time the loop is split.
+     * @param iterationCost Gives the estimated work done by an iteration, or null to split the loop evenly.
+     */
+    public void setIterationCost(IntToDoubleFunction iterationCost) {
+        this.iterationCost = iterationCost;
+        cumulativeCost = null;
+    }
+
+    /**
+     * Sets the running total of the estimated work done by the iterations, so that the loop is split into chunks of
+     * equal estimated work rather than equal numbers of iterations.
+     * @param cumulativeCost The estimated work done by the first k iterations of the loop at index k,
+     * with one more element than the loop has iterations, or null to split the loop evenly.
+     */
+    public void setCumulativeCost(double[] cumulativeCost) {
+        if(cumulativeCost != null && cumulativeCost.length != (long)totalLoopRangeEnd - totalLoopRangeStart + 1) {
+            throw new IllegalArgumentException("The cumulative cost must have one more element than the loop has iterations.");
+        }
+        this.cumulativeCost = cumulativeCost;
+        iterationCost = null;
+    }
+
+    /**
+     * Sets how the chunks of the loop are run.
+     * @param schedule The schedule to run the loop's chunks with.
+     */
+    public void setSchedule(Schedule schedule) {
+        this.schedule = schedule;
+    }
+
+    public Schedule getSchedule() {
+        return schedule;
+    }
+
     @Override
-    protected void allocateTasks(ThreadAllocator ta) {
+    public Object getAffinityGroup() {
+        if(schedule == Schedule.AFFINITY) {
+            return getClass();
+        }
+
+        return null;
+    }
+
+    @Override
+    public int getAffinityIndex() {
+        return chunkIndex;
+    }
+
+    @Override
+    protected boolean shouldRunSequentially() {
         int total = totalLoopRangeEnd - totalLoopRangeStart;
-        int range = total / noOfChunks;
-        int leftover = total % noOfChunks;
-
-        for(int i = 0; i < noOfChunks; i++) {
-            if(i == noOfChunks - 1) {
-                setRange(totalLoopRangeStart + i*range, totalLoopRangeStart + ((i+1)*range) + leftover);
-            } else {
-                setRange(totalLoopRangeStart + i*range, totalLoopRangeStart + ((i+1)*range));
+
+        if(schedule == Schedule.SEQUENTIAL) {
+            return true;
+        }
+
+        //a single chunk would only keep the calling thread waiting on another thread
+        if(chunksForRun == 1) {
+            return true;
+        }
+
+        int threshold = sequentialThreshold;
+        if(threshold == USE_DEFAULT) {
+            threshold = ParallelExecutor.getSequentialThreshold();
+        }
+        if(total < threshold) {
+            return true;
+        }
+
+        long costThreshold = sequentialCostThreshold;
+        if(costThreshold == USE_DEFAULT) {
+            costThreshold = ParallelExecutor.getSequentialCostThreshold();
+        }
+        if(costThreshold > 0) {
+            double nanosPerIteration = IterationCostModel.getNanosPerIteration(getClass());
+            if(nanosPerIteration >= 0 && nanosPerIteration * total < costThreshold) {
+                return true;
             }
+        }
+
+        return false;
+    }
+
+    @Override
+    protected void runSequentially() {
+        if(totalLoopRangeEnd > totalLoopRangeStart) {
+            timedOperation(totalLoopRangeStart, totalLoopRangeEnd);
+        }
+    }
+
+    @Override
+    protected int prepareExecution(int noOfThreads) {
+        if(noOfChunks != ParallelExecutor.AUTO && noOfThreads != ParallelExecutor.AUTO) {
+            chunksForRun = noOfChunks;
+            return noOfThreads;
+        }
+
+        int total = totalLoopRangeEnd - totalLoopRangeStart;
+        AutoTuner tuner = AutoTuner.getTuner(getClass(), noOfChunks, noOfThreads, total);
+        tuningTrial = tuner.beginTrial(total);
+        chunksForRun = (noOfChunks == ParallelExecutor.AUTO) ? tuningTrial.getNoOfChunks() : noOfChunks;
+
+        return (noOfThreads == ParallelExecutor.AUTO) ? tuningTrial.getNoOfThreads() : noOfThreads;
+    }
+
+    @Override
+    protected void completeExecution() {
+        if(tuningTrial != null) {
+            tuningTrial.complete();
+            tuningTrial = null;
+        }
+    }
+
+    @Override
+    protected void allocateTasks(ThreadAllocator ta) {
+        int chunks = chunksForRun;
+        if(chunks == ParallelExecutor.AUTO) {
+            chunks = ParallelExecutor.getDefaultNoOfThreads();
+        }
+
+        int[] chunkBounds = getChunkBounds(chunks);
+
+        if(schedule == Schedule.SPLITTABLE) {
+            runningRanges = new AtomicReferenceArray<>(chunks);
+            unstartedChunks = new AtomicInteger(chunks);
+        } else {
+            runningRanges = null;
+        }
+
+        for(int i = 0; i < chunks; i++) {
+            setRange(chunkBounds[i], chunkBounds[i + 1]);
+            chunkIndex = i;
 
             ta.execute(this);
 
-            synchronized(getDataInputMonitor()) {
-                while(!isDataInputUsed()) {
-                    try {
-                        getDataInputMonitor().wait();
-                    } catch(InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
+            waitForDataInputUsed();
+        }
+    }
+
+    /**
+     * Splits the loop into chunks, of equal estimated work if an iteration cost has been set or otherwise of equal
+     * numbers of iterations with the leftover iterations given to the last chunk.
+     * @return The start of each chunk followed by the end of the loop.
+     */
+    private int[] getChunkBounds(int chunks) {
+        int total = totalLoopRangeEnd - totalLoopRangeStart;
+        int[] chunkBounds = new int[chunks + 1];
+
+        double totalCost = 0;
+        if(iterationCost != null || cumulativeCost != null) {
+            for(int i = totalLoopRangeStart; i < totalLoopRangeEnd; i++) {
+                totalCost += getIterationCost(i);
+            }
+        }
+
+        if(totalCost <= 0) {
+            int range = total / chunks;
+            for(int i = 0; i < chunks; i++) {
+                chunkBounds[i] = totalLoopRangeStart + i*range;
             }
+            chunkBounds[chunks] = totalLoopRangeEnd;
+            return alignChunkBounds(chunkBounds);
         }
+
+        //each bound is placed at whichever side of the iteration that crosses its share of the total cost is closer
+        chunkBounds[0] = totalLoopRangeStart;
+        int chunk = 1;
+        double costBefore = 0;
+        for(int i = totalLoopRangeStart; i < totalLoopRangeEnd && chunk < chunks; i++) {
+            double costAfter = costBefore + getIterationCost(i);
+            while(chunk < chunks && costAfter >= totalCost * chunk / chunks) {
+                double target = totalCost * chunk / chunks;
+                int bound = (target - costBefore < costAfter - target) ? i : i + 1;
+                chunkBounds[chunk] = Math.max(chunkBounds[chunk - 1], bound);
+                chunk++;
+            }
+            costBefore = costAfter;
+        }
+        for(; chunk <= chunks; chunk++) {
+            chunkBounds[chunk] = totalLoopRangeEnd;
+        }
+
+        return alignChunkBounds(chunkBounds);
+    }
+
+    /**
+     * Moves each bound between chunks to the nearest multiple of the chunk alignment from the start of the loop.
+     * The bounds are left as they are when the chunks are too small for it.
+     */
+    private int[] alignChunkBounds(int[] chunkBounds) {
+        int alignment = getChunkAlignment();
+        int chunks = chunkBounds.length - 1;
+        if(alignment <= 1 || (totalLoopRangeEnd - totalLoopRangeStart) / chunks < alignment) {
+            return chunkBounds;
+        }
+
+        for(int i = 1; i < chunks; i++) {
+            long offset = chunkBounds[i] - totalLoopRangeStart;
+            long aligned = (offset + alignment / 2) / alignment * alignment;
+            chunkBounds[i] = (int)Math.max(chunkBounds[i - 1], Math.min(totalLoopRangeEnd, totalLoopRangeStart + aligned));
+        }
+
+        return chunkBounds;
+    }
+
+    private double getIterationCost(int iteration) {
+        double cost;
+        if(cumulativeCost != null) {
+            int index = iteration - totalLoopRangeStart;
+            cost = cumulativeCost[index + 1] - cumulativeCost[index];
+        } else {
+            cost = iterationCost.applyAsDouble(iteration);
+        }
+
+        return Math.max(0, cost);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,153 @@
+package parallel;
+
+import java.util.concurrent.CancellationException;
+
+import parallel.threadallocation.ThreadAllocator;
+
+/**
+ * Skeleton code to be extended to run a for loop in parallel where each chunk produces a result, such as a block of
+ * output to be written out. Each chunk publishes its result into a ChunkResults as soon as it finishes, so the caller
+ * can start consuming the results of early chunks while later chunks are still running.
+ * Every chunk must run as a whole to produce its result, so the loop cannot use the SPLITTABLE schedule.
+ * @author michaellynch
+ *
+ * @param <R> The type of the chunks' results.
+ */
+public abstract class ParallelForResultFarmTask<R> extends ParallelForFarmTask {
+
+    private volatile ChunkResults<R> results;
+
+    /**
+     * Creates a new parallel for loop with start iteration rangeStart and end iteration rangeEnd.
+     * @param rangeStart Iteration start point.
+     * @param rangeEnd Iteration end point.
+     * @param noOfChunks The number of chunks to split the for loop into, which is the number of results, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public ParallelForResultFarmTask(int rangeStart, int rangeEnd, int noOfChunks) {
+        super(rangeStart, rangeEnd, noOfChunks);
+        results = null;
+    }
+
+    /**
+     * Overridden with the for loop operation from rangeStart to rangeEnd.
+     * @param rangeStart Start of loop iterations for this chunk
+     * @param rangeEnd End of loop iterations for this chunk
+     * @return The result of the chunk.
+     */
+    protected abstract R chunkOperation(int rangeStart, int rangeEnd);
+
+    @Override
+    protected final void operation(int rangeStart, int rangeEnd) {
+        chunkOperation(rangeStart, rangeEnd);
+    }
+
+    /**
+     * Starts the loop on the ThreadAllocator without waiting for it to complete, or for its chunks to be given threads.
+     * The loop is run inline before returning if it is too small to run in parallel, in which case there is a single result.
+     * If the chunks cannot all be given to the ThreadAllocator, the chunks that never run publish the exception that stopped them.
+     * @param noOfThreads The number of threads to run the loop on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @return The buffer that the chunks publish their results into.
+     */
+    public ChunkResults<R> start(int noOfThreads) {
+        clearCancelled();
+        int threads = prepareExecution(noOfThreads);
+
+        if(shouldRunSequentially()) {
+            runSequentially();
+            completeExecution();
+            return results;
+        }
+
+        ThreadAllocator ta = ParallelExecutor.getThreadAllocator(this, threads);
+        //the results are created before returning, as the chunks are only given to the ThreadAllocator once the caller has moved on
+        ChunkResults<R> startedResults = createResults();
+        ParallelExecutor.allocateInBackground(() -> {
+            try {
+                allocateChunks(ta);
+            } catch(RuntimeException e) {
+                //the chunks that were not given to the ThreadAllocator will never publish, so the consumer is given the failure
+                //in their place once the chunks that were given to it have finished
+                ta.addCompletionListener(this, () -> {
+                    startedResults.failUnpublished(e);
+                    completeExecution();
+                });
+                return;
+            }
+            ta.addCompletionListener(this, this::completeExecution);
+        });
+
+        return startedResults;
+    }
+
+    /**
+     * @return The results of the latest run of the loop, or null if it has not been run.
+     */
+    public ChunkResults<R> getResults() {
+        return results;
+    }
+
+    @Override
+    public void setSchedule(Schedule schedule) {
+        if(schedule == Schedule.SPLITTABLE) {
+            throw new IllegalArgumentException("A loop whose chunks produce results cannot have its chunks split.");
+        }
+        super.setSchedule(schedule);
+    }
+
+    @Override
+    void runChunk(int chunkIndex, int rangeStart, int rangeEnd) {
+        ChunkResults<R> chunkResults = results;
+
+        long startTime = System.nanoTime();
+        R result;
+        try {
+            result = chunkOperation(rangeStart, rangeEnd);
+        } catch(RuntimeException | Error e) {
+            //the consumer is given the failure rather than waiting forever for the result
+            chunkResults.fail(chunkIndex, e);
+            return;
+        }
+        IterationCostModel.recordChunk(getClass(), rangeEnd - rangeStart, System.nanoTime() - startTime);
+
+        chunkResults.publish(chunkIndex, result);
+    }
+
+    /**
+     * Skips the latest chunk given to the ThreadAllocator, whose result is published as a CancellationException
+     * so that the consumer does not wait forever for it.
+     */
+    @Override
+    public void skip() {
+        //the chunk's index is only changed for the next chunk once this chunk has taken up its input
+        int chunkIndex = getAffinityIndex();
+        ChunkResults<R> chunkResults = results;
+        super.skip();
+        chunkResults.fail(chunkIndex, new CancellationException("The loop was cancelled before chunk " + chunkIndex + " had run."));
+    }
+
+    @Override
+    protected void runSequentially() {
+        results = new ChunkResults<>(1);
+        runChunk(0, getTotalLoopRangeStart(), getTotalLoopRangeEnd());
+    }
+
+    @Override
+    protected void allocateTasks(ThreadAllocator ta) {
+        createResults();
+        allocateChunks(ta);
+    }
+
+    private ChunkResults<R> createResults() {
+        int chunks = getChunksForRun();
+        if(chunks == ParallelExecutor.AUTO) {
+            chunks = ParallelExecutor.getDefaultNoOfThreads();
+        }
+
+        results = new ChunkResults<>(chunks);
+        return results;
+    }
+
+    private void allocateChunks(ThreadAllocator ta) {
+        super.allocateTasks(ta);
+    }
+}
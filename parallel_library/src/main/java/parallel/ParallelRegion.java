@@ -0,0 +1,173 @@
+package parallel;
+
+import parallel.threadallocation.SenseBarrier;
+import parallel.threadallocation.ThreadAllocator;
+
+/**
+ * Runs a parallel for loop many times on the same set of threads, such as a loop inside an iterative solver.
+ * The loop is split into one chunk per thread when the region is opened and each thread keeps the same chunk
+ * for every iteration, so the chunk's data stays in that thread's cache. Iterations are started and joined
+ * with a sense-reversing barrier rather than by allocating tasks to the ThreadAllocator for each iteration.
+ * The calling thread runs the first chunk itself, and the other chunks are run by a team of tasks given to the
+ * ThreadAllocator when the region is opened, each of which keeps its thread until the region is closed.
+ * The team is limited to the number of threads in the ThreadAllocator, as every member must run at once.
+ * @author michaellynch
+ *
+ */
+public class ParallelRegion {
+
+    private ParallelForFarmTask loop;
+    private int[] chunkStarts;
+    private int[] chunkEnds;
+
+    private SenseBarrier startBarrier;
+    private SenseBarrier endBarrier;
+    private RegionTeam team;
+    private ThreadAllocator ta;
+
+    private volatile boolean closed;
+    private volatile Throwable chunkFailure;
+
+    /**
+     * Opens a region for the given loop, starting the team of tasks that will run it.
+     * @param loop The loop to be run on each iteration of the region.
+     * @param noOfThreads The number of threads, including the calling thread, to run the loop on.
+     */
+    public ParallelRegion(ParallelForFarmTask loop, int noOfThreads) {
+        if(loop instanceof DoacrossFarmTask) {
+            throw new IllegalArgumentException("A doacross loop cannot be split into the fixed chunks of a parallel region.");
+        }
+        this.loop = loop;
+
+        int rangeStart = loop.getTotalLoopRangeStart();
+        int total = Math.max(0, loop.getTotalLoopRangeEnd() - rangeStart);
+        noOfThreads = Math.max(1, Math.min(noOfThreads, Math.max(1, total)));
+
+        team = new RegionTeam();
+        if(noOfThreads > 1) {
+            ta = ParallelExecutor.getThreadAllocator(team, noOfThreads - 1);
+            noOfThreads = 1 + Math.min(noOfThreads - 1, ta.getNoOfThreads());
+        }
+
+        chunkStarts = new int[noOfThreads];
+        chunkEnds = new int[noOfThreads];
+        int range = total / noOfThreads;
+        int leftover = total % noOfThreads;
+        for(int i = 0; i < noOfThreads; i++) {
+            chunkStarts[i] = rangeStart + i*range;
+            chunkEnds[i] = rangeStart + (i+1)*range;
+            if(i == noOfThreads - 1) {
+                chunkEnds[i] += leftover;
+            }
+        }
+
+        startBarrier = new SenseBarrier(noOfThreads);
+        endBarrier = new SenseBarrier(noOfThreads);
+        closed = false;
+        chunkFailure = null;
+
+        if(noOfThreads > 1) {
+            team.allocateTasks(ta);
+        }
+    }
+
+    /**
+     * Runs the loop once over its whole range, returning when every chunk has finished.
+     */
+    public void iterate() {
+        if(closed) {
+            throw new IllegalStateException("The parallel region has been closed.");
+        }
+
+        startBarrier.await(0);
+        runChunk(0);
+        endBarrier.await(0);
+
+        Throwable failure = chunkFailure;
+        if(failure != null) {
+            chunkFailure = null;
+            throw new RuntimeException("A chunk of the parallel region failed.", failure);
+        }
+    }
+
+    /**
+     * Runs the loop the given number of times.
+     * @param iterations The number of times to run the loop.
+     */
+    public void iterate(int iterations) {
+        for(int i = 0; i < iterations; i++) {
+            iterate();
+        }
+    }
+
+    /**
+     * Ends the region's team of tasks, giving their threads back to the ThreadAllocator. The region cannot be iterated after it has been closed.
+     */
+    public void close() {
+        if(closed) return;
+
+        closed = true;
+        startBarrier.await(0);
+        if(ta != null) {
+            ta.waitUntilComplete(team);
+        }
+    }
+
+    public int getNoOfThreads() {
+        return chunkStarts.length;
+    }
+
+    public ParallelForFarmTask getLoop() {
+        return loop;
+    }
+
+    private void runChunk(int chunk) {
+        try {
+            if(chunkEnds[chunk] > chunkStarts[chunk]) {
+                loop.operation(chunkStarts[chunk], chunkEnds[chunk]);
+            }
+        } catch(Throwable t) {
+            chunkFailure = t;
+        }
+    }
+
+    /**
+     * The farm of the region's team, with one task for each chunk but the first that runs the same chunk of the loop
+     * on every iteration of the region until it is closed.
+     */
+    private class RegionTeam extends FarmTask {
+        private int nextChunk;
+
+        @Override
+        protected void operation(Object[] inputValues) {
+            int chunk = (int)inputValues[0];
+            while(true) {
+                startBarrier.await(chunk);
+                if(closed) return;
+
+                runChunk(chunk);
+                endBarrier.await(chunk);
+            }
+        }
+
+        @Override
+        protected void allocateTasks(ThreadAllocator ta) {
+            for(int i = 1; i < chunkStarts.length; i++) {
+                nextChunk = i;
+                dataInputUsed = false;
+
+                ta.execute(this);
+
+                waitForDataInputUsed();
+            }
+        }
+
+        @Override
+        protected Object[] readInputData() {
+            Object[] inputData = new Object[1];
+            inputData[0] = nextChunk;
+
+            return inputData;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package parallel;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Runs inclusive prefix scans over int, long and double arrays in parallel, replacing loops such as
+ * out[i] = out[i-1] + in[i] that cannot be run as parallel for loops.
+ * The range is split into chunks and the scan is done in two passes over the chunks: the first scans the
+ * first chunk and reduces the others to their totals, and the second scans the other chunks starting
+ * from the total of the chunks before them. Each element is combined about twice, so the scan does the
+ * same order of work as the sequential loop. The operator must be associative.
+ * @author michaellynch
+ *
+ */
+public final class ParallelScan {
+
+    private ParallelScan() {
+    }
+
+    /**
+     * Computes the inclusive scan of values[rangeStart..rangeEnd) into result, so that result[i] holds
+     * values[rangeStart] op ... op values[i]. The values and result arrays may be the same array.
+     * @param values The values to scan.
+     * @param result The array that the scan is written to.
+     * @param rangeStart The first index to scan.
+     * @param rangeEnd The end of the indexes to scan.
+     * @param op An associative operator.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the scan on, or ParallelExecutor.AUTO for the default.
+     */
+    public static void inclusiveScan(int[] values, int[] result, int rangeStart, int rangeEnd, IntBinaryOperator op, int noOfChunks, int noOfThreads) {
+        scan(values, result, rangeStart, rangeEnd, false, 0, op, noOfChunks, noOfThreads);
+    }
+
+    /**
+     * Computes the inclusive scan of values[rangeStart..rangeEnd) into result starting from the given seed, so that
+     * result[i] holds seed op values[rangeStart] op ... op values[i]. This is the loop
+     * result[i] = result[i-1] op values[i] with result[rangeStart-1] as the seed.
+     * @param values The values to scan.
+     * @param result The array that the scan is written to.
+     * @param rangeStart The first index to scan.
+     * @param rangeEnd The end of the indexes to scan.
+     * @param seed The value that the scan starts from.
+     * @param op An associative operator.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the scan on, or ParallelExecutor.AUTO for the default.
+     */
+    public static void inclusiveScan(int[] values, int[] result, int rangeStart, int rangeEnd, int seed, IntBinaryOperator op, int noOfChunks, int noOfThreads) {
+        scan(values, result, rangeStart, rangeEnd, true, seed, op, noOfChunks, noOfThreads);
+    }
+
+    private static void scan(int[] values, int[] result, int rangeStart, int rangeEnd, boolean seeded, int seed, IntBinaryOperator op, int noOfChunks, int noOfThreads) {
+        checkRange(values.length, result.length, rangeStart, rangeEnd);
+
+        int chunks = getNoOfChunks(rangeEnd - rangeStart, noOfChunks, noOfThreads);
+        if(chunks == 1) {
+            scanChunk(values, result, rangeStart, rangeEnd, seeded, seed, op);
+            return;
+        }
+
+        //first pass: scan the first chunk and reduce every other chunk but the last to its total
+        int[] totals = new int[chunks];
+        IntScanPass firstPass = new IntScanPass(values, result, rangeStart, rangeEnd, op, chunks, 0, chunks - 1, totals, seeded, seed);
+        ParallelExecutor.executeParallel(firstPass, noOfThreads);
+
+        int[] offsets = new int[chunks];
+        offsets[1] = totals[0];
+        for(int c = 2; c < chunks; c++) {
+            offsets[c] = op.applyAsInt(offsets[c-1], totals[c-1]);
+        }
+
+        //second pass: scan every chunk after the first starting from the total of the chunks before it
+        IntScanPass secondPass = new IntScanPass(values, result, rangeStart, rangeEnd, op, chunks, 1, chunks, offsets, true, 0);
+        ParallelExecutor.executeParallel(secondPass, noOfThreads);
+    }
+
+    private static void scanChunk(int[] values, int[] result, int start, int end, boolean hasOffset, int offset, IntBinaryOperator op) {
+        if(start >= end) return;
+
+        int total = hasOffset ? op.applyAsInt(offset, values[start]) : values[start];
+        result[start] = total;
+        for(int i = start + 1; i < end; i++) {
+            total = op.applyAsInt(total, values[i]);
+            result[i] = total;
+        }
+    }
+
+    /**
+     * One pass of a scan over a range of its chunks. The first pass scans chunk 0 and stores the totals of the
+     * other chunks, the second pass scans the remaining chunks from their offsets.
+     */
+    private static class IntScanPass extends ParallelForFarmTask {
+        private int[] values;
+        private int[] result;
+        private int rangeStart;
+        private int rangeEnd;
+        private IntBinaryOperator op;
+        private int noOfScanChunks;
+        private int[] chunkValues;
+        private boolean hasOffset;
+        private int seed;
+        private boolean firstPass;
+
+        IntScanPass(int[] values, int[] result, int rangeStart, int rangeEnd, IntBinaryOperator op, int noOfScanChunks, int firstChunk, int endChunk, int[] chunkValues, boolean hasOffset, int seed) {
+            super(firstChunk, endChunk, endChunk - firstChunk);
+            setSequentialThreshold(0);
+            setSequentialCostThreshold(0);
+            this.values = values;
+            this.result = result;
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+            this.op = op;
+            this.noOfScanChunks = noOfScanChunks;
+            this.chunkValues = chunkValues;
+            this.hasOffset = hasOffset;
+            this.seed = seed;
+            firstPass = (firstChunk == 0);
+        }
+
+        @Override
+        protected void operation(int chunkStart, int chunkEnd) {
+            for(int c = chunkStart; c < chunkEnd; c++) {
+                int start = getChunkBound(rangeStart, rangeEnd, noOfScanChunks, c);
+                int end = getChunkBound(rangeStart, rangeEnd, noOfScanChunks, c + 1);
+
+                if(c == 0) {
+                    scanChunk(values, result, start, end, hasOffset, seed, op);
+                    chunkValues[0] = result[end - 1];
+                } else if(firstPass) {
+                    int total = values[start];
+                    for(int i = start + 1; i < end; i++) {
+                        total = op.applyAsInt(total, values[i]);
+                    }
+                    chunkValues[c] = total;
+                } else {
+                    scanChunk(values, result, start, end, true, chunkValues[c], op);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the inclusive scan of values[rangeStart..rangeEnd) into result, so that result[i] holds
+     * values[rangeStart] op ... op values[i]. The values and result arrays may be the same array.
+     * @param values The values to scan.
+     * @param result The array that the scan is written to.
+     * @param rangeStart The first index to scan.
+     * @param rangeEnd The end of the indexes to scan.
+     * @param op An associative operator.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the scan on, or ParallelExecutor.AUTO for the default.
+     */
+    public static void inclusiveScan(long[] values, long[] result, int rangeStart, int rangeEnd, LongBinaryOperator op, int noOfChunks, int noOfThreads) {
+        scan(values, result, rangeStart, rangeEnd, false, 0, op, noOfChunks, noOfThreads);
+    }
+
+    /**
+     * Computes the inclusive scan of values[rangeStart..rangeEnd) into result starting from the given seed, so that
+     * result[i] holds seed op values[rangeStart] op ... op values[i]. This is the loop
+     * result[i] = result[i-1] op values[i] with result[rangeStart-1] as the seed.
+     * @param values The values to scan.
+     * @param result The array that the scan is written to.
+     * @param rangeStart The first index to scan.
+     * @param rangeEnd The end of the indexes to scan.
+     * @param seed The value that the scan starts from.
+     * @param op An associative operator.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the scan on, or ParallelExecutor.AUTO for the default.
+     */
+    public static void inclusiveScan(long[] values, long[] result, int rangeStart, int rangeEnd, long seed, LongBinaryOperator op, int noOfChunks, int noOfThreads) {
+        scan(values, result, rangeStart, rangeEnd, true, seed, op, noOfChunks, noOfThreads);
+    }
+
+    private static void scan(long[] values, long[] result, int rangeStart, int rangeEnd, boolean seeded, long seed, LongBinaryOperator op, int noOfChunks, int noOfThreads) {
+        checkRange(values.length, result.length, rangeStart, rangeEnd);
+
+        int chunks = getNoOfChunks(rangeEnd - rangeStart, noOfChunks, noOfThreads);
+        if(chunks == 1) {
+            scanChunk(values, result, rangeStart, rangeEnd, seeded, seed, op);
+            return;
+        }
+
+        //first pass: scan the first chunk and reduce every other chunk but the last to its total
+        long[] totals = new long[chunks];
+        LongScanPass firstPass = new LongScanPass(values, result, rangeStart, rangeEnd, op, chunks, 0, chunks - 1, totals, seeded, seed);
+        ParallelExecutor.executeParallel(firstPass, noOfThreads);
+
+        long[] offsets = new long[chunks];
+        offsets[1] = totals[0];
+        for(int c = 2; c < chunks; c++) {
+            offsets[c] = op.applyAsLong(offsets[c-1], totals[c-1]);
+        }
+
+        //second pass: scan every chunk after the first starting from the total of the chunks before it
+        LongScanPass secondPass = new LongScanPass(values, result, rangeStart, rangeEnd, op, chunks, 1, chunks, offsets, true, 0);
+        ParallelExecutor.executeParallel(secondPass, noOfThreads);
+    }
+
+    private static void scanChunk(long[] values, long[] result, int start, int end, boolean hasOffset, long offset, LongBinaryOperator op) {
+        if(start >= end) return;
+
+        long total = hasOffset ? op.applyAsLong(offset, values[start]) : values[start];
+        result[start] = total;
+        for(int i = start + 1; i < end; i++) {
+            total = op.applyAsLong(total, values[i]);
+            result[i] = total;
+        }
+    }
+
+    /**
+     * One pass of a scan over a range of its chunks. The first pass scans chunk 0 and stores the totals of the
+     * other chunks, the second pass scans the remaining chunks from their offsets.
+     */
+    private static class LongScanPass extends ParallelForFarmTask {
+        private long[] values;
+        private long[] result;
+        private int rangeStart;
+        private int rangeEnd;
+        private LongBinaryOperator op;
+        private int noOfScanChunks;
+        private long[] chunkValues;
+        private boolean hasOffset;
+        private long seed;
+        private boolean firstPass;
+
+        LongScanPass(long[] values, long[] result, int rangeStart, int rangeEnd, LongBinaryOperator op, int noOfScanChunks, int firstChunk, int endChunk, long[] chunkValues, boolean hasOffset, long seed) {
+            super(firstChunk, endChunk, endChunk - firstChunk);
+            setSequentialThreshold(0);
+            setSequentialCostThreshold(0);
+            this.values = values;
+            this.result = result;
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+            this.op = op;
+            this.noOfScanChunks = noOfScanChunks;
+            this.chunkValues = chunkValues;
+            this.hasOffset = hasOffset;
+            this.seed = seed;
+            firstPass = (firstChunk == 0);
+        }
+
+        @Override
+        protected void operation(int chunkStart, int chunkEnd) {
+            for(int c = chunkStart; c < chunkEnd; c++) {
+                int start = getChunkBound(rangeStart, rangeEnd, noOfScanChunks, c);
+                int end = getChunkBound(rangeStart, rangeEnd, noOfScanChunks, c + 1);
+
+                if(c == 0) {
+                    scanChunk(values, result, start, end, hasOffset, seed, op);
+                    chunkValues[0] = result[end - 1];
+                } else if(firstPass) {
+                    long total = values[start];
+                    for(int i = start + 1; i < end; i++) {
+                        total = op.applyAsLong(total, values[i]);
+                    }
+                    chunkValues[c] = total;
+                } else {
+                    scanChunk(values, result, start, end, true, chunkValues[c], op);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the inclusive scan of values[rangeStart..rangeEnd) into result, so that result[i] holds
+     * values[rangeStart] op ... op values[i]. The values and result arrays may be the same array.
+     * @param values The values to scan.
+     * @param result The array that the scan is written to.
+     * @param rangeStart The first index to scan.
+     * @param rangeEnd The end of the indexes to scan.
+     * @param op An associative operator.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the scan on, or ParallelExecutor.AUTO for the default.
+     */
+    public static void inclusiveScan(double[] values, double[] result, int rangeStart, int rangeEnd, DoubleBinaryOperator op, int noOfChunks, int noOfThreads) {
+        scan(values, result, rangeStart, rangeEnd, false, 0, op, noOfChunks, noOfThreads);
+    }
+
+    /**
+     * Computes the inclusive scan of values[rangeStart..rangeEnd) into result starting from the given seed, so that
+     * result[i] holds seed op values[rangeStart] op ... op values[i]. This is the loop
+     * result[i] = result[i-1] op values[i] with result[rangeStart-1] as the seed.
+     * @param values The values to scan.
+     * @param result The array that the scan is written to.
+     * @param rangeStart The first index to scan.
+     * @param rangeEnd The end of the indexes to scan.
+     * @param seed The value that the scan starts from.
+     * @param op An associative operator.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the scan on, or ParallelExecutor.AUTO for the default.
+     */
+    public static void inclusiveScan(double[] values, double[] result, int rangeStart, int rangeEnd, double seed, DoubleBinaryOperator op, int noOfChunks, int noOfThreads) {
+        scan(values, result, rangeStart, rangeEnd, true, seed, op, noOfChunks, noOfThreads);
+    }
+
+    private static void scan(double[] values, double[] result, int rangeStart, int rangeEnd, boolean seeded, double seed, DoubleBinaryOperator op, int noOfChunks, int noOfThreads) {
+        checkRange(values.length, result.length, rangeStart, rangeEnd);
+
+        int chunks = getNoOfChunks(rangeEnd - rangeStart, noOfChunks, noOfThreads);
+        if(chunks == 1) {
+            scanChunk(values, result, rangeStart, rangeEnd, seeded, seed, op);
+            return;
+        }
+
+        //first pass: scan the first chunk and reduce every other chunk but the last to its total
+        double[] totals = new double[chunks];
+        DoubleScanPass firstPass = new DoubleScanPass(values, result, rangeStart, rangeEnd, op, chunks, 0, chunks - 1, totals, seeded, seed);
+        ParallelExecutor.executeParallel(firstPass, noOfThreads);
+
+        double[] offsets = new double[chunks];
+        offsets[1] = totals[0];
+        for(int c = 2; c < chunks; c++) {
+            offsets[c] = op.applyAsDouble(offsets[c-1], totals[c-1]);
+        }
+
+        //second pass: scan every chunk after the first starting from the total of the chunks before it
+        DoubleScanPass secondPass = new DoubleScanPass(values, result, rangeStart, rangeEnd, op, chunks, 1, chunks, offsets, true, 0);
+        ParallelExecutor.executeParallel(secondPass, noOfThreads);
+    }
+
+    private static void scanChunk(double[] values, double[] result, int start, int end, boolean hasOffset, double offset, DoubleBinaryOperator op) {
+        if(start >= end) return;
+
+        double total = hasOffset ? op.applyAsDouble(offset, values[start]) : values[start];
+        result[start] = total;
+        for(int i = start + 1; i < end; i++) {
+            total = op.applyAsDouble(total, values[i]);
+            result[i] = total;
+        }
+    }
+
+    /**
+     * One pass of a scan over a range of its chunks. The first pass scans chunk 0 and stores the totals of the
+     * other chunks, the second pass scans the remaining chunks from their offsets.
+     */
+    private static class DoubleScanPass extends ParallelForFarmTask {
+        private double[] values;
+        private double[] result;
+        private int rangeStart;
+        private int rangeEnd;
+        private DoubleBinaryOperator op;
+        private int noOfScanChunks;
+        private double[] chunkValues;
+        private boolean hasOffset;
+        private double seed;
+        private boolean firstPass;
+
+        DoubleScanPass(double[] values, double[] result, int rangeStart, int rangeEnd, DoubleBinaryOperator op, int noOfScanChunks, int firstChunk, int endChunk, double[] chunkValues, boolean hasOffset, double seed) {
+            super(firstChunk, endChunk, endChunk - firstChunk);
+            setSequentialThreshold(0);
+            setSequentialCostThreshold(0);
+            this.values = values;
+            this.result = result;
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+            this.op = op;
+            this.noOfScanChunks = noOfScanChunks;
+            this.chunkValues = chunkValues;
+            this.hasOffset = hasOffset;
+            this.seed = seed;
+            firstPass = (firstChunk == 0);
+        }
+
+        @Override
+        protected void operation(int chunkStart, int chunkEnd) {
+            for(int c = chunkStart; c < chunkEnd; c++) {
+                int start = getChunkBound(rangeStart, rangeEnd, noOfScanChunks, c);
+                int end = getChunkBound(rangeStart, rangeEnd, noOfScanChunks, c + 1);
+
+                if(c == 0) {
+                    scanChunk(values, result, start, end, hasOffset, seed, op);
+                    chunkValues[0] = result[end - 1];
+                } else if(firstPass) {
+                    double total = values[start];
+                    for(int i = start + 1; i < end; i++) {
+                        total = op.applyAsDouble(total, values[i]);
+                    }
+                    chunkValues[c] = total;
+                } else {
+                    scanChunk(values, result, start, end, true, chunkValues[c], op);
+                }
+            }
+        }
+    }
+
+    /**
+     * Works out how many chunks to scan with, returning 1 when the scan should run sequentially.
+     */
+    private static int getNoOfChunks(int total, int noOfChunks, int noOfThreads) {
+        if(total < ParallelExecutor.getSequentialThreshold()) {
+            return 1;
+        }
+
+        int chunks = noOfChunks;
+        if(chunks == ParallelExecutor.AUTO) {
+            chunks = (noOfThreads == ParallelExecutor.AUTO) ? ParallelExecutor.getDefaultNoOfThreads() : noOfThreads;
+        }
+
+        return Math.max(1, Math.min(chunks, total));
+    }
+
+    private static int getChunkBound(int rangeStart, int rangeEnd, int noOfChunks, int chunk) {
+        if(chunk == noOfChunks) {
+            return rangeEnd;
+        }
+
+        return rangeStart + (int)((long)(rangeEnd - rangeStart) / noOfChunks * chunk);
+    }
+
+    private static void checkRange(int valuesLength, int resultLength, int rangeStart, int rangeEnd) {
+        if(rangeStart < 0 || rangeEnd > valuesLength || rangeEnd > resultLength) {
+            throw new ArrayIndexOutOfBoundsException("Scan range " + rangeStart + " to " + rangeEnd + " is outside of the arrays.");
+        }
+    }
+}
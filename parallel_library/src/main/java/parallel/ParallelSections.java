@@ -0,0 +1,67 @@
+package parallel;
+
+import parallel.threadallocation.ThreadAllocator;
+
+/**
+ * A farm whose tasks are different blocks of code, such as two or three independent statements that follow each other,
+ * rather than chunks of the same loop. Each section is given to the ThreadAllocator as its own task and the farm
+ * completes once every section has run.
+ * Created by ParallelExecutor.executeSections, which is what the refactorer generates for independent statements.
+ * @author michaellynch
+ *
+ */
+public class ParallelSections extends FarmTask {
+
+    private Runnable[] sections;
+    private int nextSection;
+
+    /**
+     * Creates a farm of the given sections.
+     * @param sections The sections to run, which must not depend on each other.
+     */
+    public ParallelSections(Runnable... sections) {
+        this.sections = sections;
+        nextSection = 0;
+    }
+
+    @Override
+    protected void operation(Object[] inputValues) {
+        ((Runnable)inputValues[0]).run();
+    }
+
+    @Override
+    protected Object[] readInputData() {
+        Object[] inputData = new Object[1];
+        inputData[0] = sections[nextSection];
+
+        return inputData;
+    }
+
+    @Override
+    protected boolean shouldRunSequentially() {
+        return sections.length <= 1;
+    }
+
+    @Override
+    protected void runSequentially() {
+        for(Runnable section:sections) {
+            section.run();
+        }
+    }
+
+    @Override
+    protected void allocateTasks(ThreadAllocator ta) {
+        for(int i = 0; i < sections.length; i++) {
+            nextSection = i;
+            dataInputUsed = false;
+
+            ta.execute(this);
+
+            waitForDataInputUsed();
+        }
+    }
+
+    public int getNoOfSections() {
+        return sections.length;
+    }
+}
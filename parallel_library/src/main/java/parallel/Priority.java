@@ -0,0 +1,24 @@
+package parallel;
+
+/**
+ * The priority with which the tasks of a farm are given threads in the ThreadAllocator.
+ * Whenever a thread is free it is given the oldest waiting task of the highest priority, so a farm's tasks never wait
+ * behind tasks of a lower priority however many of them are queued. Tasks of a lower priority only run while no
+ * task of a higher priority is waiting.
+ * @author michaellynch
+ *
+ */
+public enum Priority {
+    /**
+     * For latency sensitive farms, such as one answering an interactive request.
+     */
+    HIGH,
+    /**
+     * The priority of a farm unless another is set.
+     */
+    NORMAL,
+    /**
+     * For bulk farms that should only use threads that no other farm needs.
+     */
+    LOW
+}
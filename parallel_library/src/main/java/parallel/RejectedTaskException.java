@@ -0,0 +1,13 @@
+package parallel;
+
+/**
+ * Exception thrown when the task allocator's submission queue is full and it has been set to reject new tasks.
+ * The farm of the rejected task has been cancelled and none of its tasks are still running when it is thrown.
+ * @author michaellynch
+ *
+ */
+public class RejectedTaskException extends RuntimeException {
+    public RejectedTaskException(int capacity) {
+        super("The submission queue of " + capacity + " tasks is full. The new task has not been run.");
+    }
+}
@@ -0,0 +1,29 @@
+package parallel;
+
+/**
+ * The ways in which the chunks of a parallel for loop can be run.
+ * @author michaellynch
+ *
+ */
+public enum Schedule {
+    /**
+     * The loop is split into chunks that are run on whichever thread in the ThreadAllocator is free first.
+     */
+    STATIC,
+    /**
+     * The loop is split into chunks as in STATIC, but each chunk is given to the thread that ran the same chunk
+     * the last time the loop was run if it is free, so that data left in that thread's cache is reused.
+     * Any other free thread takes the chunk if that thread is busy.
+     */
+    AFFINITY,
+    /**
+     * The loop is split into chunks as in STATIC, but each running chunk publishes the iterations it has not reached yet.
+     * A thread with no chunks left to run splits off the second half of the largest of these ranges and runs it,
+     * so a chunk that is much slower than the others is finished by every thread rather than only its own.
+     */
+    SPLITTABLE,
+    /**
+     * The loop is run inline on the calling thread without using the ThreadAllocator.
+     */
+    SEQUENTIAL
+}
@@ -0,0 +1,96 @@
+package parallel;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The remaining iterations [next, end) of a running chunk of a parallel for loop, published so that idle
+ * threads can split off its tail.
+ * Both bounds are packed into a single long so the owner claiming a block from the front and a thief
+ * moving the end back can never both take the same iteration.
+ * @author michaellynch
+ *
+ */
+class SplittableRange {
+
+    private AtomicLong bounds;
+
+    private int blockStart;
+    private int blockEnd;
+
+    SplittableRange(int rangeStart, int rangeEnd) {
+        bounds = new AtomicLong(pack(rangeStart, rangeEnd));
+    }
+
+    /**
+     * Claims the next block of iterations from the front of the range. Only the thread running the range may call this.
+     * @param blockSize The most iterations to claim.
+     * @return True if a block was claimed, which is then given by getBlockStart and getBlockEnd.
+     */
+    boolean claimBlock(int blockSize) {
+        while(true) {
+            long current = bounds.get();
+            int next = getNext(current);
+            int end = getEnd(current);
+            if(next >= end) {
+                return false;
+            }
+
+            int newNext = (int)Math.min((long)next + blockSize, end);
+            if(bounds.compareAndSet(current, pack(newNext, end))) {
+                blockStart = next;
+                blockEnd = newNext;
+                return true;
+            }
+        }
+    }
+
+    int getBlockStart() {
+        return blockStart;
+    }
+
+    int getBlockEnd() {
+        return blockEnd;
+    }
+
+    /**
+     * Splits off the second half of the iterations that have not been claimed yet.
+     * @param minIterations The fewest remaining iterations that are worth splitting.
+     * @return A new range holding the split off iterations, or null if the range has too few iterations left.
+     */
+    SplittableRange trySplit(int minIterations) {
+        while(true) {
+            long current = bounds.get();
+            int next = getNext(current);
+            int end = getEnd(current);
+            long remaining = (long)end - next;
+            if(remaining < minIterations || remaining < 2) {
+                return null;
+            }
+
+            int middle = (int)(next + remaining / 2);
+            if(bounds.compareAndSet(current, pack(next, middle))) {
+                return new SplittableRange(middle, end);
+            }
+        }
+    }
+
+    /**
+     * @return The number of iterations that have not been claimed yet.
+     */
+    long getRemaining() {
+        long current = bounds.get();
+        return Math.max(0, (long)getEnd(current) - getNext(current));
+    }
+
+    private static long pack(int next, int end) {
+        return ((long)next << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    private static int getNext(long bounds) {
+        return (int)(bounds >> 32);
+    }
+
+    private static int getEnd(long bounds) {
+        return (int)bounds;
+    }
+}
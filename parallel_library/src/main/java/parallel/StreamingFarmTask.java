@@ -0,0 +1,260 @@
+package parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import parallel.threadallocation.ThreadAllocator;
+
+/**
+ * Skeleton code to be extended to process a stream of items that may never end, such as a stream of events.
+ * Producers put items into a bounded input channel and a fixed number of workers take them off in micro-batches,
+ * so the memory used stays bounded however long the stream runs and only one task is given to the ThreadAllocator for each worker.
+ * A producer blocks or has its item rejected while the channel is full.
+ * The results of each batch are passed to a sink, either in the order the items were submitted or in the order the batches finish.
+ * @author michaellynch
+ *
+ * @param <I> The type of the items in the stream.
+ * @param <O> The type of the results.
+ */
+public abstract class StreamingFarmTask<I, O> extends FarmTask {
+
+    /**
+     * Placed on the input channel once the stream is closed, and put back by each worker that takes it so that every worker sees it.
+     */
+    private static final Object END_OF_STREAM = new Object();
+
+    private BlockingQueue<Object> inputChannel;
+    private int batchSize;
+    private boolean ordered;
+    private Consumer<? super O> sink;
+
+    private Object takeLock;
+    private long nextBatch;
+    private Object outputLock;
+    private long nextBatchToOutput;
+
+    private AtomicBoolean started;
+    private volatile boolean closed;
+    private volatile Throwable batchFailure;
+    private ThreadAllocator ta;
+    private int noOfWorkers;
+
+    /**
+     * Creates a new streaming farm.
+     * @param capacity The most items that can wait in the input channel before producers are held back.
+     * @param batchSize The most items a worker takes off the input channel at once.
+     * @param ordered True to pass the results to the sink in the order the items were submitted, false to pass them as soon as their batch finishes.
+     * @param sink Receives the results, called by one worker at a time.
+     */
+    public StreamingFarmTask(int capacity, int batchSize, boolean ordered, Consumer<? super O> sink) {
+        if(capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("The capacity and batch size of a streaming farm must be at least 1.");
+        }
+
+        inputChannel = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.ordered = ordered;
+        this.sink = sink;
+        takeLock = new Object();
+        outputLock = new Object();
+        nextBatch = 0;
+        nextBatchToOutput = 0;
+        started = new AtomicBoolean(false);
+        closed = false;
+        batchFailure = null;
+    }
+
+    /**
+     * Overridden with the operation over one micro-batch of items.
+     * @param batch The items of the batch in the order they were submitted.
+     * @param results The list to add the batch's results to, which are passed to the sink in the order they are added.
+     */
+    protected abstract void operation(List<I> batch, List<O> results);
+
+    /**
+     * Starts the workers on the ThreadAllocator, where each worker keeps its thread until the stream is closed.
+     * @param noOfThreads The number of workers, or ParallelExecutor.AUTO for the default number of threads.
+     */
+    public void start(int noOfThreads) {
+        //the farm's own monitor is taken by each worker as it starts, so it cannot be held here
+        if(!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("The streaming farm has already been started.");
+        }
+
+        ta = ParallelExecutor.getThreadAllocator(this, noOfThreads);
+        int threads = (noOfThreads == ParallelExecutor.AUTO) ? ParallelExecutor.getDefaultNoOfThreads() : noOfThreads;
+        noOfWorkers = Math.max(1, Math.min(threads, ta.getNoOfThreads()));
+        for(int i = 0; i < noOfWorkers; i++) {
+            dataInputUsed = false;
+
+            ta.execute(this);
+
+            waitForDataInputUsed();
+        }
+    }
+
+    /**
+     * Submits an item to the stream, waiting while the input channel is full.
+     * @param item The item to process.
+     */
+    public void submit(I item) {
+        checkOpen();
+        while(true) {
+            try {
+                inputChannel.put(item);
+                return;
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Submits an item to the stream if there is room for it in the input channel.
+     * @param item The item to process.
+     * @return False if the item was rejected because the input channel is full.
+     */
+    public boolean offer(I item) {
+        checkOpen();
+        return inputChannel.offer(item);
+    }
+
+    private void checkOpen() {
+        if(closed) {
+            throw new IllegalStateException("The streaming farm has been closed.");
+        }
+    }
+
+    /**
+     * Ends the stream once every item already submitted has been processed. Must only be called once every producer has finished submitting.
+     */
+    public void close() {
+        closed = true;
+        while(true) {
+            try {
+                inputChannel.put(END_OF_STREAM);
+                return;
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Waits for the workers to finish once the stream has been closed.
+     * A batch that failed does not stop the stream, but its exception is thrown here once the workers have finished.
+     */
+    public void awaitTermination() {
+        if(!started.get()) {
+            throw new IllegalStateException("The streaming farm has not been started.");
+        }
+        ta.waitUntilComplete(this);
+        completeExecution();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void operation(Object[] inputValues) {
+        List<I> batch = new ArrayList<>(batchSize);
+        List<O> results = new ArrayList<>();
+        List<Object> taken = new ArrayList<>(batchSize);
+
+        boolean endOfStream = false;
+        while(!endOfStream) {
+            long batchNumber;
+            synchronized(takeLock) {
+                taken.add(take());
+                inputChannel.drainTo(taken, batchSize - 1);
+                batchNumber = nextBatch++;
+            }
+
+            //the end of the stream is always the last thing taken as nothing is submitted after it
+            if(taken.get(taken.size() - 1) == END_OF_STREAM) {
+                taken.remove(taken.size() - 1);
+                endOfStream = true;
+                inputChannel.add(END_OF_STREAM);
+            }
+            for(Object item:taken) {
+                batch.add((I)item);
+            }
+
+            try {
+                if(!batch.isEmpty()) {
+                    operation(batch, results);
+                }
+            } catch(RuntimeException | Error e) {
+                batchFailure = e;
+                results.clear();
+            }
+            output(batchNumber, results);
+
+            taken.clear();
+            batch.clear();
+            results.clear();
+        }
+    }
+
+    private Object take() {
+        while(true) {
+            try {
+                return inputChannel.take();
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Passes a batch's results to the sink, first waiting for every earlier batch if the stream is ordered.
+     * Every batch must be output, even if it has no results, or the batches after it would wait forever.
+     */
+    private void output(long batchNumber, List<O> results) {
+        synchronized(outputLock) {
+            while(ordered && nextBatchToOutput != batchNumber) {
+                try {
+                    outputLock.wait();
+                } catch(InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            try {
+                for(O result:results) {
+                    sink.accept(result);
+                }
+            } catch(RuntimeException | Error e) {
+                batchFailure = e;
+            }
+
+            nextBatchToOutput++;
+            outputLock.notifyAll();
+        }
+    }
+
+    @Override
+    protected Object[] readInputData() {
+        return new Object[0];
+    }
+
+    @Override
+    protected void completeExecution() {
+        Throwable failure = batchFailure;
+        if(failure != null) {
+            batchFailure = null;
+            throw new RuntimeException("A batch of the stream failed.", failure);
+        }
+    }
+
+    /**
+     * A streaming farm is run with start, close and awaitTermination, as executing it as a farm would wait
+     * for a stream that nothing can close.
+     */
+    @Override
+    protected void allocateTasks(ThreadAllocator ta) {
+        throw new IllegalStateException("A streaming farm must be run with start rather than executed as a farm.");
+    }
+}
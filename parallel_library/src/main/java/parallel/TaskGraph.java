@@ -0,0 +1,220 @@
+package parallel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import parallel.threadallocation.ThreadAllocator;
+
+/**
+ * A graph of farms connected by dependency edges, such as the stages of a batch job where some
+ * parallel loops use the results of others.
+ * When the graph is executed every farm is started as soon as all of the farms it depends on have completed,
+ * so independent farms share the ThreadAllocator at the same time and the run takes as long as the slowest chain of farms.
+ * The tasks of each farm are allocated in the background, so a farm whose tasks are waiting for threads does not hold up
+ * the start of the farms beside it, and the thread that executes the graph is woken by each farm's completion
+ * rather than waiting on each farm in turn.
+ * @author michaellynch
+ *
+ */
+public class TaskGraph {
+
+    private List<Node> allNodes;
+    private Map<FarmTask, Node> nodesByTask;
+
+    /**
+     * Creates an empty graph.
+     */
+    public TaskGraph() {
+        allNodes = new ArrayList<>();
+        nodesByTask = new IdentityHashMap<>();
+    }
+
+    /**
+     * Adds a farm that is run with the default number of threads.
+     * @param farmTask The farm to run.
+     * @param predecessors The nodes of the farms that must complete before this farm is started.
+     * @return The node of the farm, used as a predecessor of later farms.
+     */
+    public Node addTask(FarmTask farmTask, Node... predecessors) {
+        return addTask(farmTask, ParallelExecutor.AUTO, predecessors);
+    }
+
+    /**
+     * Adds a farm to the graph. Predecessors must already be in the graph, so the graph can never contain a cycle.
+     * @param farmTask The farm to run, which can only be added to the graph once.
+     * @param noOfThreads The number of threads to run the farm on, or ParallelExecutor.AUTO.
+     * @param predecessors The nodes of the farms that must complete before this farm is started.
+     * @return The node of the farm, used as a predecessor of later farms.
+     */
+    public synchronized Node addTask(FarmTask farmTask, int noOfThreads, Node... predecessors) {
+        if(nodesByTask.containsKey(farmTask)) {
+            throw new IllegalArgumentException("The farm has already been added to the graph.");
+        }
+
+        Node node = new Node(this, farmTask, noOfThreads);
+        for(Node predecessor:predecessors) {
+            if(predecessor.graph != this) {
+                throw new IllegalArgumentException("A predecessor is not a node of this graph.");
+            }
+            predecessor.successors.add(node);
+            node.predecessors.add(predecessor);
+        }
+
+        allNodes.add(node);
+        nodesByTask.put(farmTask, node);
+
+        return node;
+    }
+
+    /**
+     * Gets the node of a farm in the graph.
+     * @param farmTask The farm to find.
+     * @return The node of the farm or null if the farm is not in the graph.
+     */
+    public synchronized Node getNode(FarmTask farmTask) {
+        return nodesByTask.get(farmTask);
+    }
+
+    /**
+     * Runs every farm in the graph, returning once all of them have completed.
+     * A farm that fails stops further farms from being started and its exception is thrown once
+     * the farms that were already running have completed. A farm that is cancelled while it runs fails with a CancellationException.
+     */
+    public synchronized void execute() {
+        BlockingQueue<Node> completedNodes = new LinkedBlockingQueue<>();
+
+        for(Node node:allNodes) {
+            node.waitingPredecessors = node.predecessors.size();
+        }
+
+        RuntimeException failure = null;
+        int running = 0;
+        for(Node node:allNodes) {
+            if(node.waitingPredecessors == 0) {
+                try {
+                    start(node, completedNodes);
+                    running++;
+                } catch(RuntimeException e) {
+                    failure = e;
+                    break;
+                }
+            }
+        }
+
+        while(running > 0) {
+            Node completedNode;
+            try {
+                completedNode = completedNodes.take();
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+                continue;
+            }
+            running--;
+
+            if(completedNode.allocationFailure != null) {
+                if(failure == null) failure = completedNode.allocationFailure;
+                completedNode.allocationFailure = null;
+                continue;
+            }
+            try {
+                completedNode.farmTask.completeExecution();
+                completedNode.farmTask.throwTaskFailure();
+                if(completedNode.farmTask.isCancelled()) {
+                    throw new CancellationException("The farm was cancelled before all of its tasks had run.");
+                }
+            } catch(RuntimeException e) {
+                if(failure == null) failure = e;
+            }
+            if(failure != null) continue;
+
+            for(Node successor:completedNode.successors) {
+                successor.waitingPredecessors--;
+                if(successor.waitingPredecessors == 0) {
+                    try {
+                        start(successor, completedNodes);
+                        running++;
+                    } catch(RuntimeException e) {
+                        failure = e;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Starts a farm whose predecessors have all completed. Its node is added to the completed nodes when it completes,
+     * or once the tasks it had been given have completed if its tasks could not all be allocated.
+     */
+    private void start(Node node, BlockingQueue<Node> completedNodes) {
+        FarmTask farmTask = node.farmTask;
+        farmTask.clearCancelled();
+        farmTask.clearTaskFailure();
+        int noOfThreads = farmTask.prepareExecution(node.noOfThreads);
+
+        if(farmTask.shouldRunSequentially()) {
+            farmTask.runSequentially();
+            completedNodes.add(node);
+            return;
+        }
+
+        ThreadAllocator ta = ParallelExecutor.getThreadAllocator(farmTask, noOfThreads);
+        ParallelExecutor.allocateInBackground(() -> {
+            try {
+                farmTask.allocateTasks(ta);
+            } catch(RuntimeException e) {
+                node.allocationFailure = e;
+            }
+            ta.addCompletionListener(farmTask, () -> completedNodes.add(node));
+        });
+    }
+
+    /**
+     * A farm in a TaskGraph along with the farms it depends on.
+     */
+    public static class Node {
+        private TaskGraph graph;
+        private FarmTask farmTask;
+        private int noOfThreads;
+        private List<Node> predecessors;
+        private List<Node> successors;
+        private int waitingPredecessors;
+        private RuntimeException allocationFailure;
+
+        private Node(TaskGraph graph, FarmTask farmTask, int noOfThreads) {
+            this.graph = graph;
+            this.farmTask = farmTask;
+            this.noOfThreads = noOfThreads;
+            predecessors = new ArrayList<>();
+            successors = new ArrayList<>();
+            waitingPredecessors = 0;
+            allocationFailure = null;
+        }
+
+        public FarmTask getFarmTask() {
+            return farmTask;
+        }
+
+        public int getNoOfThreads() {
+            return noOfThreads;
+        }
+
+        public List<Node> getPredecessors() {
+            return Collections.unmodifiableList(predecessors);
+        }
+
+        public List<Node> getSuccessors() {
+            return Collections.unmodifiableList(successors);
+        }
+    }
+}
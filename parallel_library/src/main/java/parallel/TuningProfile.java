@@ -0,0 +1,270 @@
+package parallel;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * A file of the settings learnt by the AutoTuner for each class of parallel for loop, so that
+ * a new run of the program can start from settings that are already known to be good.
+ * The file is a sorted properties file so that it can be checked in alongside the code.
+ * @author michaellynch
+ *
+ */
+public class TuningProfile {
+
+    /**
+     * System property that can be used to give the path of the profile file.
+     */
+    public static final String PROFILE_PROPERTY = "parallel.tuning.profile";
+
+    /**
+     * Entries are not used when the number of loop iterations has changed by more than this factor.
+     */
+    private static final double MAX_ITERATION_CHANGE = 4;
+
+    private static Object profileLock = new Object();
+    private static String profilePath = null;
+    private static TuningProfile profile = null;
+    private static boolean profileLoaded = false;
+
+    private Path path;
+    private Map<String, Entry> allEntries;
+    private boolean changed;
+
+    private TuningProfile(Path path) {
+        this.path = path;
+        allEntries = new TreeMap<>();
+        changed = false;
+    }
+
+    /**
+     * Sets the file that tuning settings are loaded from and saved to.
+     * The file is not read until the first parallel for loop is tuned.
+     * @param path The path of the profile file, or null to stop using a profile.
+     */
+    public static void setProfilePath(String path) {
+        synchronized(profileLock) {
+            profilePath = path;
+            profile = null;
+            profileLoaded = false;
+        }
+    }
+
+    /**
+     * Gets the profile, loading it on first use.
+     * @return The profile or null if no profile file has been given.
+     */
+    public static TuningProfile getProfile() {
+        synchronized(profileLock) {
+            if(!profileLoaded) {
+                profileLoaded = true;
+
+                String path = profilePath;
+                if(path == null) {
+                    path = System.getProperty(PROFILE_PROPERTY);
+                }
+
+                if(path != null) {
+                    profile = new TuningProfile(Paths.get(path));
+                    profile.load();
+                }
+            }
+
+            return profile;
+        }
+    }
+
+    private synchronized void load() {
+        if(!Files.exists(path)) return;
+
+        Properties properties = new Properties();
+        try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch(IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        for(String key:properties.stringPropertyNames()) {
+            if(!key.endsWith(".chunks")) continue;
+
+            String taskName = key.substring(0, key.length() - ".chunks".length());
+            try {
+                Entry entry = new Entry(
+                    Integer.parseInt(properties.getProperty(taskName + ".chunks")),
+                    Integer.parseInt(properties.getProperty(taskName + ".threads")),
+                    Integer.parseInt(properties.getProperty(taskName + ".cores")),
+                    Integer.parseInt(properties.getProperty(taskName + ".iterations")),
+                    Boolean.parseBoolean(properties.getProperty(taskName + ".converged")));
+                allEntries.put(taskName, entry);
+            } catch(IllegalArgumentException e) {
+                //an incomplete or malformed entry is left out, so the loop is tuned again from the start
+            }
+        }
+    }
+
+    /**
+     * Gets the stored settings of a loop if they are still valid for the current machine and loop size.
+     * @param taskName The class name of the parallel for loop.
+     * @param iterations The number of iterations in the loop being run.
+     * @param cores The number of cores currently available.
+     * @return The stored settings or null if there are none or they are no longer valid.
+     */
+    public synchronized Entry getEntry(String taskName, int iterations, int cores) {
+        Entry entry = allEntries.get(taskName);
+        if(entry == null || entry.cores != cores) {
+            return null;
+        }
+
+        if(!isSimilarSize(iterations, entry.iterations)) {
+            return null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Checks if settings learnt for a loop of one number of iterations are still valid for a run of another.
+     * @param iterations The number of iterations in the loop being run.
+     * @param learntIterations The number of iterations the settings were learnt for.
+     * @return True if the number of iterations has changed by no more than MAX_ITERATION_CHANGE.
+     */
+    static boolean isSimilarSize(int iterations, int learntIterations) {
+        double iterationChange = (double)Math.max(iterations, 1) / Math.max(learntIterations, 1);
+        return iterationChange <= MAX_ITERATION_CHANGE && iterationChange >= 1 / MAX_ITERATION_CHANGE;
+    }
+
+    /**
+     * Stores the settings of a loop. The profile file is not written until save is called.
+     * @param taskName The class name of the parallel for loop.
+     * @param entry The settings of the loop.
+     */
+    public synchronized void putEntry(String taskName, Entry entry) {
+        if(!entry.equals(allEntries.get(taskName))) {
+            allEntries.put(taskName, entry);
+            changed = true;
+        }
+    }
+
+    /**
+     * Writes the profile file if any entries have changed since it was loaded or last saved.
+     * The file is written to a temporary file first and moved into place so that it is never left half written.
+     */
+    public synchronized void save() {
+        if(!changed) return;
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path tempFile = null;
+        try {
+            Files.createDirectories(directory);
+            tempFile = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+
+            try(BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write("# Parallel for loop settings learnt by parallel.AutoTuner");
+                writer.newLine();
+                for(Map.Entry<String, Entry> taskEntry:allEntries.entrySet()) {
+                    taskEntry.getValue().write(writer, taskEntry.getKey());
+                }
+            }
+
+            try {
+                Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch(AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            changed = false;
+        } catch(IOException e) {
+            e.printStackTrace();
+            if(tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch(IOException deleteException) {
+                    deleteException.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * The settings stored for one class of parallel for loop.
+     */
+    public static class Entry {
+        private int noOfChunks;
+        private int noOfThreads;
+        private int cores;
+        private int iterations;
+        private boolean converged;
+
+        /**
+         * Creates an entry of loop settings.
+         * @param noOfChunks The number of chunks the loop is split into.
+         * @param noOfThreads The number of threads the loop is run on.
+         * @param cores The number of cores available when the settings were learnt.
+         * @param iterations The number of iterations in the loop when the settings were learnt.
+         * @param converged True if the AutoTuner had finished tuning the loop.
+         */
+        public Entry(int noOfChunks, int noOfThreads, int cores, int iterations, boolean converged) {
+            this.noOfChunks = noOfChunks;
+            this.noOfThreads = noOfThreads;
+            this.cores = cores;
+            this.iterations = iterations;
+            this.converged = converged;
+        }
+
+        public int getNoOfChunks() {
+            return noOfChunks;
+        }
+        public int getNoOfThreads() {
+            return noOfThreads;
+        }
+        public int getCores() {
+            return cores;
+        }
+        public int getIterations() {
+            return iterations;
+        }
+        public boolean isConverged() {
+            return converged;
+        }
+
+        private void write(BufferedWriter writer, String taskName) throws IOException {
+            writer.write(taskName + ".chunks=" + noOfChunks);
+            writer.newLine();
+            writer.write(taskName + ".converged=" + converged);
+            writer.newLine();
+            writer.write(taskName + ".cores=" + cores);
+            writer.newLine();
+            writer.write(taskName + ".iterations=" + iterations);
+            writer.newLine();
+            writer.write(taskName + ".threads=" + noOfThreads);
+            writer.newLine();
+        }
+
+        @Override
+        public boolean equals(Object e) {
+            if(e instanceof Entry) {
+                Entry other = (Entry)e;
+                return noOfChunks == other.noOfChunks && noOfThreads == other.noOfThreads &&
+                    cores == other.cores &&
+                    iterations == other.iterations && converged == other.converged;
+            }
+
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return noOfChunks * 31 + noOfThreads;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package parallel;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import parallel.threadallocation.ThreadAllocator;
+
+/**
+ * Skeleton code to be extended to run a 2D loop nest in parallel where element [i][j] depends on
+ * elements [i-1][j] and [i][j-1], such as dynamic programming tables and Gauss-Seidel sweeps.
+ * The domain is split into tiles and each tile keeps a count of the neighbouring tiles above and to the
+ * left of it that have not finished. A finished tile releases the tiles below and to the right of it once their
+ * counts reach zero, so each anti-diagonal of tiles runs in parallel without a barrier between diagonals.
+ * @author michaellynch
+ *
+ */
+public abstract class WavefrontFarmTask extends FarmTask {
+
+    /**
+     * Placed on the ready queue to tell a worker that every tile has been run.
+     */
+    private static final int NO_MORE_TILES = -1;
+
+    private int rowStart;
+    private int rowEnd;
+    private int columnStart;
+    private int columnEnd;
+    private int noOfTileRows;
+    private int noOfTileColumns;
+
+    private int tileRowsForRun;
+    private int tileColumnsForRun;
+    private int noOfWorkers;
+
+    private AtomicIntegerArray waitingNeighbours;
+    private AtomicInteger tilesLeft;
+    private BlockingQueue<Integer> readyTiles;
+
+    /**
+     * Creates a new wavefront loop nest over rows rowStart to rowEnd and columns columnStart to columnEnd.
+     * @param rowStart First row of the domain.
+     * @param rowEnd End of the rows of the domain.
+     * @param columnStart First column of the domain.
+     * @param columnEnd End of the columns of the domain.
+     * @param noOfTileRows The number of tiles to split the rows into, or ParallelExecutor.AUTO for a number based on the threads.
+     * @param noOfTileColumns The number of tiles to split the columns into, or ParallelExecutor.AUTO for a number based on the threads.
+     */
+    public WavefrontFarmTask(int rowStart, int rowEnd, int columnStart, int columnEnd, int noOfTileRows, int noOfTileColumns) {
+        this.rowStart = rowStart;
+        this.rowEnd = rowEnd;
+        this.columnStart = columnStart;
+        this.columnEnd = columnEnd;
+        this.noOfTileRows = noOfTileRows;
+        this.noOfTileColumns = noOfTileColumns;
+        tileRowsForRun = noOfTileRows;
+        tileColumnsForRun = noOfTileColumns;
+    }
+
+    /**
+     * Overridden with the loop nest operation over one tile, with rows in the outer loop.
+     * @param rowStart Start of the rows for this tile
+     * @param rowEnd End of the rows for this tile
+     * @param columnStart Start of the columns for this tile
+     * @param columnEnd End of the columns for this tile
+     */
+    protected abstract void operation(int rowStart, int rowEnd, int columnStart, int columnEnd);
+
+    @Override
+    protected void operation(Object[] inputValues) {
+        try {
+            while(true) {
+                int tile = readyTiles.take();
+                if(tile == NO_MORE_TILES) return;
+
+                runTile(tile);
+                releaseNeighbours(tile);
+            }
+        } catch(InterruptedException e) {
+            e.printStackTrace();
+        } catch(RuntimeException | Error e) {
+            //stop the other workers waiting for tiles that will never be released
+            for(int i = 0; i < noOfWorkers; i++) {
+                readyTiles.add(NO_MORE_TILES);
+            }
+            throw e;
+        }
+    }
+
+    private void runTile(int tile) {
+        int tileRow = tile / tileColumnsForRun;
+        int tileColumn = tile % tileColumnsForRun;
+
+        operation(getBound(rowStart, rowEnd, tileRowsForRun, tileRow),
+            getBound(rowStart, rowEnd, tileRowsForRun, tileRow + 1),
+            getBound(columnStart, columnEnd, tileColumnsForRun, tileColumn),
+            getBound(columnStart, columnEnd, tileColumnsForRun, tileColumn + 1));
+    }
+
+    private void releaseNeighbours(int tile) {
+        int tileRow = tile / tileColumnsForRun;
+        int tileColumn = tile % tileColumnsForRun;
+
+        if(tileColumn + 1 < tileColumnsForRun && waitingNeighbours.decrementAndGet(tile + 1) == 0) {
+            readyTiles.add(tile + 1);
+        }
+        if(tileRow + 1 < tileRowsForRun && waitingNeighbours.decrementAndGet(tile + tileColumnsForRun) == 0) {
+            readyTiles.add(tile + tileColumnsForRun);
+        }
+
+        if(tilesLeft.decrementAndGet() == 0) {
+            for(int i = 0; i < noOfWorkers; i++) {
+                readyTiles.add(NO_MORE_TILES);
+            }
+        }
+    }
+
+    /**
+     * Gets the start of the given tile along one dimension, with the leftover iterations given to the last tile.
+     */
+    private static int getBound(int start, int end, int noOfTiles, int tile) {
+        if(tile == noOfTiles) {
+            return end;
+        }
+
+        return start + (int)((long)(end - start) / noOfTiles * tile);
+    }
+
+    @Override
+    protected Object[] readInputData() {
+        return new Object[0];
+    }
+
+    @Override
+    protected int prepareExecution(int noOfThreads) {
+        int threads = (noOfThreads == ParallelExecutor.AUTO) ? ParallelExecutor.getDefaultNoOfThreads() : noOfThreads;
+
+        tileRowsForRun = (noOfTileRows == ParallelExecutor.AUTO) ? threads * 4 : noOfTileRows;
+        tileColumnsForRun = (noOfTileColumns == ParallelExecutor.AUTO) ? threads * 4 : noOfTileColumns;
+        tileRowsForRun = Math.max(1, Math.min(tileRowsForRun, rowEnd - rowStart));
+        tileColumnsForRun = Math.max(1, Math.min(tileColumnsForRun, columnEnd - columnStart));
+
+        return noOfThreads;
+    }
+
+    @Override
+    protected boolean shouldRunSequentially() {
+        if(rowEnd <= rowStart || columnEnd <= columnStart) {
+            return true;
+        }
+
+        //a single row or column of tiles has no two tiles that can run at the same time
+        if(tileRowsForRun == 1 || tileColumnsForRun == 1) {
+            return true;
+        }
+
+        return (long)(rowEnd - rowStart) * (columnEnd - columnStart) < ParallelExecutor.getSequentialThreshold();
+    }
+
+    @Override
+    protected void runSequentially() {
+        if(rowEnd > rowStart && columnEnd > columnStart) {
+            operation(rowStart, rowEnd, columnStart, columnEnd);
+        }
+    }
+
+    @Override
+    protected void allocateTasks(ThreadAllocator ta) {
+        int tiles = tileRowsForRun * tileColumnsForRun;
+
+        waitingNeighbours = new AtomicIntegerArray(tiles);
+        for(int tile = 0; tile < tiles; tile++) {
+            int waiting = 0;
+            if(tile / tileColumnsForRun > 0) waiting++;
+            if(tile % tileColumnsForRun > 0) waiting++;
+            waitingNeighbours.set(tile, waiting);
+        }
+        tilesLeft = new AtomicInteger(tiles);
+        readyTiles = new LinkedBlockingQueue<>();
+        readyTiles.add(0);
+
+        //no more tiles than the longest anti-diagonal can ever run at once
+        noOfWorkers = Math.max(1, Math.min(ta.getNoOfThreads(), Math.min(tileRowsForRun, tileColumnsForRun)));
+
+        for(int i = 0; i < noOfWorkers; i++) {
+            dataInputUsed = false;
+
+            ta.execute(this);
+
+            waitForDataInputUsed();
+        }
+    }
+}
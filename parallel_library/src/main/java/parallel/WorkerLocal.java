@@ -0,0 +1,69 @@
+package parallel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import parallel.threadallocation.TaskThread;
+
+/**
+ * A value that each thread of the ThreadAllocator creates once and then reuses for every chunk and every farm it runs,
+ * such as a scratch buffer used by a loop body.
+ * The values are kept in an array on each TaskThread so getting them does not need a ThreadLocal's hash lookup.
+ * Threads that are not part of a ThreadAllocator, such as a thread running a loop sequentially, fall back to a ThreadLocal.
+ * The values are kept for as long as the threads are, so WorkerLocals are meant to be held in static fields rather than created for each farm.
+ * @author michaellynch
+ *
+ * @param <T> The type of the value.
+ */
+public class WorkerLocal<T> {
+
+    private static final AtomicInteger nextIndex = new AtomicInteger(0);
+
+    private final int index;
+    private final Supplier<? extends T> initializer;
+    private final ThreadLocal<T> otherThreadValues;
+
+    /**
+     * Creates a new WorkerLocal.
+     * @param initializer Creates the value for a thread the first time that thread gets it.
+     */
+    public WorkerLocal(Supplier<? extends T> initializer) {
+        index = nextIndex.getAndIncrement();
+        this.initializer = initializer;
+        otherThreadValues = ThreadLocal.withInitial(initializer);
+    }
+
+    /**
+     * Gets the value for the current thread, creating it if the thread has not got it before.
+     * @return The current thread's value.
+     */
+    @SuppressWarnings("unchecked")
+    public T get() {
+        Thread currentThread = Thread.currentThread();
+        if(!(currentThread instanceof TaskThread)) {
+            return otherThreadValues.get();
+        }
+
+        TaskThread taskThread = (TaskThread)currentThread;
+        T value = (T)taskThread.getWorkerLocal(index);
+        if(value == null) {
+            value = initializer.get();
+            taskThread.setWorkerLocal(index, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Replaces the value for the current thread, such as with a larger buffer.
+     * @param value The current thread's new value.
+     */
+    public void set(T value) {
+        Thread currentThread = Thread.currentThread();
+        if(currentThread instanceof TaskThread) {
+            ((TaskThread)currentThread).setWorkerLocal(index, value);
+        } else {
+            otherThreadValues.set(value);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package parallel.arrays;
+
+import parallel.ParallelExecutor;
+import parallel.ParallelForFarmTask;
+
+/**
+ * A parallel for loop over the elements of an array that is run by one of the array kernels.
+ * Each kernel extends this class where it is used, so that the iteration cost and tuning learnt for one kernel
+ * and element type is not mixed up with another's.
+ * An exception thrown by a chunk, such as from a function given to a kernel, is thrown to the caller once every chunk has finished.
+ * @author michaellynch
+ *
+ */
+abstract class ArrayKernel extends ParallelForFarmTask {
+
+    /**
+     * Creates a new kernel over the elements from rangeStart to rangeEnd.
+     * @param rangeStart The first element.
+     * @param rangeEnd The end of the elements.
+     * @param noOfChunks The number of chunks to split the elements into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    ArrayKernel(int rangeStart, int rangeEnd, int noOfChunks) {
+        super(rangeStart, rangeEnd, noOfChunks);
+    }
+
+    /**
+     * Overridden with the kernel's operation over the elements of a chunk.
+     * @param rangeStart The first element of the chunk.
+     * @param rangeEnd The end of the elements of the chunk.
+     */
+    protected abstract void kernel(int rangeStart, int rangeEnd);
+
+    @Override
+    protected final void operation(int rangeStart, int rangeEnd) {
+        kernel(rangeStart, rangeEnd);
+    }
+
+    /**
+     * Stops the kernel from being run on the calling thread however few elements it has, for the passes of a kernel
+     * whose chunks have already been chosen with getNoOfChunks.
+     * @return This kernel.
+     */
+    ArrayKernel alwaysParallel() {
+        setSequentialThreshold(0);
+        setSequentialCostThreshold(0);
+        return this;
+    }
+
+    /**
+     * Gets the number of chunks to split a number of elements into for a kernel made of several passes,
+     * which cannot have its chunks tuned at runtime as every pass must use the same chunks.
+     * @return The number of chunks, which is 1 if the elements are too few to be worth running in parallel.
+     */
+    static int getNoOfChunks(int total, int noOfChunks, int noOfThreads) {
+        if(total < ParallelExecutor.getSequentialThreshold()) {
+            return 1;
+        }
+
+        int chunks = noOfChunks;
+        if(chunks == ParallelExecutor.AUTO) {
+            chunks = (noOfThreads == ParallelExecutor.AUTO) ? ParallelExecutor.getDefaultNoOfThreads() : noOfThreads;
+        }
+
+        return Math.max(1, Math.min(chunks, total));
+    }
+
+    static int getChunkBound(int rangeStart, int rangeEnd, int noOfChunks, int chunk) {
+        if(chunk == noOfChunks) {
+            return rangeEnd;
+        }
+
+        return rangeStart + (int)((long)(rangeEnd - rangeStart) * chunk / noOfChunks);
+    }
+
+    static void checkRange(int length, int rangeStart, int rangeEnd) {
+        if(rangeStart < 0 || rangeEnd > length || rangeStart > rangeEnd) {
+            throw new ArrayIndexOutOfBoundsException("Range " + rangeStart + " to " + rangeEnd + " is outside of the array of length " + length + ".");
+        }
+    }
+}
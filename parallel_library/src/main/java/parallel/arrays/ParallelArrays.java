@@ -0,0 +1,407 @@
+package parallel.arrays;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongUnaryOperator;
+
+import parallel.ParallelExecutor;
+
+/**
+ * Runs the common loops over whole arrays in parallel, replacing loops that fill an array, set each element from
+ * its index, copy a range of one array into another or map each element of one array into another.
+ * There is a version of each kernel for int, long and double arrays, so the elements are never boxed, and one for
+ * object arrays. Each kernel is a parallel for loop run through the ParallelExecutor, so it shares the pool,
+ * the sequential thresholds, the tuning and the cancellation of the loops that it is run in.
+ * @author michaellynch
+ *
+ */
+public final class ParallelArrays {
+
+    private ParallelArrays() {
+    }
+
+    /**
+     * Sets every element of array[rangeStart..rangeEnd) to the same value.
+     * @param array The array to fill.
+     * @param rangeStart The first index to fill.
+     * @param rangeEnd The end of the indexes to fill.
+     * @param value The value to set each element to.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static void fill(int[] array, int rangeStart, int rangeEnd, int value, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(rangeStart, rangeEnd, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                Arrays.fill(array, chunkStart, chunkEnd, value);
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Sets each element of array[rangeStart..rangeEnd) to the value generated from its index, which is the loop
+     * array[i] = generator(i).
+     * @param array The array to set.
+     * @param rangeStart The first index to set.
+     * @param rangeEnd The end of the indexes to set.
+     * @param generator Gives the value of the element at an index, which may be called for the indexes in any order at once.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static void setAll(int[] array, int rangeStart, int rangeEnd, IntUnaryOperator generator, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(rangeStart, rangeEnd, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                for(int i = chunkStart; i < chunkEnd; i++) {
+                    array[i] = generator.applyAsInt(i);
+                }
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Copies length elements of src starting at srcPos into dest starting at destPos, as System.arraycopy does.
+     * Overlapping ranges of the same array are copied on the calling thread, as a chunk could overwrite the elements another chunk is yet to read.
+     * @param src The array to copy from.
+     * @param srcPos The first index of src to copy.
+     * @param dest The array to copy into.
+     * @param destPos The index of dest that the first element is copied to.
+     * @param length The number of elements to copy.
+     * @param noOfChunks The number of chunks to split the elements into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static void copy(int[] src, int srcPos, int[] dest, int destPos, int length, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(src.length, srcPos, srcPos + length);
+        ArrayKernel.checkRange(dest.length, destPos, destPos + length);
+        if(src == dest && srcPos < destPos + length && destPos < srcPos + length) {
+            System.arraycopy(src, srcPos, dest, destPos, length);
+            return;
+        }
+
+        ParallelExecutor.executeParallel(new ArrayKernel(0, length, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                System.arraycopy(src, srcPos + chunkStart, dest, destPos + chunkStart, chunkEnd - chunkStart);
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Sets each element of result[rangeStart..rangeEnd) to the value of the same element of values passed through op,
+     * which is the loop result[i] = op(values[i]). The values and result arrays may be the same array.
+     * @param values The array to map.
+     * @param result The array that the mapped values are written to.
+     * @param rangeStart The first index to map.
+     * @param rangeEnd The end of the indexes to map.
+     * @param op The function applied to each element, which may be called for the elements in any order at once.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static void map(int[] values, int[] result, int rangeStart, int rangeEnd, IntUnaryOperator op, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(values.length, rangeStart, rangeEnd);
+        ArrayKernel.checkRange(result.length, rangeStart, rangeEnd);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(rangeStart, rangeEnd, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                for(int i = chunkStart; i < chunkEnd; i++) {
+                    result[i] = op.applyAsInt(values[i]);
+                }
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Sets every element of array[rangeStart..rangeEnd) to the same value.
+     * @param array The array to fill.
+     * @param rangeStart The first index to fill.
+     * @param rangeEnd The end of the indexes to fill.
+     * @param value The value to set each element to.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static void fill(long[] array, int rangeStart, int rangeEnd, long value, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(rangeStart, rangeEnd, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                Arrays.fill(array, chunkStart, chunkEnd, value);
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Sets each element of array[rangeStart..rangeEnd) to the value generated from its index, which is the loop
+     * array[i] = generator(i).
+     * @param array The array to set.
+     * @param rangeStart The first index to set.
+     * @param rangeEnd The end of the indexes to set.
+     * @param generator Gives the value of the element at an index, which may be called for the indexes in any order at once.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static void setAll(long[] array, int rangeStart, int rangeEnd, IntToLongFunction generator, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(rangeStart, rangeEnd, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                for(int i = chunkStart; i < chunkEnd; i++) {
+                    array[i] = generator.applyAsLong(i);
+                }
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Copies length elements of src starting at srcPos into dest starting at destPos, as System.arraycopy does.
+     * Overlapping ranges of the same array are copied on the calling thread, as a chunk could overwrite the elements another chunk is yet to read.
+     * @param src The array to copy from.
+     * @param srcPos The first index of src to copy.
+     * @param dest The array to copy into.
+     * @param destPos The index of dest that the first element is copied to.
+     * @param length The number of elements to copy.
+     * @param noOfChunks The number of chunks to split the elements into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static void copy(long[] src, int srcPos, long[] dest, int destPos, int length, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(src.length, srcPos, srcPos + length);
+        ArrayKernel.checkRange(dest.length, destPos, destPos + length);
+        if(src == dest && srcPos < destPos + length && destPos < srcPos + length) {
+            System.arraycopy(src, srcPos, dest, destPos, length);
+            return;
+        }
+
+        ParallelExecutor.executeParallel(new ArrayKernel(0, length, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                System.arraycopy(src, srcPos + chunkStart, dest, destPos + chunkStart, chunkEnd - chunkStart);
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Sets each element of result[rangeStart..rangeEnd) to the value of the same element of values passed through op,
+     * which is the loop result[i] = op(values[i]). The values and result arrays may be the same array.
+     * @param values The array to map.
+     * @param result The array that the mapped values are written to.
+     * @param rangeStart The first index to map.
+     * @param rangeEnd The end of the indexes to map.
+     * @param op The function applied to each element, which may be called for the elements in any order at once.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static void map(long[] values, long[] result, int rangeStart, int rangeEnd, LongUnaryOperator op, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(values.length, rangeStart, rangeEnd);
+        ArrayKernel.checkRange(result.length, rangeStart, rangeEnd);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(rangeStart, rangeEnd, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                for(int i = chunkStart; i < chunkEnd; i++) {
+                    result[i] = op.applyAsLong(values[i]);
+                }
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Sets every element of array[rangeStart..rangeEnd) to the same value.
+     * @param array The array to fill.
+     * @param rangeStart The first index to fill.
+     * @param rangeEnd The end of the indexes to fill.
+     * @param value The value to set each element to.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static void fill(double[] array, int rangeStart, int rangeEnd, double value, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(rangeStart, rangeEnd, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                Arrays.fill(array, chunkStart, chunkEnd, value);
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Sets each element of array[rangeStart..rangeEnd) to the value generated from its index, which is the loop
+     * array[i] = generator(i).
+     * @param array The array to set.
+     * @param rangeStart The first index to set.
+     * @param rangeEnd The end of the indexes to set.
+     * @param generator Gives the value of the element at an index, which may be called for the indexes in any order at once.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static void setAll(double[] array, int rangeStart, int rangeEnd, IntToDoubleFunction generator, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(rangeStart, rangeEnd, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                for(int i = chunkStart; i < chunkEnd; i++) {
+                    array[i] = generator.applyAsDouble(i);
+                }
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Copies length elements of src starting at srcPos into dest starting at destPos, as System.arraycopy does.
+     * Overlapping ranges of the same array are copied on the calling thread, as a chunk could overwrite the elements another chunk is yet to read.
+     * @param src The array to copy from.
+     * @param srcPos The first index of src to copy.
+     * @param dest The array to copy into.
+     * @param destPos The index of dest that the first element is copied to.
+     * @param length The number of elements to copy.
+     * @param noOfChunks The number of chunks to split the elements into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static void copy(double[] src, int srcPos, double[] dest, int destPos, int length, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(src.length, srcPos, srcPos + length);
+        ArrayKernel.checkRange(dest.length, destPos, destPos + length);
+        if(src == dest && srcPos < destPos + length && destPos < srcPos + length) {
+            System.arraycopy(src, srcPos, dest, destPos, length);
+            return;
+        }
+
+        ParallelExecutor.executeParallel(new ArrayKernel(0, length, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                System.arraycopy(src, srcPos + chunkStart, dest, destPos + chunkStart, chunkEnd - chunkStart);
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Sets each element of result[rangeStart..rangeEnd) to the value of the same element of values passed through op,
+     * which is the loop result[i] = op(values[i]). The values and result arrays may be the same array.
+     * @param values The array to map.
+     * @param result The array that the mapped values are written to.
+     * @param rangeStart The first index to map.
+     * @param rangeEnd The end of the indexes to map.
+     * @param op The function applied to each element, which may be called for the elements in any order at once.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static void map(double[] values, double[] result, int rangeStart, int rangeEnd, DoubleUnaryOperator op, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(values.length, rangeStart, rangeEnd);
+        ArrayKernel.checkRange(result.length, rangeStart, rangeEnd);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(rangeStart, rangeEnd, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                for(int i = chunkStart; i < chunkEnd; i++) {
+                    result[i] = op.applyAsDouble(values[i]);
+                }
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Sets every element of array[rangeStart..rangeEnd) to the same value.
+     * @param array The array to fill.
+     * @param rangeStart The first index to fill.
+     * @param rangeEnd The end of the indexes to fill.
+     * @param value The value to set each element to.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static <T> void fill(T[] array, int rangeStart, int rangeEnd, T value, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(rangeStart, rangeEnd, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                Arrays.fill(array, chunkStart, chunkEnd, value);
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Sets each element of array[rangeStart..rangeEnd) to the value generated from its index, which is the loop
+     * array[i] = generator(i).
+     * @param array The array to set.
+     * @param rangeStart The first index to set.
+     * @param rangeEnd The end of the indexes to set.
+     * @param generator Gives the value of the element at an index, which may be called for the indexes in any order at once.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static <T> void setAll(T[] array, int rangeStart, int rangeEnd, IntFunction<? extends T> generator, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(rangeStart, rangeEnd, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                for(int i = chunkStart; i < chunkEnd; i++) {
+                    array[i] = generator.apply(i);
+                }
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Copies length elements of src starting at srcPos into dest starting at destPos, as System.arraycopy does.
+     * Overlapping ranges of the same array are copied on the calling thread, as a chunk could overwrite the elements another chunk is yet to read.
+     * @param src The array to copy from.
+     * @param srcPos The first index of src to copy.
+     * @param dest The array to copy into.
+     * @param destPos The index of dest that the first element is copied to.
+     * @param length The number of elements to copy.
+     * @param noOfChunks The number of chunks to split the elements into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static <T> void copy(T[] src, int srcPos, T[] dest, int destPos, int length, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(src.length, srcPos, srcPos + length);
+        ArrayKernel.checkRange(dest.length, destPos, destPos + length);
+        if(src == dest && srcPos < destPos + length && destPos < srcPos + length) {
+            System.arraycopy(src, srcPos, dest, destPos, length);
+            return;
+        }
+
+        ParallelExecutor.executeParallel(new ArrayKernel(0, length, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                System.arraycopy(src, srcPos + chunkStart, dest, destPos + chunkStart, chunkEnd - chunkStart);
+            }
+        }, noOfThreads);
+    }
+
+    /**
+     * Sets each element of result[rangeStart..rangeEnd) to the value of the same element of values passed through op,
+     * which is the loop result[i] = op(values[i]). The values and result arrays may be the same array if the function gives an element of the array's type.
+     * @param values The array to map.
+     * @param result The array that the mapped values are written to.
+     * @param rangeStart The first index to map.
+     * @param rangeEnd The end of the indexes to map.
+     * @param op The function applied to each element, which may be called for the elements in any order at once.
+     * @param noOfChunks The number of chunks to split the range into, or ParallelExecutor.AUTO to have it learnt at runtime.
+     * @param noOfThreads The number of threads to run the kernel on, or ParallelExecutor.AUTO to have it learnt at runtime.
+     */
+    public static <T, R> void map(T[] values, R[] result, int rangeStart, int rangeEnd, Function<? super T, ? extends R> op, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(values.length, rangeStart, rangeEnd);
+        ArrayKernel.checkRange(result.length, rangeStart, rangeEnd);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(rangeStart, rangeEnd, noOfChunks) {
+            @Override
+            protected void kernel(int chunkStart, int chunkEnd) {
+                for(int i = chunkStart; i < chunkEnd; i++) {
+                    result[i] = op.apply(values[i]);
+                }
+            }
+        }, noOfThreads);
+    }
+}
@@ -0,0 +1,1031 @@
+package parallel.arrays;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+
+import parallel.ParallelExecutor;
+
+/**
+ * Sorts int, long, double and object arrays in parallel, with either a merge sort or a sample sort.
+ * The merge sort sorts a run of the range on each thread and then merges the runs in pairs, splitting each
+ * merge between the threads by the position of its output, so every pass keeps every thread busy whatever the values are.
+ * The sample sort picks splitters from a sample of the range, moves each element into the bucket between two
+ * splitters and then sorts every bucket at once, so each element is only moved once but a bucket can be larger
+ * than the others if the range holds many equal values.
+ * Both sorts need a buffer as long as the range, keep equal objects in the order they were in, and order doubles
+ * in the same way as Arrays.sort. Each pass is a parallel for loop run through the ParallelExecutor, so a sort
+ * shares the pool and the cancellation of the loops that it is run in.
+ * @author michaellynch
+ *
+ */
+public final class ParallelSort {
+
+    /**
+     * The number of samples taken for each bucket of a sample sort, where more samples give buckets of closer sizes.
+     */
+    private static final int OVERSAMPLING = 16;
+
+    private ParallelSort() {
+    }
+
+    /**
+     * Sorts array[rangeStart..rangeEnd) into ascending order with a parallel merge sort.
+     * @param array The array to sort.
+     * @param rangeStart The first index to sort.
+     * @param rangeEnd The end of the indexes to sort.
+     * @param noOfChunks The number of runs to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the sort on, or ParallelExecutor.AUTO for the default.
+     */
+    public static void mergeSort(int[] array, int rangeStart, int rangeEnd, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        int runs = ArrayKernel.getNoOfChunks(rangeEnd - rangeStart, noOfChunks, noOfThreads);
+        if(runs == 1) {
+            Arrays.sort(array, rangeStart, rangeEnd);
+            return;
+        }
+
+        int[] runBounds = new int[runs + 1];
+        for(int r = 0; r <= runs; r++) {
+            runBounds[r] = ArrayKernel.getChunkBound(rangeStart, rangeEnd, runs, r);
+        }
+        int[] sortedBounds = runBounds;
+        ParallelExecutor.executeParallel(new ArrayKernel(0, runs, runs) {
+            @Override
+            protected void kernel(int firstRun, int endRun) {
+                for(int r = firstRun; r < endRun; r++) {
+                    Arrays.sort(array, sortedBounds[r], sortedBounds[r + 1]);
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        //each array holds the element at index i at i - base, where the buffer only holds the range
+        int[] src = array;
+        int srcBase = 0;
+        int[] dst = new int[rangeEnd - rangeStart];
+        int dstBase = rangeStart;
+        while(runBounds.length > 2) {
+            runBounds = mergeRuns(src, srcBase, dst, dstBase, runBounds, runs, noOfThreads);
+
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+            int swapBase = srcBase;
+            srcBase = dstBase;
+            dstBase = swapBase;
+        }
+
+        if(src != array) {
+            ParallelArrays.copy(src, 0, array, rangeStart, rangeEnd - rangeStart, runs, noOfThreads);
+        }
+    }
+
+    /**
+     * Merges each pair of runs of src into dst, where the last run is copied across if there is an odd number of them.
+     * Every merge is split into segments of its output so that there are about as many segments as tasks.
+     * @return The bounds of the merged runs.
+     */
+    private static int[] mergeRuns(int[] src, int srcBase, int[] dst, int dstBase, int[] runBounds, int tasks, int noOfThreads) {
+        int noOfRuns = runBounds.length - 1;
+        int pairs = noOfRuns / 2;
+        int segments = Math.max(1, tasks / pairs);
+        int noOfTasks = pairs * segments + noOfRuns % 2;
+
+        int[] mergedBounds = new int[(noOfRuns + 1) / 2 + 1];
+        for(int m = 0; m < mergedBounds.length - 1; m++) {
+            mergedBounds[m] = runBounds[2 * m];
+        }
+        mergedBounds[mergedBounds.length - 1] = runBounds[noOfRuns];
+
+        ParallelExecutor.executeParallel(new ArrayKernel(0, noOfTasks, noOfTasks) {
+            @Override
+            protected void kernel(int firstTask, int endTask) {
+                for(int t = firstTask; t < endTask; t++) {
+                    int pair = t / segments;
+                    if(pair == pairs) {
+                        int start = runBounds[noOfRuns - 1];
+                        System.arraycopy(src, start - srcBase, dst, start - dstBase, runBounds[noOfRuns] - start);
+                    } else {
+                        mergeSegment(src, srcBase, dst, dstBase, runBounds[2 * pair], runBounds[2 * pair + 1], runBounds[2 * pair + 2],
+                            t % segments, segments);
+                    }
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        return mergedBounds;
+    }
+
+    /**
+     * Merges one segment of the output of two neighbouring runs, where the elements of the left run go before equal elements of the right.
+     */
+    private static void mergeSegment(int[] src, int srcBase, int[] dst, int dstBase, int leftStart, int rightStart, int rightEnd,
+        int segment, int segments) {
+        int left = leftStart - srcBase;
+        int leftLength = rightStart - leftStart;
+        int right = rightStart - srcBase;
+        int rightLength = rightEnd - rightStart;
+
+        long total = rightEnd - leftStart;
+        int outputStart = (int)(total * segment / segments);
+        int outputEnd = (int)(total * (segment + 1) / segments);
+        int leftFrom = getLeftCount(src, left, leftLength, right, rightLength, outputStart);
+        int leftTo = getLeftCount(src, left, leftLength, right, rightLength, outputEnd);
+
+        int i = left + leftFrom;
+        int leftEnd = left + leftTo;
+        int j = right + outputStart - leftFrom;
+        int rightSegmentEnd = right + outputEnd - leftTo;
+        int o = leftStart - dstBase + outputStart;
+        while(i < leftEnd && j < rightSegmentEnd) {
+            dst[o++] = src[i] <= src[j] ? src[i++] : src[j++];
+        }
+        System.arraycopy(src, i, dst, o, leftEnd - i);
+        System.arraycopy(src, j, dst, o + leftEnd - i, rightSegmentEnd - j);
+    }
+
+    /**
+     * Finds how many of the first outputs elements of the merge of two runs come from the left run.
+     */
+    private static int getLeftCount(int[] src, int left, int leftLength, int right, int rightLength, int outputs) {
+        int low = Math.max(0, outputs - rightLength);
+        int high = Math.min(outputs, leftLength);
+        while(low < high) {
+            int taken = (low + high) >>> 1;
+            //too few are taken from the left run if its next element goes before the last element taken from the right
+            if(src[left + taken] <= src[right + outputs - taken - 1]) {
+                low = taken + 1;
+            } else {
+                high = taken;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Sorts array[rangeStart..rangeEnd) into ascending order with a parallel sample sort.
+     * @param array The array to sort.
+     * @param rangeStart The first index to sort.
+     * @param rangeEnd The end of the indexes to sort.
+     * @param noOfChunks The number of buckets to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the sort on, or ParallelExecutor.AUTO for the default.
+     */
+    public static void sampleSort(int[] array, int rangeStart, int rangeEnd, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        int buckets = ArrayKernel.getNoOfChunks(rangeEnd - rangeStart, noOfChunks, noOfThreads);
+        if(buckets == 1) {
+            Arrays.sort(array, rangeStart, rangeEnd);
+            return;
+        }
+        int[] splitters = getSplitters(array, rangeStart, rangeEnd, buckets);
+
+        //positions[c * buckets + b] first counts the elements of chunk c in bucket b, then holds where the next of them goes
+        int[] positions = new int[buckets * buckets];
+        ParallelExecutor.executeParallel(new ArrayKernel(0, buckets, buckets) {
+            @Override
+            protected void kernel(int firstChunk, int endChunk) {
+                for(int c = firstChunk; c < endChunk; c++) {
+                    int chunkEnd = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c + 1);
+                    for(int i = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c); i < chunkEnd; i++) {
+                        positions[c * buckets + getBucket(splitters, array[i])]++;
+                    }
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        //each chunk's elements of a bucket go after those of the chunks before it, which keeps equal elements in order
+        int[] bucketBounds = new int[buckets + 1];
+        int position = 0;
+        for(int b = 0; b < buckets; b++) {
+            bucketBounds[b] = position;
+            for(int c = 0; c < buckets; c++) {
+                int count = positions[c * buckets + b];
+                positions[c * buckets + b] = position;
+                position += count;
+            }
+        }
+        bucketBounds[buckets] = position;
+
+        int[] buffer = new int[rangeEnd - rangeStart];
+        ParallelExecutor.executeParallel(new ArrayKernel(0, buckets, buckets) {
+            @Override
+            protected void kernel(int firstChunk, int endChunk) {
+                for(int c = firstChunk; c < endChunk; c++) {
+                    int chunkEnd = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c + 1);
+                    for(int i = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c); i < chunkEnd; i++) {
+                        buffer[positions[c * buckets + getBucket(splitters, array[i])]++] = array[i];
+                    }
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(0, buckets, buckets) {
+            @Override
+            protected void kernel(int firstBucket, int endBucket) {
+                for(int b = firstBucket; b < endBucket; b++) {
+                    Arrays.sort(buffer, bucketBounds[b], bucketBounds[b + 1]);
+                    System.arraycopy(buffer, bucketBounds[b], array, rangeStart + bucketBounds[b], bucketBounds[b + 1] - bucketBounds[b]);
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+    }
+
+    /**
+     * Picks the values between the buckets of a sample sort from a random sample of the range, which is seeded
+     * from the range so that a sort of the same values always splits them in the same way.
+     */
+    private static int[] getSplitters(int[] array, int rangeStart, int rangeEnd, int buckets) {
+        SplittableRandom random = new SplittableRandom(rangeEnd - rangeStart);
+        int[] samples = new int[buckets * OVERSAMPLING];
+        for(int s = 0; s < samples.length; s++) {
+            samples[s] = array[random.nextInt(rangeStart, rangeEnd)];
+        }
+        Arrays.sort(samples);
+
+        int[] splitters = new int[buckets - 1];
+        for(int b = 1; b < buckets; b++) {
+            splitters[b - 1] = samples[b * OVERSAMPLING];
+        }
+
+        return splitters;
+    }
+
+    /**
+     * Finds the bucket of an element, which is the number of splitters that go before it or are equal to it.
+     */
+    private static int getBucket(int[] splitters, int value) {
+        int low = 0;
+        int high = splitters.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(splitters[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Sorts array[rangeStart..rangeEnd) into ascending order with a parallel merge sort.
+     * @param array The array to sort.
+     * @param rangeStart The first index to sort.
+     * @param rangeEnd The end of the indexes to sort.
+     * @param noOfChunks The number of runs to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the sort on, or ParallelExecutor.AUTO for the default.
+     */
+    public static void mergeSort(long[] array, int rangeStart, int rangeEnd, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        int runs = ArrayKernel.getNoOfChunks(rangeEnd - rangeStart, noOfChunks, noOfThreads);
+        if(runs == 1) {
+            Arrays.sort(array, rangeStart, rangeEnd);
+            return;
+        }
+
+        int[] runBounds = new int[runs + 1];
+        for(int r = 0; r <= runs; r++) {
+            runBounds[r] = ArrayKernel.getChunkBound(rangeStart, rangeEnd, runs, r);
+        }
+        int[] sortedBounds = runBounds;
+        ParallelExecutor.executeParallel(new ArrayKernel(0, runs, runs) {
+            @Override
+            protected void kernel(int firstRun, int endRun) {
+                for(int r = firstRun; r < endRun; r++) {
+                    Arrays.sort(array, sortedBounds[r], sortedBounds[r + 1]);
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        //each array holds the element at index i at i - base, where the buffer only holds the range
+        long[] src = array;
+        int srcBase = 0;
+        long[] dst = new long[rangeEnd - rangeStart];
+        int dstBase = rangeStart;
+        while(runBounds.length > 2) {
+            runBounds = mergeRuns(src, srcBase, dst, dstBase, runBounds, runs, noOfThreads);
+
+            long[] swap = src;
+            src = dst;
+            dst = swap;
+            int swapBase = srcBase;
+            srcBase = dstBase;
+            dstBase = swapBase;
+        }
+
+        if(src != array) {
+            ParallelArrays.copy(src, 0, array, rangeStart, rangeEnd - rangeStart, runs, noOfThreads);
+        }
+    }
+
+    /**
+     * Merges each pair of runs of src into dst, where the last run is copied across if there is an odd number of them.
+     * Every merge is split into segments of its output so that there are about as many segments as tasks.
+     * @return The bounds of the merged runs.
+     */
+    private static int[] mergeRuns(long[] src, int srcBase, long[] dst, int dstBase, int[] runBounds, int tasks, int noOfThreads) {
+        int noOfRuns = runBounds.length - 1;
+        int pairs = noOfRuns / 2;
+        int segments = Math.max(1, tasks / pairs);
+        int noOfTasks = pairs * segments + noOfRuns % 2;
+
+        int[] mergedBounds = new int[(noOfRuns + 1) / 2 + 1];
+        for(int m = 0; m < mergedBounds.length - 1; m++) {
+            mergedBounds[m] = runBounds[2 * m];
+        }
+        mergedBounds[mergedBounds.length - 1] = runBounds[noOfRuns];
+
+        ParallelExecutor.executeParallel(new ArrayKernel(0, noOfTasks, noOfTasks) {
+            @Override
+            protected void kernel(int firstTask, int endTask) {
+                for(int t = firstTask; t < endTask; t++) {
+                    int pair = t / segments;
+                    if(pair == pairs) {
+                        int start = runBounds[noOfRuns - 1];
+                        System.arraycopy(src, start - srcBase, dst, start - dstBase, runBounds[noOfRuns] - start);
+                    } else {
+                        mergeSegment(src, srcBase, dst, dstBase, runBounds[2 * pair], runBounds[2 * pair + 1], runBounds[2 * pair + 2],
+                            t % segments, segments);
+                    }
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        return mergedBounds;
+    }
+
+    /**
+     * Merges one segment of the output of two neighbouring runs, where the elements of the left run go before equal elements of the right.
+     */
+    private static void mergeSegment(long[] src, int srcBase, long[] dst, int dstBase, int leftStart, int rightStart, int rightEnd,
+        int segment, int segments) {
+        int left = leftStart - srcBase;
+        int leftLength = rightStart - leftStart;
+        int right = rightStart - srcBase;
+        int rightLength = rightEnd - rightStart;
+
+        long total = rightEnd - leftStart;
+        int outputStart = (int)(total * segment / segments);
+        int outputEnd = (int)(total * (segment + 1) / segments);
+        int leftFrom = getLeftCount(src, left, leftLength, right, rightLength, outputStart);
+        int leftTo = getLeftCount(src, left, leftLength, right, rightLength, outputEnd);
+
+        int i = left + leftFrom;
+        int leftEnd = left + leftTo;
+        int j = right + outputStart - leftFrom;
+        int rightSegmentEnd = right + outputEnd - leftTo;
+        int o = leftStart - dstBase + outputStart;
+        while(i < leftEnd && j < rightSegmentEnd) {
+            dst[o++] = src[i] <= src[j] ? src[i++] : src[j++];
+        }
+        System.arraycopy(src, i, dst, o, leftEnd - i);
+        System.arraycopy(src, j, dst, o + leftEnd - i, rightSegmentEnd - j);
+    }
+
+    /**
+     * Finds how many of the first outputs elements of the merge of two runs come from the left run.
+     */
+    private static int getLeftCount(long[] src, int left, int leftLength, int right, int rightLength, int outputs) {
+        int low = Math.max(0, outputs - rightLength);
+        int high = Math.min(outputs, leftLength);
+        while(low < high) {
+            int taken = (low + high) >>> 1;
+            //too few are taken from the left run if its next element goes before the last element taken from the right
+            if(src[left + taken] <= src[right + outputs - taken - 1]) {
+                low = taken + 1;
+            } else {
+                high = taken;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Sorts array[rangeStart..rangeEnd) into ascending order with a parallel sample sort.
+     * @param array The array to sort.
+     * @param rangeStart The first index to sort.
+     * @param rangeEnd The end of the indexes to sort.
+     * @param noOfChunks The number of buckets to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the sort on, or ParallelExecutor.AUTO for the default.
+     */
+    public static void sampleSort(long[] array, int rangeStart, int rangeEnd, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        int buckets = ArrayKernel.getNoOfChunks(rangeEnd - rangeStart, noOfChunks, noOfThreads);
+        if(buckets == 1) {
+            Arrays.sort(array, rangeStart, rangeEnd);
+            return;
+        }
+        long[] splitters = getSplitters(array, rangeStart, rangeEnd, buckets);
+
+        //positions[c * buckets + b] first counts the elements of chunk c in bucket b, then holds where the next of them goes
+        int[] positions = new int[buckets * buckets];
+        ParallelExecutor.executeParallel(new ArrayKernel(0, buckets, buckets) {
+            @Override
+            protected void kernel(int firstChunk, int endChunk) {
+                for(int c = firstChunk; c < endChunk; c++) {
+                    int chunkEnd = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c + 1);
+                    for(int i = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c); i < chunkEnd; i++) {
+                        positions[c * buckets + getBucket(splitters, array[i])]++;
+                    }
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        //each chunk's elements of a bucket go after those of the chunks before it, which keeps equal elements in order
+        int[] bucketBounds = new int[buckets + 1];
+        int position = 0;
+        for(int b = 0; b < buckets; b++) {
+            bucketBounds[b] = position;
+            for(int c = 0; c < buckets; c++) {
+                int count = positions[c * buckets + b];
+                positions[c * buckets + b] = position;
+                position += count;
+            }
+        }
+        bucketBounds[buckets] = position;
+
+        long[] buffer = new long[rangeEnd - rangeStart];
+        ParallelExecutor.executeParallel(new ArrayKernel(0, buckets, buckets) {
+            @Override
+            protected void kernel(int firstChunk, int endChunk) {
+                for(int c = firstChunk; c < endChunk; c++) {
+                    int chunkEnd = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c + 1);
+                    for(int i = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c); i < chunkEnd; i++) {
+                        buffer[positions[c * buckets + getBucket(splitters, array[i])]++] = array[i];
+                    }
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(0, buckets, buckets) {
+            @Override
+            protected void kernel(int firstBucket, int endBucket) {
+                for(int b = firstBucket; b < endBucket; b++) {
+                    Arrays.sort(buffer, bucketBounds[b], bucketBounds[b + 1]);
+                    System.arraycopy(buffer, bucketBounds[b], array, rangeStart + bucketBounds[b], bucketBounds[b + 1] - bucketBounds[b]);
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+    }
+
+    /**
+     * Picks the values between the buckets of a sample sort from a random sample of the range, which is seeded
+     * from the range so that a sort of the same values always splits them in the same way.
+     */
+    private static long[] getSplitters(long[] array, int rangeStart, int rangeEnd, int buckets) {
+        SplittableRandom random = new SplittableRandom(rangeEnd - rangeStart);
+        long[] samples = new long[buckets * OVERSAMPLING];
+        for(int s = 0; s < samples.length; s++) {
+            samples[s] = array[random.nextInt(rangeStart, rangeEnd)];
+        }
+        Arrays.sort(samples);
+
+        long[] splitters = new long[buckets - 1];
+        for(int b = 1; b < buckets; b++) {
+            splitters[b - 1] = samples[b * OVERSAMPLING];
+        }
+
+        return splitters;
+    }
+
+    /**
+     * Finds the bucket of an element, which is the number of splitters that go before it or are equal to it.
+     */
+    private static int getBucket(long[] splitters, long value) {
+        int low = 0;
+        int high = splitters.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(splitters[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Sorts array[rangeStart..rangeEnd) into ascending order with a parallel merge sort.
+     * @param array The array to sort.
+     * @param rangeStart The first index to sort.
+     * @param rangeEnd The end of the indexes to sort.
+     * @param noOfChunks The number of runs to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the sort on, or ParallelExecutor.AUTO for the default.
+     */
+    public static void mergeSort(double[] array, int rangeStart, int rangeEnd, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        int runs = ArrayKernel.getNoOfChunks(rangeEnd - rangeStart, noOfChunks, noOfThreads);
+        if(runs == 1) {
+            Arrays.sort(array, rangeStart, rangeEnd);
+            return;
+        }
+
+        int[] runBounds = new int[runs + 1];
+        for(int r = 0; r <= runs; r++) {
+            runBounds[r] = ArrayKernel.getChunkBound(rangeStart, rangeEnd, runs, r);
+        }
+        int[] sortedBounds = runBounds;
+        ParallelExecutor.executeParallel(new ArrayKernel(0, runs, runs) {
+            @Override
+            protected void kernel(int firstRun, int endRun) {
+                for(int r = firstRun; r < endRun; r++) {
+                    Arrays.sort(array, sortedBounds[r], sortedBounds[r + 1]);
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        //each array holds the element at index i at i - base, where the buffer only holds the range
+        double[] src = array;
+        int srcBase = 0;
+        double[] dst = new double[rangeEnd - rangeStart];
+        int dstBase = rangeStart;
+        while(runBounds.length > 2) {
+            runBounds = mergeRuns(src, srcBase, dst, dstBase, runBounds, runs, noOfThreads);
+
+            double[] swap = src;
+            src = dst;
+            dst = swap;
+            int swapBase = srcBase;
+            srcBase = dstBase;
+            dstBase = swapBase;
+        }
+
+        if(src != array) {
+            ParallelArrays.copy(src, 0, array, rangeStart, rangeEnd - rangeStart, runs, noOfThreads);
+        }
+    }
+
+    /**
+     * Merges each pair of runs of src into dst, where the last run is copied across if there is an odd number of them.
+     * Every merge is split into segments of its output so that there are about as many segments as tasks.
+     * @return The bounds of the merged runs.
+     */
+    private static int[] mergeRuns(double[] src, int srcBase, double[] dst, int dstBase, int[] runBounds, int tasks, int noOfThreads) {
+        int noOfRuns = runBounds.length - 1;
+        int pairs = noOfRuns / 2;
+        int segments = Math.max(1, tasks / pairs);
+        int noOfTasks = pairs * segments + noOfRuns % 2;
+
+        int[] mergedBounds = new int[(noOfRuns + 1) / 2 + 1];
+        for(int m = 0; m < mergedBounds.length - 1; m++) {
+            mergedBounds[m] = runBounds[2 * m];
+        }
+        mergedBounds[mergedBounds.length - 1] = runBounds[noOfRuns];
+
+        ParallelExecutor.executeParallel(new ArrayKernel(0, noOfTasks, noOfTasks) {
+            @Override
+            protected void kernel(int firstTask, int endTask) {
+                for(int t = firstTask; t < endTask; t++) {
+                    int pair = t / segments;
+                    if(pair == pairs) {
+                        int start = runBounds[noOfRuns - 1];
+                        System.arraycopy(src, start - srcBase, dst, start - dstBase, runBounds[noOfRuns] - start);
+                    } else {
+                        mergeSegment(src, srcBase, dst, dstBase, runBounds[2 * pair], runBounds[2 * pair + 1], runBounds[2 * pair + 2],
+                            t % segments, segments);
+                    }
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        return mergedBounds;
+    }
+
+    /**
+     * Merges one segment of the output of two neighbouring runs, where the elements of the left run go before equal elements of the right.
+     */
+    private static void mergeSegment(double[] src, int srcBase, double[] dst, int dstBase, int leftStart, int rightStart, int rightEnd,
+        int segment, int segments) {
+        int left = leftStart - srcBase;
+        int leftLength = rightStart - leftStart;
+        int right = rightStart - srcBase;
+        int rightLength = rightEnd - rightStart;
+
+        long total = rightEnd - leftStart;
+        int outputStart = (int)(total * segment / segments);
+        int outputEnd = (int)(total * (segment + 1) / segments);
+        int leftFrom = getLeftCount(src, left, leftLength, right, rightLength, outputStart);
+        int leftTo = getLeftCount(src, left, leftLength, right, rightLength, outputEnd);
+
+        int i = left + leftFrom;
+        int leftEnd = left + leftTo;
+        int j = right + outputStart - leftFrom;
+        int rightSegmentEnd = right + outputEnd - leftTo;
+        int o = leftStart - dstBase + outputStart;
+        while(i < leftEnd && j < rightSegmentEnd) {
+            dst[o++] = Double.compare(src[i], src[j]) <= 0 ? src[i++] : src[j++];
+        }
+        System.arraycopy(src, i, dst, o, leftEnd - i);
+        System.arraycopy(src, j, dst, o + leftEnd - i, rightSegmentEnd - j);
+    }
+
+    /**
+     * Finds how many of the first outputs elements of the merge of two runs come from the left run.
+     */
+    private static int getLeftCount(double[] src, int left, int leftLength, int right, int rightLength, int outputs) {
+        int low = Math.max(0, outputs - rightLength);
+        int high = Math.min(outputs, leftLength);
+        while(low < high) {
+            int taken = (low + high) >>> 1;
+            //too few are taken from the left run if its next element goes before the last element taken from the right
+            if(Double.compare(src[left + taken], src[right + outputs - taken - 1]) <= 0) {
+                low = taken + 1;
+            } else {
+                high = taken;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Sorts array[rangeStart..rangeEnd) into ascending order with a parallel sample sort.
+     * @param array The array to sort.
+     * @param rangeStart The first index to sort.
+     * @param rangeEnd The end of the indexes to sort.
+     * @param noOfChunks The number of buckets to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the sort on, or ParallelExecutor.AUTO for the default.
+     */
+    public static void sampleSort(double[] array, int rangeStart, int rangeEnd, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        int buckets = ArrayKernel.getNoOfChunks(rangeEnd - rangeStart, noOfChunks, noOfThreads);
+        if(buckets == 1) {
+            Arrays.sort(array, rangeStart, rangeEnd);
+            return;
+        }
+        double[] splitters = getSplitters(array, rangeStart, rangeEnd, buckets);
+
+        //positions[c * buckets + b] first counts the elements of chunk c in bucket b, then holds where the next of them goes
+        int[] positions = new int[buckets * buckets];
+        ParallelExecutor.executeParallel(new ArrayKernel(0, buckets, buckets) {
+            @Override
+            protected void kernel(int firstChunk, int endChunk) {
+                for(int c = firstChunk; c < endChunk; c++) {
+                    int chunkEnd = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c + 1);
+                    for(int i = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c); i < chunkEnd; i++) {
+                        positions[c * buckets + getBucket(splitters, array[i])]++;
+                    }
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        //each chunk's elements of a bucket go after those of the chunks before it, which keeps equal elements in order
+        int[] bucketBounds = new int[buckets + 1];
+        int position = 0;
+        for(int b = 0; b < buckets; b++) {
+            bucketBounds[b] = position;
+            for(int c = 0; c < buckets; c++) {
+                int count = positions[c * buckets + b];
+                positions[c * buckets + b] = position;
+                position += count;
+            }
+        }
+        bucketBounds[buckets] = position;
+
+        double[] buffer = new double[rangeEnd - rangeStart];
+        ParallelExecutor.executeParallel(new ArrayKernel(0, buckets, buckets) {
+            @Override
+            protected void kernel(int firstChunk, int endChunk) {
+                for(int c = firstChunk; c < endChunk; c++) {
+                    int chunkEnd = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c + 1);
+                    for(int i = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c); i < chunkEnd; i++) {
+                        buffer[positions[c * buckets + getBucket(splitters, array[i])]++] = array[i];
+                    }
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(0, buckets, buckets) {
+            @Override
+            protected void kernel(int firstBucket, int endBucket) {
+                for(int b = firstBucket; b < endBucket; b++) {
+                    Arrays.sort(buffer, bucketBounds[b], bucketBounds[b + 1]);
+                    System.arraycopy(buffer, bucketBounds[b], array, rangeStart + bucketBounds[b], bucketBounds[b + 1] - bucketBounds[b]);
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+    }
+
+    /**
+     * Picks the values between the buckets of a sample sort from a random sample of the range, which is seeded
+     * from the range so that a sort of the same values always splits them in the same way.
+     */
+    private static double[] getSplitters(double[] array, int rangeStart, int rangeEnd, int buckets) {
+        SplittableRandom random = new SplittableRandom(rangeEnd - rangeStart);
+        double[] samples = new double[buckets * OVERSAMPLING];
+        for(int s = 0; s < samples.length; s++) {
+            samples[s] = array[random.nextInt(rangeStart, rangeEnd)];
+        }
+        Arrays.sort(samples);
+
+        double[] splitters = new double[buckets - 1];
+        for(int b = 1; b < buckets; b++) {
+            splitters[b - 1] = samples[b * OVERSAMPLING];
+        }
+
+        return splitters;
+    }
+
+    /**
+     * Finds the bucket of an element, which is the number of splitters that go before it or are equal to it.
+     */
+    private static int getBucket(double[] splitters, double value) {
+        int low = 0;
+        int high = splitters.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(Double.compare(splitters[middle], value) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Sorts array[rangeStart..rangeEnd) into ascending order with a parallel merge sort.
+     * @param array The array to sort.
+     * @param rangeStart The first index to sort.
+     * @param rangeEnd The end of the indexes to sort.
+     * @param comparator Orders the elements, which must not change while they are sorted.
+     * @param noOfChunks The number of runs to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the sort on, or ParallelExecutor.AUTO for the default.
+     */
+    public static <T> void mergeSort(T[] array, int rangeStart, int rangeEnd, Comparator<? super T> comparator, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        int runs = ArrayKernel.getNoOfChunks(rangeEnd - rangeStart, noOfChunks, noOfThreads);
+        if(runs == 1) {
+            Arrays.sort(array, rangeStart, rangeEnd, comparator);
+            return;
+        }
+
+        int[] runBounds = new int[runs + 1];
+        for(int r = 0; r <= runs; r++) {
+            runBounds[r] = ArrayKernel.getChunkBound(rangeStart, rangeEnd, runs, r);
+        }
+        int[] sortedBounds = runBounds;
+        ParallelExecutor.executeParallel(new ArrayKernel(0, runs, runs) {
+            @Override
+            protected void kernel(int firstRun, int endRun) {
+                for(int r = firstRun; r < endRun; r++) {
+                    Arrays.sort(array, sortedBounds[r], sortedBounds[r + 1], comparator);
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        //each array holds the element at index i at i - base, where the buffer only holds the range
+        T[] src = array;
+        int srcBase = 0;
+        T[] dst = newArray(array, rangeEnd - rangeStart);
+        int dstBase = rangeStart;
+        while(runBounds.length > 2) {
+            runBounds = mergeRuns(src, srcBase, dst, dstBase, runBounds, runs, comparator, noOfThreads);
+
+            T[] swap = src;
+            src = dst;
+            dst = swap;
+            int swapBase = srcBase;
+            srcBase = dstBase;
+            dstBase = swapBase;
+        }
+
+        if(src != array) {
+            ParallelArrays.copy(src, 0, array, rangeStart, rangeEnd - rangeStart, runs, noOfThreads);
+        }
+    }
+
+    /**
+     * Merges each pair of runs of src into dst, where the last run is copied across if there is an odd number of them.
+     * Every merge is split into segments of its output so that there are about as many segments as tasks.
+     * @return The bounds of the merged runs.
+     */
+    private static <T> int[] mergeRuns(T[] src, int srcBase, T[] dst, int dstBase, int[] runBounds, int tasks, Comparator<? super T> comparator, int noOfThreads) {
+        int noOfRuns = runBounds.length - 1;
+        int pairs = noOfRuns / 2;
+        int segments = Math.max(1, tasks / pairs);
+        int noOfTasks = pairs * segments + noOfRuns % 2;
+
+        int[] mergedBounds = new int[(noOfRuns + 1) / 2 + 1];
+        for(int m = 0; m < mergedBounds.length - 1; m++) {
+            mergedBounds[m] = runBounds[2 * m];
+        }
+        mergedBounds[mergedBounds.length - 1] = runBounds[noOfRuns];
+
+        ParallelExecutor.executeParallel(new ArrayKernel(0, noOfTasks, noOfTasks) {
+            @Override
+            protected void kernel(int firstTask, int endTask) {
+                for(int t = firstTask; t < endTask; t++) {
+                    int pair = t / segments;
+                    if(pair == pairs) {
+                        int start = runBounds[noOfRuns - 1];
+                        System.arraycopy(src, start - srcBase, dst, start - dstBase, runBounds[noOfRuns] - start);
+                    } else {
+                        mergeSegment(src, srcBase, dst, dstBase, runBounds[2 * pair], runBounds[2 * pair + 1], runBounds[2 * pair + 2],
+                            t % segments, segments, comparator);
+                    }
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        return mergedBounds;
+    }
+
+    /**
+     * Merges one segment of the output of two neighbouring runs, where the elements of the left run go before equal elements of the right.
+     */
+    private static <T> void mergeSegment(T[] src, int srcBase, T[] dst, int dstBase, int leftStart, int rightStart, int rightEnd,
+        int segment, int segments, Comparator<? super T> comparator) {
+        int left = leftStart - srcBase;
+        int leftLength = rightStart - leftStart;
+        int right = rightStart - srcBase;
+        int rightLength = rightEnd - rightStart;
+
+        long total = rightEnd - leftStart;
+        int outputStart = (int)(total * segment / segments);
+        int outputEnd = (int)(total * (segment + 1) / segments);
+        int leftFrom = getLeftCount(src, left, leftLength, right, rightLength, outputStart, comparator);
+        int leftTo = getLeftCount(src, left, leftLength, right, rightLength, outputEnd, comparator);
+
+        int i = left + leftFrom;
+        int leftEnd = left + leftTo;
+        int j = right + outputStart - leftFrom;
+        int rightSegmentEnd = right + outputEnd - leftTo;
+        int o = leftStart - dstBase + outputStart;
+        while(i < leftEnd && j < rightSegmentEnd) {
+            dst[o++] = comparator.compare(src[i], src[j]) <= 0 ? src[i++] : src[j++];
+        }
+        System.arraycopy(src, i, dst, o, leftEnd - i);
+        System.arraycopy(src, j, dst, o + leftEnd - i, rightSegmentEnd - j);
+    }
+
+    /**
+     * Finds how many of the first outputs elements of the merge of two runs come from the left run.
+     */
+    private static <T> int getLeftCount(T[] src, int left, int leftLength, int right, int rightLength, int outputs, Comparator<? super T> comparator) {
+        int low = Math.max(0, outputs - rightLength);
+        int high = Math.min(outputs, leftLength);
+        while(low < high) {
+            int taken = (low + high) >>> 1;
+            //too few are taken from the left run if its next element goes before the last element taken from the right
+            if(comparator.compare(src[left + taken], src[right + outputs - taken - 1]) <= 0) {
+                low = taken + 1;
+            } else {
+                high = taken;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Sorts array[rangeStart..rangeEnd) into ascending order with a parallel sample sort.
+     * @param array The array to sort.
+     * @param rangeStart The first index to sort.
+     * @param rangeEnd The end of the indexes to sort.
+     * @param comparator Orders the elements, which must not change while they are sorted.
+     * @param noOfChunks The number of buckets to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the sort on, or ParallelExecutor.AUTO for the default.
+     */
+    public static <T> void sampleSort(T[] array, int rangeStart, int rangeEnd, Comparator<? super T> comparator, int noOfChunks, int noOfThreads) {
+        ArrayKernel.checkRange(array.length, rangeStart, rangeEnd);
+
+        int buckets = ArrayKernel.getNoOfChunks(rangeEnd - rangeStart, noOfChunks, noOfThreads);
+        if(buckets == 1) {
+            Arrays.sort(array, rangeStart, rangeEnd, comparator);
+            return;
+        }
+        T[] splitters = getSplitters(array, rangeStart, rangeEnd, buckets, comparator);
+
+        //positions[c * buckets + b] first counts the elements of chunk c in bucket b, then holds where the next of them goes
+        int[] positions = new int[buckets * buckets];
+        ParallelExecutor.executeParallel(new ArrayKernel(0, buckets, buckets) {
+            @Override
+            protected void kernel(int firstChunk, int endChunk) {
+                for(int c = firstChunk; c < endChunk; c++) {
+                    int chunkEnd = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c + 1);
+                    for(int i = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c); i < chunkEnd; i++) {
+                        positions[c * buckets + getBucket(splitters, array[i], comparator)]++;
+                    }
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        //each chunk's elements of a bucket go after those of the chunks before it, which keeps equal elements in order
+        int[] bucketBounds = new int[buckets + 1];
+        int position = 0;
+        for(int b = 0; b < buckets; b++) {
+            bucketBounds[b] = position;
+            for(int c = 0; c < buckets; c++) {
+                int count = positions[c * buckets + b];
+                positions[c * buckets + b] = position;
+                position += count;
+            }
+        }
+        bucketBounds[buckets] = position;
+
+        T[] buffer = newArray(array, rangeEnd - rangeStart);
+        ParallelExecutor.executeParallel(new ArrayKernel(0, buckets, buckets) {
+            @Override
+            protected void kernel(int firstChunk, int endChunk) {
+                for(int c = firstChunk; c < endChunk; c++) {
+                    int chunkEnd = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c + 1);
+                    for(int i = ArrayKernel.getChunkBound(rangeStart, rangeEnd, buckets, c); i < chunkEnd; i++) {
+                        buffer[positions[c * buckets + getBucket(splitters, array[i], comparator)]++] = array[i];
+                    }
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+
+        ParallelExecutor.executeParallel(new ArrayKernel(0, buckets, buckets) {
+            @Override
+            protected void kernel(int firstBucket, int endBucket) {
+                for(int b = firstBucket; b < endBucket; b++) {
+                    Arrays.sort(buffer, bucketBounds[b], bucketBounds[b + 1], comparator);
+                    System.arraycopy(buffer, bucketBounds[b], array, rangeStart + bucketBounds[b], bucketBounds[b + 1] - bucketBounds[b]);
+                }
+            }
+        }.alwaysParallel(), noOfThreads);
+    }
+
+    /**
+     * Picks the values between the buckets of a sample sort from a random sample of the range, which is seeded
+     * from the range so that a sort of the same values always splits them in the same way.
+     */
+    private static <T> T[] getSplitters(T[] array, int rangeStart, int rangeEnd, int buckets, Comparator<? super T> comparator) {
+        SplittableRandom random = new SplittableRandom(rangeEnd - rangeStart);
+        T[] samples = newArray(array, buckets * OVERSAMPLING);
+        for(int s = 0; s < samples.length; s++) {
+            samples[s] = array[random.nextInt(rangeStart, rangeEnd)];
+        }
+        Arrays.sort(samples, comparator);
+
+        T[] splitters = newArray(array, buckets - 1);
+        for(int b = 1; b < buckets; b++) {
+            splitters[b - 1] = samples[b * OVERSAMPLING];
+        }
+
+        return splitters;
+    }
+
+    /**
+     * Finds the bucket of an element, which is the number of splitters that go before it or are equal to it.
+     */
+    private static <T> int getBucket(T[] splitters, T value, Comparator<? super T> comparator) {
+        int low = 0;
+        int high = splitters.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(comparator.compare(splitters[middle], value) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Sorts array[rangeStart..rangeEnd) into the natural order of its elements with a parallel merge sort.
+     * @param array The array to sort.
+     * @param rangeStart The first index to sort.
+     * @param rangeEnd The end of the indexes to sort.
+     * @param noOfChunks The number of runs to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the sort on, or ParallelExecutor.AUTO for the default.
+     */
+    public static <T extends Comparable<? super T>> void mergeSort(T[] array, int rangeStart, int rangeEnd, int noOfChunks, int noOfThreads) {
+        mergeSort(array, rangeStart, rangeEnd, Comparator.naturalOrder(), noOfChunks, noOfThreads);
+    }
+
+    /**
+     * Sorts array[rangeStart..rangeEnd) into the natural order of its elements with a parallel sample sort.
+     * @param array The array to sort.
+     * @param rangeStart The first index to sort.
+     * @param rangeEnd The end of the indexes to sort.
+     * @param noOfChunks The number of buckets to split the range into, or ParallelExecutor.AUTO for one per thread.
+     * @param noOfThreads The number of threads to run the sort on, or ParallelExecutor.AUTO for the default.
+     */
+    public static <T extends Comparable<? super T>> void sampleSort(T[] array, int rangeStart, int rangeEnd, int noOfChunks, int noOfThreads) {
+        sampleSort(array, rangeStart, rangeEnd, Comparator.naturalOrder(), noOfChunks, noOfThreads);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(T[] like, int length) {
+        return (T[])Array.newInstance(like.getClass().getComponentType(), length);
+    }
+}
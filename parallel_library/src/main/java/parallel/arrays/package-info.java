@@ -0,0 +1,5 @@
+/**
+ * Parallel kernels over whole arrays, such as fill, map and sort, for the java parallel refactorer to replace
+ * common array loops with. Every kernel is run as a parallel for loop on the ParallelExecutor's ThreadAllocator.
+ */
+package parallel.arrays;
@@ -0,0 +1,61 @@
+package parallel.threadallocation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import parallel.FarmTask;
+
+/**
+ * Remembers which thread last ran each chunk of the farms that ask for affinity scheduling,
+ * so that the chunk can be given to the same thread the next time it is run.
+ * Only used by the TaskPlanter so it does not need to be thread safe.
+ * @author michaellynch
+ *
+ */
+class AffinityTable {
+
+    private Map<Object, TaskThread[]> allAffinityGroups;
+
+    AffinityTable() {
+        allAffinityGroups = new HashMap<>();
+    }
+
+    /**
+     * Gets the thread that last ran the chunk the task is about to run.
+     * @param task The task about to be run.
+     * @return The thread that last ran the chunk or null if the task does not use affinity or the chunk has not been run before.
+     */
+    TaskThread getPreferredThread(FarmTask task) {
+        Object group = task.getAffinityGroup();
+        if(group == null) return null;
+
+        TaskThread[] chunkThreads = allAffinityGroups.get(group);
+        int index = task.getAffinityIndex();
+        if(chunkThreads == null || index < 0 || index >= chunkThreads.length) {
+            return null;
+        }
+
+        return chunkThreads[index];
+    }
+
+    /**
+     * Records the thread that is running the chunk that the task is about to run.
+     * @param task The task about to be run.
+     * @param thread The thread that the task has been given to.
+     */
+    void recordThread(FarmTask task, TaskThread thread) {
+        Object group = task.getAffinityGroup();
+        int index = task.getAffinityIndex();
+        if(group == null || index < 0) return;
+
+        TaskThread[] chunkThreads = allAffinityGroups.get(group);
+        if(chunkThreads == null || index >= chunkThreads.length) {
+            int newLength = Math.max(index + 1, (chunkThreads == null) ? 8 : chunkThreads.length * 2);
+            chunkThreads = (chunkThreads == null) ? new TaskThread[newLength] : Arrays.copyOf(chunkThreads, newLength);
+            allAffinityGroups.put(group, chunkThreads);
+        }
+
+        chunkThreads[index] = thread;
+    }
+}
@@ -0,0 +1,192 @@
+package parallel.threadallocation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Works out how many CPUs the program may use, taking into account the CPU quota and cpuset of the
+ * cgroup that it is running in as well as the number of processors reported by the JVM.
+ * Both cgroup v2 and cgroup v1 layouts are read from the cgroup root, which can be moved to allow testing.
+ * @author michaellynch
+ *
+ */
+public class CpuQuota {
+
+    /**
+     * System property that can be used to change the directory that the cgroup files are read from.
+     */
+    public static final String CGROUP_ROOT_PROPERTY = "parallel.cgroup.root";
+
+    private static final String DEFAULT_CGROUP_ROOT = "/sys/fs/cgroup";
+
+    private static CpuQuota defaultQuota = null;
+
+    private int availableProcessors;
+    private double quotaCpus;
+    private int cpusetCpus;
+
+    /**
+     * Reads the CPU limits from the cgroup files in the given directory.
+     * @param cgroupRoot The root directory of the cgroup file system.
+     * @param availableProcessors The number of processors reported by the JVM.
+     */
+    public CpuQuota(Path cgroupRoot, int availableProcessors) {
+        this.availableProcessors = Math.max(1, availableProcessors);
+        quotaCpus = readQuota(cgroupRoot);
+        cpusetCpus = readCpuset(cgroupRoot);
+    }
+
+    /**
+     * Gets the CPU limits of the running program, reading them on first use.
+     * @return The CPU limits of the running program.
+     */
+    public static synchronized CpuQuota getDefault() {
+        if(defaultQuota == null) {
+            String root = System.getProperty(CGROUP_ROOT_PROPERTY, DEFAULT_CGROUP_ROOT);
+            defaultQuota = new CpuQuota(Paths.get(root), Runtime.getRuntime().availableProcessors());
+        }
+
+        return defaultQuota;
+    }
+
+    /**
+     * Gets the number of CPUs that the program can use at once.
+     * @return The number of CPUs, which may be fractional when limited by a CPU quota.
+     */
+    public double getCpuLimit() {
+        double limit = availableProcessors;
+        if(quotaCpus > 0) {
+            limit = Math.min(limit, quotaCpus);
+        }
+        if(cpusetCpus > 0) {
+            limit = Math.min(limit, cpusetCpus);
+        }
+
+        return limit;
+    }
+
+    /**
+     * Gets the number of threads a pool should have when the user has not asked for a number.
+     * A fractional quota is rounded down so that the threads are not throttled.
+     * @return The default number of threads.
+     */
+    public int getDefaultThreads() {
+        return Math.max(1, (int)Math.floor(getCpuLimit()));
+    }
+
+    /**
+     * Gets the most threads that a pool should have, beyond which the threads would be throttled.
+     * @return The maximum number of threads.
+     */
+    public int getMaxThreads() {
+        return Math.max(1, (int)Math.ceil(getCpuLimit()));
+    }
+
+    /**
+     * Limits a requested number of threads to the maximum number of threads.
+     * @param noOfThreads The requested number of threads.
+     * @return The number of threads that should be used.
+     */
+    public int clamp(int noOfThreads) {
+        return Math.min(noOfThreads, getMaxThreads());
+    }
+
+    /**
+     * @return The CPU quota as a number of CPUs or -1 if there is no quota.
+     */
+    private static double readQuota(Path cgroupRoot) {
+        //cgroup v2: "<quota> <period>" or "max <period>"
+        String cpuMax = readFirstLine(cgroupRoot.resolve("cpu.max"));
+        if(cpuMax != null) {
+            String[] parts = cpuMax.split("\\s+");
+            if(parts.length == 2 && !parts[0].equals("max")) {
+                return parseQuota(parts[0], parts[1]);
+            }
+            return -1;
+        }
+
+        //cgroup v1
+        for(String controller:new String[]{"cpu", "cpu,cpuacct", "cpuacct,cpu"}) {
+            String quota = readFirstLine(cgroupRoot.resolve(controller).resolve("cpu.cfs_quota_us"));
+            String period = readFirstLine(cgroupRoot.resolve(controller).resolve("cpu.cfs_period_us"));
+            if(quota != null && period != null) {
+                return parseQuota(quota, period);
+            }
+        }
+
+        return -1;
+    }
+
+    private static double parseQuota(String quota, String period) {
+        try {
+            long quotaMicros = Long.parseLong(quota.trim());
+            long periodMicros = Long.parseLong(period.trim());
+            if(quotaMicros <= 0 || periodMicros <= 0) {
+                return -1;
+            }
+            return (double)quotaMicros / periodMicros;
+        } catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return The number of CPUs in the cpuset or -1 if it cannot be read.
+     */
+    private static int readCpuset(Path cgroupRoot) {
+        Path[] cpusetFiles = new Path[]{
+            cgroupRoot.resolve("cpuset.cpus.effective"),
+            cgroupRoot.resolve("cpuset.cpus"),
+            cgroupRoot.resolve("cpuset").resolve("cpuset.effective_cpus"),
+            cgroupRoot.resolve("cpuset").resolve("cpuset.cpus")
+        };
+
+        for(Path cpusetFile:cpusetFiles) {
+            String cpus = readFirstLine(cpusetFile);
+            if(cpus != null && !cpus.trim().isEmpty()) {
+                return countCpus(cpus.trim());
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Counts the CPUs in a cpuset list such as "0-3,8,10-11".
+     */
+    static int countCpus(String cpuList) {
+        int count = 0;
+        try {
+            for(String range:cpuList.split(",")) {
+                String[] ends = range.trim().split("-");
+                if(ends.length == 1) {
+                    count++;
+                } else {
+                    count += Integer.parseInt(ends[1].trim()) - Integer.parseInt(ends[0].trim()) + 1;
+                }
+            }
+        } catch(NumberFormatException e) {
+            return -1;
+        }
+
+        return count;
+    }
+
+    private static String readFirstLine(Path file) {
+        if(!Files.isReadable(file)) {
+            return null;
+        }
+
+        try {
+            for(String line:Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                return line;
+            }
+            return "";
+        } catch(IOException e) {
+            return null;
+        }
+    }
+}
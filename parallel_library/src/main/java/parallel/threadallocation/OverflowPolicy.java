@@ -0,0 +1,23 @@
+package parallel.threadallocation;
+
+/**
+ * What the ThreadAllocator does with a new task when its submission queue is full.
+ * Tasks executed from the allocator's own threads are never held back, as their farm's thread would be waiting on them.
+ * @author michaellynch
+ *
+ */
+public enum OverflowPolicy {
+    /**
+     * The executing thread waits until the TaskPlanter has made room in the queue.
+     */
+    BLOCK,
+    /**
+     * The task is run straight away on the executing thread.
+     */
+    CALLER_RUNS,
+    /**
+     * The task is not run and its farm is cancelled. A RejectedTaskException is thrown once the farm's
+     * tasks that were already executed have finished or been skipped.
+     */
+    REJECT
+}
@@ -0,0 +1,83 @@
+package parallel.threadallocation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A sense-reversing barrier for a fixed set of parties that meet at the barrier many times.
+ * Each party is identified by an index and keeps its own sense, so that the barrier can be reused
+ * straight away without resetting. Waiting parties spin first, then yield, and only block when the
+ * barrier takes a long time to be released.
+ * @author michaellynch
+ *
+ */
+public class SenseBarrier {
+
+    private static final int SPIN_LIMIT = 1000;
+    private static final int YIELD_LIMIT = 100;
+
+    private final int parties;
+    private final AtomicInteger remaining;
+    private final boolean[] localSenses;
+
+    private volatile boolean sense;
+    private volatile int blockedParties;
+
+    /**
+     * Creates a barrier for the given number of parties.
+     * @param parties The number of parties that must arrive before the barrier is released.
+     */
+    public SenseBarrier(int parties) {
+        if(parties < 1) {
+            throw new IllegalArgumentException("A barrier must have at least one party.");
+        }
+        this.parties = parties;
+        remaining = new AtomicInteger(parties);
+        localSenses = new boolean[parties];
+        sense = false;
+        blockedParties = 0;
+    }
+
+    /**
+     * Waits until all parties have arrived at the barrier.
+     * @param party The index of the party arriving, between 0 and the number of parties. Each index must only be used by one thread at a time.
+     */
+    public void await(int party) {
+        boolean localSense = !localSenses[party];
+        localSenses[party] = localSense;
+
+        if(remaining.decrementAndGet() == 0) {
+            remaining.set(parties);
+            sense = localSense;
+            if(blockedParties > 0) {
+                synchronized(this) {
+                    this.notifyAll();
+                }
+            }
+            return;
+        }
+
+        for(int i = 0; i < SPIN_LIMIT; i++) {
+            if(sense == localSense) return;
+        }
+        for(int i = 0; i < YIELD_LIMIT; i++) {
+            if(sense == localSense) return;
+            Thread.yield();
+        }
+
+        synchronized(this) {
+            blockedParties++;
+            while(sense != localSense) {
+                try {
+                    this.wait();
+                } catch(InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+            blockedParties--;
+        }
+    }
+
+    public int getParties() {
+        return parties;
+    }
+}
@@ -0,0 +1,121 @@
+package parallel.threadallocation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import parallel.FarmTask;
+
+/**
+ * A bounded ring buffer of the tasks waiting to be given a thread by the TaskPlanter.
+ * Any number of threads can offer and poll tasks at once without taking a lock, as each slot holds a sequence number
+ * that says whether it is ready to be filled or emptied, and a position in the ring is claimed by moving its counter on.
+ * @author michaellynch
+ *
+ */
+class SubmissionQueue {
+
+    private AtomicReferenceArray<FarmTask> tasks;
+    private AtomicLongArray sequences;
+    private int mask;
+
+    private AtomicLong enqueuePosition;
+    private AtomicLong dequeuePosition;
+
+    /**
+     * Creates an empty queue.
+     * @param capacity The most tasks that can be waiting, which is rounded up to a power of two of at least two.
+     */
+    SubmissionQueue(int capacity) {
+        if(capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("The capacity of the submission queue must be between 1 and 2^30.");
+        }
+
+        //a single slot cannot tell a full ring from an empty one by its sequence number
+        int size = Integer.highestOneBit(Math.max(2, capacity));
+        if(size < capacity) {
+            size <<= 1;
+        }
+
+        tasks = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+
+        enqueuePosition = new AtomicLong(0);
+        dequeuePosition = new AtomicLong(0);
+    }
+
+    /**
+     * Adds a task to the back of the queue if there is room for it.
+     * @param task The task to add.
+     * @return False if the queue is full.
+     */
+    boolean offer(FarmTask task) {
+        long position = enqueuePosition.get();
+        while(true) {
+            int slot = (int)(position & mask);
+            long difference = sequences.get(slot) - position;
+
+            if(difference == 0) {
+                if(enqueuePosition.compareAndSet(position, position + 1)) {
+                    tasks.set(slot, task);
+                    //publishes the task to the thread that will poll this position
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = enqueuePosition.get();
+            } else if(difference < 0) {
+                //the slot still holds the task from the last time round the ring
+                return false;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the task from the front of the queue.
+     * @return The task or null if the queue is empty.
+     */
+    FarmTask poll() {
+        long position = dequeuePosition.get();
+        while(true) {
+            int slot = (int)(position & mask);
+            long difference = sequences.get(slot) - (position + 1);
+
+            if(difference == 0) {
+                if(dequeuePosition.compareAndSet(position, position + 1)) {
+                    FarmTask task = tasks.get(slot);
+                    tasks.set(slot, null);
+                    //frees the slot for the position one time round the ring later
+                    sequences.set(slot, position + mask + 1);
+                    return task;
+                }
+                position = dequeuePosition.get();
+            } else if(difference < 0) {
+                return null;
+            } else {
+                position = dequeuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * @return The number of waiting tasks, which may already be out of date if other threads are using the queue.
+     */
+    int size() {
+        long size = enqueuePosition.get() - dequeuePosition.get();
+        return (int)Math.max(0, Math.min(size, getCapacity()));
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int getCapacity() {
+        return mask + 1;
+    }
+}
@@ -1,20 +1,109 @@
 package parallel.threadallocation;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import parallel.FarmTask;
+
 /**
  * As the the thread allocator can function with multiple farms being run at the same time on the same thread allocation system,
  * tasks that form part of the same farm are put into a TaskGroup to check for their joint completion.
+ * A farm that is executed from one of another farm's tasks has its group made a child of the other farm's group for as
+ * long as it has outstanding tasks, so the parent does not complete until the whole nested computation has completed,
+ * is cancelled along with it and counts its tasks in its metrics.
  * @author michaellynch
  *
  */
 public class TaskGroup {
 
+    private FarmTask farmTask;
+    private volatile TaskGroup parent;
+    private int depth;
+    private int outstandingChildren;
+    private long subtreeCompletedTasks;
+    private long subtreeTaskNanos;
+
     private volatile int outstandingTasks;
+    private int runningTasks;
+    private int concurrencyLimit;
+    private List<Runnable> completionListeners;
 
     /**
      * Creates a new TaskGroup with a single outstanding task.
      */
     public TaskGroup() {
+        this(null, null);
+    }
+
+    /**
+     * Creates a new TaskGroup with a single outstanding task, as a child of the given group.
+     * @param farmTask The farm whose tasks are in the group.
+     * @param parent The group of the task that executed the farm's first task, or null if it was not executed from a task.
+     */
+    public TaskGroup(FarmTask farmTask, TaskGroup parent) {
+        this.farmTask = farmTask;
+        outstandingChildren = 0;
+        subtreeCompletedTasks = 0;
+        subtreeTaskNanos = 0;
+        setParent(parent);
+
         outstandingTasks = 1;
+        completionListeners = new ArrayList<>();
+        runningTasks = 0;
+        concurrencyLimit = 0;
+    }
+
+    /**
+     * Sets the most tasks of this farm that can be running on threads at once.
+     * @param concurrencyLimit The most tasks that can run at once, or 0 for no limit.
+     */
+    public synchronized void setConcurrencyLimit(int concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    /**
+     * Checks whether another of the farm's tasks can be given a thread without going over its concurrency limit.
+     * @return True if the farm has no limit or fewer running tasks than its limit.
+     */
+    public synchronized boolean canStartTask() {
+        return concurrencyLimit <= 0 || runningTasks < concurrencyLimit;
+    }
+
+    /**
+     * Increments the count of this farm's tasks that have been given a thread.
+     */
+    public synchronized void addRunningTask() {
+        runningTasks++;
+    }
+
+    /**
+     * Deincrements the count of this farm's tasks that have been given a thread, once the thread has finished the task.
+     */
+    public synchronized void removeRunningTask() {
+        runningTasks--;
+    }
+
+    private void setParent(TaskGroup parent) {
+        this.parent = parent;
+        depth = (parent == null) ? 0 : parent.getDepth() + 1;
+        if(parent != null) {
+            parent.addOutstandingChild();
+        }
+    }
+
+    /**
+     * Increments the count of outstanding tasks in this farm.
+     * If the farm had no outstanding tasks it starts a new run, which is made a child of the given group.
+     * @param parent The group of the task that executed this task, or null if it was not executed from a task.
+     */
+    public void addOutstandingTask(TaskGroup parent) {
+        synchronized(this) {
+            outstandingTasks++;
+            //a group with outstanding children is still attached to its parent from the run before
+            if(outstandingTasks == 1 && outstandingChildren == 0) {
+                setParent(parent);
+            }
+        }
     }
 
     /**
@@ -25,23 +114,143 @@ public class TaskGroup {
     }
 
     /**
-     * Deincrements the count of outstanding tasks in this farm.
+     * Deincrements the count of outstanding tasks in this farm, running the completion listeners if it was the last task
+     * and the farm has no outstanding children.
+     */
+    public void removeCompletedTask() {
+        synchronized(this) {
+            outstandingTasks--;
+            if(outstandingTasks < 0) {
+                throw new RuntimeException("ERROR: outstanding tasks is negative");
+            }
+        }
+
+        checkCompletion();
+    }
+
+    private synchronized void addOutstandingChild() {
+        outstandingChildren++;
+    }
+
+    private void removeCompletedChild() {
+        synchronized(this) {
+            outstandingChildren--;
+        }
+
+        checkCompletion();
+    }
+
+    /**
+     * Runs the completion listeners and wakes the waiting threads if the subtree has completed,
+     * then passes the completion on to the parent, which the group is no longer a child of.
      */
-    public synchronized void removeCompletedTask() {
-        outstandingTasks--;
-        if(outstandingTasks < 0) {
-            throw new RuntimeException("ERROR: outstanding tasks is negative");
+    private void checkCompletion() {
+        List<Runnable> listeners = null;
+        TaskGroup completedParent = null;
+        synchronized(this) {
+            if(!completed()) return;
+
+            if(!completionListeners.isEmpty()) {
+                listeners = completionListeners;
+                completionListeners = new ArrayList<>();
+            }
+            completedParent = parent;
+            parent = null;
+            notifyAll();
         }
+
+        if(listeners != null) {
+            for(Runnable listener:listeners) {
+                listener.run();
+            }
+        }
+        if(completedParent != null) {
+            completedParent.removeCompletedChild();
+        }
+    }
+
+    /**
+     * Records a task of the farm that has finished running in the metrics of this group and every group above it.
+     * @param nanos The time the task took to run.
+     */
+    public void recordCompletedTask(long nanos) {
+        for(TaskGroup group = this; group != null; group = group.parent) {
+            synchronized(group) {
+                group.subtreeCompletedTasks++;
+                group.subtreeTaskNanos += nanos;
+            }
+        }
+    }
+
+    /**
+     * @return The number of tasks that have run in this farm and every farm nested within it.
+     */
+    public synchronized long getSubtreeCompletedTasks() {
+        return subtreeCompletedTasks;
+    }
+
+    /**
+     * @return The total time spent running the tasks of this farm and every farm nested within it.
+     */
+    public synchronized long getSubtreeTaskNanos() {
+        return subtreeTaskNanos;
+    }
+
+    /**
+     * Checks whether the farm or a farm that it is nested within has been cancelled, in which case its tasks that have not started are skipped.
+     * @return True if the tasks of the group should not be started.
+     */
+    public boolean isCancelled() {
+        for(TaskGroup group = this; group != null; group = group.parent) {
+            if(group.farmTask != null && group.farmTask.isCancelled()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The group of the farm that this farm is nested within, or null if it is not nested or has no outstanding tasks.
+     */
+    public TaskGroup getParent() {
+        return parent;
+    }
+
+    /**
+     * @return The number of farms that this farm is nested within.
+     */
+    public synchronized int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Adds a listener to be run once when all the tasks in the farm have completed.
+     * The listener is run straight away if there are no outstanding tasks. Otherwise it is run on the thread that
+     * completes the last task, so it must be quick and must not wait on other tasks.
+     * Listeners should only be added once all of the farm's tasks have been executed, as the count of outstanding
+     * tasks can reach zero between tasks while they are still being added.
+     * @param listener The listener to run.
+     */
+    public void addCompletionListener(Runnable listener) {
+        synchronized(this) {
+            if(!completed()) {
+                completionListeners.add(listener);
+                return;
+            }
+        }
+
+        listener.run();
     }
 
     
     /**
-     * Checks that all tasks in the farm have been completed.
-     * @return True if there are no tasks left to complete in this farm.
+     * Checks that all tasks in the farm and the farms nested within it have been completed.
+     * @return True if there are no tasks left to complete in this farm or its children.
      */
     public synchronized boolean completed() {
         //System.out.println("CHECKING: task group tasks left:" + outstandingTasks);
-        if(outstandingTasks <= 0) {
+        if(outstandingTasks <= 0 && outstandingChildren <= 0) {
             return true;
         } else {
             return false;
@@ -1,9 +1,11 @@
 package parallel.threadallocation;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import parallel.FarmTask;
+import parallel.Priority;
 
 /**
  * Assigns tasks to the threads in the ThreadAllocator.
@@ -16,10 +18,14 @@ class TaskPlanter extends Thread {
     private volatile ThreadMonitor threadMonitor;
     private volatile List<TaskThread> mainThreads;
     private volatile List<TaskThread> subThreads;
-    private volatile List<FarmTask> outstandingTasks;
+    private volatile SubmissionQueue[] submissionQueues;
+    private volatile List<FarmTask> embeddedTasks;
+    private List<FarmTask> throttledTasks;
 
     private volatile Map<FarmTask, TaskGroup> allTaskGroups;
 
+    private AffinityTable affinityTable;
+
     private volatile boolean pickedUpTask;
 
     /**
@@ -27,16 +33,20 @@ class TaskPlanter extends Thread {
      * @param threadMonitor	The thread monitor used to check notify when threads are ready for new tasks.
      * @param mainThreads List of main threads in the allocator.
      * @param subThreads List of sub threads that have been created to prevent deadlocks.
-     * @param outstandingTasks A list of tasks that are to be completed on the allocator's threads.
+     * @param submissionQueues The queues of tasks that are to be completed on the allocator's threads, from the highest priority to the lowest.
+     * @param embeddedTasks A list of tasks that were executed from the allocator's own threads, which must be guarded by the monitor.
      * @param allTaskGroups A map of all the farms that are running on the ThreadAllocator.
      */
-    public TaskPlanter(ThreadMonitor threadMonitor, List<TaskThread> mainThreads, List<TaskThread> subThreads, List<FarmTask> outstandingTasks, Map<FarmTask, TaskGroup> allTaskGroups) {
+    public TaskPlanter(ThreadMonitor threadMonitor, List<TaskThread> mainThreads, List<TaskThread> subThreads, SubmissionQueue[] submissionQueues, List<FarmTask> embeddedTasks, Map<FarmTask, TaskGroup> allTaskGroups) {
         shutdownRequired = false;
         this.threadMonitor = threadMonitor;
         this.mainThreads = mainThreads;
         this.subThreads = subThreads;
-        this.outstandingTasks = outstandingTasks;
+        this.submissionQueues = submissionQueues;
+        this.embeddedTasks = embeddedTasks;
         this.allTaskGroups = allTaskGroups;
+        throttledTasks = new ArrayList<>();
+        affinityTable = new AffinityTable();
         pickedUpTask = true;
     }
 
@@ -47,16 +57,6 @@ class TaskPlanter extends Thread {
         return pickedUpTask;
     }
 
-    private TaskThread getThreadOwnerFromAllocatorThreads(Thread thread) {
-        if(mainThreads.contains(thread)) {
-            return (TaskThread)thread;
-        }
-        if(subThreads.contains(thread)) {
-            return (TaskThread)thread;
-        }
-
-        return null;
-    }
     private boolean isSubThreadReady(TaskThread thread) {
         TaskThread subThread = thread.getSubThread();
         if(subThread != null) {
@@ -72,14 +72,121 @@ class TaskPlanter extends Thread {
             subThread.start();
             thread.setSubThread(subThread);
         }
-        thread.getSubThread().setTask(task);
+        startTask(thread.getSubThread(), task);
+    }
+
+    /**
+     * Checks for tasks that have not been given a thread yet. Must be called while holding the monitor.
+     * @return True if there are tasks waiting, including those held back by their farm's concurrency limit.
+     */
+    boolean hasOutstandingTasks() {
+        if(!embeddedTasks.isEmpty() || !throttledTasks.isEmpty()) {
+            return true;
+        }
+        for(SubmissionQueue submissionQueue:submissionQueues) {
+            if(!submissionQueue.isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private TaskGroup getTaskGroup(FarmTask task) {
+        synchronized(allTaskGroups) {
+            return allTaskGroups.get(task);
+        }
+    }
+
+    /**
+     * Checks whether a task can be taken, either to be started because its farm is below its concurrency limit or to be skipped because its farm has been cancelled.
+     */
+    private boolean canTakeTask(FarmTask task) {
+        TaskGroup tg = getTaskGroup(task);
+        return tg.isCancelled() || tg.canStartTask();
+    }
+
+    /**
+     * Takes the first task in the list that can be taken. For the embedded tasks the task of the most deeply nested farm is
+     * taken first, as finishing the innermost farms frees the threads of the farms they are nested within.
+     * @return The task or null if every farm in the list is at its limit.
+     */
+    private FarmTask takeStartableTask(List<FarmTask> tasks, boolean deepestFirst) {
+        int taken = -1;
+        int takenDepth = -1;
+        for(int i = 0; i < tasks.size(); i++) {
+            if(!canTakeTask(tasks.get(i))) continue;
+
+            int depth = getTaskGroup(tasks.get(i)).getDepth();
+            if(taken == -1 || (deepestFirst && depth > takenDepth)) {
+                taken = i;
+                takenDepth = depth;
+            }
+            if(!deepestFirst) break;
+        }
+
+        return (taken == -1) ? null : tasks.remove(taken);
+    }
+
+    /**
+     * Takes the next task to give a main thread. Embedded tasks go first as the threads that own them are held until
+     * they are picked up, then tasks that were held back by their farm's concurrency limit, then the oldest task of the
+     * highest priority that has one waiting.
+     * A task taken from a queue whose farm is at its limit is held back until one of the farm's running tasks finishes.
+     * There is at most one of these for each farm, as each farm waits for its task to be picked up before executing another.
+     * The tasks of cancelled farms are skipped rather than returned.
+     * @return The task or null if there are no tasks that can be started.
+     */
+    private FarmTask takeNextTask() {
+        while(true) {
+            FarmTask task = takeStartableTask(embeddedTasks, true);
+            if(task == null) {
+                task = takeStartableTask(throttledTasks, false);
+            }
+
+            for(SubmissionQueue submissionQueue:submissionQueues) {
+                while(task == null) {
+                    FarmTask queuedTask = submissionQueue.poll();
+                    if(queuedTask == null) {
+                        break;
+                    }
+
+                    if(canTakeTask(queuedTask)) {
+                        task = queuedTask;
+                    } else {
+                        throttledTasks.add(queuedTask);
+                    }
+                }
+            }
+
+            if(task == null || !getTaskGroup(task).isCancelled()) {
+                return task;
+            }
+            skipTask(task);
+        }
+    }
+
+    /**
+     * Completes a task of a cancelled farm without running it, letting the farm move on to its next task.
+     */
+    private void skipTask(FarmTask task) {
+        task.skip();
+        getTaskGroup(task).removeCompletedTask();
+    }
+
+    /**
+     * Gives a task to a thread, counting it against its farm's concurrency limit until the thread has finished it.
+     */
+    private void startTask(TaskThread thread, FarmTask task) {
+        getTaskGroup(task).addRunningTask();
+        thread.setTask(task);
     }
 
     @Override
     public void run() {
         while(!shutdownRequired) {
             synchronized(threadMonitor.getAllMonitors()) {
-                while(outstandingTasks.size() == 0) {
+                while(!hasOutstandingTasks()) {
                     //threadMonitor.waitOutstandingTasks();
                     //threadMonitor.waitAllMonitors();
                     try {
@@ -93,6 +200,8 @@ class TaskPlanter extends Thread {
             }
         
             synchronized(threadMonitor.getAllMonitors()) {
+                boolean assignedTask = false;
+
                 TaskThread freeThread = null;
                 for(TaskThread thread:mainThreads) {
                     if(thread.isThreadReadyForTask()) {
@@ -102,26 +211,47 @@ class TaskPlanter extends Thread {
                 }
 
                 if(freeThread == null) {
-                    for(int i = 0; i < outstandingTasks.size(); i++) {
-                        TaskThread owningThread = getThreadOwnerFromAllocatorThreads(outstandingTasks.get(i).getOwnedThread());
-                        if(owningThread != null && isSubThreadReady(owningThread)) {
-                            setTaskForSubThread(owningThread, outstandingTasks.get(i));
-                            outstandingTasks.remove(i);
+                    //the owner of an embedded task was recorded when it was executed and is waiting on it, so give it to the owner's sub thread
+                    for(int i = 0; i < embeddedTasks.size(); i++) {
+                        TaskThread owningThread = (TaskThread)embeddedTasks.get(i).getOwnedThread();
+                        if(getTaskGroup(embeddedTasks.get(i)).isCancelled()) {
+                            skipTask(embeddedTasks.remove(i));
                             i--;
+                            assignedTask = true;
+                        } else if(isSubThreadReady(owningThread) && getTaskGroup(embeddedTasks.get(i)).canStartTask()) {
+                            setTaskForSubThread(owningThread, embeddedTasks.get(i));
+                            embeddedTasks.remove(i);
+                            i--;
+                            assignedTask = true;
                         }
                     }
                 } else {
-                    synchronized(threadMonitor.getAllMonitors()) {
-                        FarmTask nextTask = outstandingTasks.remove(0);
-                        freeThread.setTask(nextTask);
+                    FarmTask nextTask = takeNextTask();
+
+                    if(nextTask != null) {
+                        //give the task to the thread that ran its chunk last time unless that thread is busy
+                        TaskThread preferredThread = affinityTable.getPreferredThread(nextTask);
+                        if(preferredThread != null && preferredThread.isThreadReadyForTask() && preferredThread.isRunningOn(threadMonitor)) {
+                            freeThread = preferredThread;
+                        }
+                        affinityTable.recordThread(nextTask, freeThread);
+
+                        startTask(freeThread, nextTask);
+                        assignedTask = true;
+
+                        //wakes any thread waiting for room in the submission queue
+                        threadMonitor.getAllMonitors().notifyAll();
                     }
                 }
 
-                try {
-					threadMonitor.getAllMonitors().wait();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
+                //keep assigning while there are free threads rather than waiting for the next notification
+                if(!assignedTask) {
+                    try {
+                        threadMonitor.getAllMonitors().wait();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
             }
             //}}
 
@@ -133,8 +263,13 @@ class TaskPlanter extends Thread {
      */
     public void printOutstandingTasks() {
         System.out.println("--OUTSTANDING TASKS--");
-        for(int i = 0; i < outstandingTasks.size(); i++) {
-            System.out.print(outstandingTasks.get(i) + ",");
+        synchronized(threadMonitor.getAllMonitors()) {
+            for(int i = 0; i < embeddedTasks.size(); i++) {
+                System.out.print(embeddedTasks.get(i) + ",");
+            }
+        }
+        for(int i = 0; i < submissionQueues.length; i++) {
+            System.out.print(submissionQueues[i].size() + " queued at " + Priority.values()[i] + ",");
         }
         System.out.println();
     }
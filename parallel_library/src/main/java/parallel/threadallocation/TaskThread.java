@@ -1,5 +1,6 @@
 package parallel.threadallocation;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -20,6 +21,8 @@ public class TaskThread extends Thread {
     private volatile List<TaskThread> allSubThreads;
     private volatile TaskThread subThread;
 
+    private Object[] workerLocals;
+
     /**
      * Creates a new TaskThread.
      * @param threadMonitor	A monitor used to notify when the thread is ready for a new task.
@@ -29,15 +32,18 @@ public class TaskThread extends Thread {
     public TaskThread(ThreadMonitor threadMonitor, List<TaskThread> subThreads, Map<FarmTask, TaskGroup> allTaskGroups) {
         threadFree = true;
         shutdownRequired = false;
+        retired = false;
         this.threadMonitor = threadMonitor;
         this.allTaskGroups = allTaskGroups;
         runningTask = null;
         allSubThreads = subThreads;
         subThread = null;
+        workerLocals = new Object[0];
     }
 
 
     private volatile boolean shutdownRequired;
+    private volatile boolean retired;
 
 
     /**
@@ -51,6 +57,31 @@ public class TaskThread extends Thread {
         return subThread;
     }
 
+    /**
+     * Gets a value stored for this thread by a WorkerLocal. Must only be called from this thread.
+     * @param index The index of the WorkerLocal.
+     * @return The stored value or null if nothing has been stored at the index.
+     */
+    public Object getWorkerLocal(int index) {
+        if(index < workerLocals.length) {
+            return workerLocals[index];
+        }
+
+        return null;
+    }
+
+    /**
+     * Stores a value for this thread for a WorkerLocal, which is kept until the thread is shut down. Must only be called from this thread.
+     * @param index The index of the WorkerLocal.
+     * @param value The value to store.
+     */
+    public void setWorkerLocal(int index, Object value) {
+        if(index >= workerLocals.length) {
+            workerLocals = Arrays.copyOf(workerLocals, Math.max(index + 1, workerLocals.length * 2));
+        }
+        workerLocals[index] = value;
+    }
+
     @Override
     public void run() {
         while(!shutdownRequired) {
@@ -65,8 +96,10 @@ public class TaskThread extends Thread {
                 }
             }
 
+            long startTime = System.nanoTime();
             runningTask.run();
-            
+            long taskNanos = System.nanoTime() - startTime;
+
             
             synchronized(threadMonitor.getAllMonitors()) {
                 //deincrement the task group
@@ -85,13 +118,13 @@ public class TaskThread extends Thread {
                 //System.out.println("Finished task " + runningTask);
                 runningTask = null;
                 threadFree = true;
+                if(retired) {
+                    shutdownRequired = true;
+                }
 
+                tg.removeRunningTask();
+                tg.recordCompletedTask(taskNanos);
                 tg.removeCompletedTask();
-                if(tg.completed()) {
-                    synchronized(tg) {
-                        tg.notifyAll();
-                    }
-                }
                 //threadMonitor.notifyAllFreeThread();
                 threadMonitor.getAllMonitors().notifyAll();
             }
@@ -114,6 +147,13 @@ public class TaskThread extends Thread {
         }
     }
 
+    /**
+     * @return The task the thread is running or null if it is free.
+     */
+    FarmTask getRunningTask() {
+        return runningTask;
+    }
+
     /**
      * A check to work out if the thread is ready for a new task.
      * @return True if the thread is waiting for a new task.
@@ -121,7 +161,27 @@ public class TaskThread extends Thread {
     public boolean isThreadReadyForTask() {
         return threadFree;
     }
+
+    /**
+     * A check to work out if the thread was created by the ThreadAllocator using the given monitor, as a main thread or a sub thread.
+     * @param threadMonitor The monitor of the ThreadAllocator.
+     * @return True if the thread belongs to the ThreadAllocator and has not been shut down.
+     */
+    boolean isRunningOn(ThreadMonitor threadMonitor) {
+        return this.threadMonitor == threadMonitor && !shutdownRequired;
+    }
     
+    /**
+     * Shuts down the thread once it has finished the task it is running, or straight away if it is free.
+     * Must be called while holding the ThreadAllocator's monitor, once the thread has been removed from the main threads so that it is given no more tasks.
+     */
+    void retire() {
+        retired = true;
+        if(threadFree) {
+            shutdownThread();
+        }
+    }
+
     /**
      * Shuts down the thread.
      */
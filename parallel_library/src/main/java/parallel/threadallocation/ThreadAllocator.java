@@ -6,6 +6,8 @@ import java.util.List;
 import java.util.Map;
 
 import parallel.FarmTask;
+import parallel.Priority;
+import parallel.RejectedTaskException;
 
 /**
  * Queues tasks to be executed in parallel.
@@ -14,41 +16,115 @@ import parallel.FarmTask;
  */
 public class ThreadAllocator {
 
+    /**
+     * The number of tasks that can wait for a thread before the overflow policy is used, unless another capacity is given.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
     private volatile ThreadMonitor threadMonitor;
     private volatile List<TaskThread> mainThreads;
     private volatile List<TaskThread> subThreads;
-    private volatile List<FarmTask> outstandingTasks;
+    private volatile SubmissionQueue[] submissionQueues;
+    private volatile List<FarmTask> embeddedTasks;
+    private volatile OverflowPolicy overflowPolicy;
 
     private volatile Map<FarmTask, TaskGroup> allTaskGroups;
 
     TaskPlanter taskPlanter;
 
+    private CpuQuota cpuQuota;
+
+    private boolean inline;
 
     /**
      * Creates a new ThreadAllocator and creates the given number of threads.
+     * The number of threads is limited to the CPU quota of the running program.
      * @param noOfThreads
      */
     public ThreadAllocator(int noOfThreads) {
+        this(noOfThreads, CpuQuota.getDefault());
+    }
+
+    /**
+     * Creates a new ThreadAllocator and creates the given number of threads, limited to the given CPU quota.
+     * @param noOfThreads Number of threads to be used in the ThreadAllocator.
+     * @param cpuQuota The CPU limits that the number of threads is kept within.
+     */
+    public ThreadAllocator(int noOfThreads, CpuQuota cpuQuota) {
+        this(noOfThreads, cpuQuota, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Creates a new ThreadAllocator and creates the given number of threads, limited to the given CPU quota,
+     * with a bounded queue for the tasks waiting for a thread.
+     * @param noOfThreads Number of threads to be used in the ThreadAllocator.
+     * @param cpuQuota The CPU limits that the number of threads is kept within.
+     * @param queueCapacity The most tasks of each priority that can wait for a thread, which is rounded up to a power of two of at least two.
+     * @param overflowPolicy What is done with a new task when the queue is full.
+     */
+    public ThreadAllocator(int noOfThreads, CpuQuota cpuQuota, int queueCapacity, OverflowPolicy overflowPolicy) {
+        this.cpuQuota = cpuQuota;
+        this.overflowPolicy = overflowPolicy;
+        noOfThreads = cpuQuota.clamp(noOfThreads);
+
         threadMonitor = new ThreadMonitor();
         mainThreads = new ArrayList<>();
         subThreads = new ArrayList<>();
-        outstandingTasks = new ArrayList<>();
+        //one queue for each priority, in the order of the priorities
+        submissionQueues = new SubmissionQueue[Priority.values().length];
+        for(int i = 0; i < submissionQueues.length; i++) {
+            submissionQueues[i] = new SubmissionQueue(queueCapacity);
+        }
+        embeddedTasks = new ArrayList<>();
         allTaskGroups = new HashMap<>();
 
         for(int i = 0; i < noOfThreads; i++) {
             mainThreads.add(new TaskThread(threadMonitor, subThreads, allTaskGroups));
             mainThreads.get(i).start();
         }
-        taskPlanter = new TaskPlanter(threadMonitor, mainThreads, subThreads, outstandingTasks, allTaskGroups);
+        taskPlanter = new TaskPlanter(threadMonitor, mainThreads, subThreads, submissionQueues, embeddedTasks, allTaskGroups);
         taskPlanter.start();
+        inline = false;
+    }
+
+    private ThreadAllocator() {
+        cpuQuota = null;
+        overflowPolicy = OverflowPolicy.CALLER_RUNS;
+        threadMonitor = new ThreadMonitor();
+        mainThreads = new ArrayList<>();
+        subThreads = new ArrayList<>();
+        submissionQueues = new SubmissionQueue[0];
+        embeddedTasks = new ArrayList<>();
+        allTaskGroups = new HashMap<>();
+        taskPlanter = null;
+        inline = true;
+    }
+
+    /**
+     * Creates a ThreadAllocator without any threads of its own, which runs each task on the thread that executes it
+     * before execute returns. Used to run a farm's tasks one after another on the calling thread.
+     * An inline ThreadAllocator cannot be resized and has nothing to shut down.
+     * @return The new ThreadAllocator.
+     */
+    public static ThreadAllocator createInline() {
+        return new ThreadAllocator();
+    }
+
+    public boolean isInline() {
+        return inline;
     }
 
     /**
      * Changes the number of threads being used in the ThreadAllocator.
      * It must wait for all tasks on the current threads to finish before changing the number of threads in the allocator.
+     * The number of threads is limited to the CPU quota.
      * @param noOfThreads Number of threads to be used in the ThreadAllocator.
      */
     public void setNoOfThreads(int noOfThreads) {
+        if(inline) {
+            throw new IllegalStateException("An inline ThreadAllocator cannot be resized.");
+        }
+        noOfThreads = cpuQuota.clamp(noOfThreads);
         waitForInactivity();
 
         int difference = noOfThreads - mainThreads.size();
@@ -69,17 +145,74 @@ public class ThreadAllocator {
         }
     }
 
+    /**
+     * Reduces the number of threads being used in the ThreadAllocator without waiting for the running tasks to finish.
+     * Free threads are shut down straight away and busy threads are shut down once they have finished their task,
+     * so tasks that are running, and the farms nested within them, carry on while the pool shrinks.
+     * @param noOfThreads Number of threads to be used in the ThreadAllocator, which has no effect if it is more than the current number.
+     */
+    public void reduceNoOfThreads(int noOfThreads) {
+        if(inline) {
+            throw new IllegalStateException("An inline ThreadAllocator cannot be resized.");
+        }
+        noOfThreads = Math.max(1, noOfThreads);
+
+        synchronized(threadMonitor.getAllMonitors()) {
+            //free threads are retired first so that as few running tasks as possible lose their thread's WorkerLocals afterwards
+            for(int i = mainThreads.size() - 1; i >= 0 && mainThreads.size() > noOfThreads; i--) {
+                if(mainThreads.get(i).isThreadReadyForTask()) {
+                    mainThreads.remove(i).retire();
+                }
+            }
+            while(mainThreads.size() > noOfThreads) {
+                mainThreads.remove(mainThreads.size() - 1).retire();
+            }
+            threadMonitor.getAllMonitors().notifyAll();
+        }
+    }
+
     public int getNoOfThreads() {
+        if(inline) {
+            return 1;
+        }
         return mainThreads.size();
     }
 
+    public CpuQuota getCpuQuota() {
+        return cpuQuota;
+    }
+
+    public int getQueueCapacity() {
+        if(inline) {
+            return 0;
+        }
+        return submissionQueues[0].getCapacity();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Changes what is done with a new task when the submission queue is full, which applies to tasks executed after the change.
+     * @param overflowPolicy The new policy.
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
     /**
      * Changes the number of threads being used in the ThreadAllocator.
      * The method does not wait for tasks on the current threads to finish before adding new threads.
-     * The method throws an exception if the number of threads is being reduced
+     * The method throws an exception if the number of threads is being reduced.
+     * The number of threads is limited to the CPU quota.
      * @param noOfThreads Number of threads to be used in the ThreadAllocator.
      */
     public void setNoOfThreadsImmediately(int noOfThreads) {
+        if(inline) {
+            throw new IllegalStateException("An inline ThreadAllocator cannot be resized.");
+        }
+        noOfThreads = cpuQuota.clamp(noOfThreads);
         int difference = noOfThreads - mainThreads.size();
 
         if(difference > 0) {
@@ -96,29 +229,125 @@ public class ThreadAllocator {
     }
 
     /**
-     * Executes a new task for the given farm.
+     * Executes a new task for the given farm, queued behind the waiting tasks of the same or a higher priority.
+     * The task is not given a thread while the farm already has as many running tasks as its concurrency limit.
+     * If the submission queue for the farm's priority is full the overflow policy is used, except for tasks executed from the allocator's own threads,
+     * which are kept apart from the queue so they can be given to a sub thread while every main thread is busy.
+     * A rejected task cancels its farm, and the RejectedTaskException is only thrown once the farm's tasks that were already executed have finished or been skipped.
      * @param newTask The farm in which the task to execute comes from. The task is built on the current state of variables in the object.
      */
     public void execute(FarmTask newTask) {
+        newTask.setOwnedThread();
+        if(inline) {
+            if(!newTask.isCancelled()) {
+                newTask.run();
+            } else {
+                newTask.skip();
+            }
+            return;
+        }
+        Thread owner = newTask.getOwnedThread();
+        boolean embedded = owner instanceof TaskThread && ((TaskThread)owner).isRunningOn(threadMonitor);
+
         synchronized(allTaskGroups) {
+            //a farm executed from another farm's task is nested within that farm
+            TaskGroup parent = null;
+            if(embedded && ((TaskThread)owner).getRunningTask() != newTask) {
+                parent = allTaskGroups.get(((TaskThread)owner).getRunningTask());
+            }
+
             if(allTaskGroups.containsKey(newTask)) {
-                allTaskGroups.get(newTask).addOutstandingTask();
+                allTaskGroups.get(newTask).addOutstandingTask(parent);
             } else {
-                allTaskGroups.put(newTask, new TaskGroup());
+                allTaskGroups.put(newTask, new TaskGroup(newTask, parent));
+            }
+            allTaskGroups.get(newTask).setConcurrencyLimit(newTask.getConcurrencyLimit());
+        }
+
+        if(embedded) {
+            //there is at most one of these for each of the allocator's threads, as each waits for its task to be picked up
+            synchronized(threadMonitor.getAllMonitors()) {
+                embeddedTasks.add(newTask);
+                threadMonitor.getAllMonitors().notifyAll();
+            }
+            return;
+        }
+
+        SubmissionQueue submissionQueue = submissionQueues[newTask.getPriority().ordinal()];
+        if(!submissionQueue.offer(newTask)) {
+            switch(overflowPolicy) {
+            case CALLER_RUNS:
+                newTask.run();
+                completeTask(newTask);
+                return;
+            case REJECT:
+                //a farm is not left to run in part, so its tasks that were already executed are skipped or left to finish first
+                completeTask(newTask);
+                newTask.cancel();
+                waitUntilComplete(newTask);
+                throw new RejectedTaskException(submissionQueue.getCapacity());
+            default:
+                synchronized(threadMonitor.getAllMonitors()) {
+                    //the TaskPlanter notifies once it has taken a task from the queue
+                    while(!submissionQueue.offer(newTask)) {
+                        try {
+                            threadMonitor.getAllMonitors().wait();
+                        } catch (InterruptedException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
             }
         }
-        newTask.setOwnedThread();
 
         synchronized(threadMonitor.getAllMonitors()) {
-            outstandingTasks.add(newTask);
             //threadMonitor.notifyAllOutstandingTasks();
             threadMonitor.getAllMonitors().notifyAll();
         }
+    }
 
+    /**
+     * Removes a task that was not given to a thread from its farm's task group, as a thread would once it had run the task.
+     */
+    private void completeTask(FarmTask task) {
+        synchronized(threadMonitor.getAllMonitors()) {
+            TaskGroup tg;
+            synchronized(allTaskGroups) {
+                tg = allTaskGroups.get(task);
+            }
+
+            tg.removeCompletedTask();
+            threadMonitor.getAllMonitors().notifyAll();
+        }
     }
 
     /**
-     * Waits until all the tasks in a farm have completed.
+     * Gets the group of a farm's tasks, which holds the metrics of the farm and the farms nested within it.
+     * @param taskGroupKey The farm whose group to get.
+     * @return The group or null if none of the farm's tasks have been executed on the allocator.
+     */
+    public TaskGroup getTaskGroup(FarmTask taskGroupKey) {
+        synchronized(allTaskGroups) {
+            return allTaskGroups.get(taskGroupKey);
+        }
+    }
+
+    /**
+     * Checks whether a farm's tasks are being skipped because it or a farm it is nested within has been cancelled.
+     * @param taskGroupKey The farm to check.
+     * @return True if the farm's tasks that have not started are being skipped.
+     */
+    public boolean isCancelled(FarmTask taskGroupKey) {
+        TaskGroup tg = getTaskGroup(taskGroupKey);
+        if(tg == null) {
+            return taskGroupKey.isCancelled();
+        }
+
+        return tg.isCancelled();
+    }
+
+    /**
+     * Waits until all the tasks in a farm, and in the farms nested within it, have completed.
      * @param taskGroupKey The farm to wait for.
      */
     public void waitUntilComplete(FarmTask taskGroupKey) {
@@ -137,10 +366,31 @@ public class ThreadAllocator {
         }
     }
     
+    /**
+     * Runs the given listener once all the tasks that have been executed for a farm have completed,
+     * without the calling thread having to wait. Must be called after all the farm's tasks have been executed.
+     * @param taskGroupKey The farm to listen for.
+     * @param listener The listener to run, which is run straight away if the farm has no outstanding tasks.
+     */
+    public void addCompletionListener(FarmTask taskGroupKey, Runnable listener) {
+        TaskGroup tg;
+        synchronized(allTaskGroups) {
+            tg = allTaskGroups.get(taskGroupKey);
+        }
+
+        if(tg == null) {
+            listener.run();
+        } else {
+            tg.addCompletionListener(listener);
+        }
+    }
+
     /**
      * Shuts down all threads in the ThreadAllocator without waiting for them to finish their current task.
      */
     public void shutdown() {
+        if(inline) return;
+
         for(TaskThread thread:mainThreads) {
             thread.shutdownThread();
             synchronized(thread) {
@@ -154,6 +404,8 @@ public class ThreadAllocator {
      * Waits until there are no outstanding tasks to complete and all threads have finished executing.
      */
     public void waitForInactivity() {
+        if(inline) return;
+
         while(true) {
             synchronized(threadMonitor.getAllMonitors()) {
                 boolean threadsFree = true;
@@ -164,7 +416,7 @@ public class ThreadAllocator {
                     }
                 }
                 
-                if(threadsFree && outstandingTasks.size() == 0) {
+                if(threadsFree && !taskPlanter.hasOutstandingTasks()) {
                     break;
                 }
 
@@ -0,0 +1,158 @@
+package parallel;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static java.time.Duration.ofSeconds;
+
+public class ChunkResultsTest {
+    @Test
+    public void resultsAreGivenInChunkOrder() {
+        RangeSumResultTest rsrt = new RangeSumResultTest(0, 10000, 8);
+        rsrt.setSequentialThreshold(0);
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            ChunkResults<long[]> results = rsrt.start(4);
+
+            int expectedStart = 0;
+            long total = 0;
+            for(long[] result:results.inIndexOrder()) {
+                assertTrue(result[0] == expectedStart, "chunk starting at " + result[0] + " was out of order");
+                expectedStart = (int)result[1];
+                total += result[2];
+            }
+            assertTrue(expectedStart == 10000, "the chunks did not cover the loop");
+            assertTrue(total == 9999L * 10000 / 2, "the chunks were summed incorrectly");
+        });
+    }
+
+    @Test
+    public void completionOrderDoesNotWaitForSlowChunk() {
+        RangeSumResultTest rsrt = new RangeSumResultTest(0, 10000, 8);
+        rsrt.setSequentialThreshold(0);
+        rsrt.chunkDelayMillis = 200;
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            ChunkResults<long[]> results = rsrt.start(4);
+
+            int noOfResults = 0;
+            long total = 0;
+            for(long[] result:results.inCompletionOrder()) {
+                noOfResults++;
+                total += result[2];
+            }
+            assertTrue(noOfResults == 8, "got " + noOfResults + " results");
+            assertTrue(total == 9999L * 10000 / 2, "the chunks were summed incorrectly");
+        });
+    }
+
+    @Test
+    public void firstResultArrivesBeforeLoopCompletes() {
+        RangeSumResultTest rsrt = new RangeSumResultTest(0, 10000, 40);
+        rsrt.setSequentialThreshold(0);
+        //every chunk after the first is held back until the first result has been read
+        rsrt.laterChunksReleased = new CountDownLatch(1);
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            ChunkResults<long[]> results = rsrt.start(4);
+
+            long[] first = results.get(0);
+            boolean completeAtFirst = results.isComplete();
+            rsrt.laterChunksReleased.countDown();
+
+            long total = 0;
+            for(long[] result:results.inIndexOrder()) {
+                total += result[2];
+            }
+
+            assertTrue(first[0] == 0);
+            assertFalse(completeAtFirst, "the loop had completed before its first result was read");
+            assertTrue(total == 9999L * 10000 / 2, "the chunks were summed incorrectly");
+        });
+    }
+
+    @Test
+    public void skippedChunksFailWithCancellation() {
+        boolean[] cancelOnRun = {true};
+        RangeSumResultTest rsrt = new RangeSumResultTest(0, 10000, 4) {
+            @Override
+            protected long[] chunkOperation(int rangeStart, int rangeEnd) {
+                if(rangeStart == 0 && cancelOnRun[0]) {
+                    cancel();
+                }
+                return super.chunkOperation(rangeStart, rangeEnd);
+            }
+        };
+        rsrt.setSequentialThreshold(0);
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            //with one chunk running at a time the first chunk cancels the loop before the others start
+            ChunkResults<long[]> results = rsrt.start(1);
+
+            assertTrue(results.get(0)[0] == 0, "the first chunk's result was lost");
+            for(int i = 1; i < 4; i++) {
+                int chunk = i;
+                RuntimeException failure = assertThrows(RuntimeException.class, () -> results.get(chunk));
+                assertTrue(failure.getCause() instanceof CancellationException, "chunk " + chunk + " failed with " + failure.getCause());
+            }
+        });
+
+        //the cancellation is cleared when the loop is started again
+        cancelOnRun[0] = false;
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            ChunkResults<long[]> results = rsrt.start(1);
+            assertTrue(results.get(3)[1] == 10000, "the last chunk's result was lost");
+        });
+    }
+
+    @Test
+    public void failedAllocationFailsEveryUnpublishedChunk() {
+        CountDownLatch completed = new CountDownLatch(1);
+        RangeSumResultTest rsrt = new RangeSumResultTest(0, 10000, 4) {
+            @Override
+            protected void completeExecution() {
+                super.completeExecution();
+                completed.countDown();
+            }
+        };
+        rsrt.setSequentialThreshold(0);
+        //the loop is split by the iteration cost as its chunks are allocated
+        rsrt.setIterationCost(i -> {
+            throw new IllegalStateException("The cost of iteration " + i + " is unknown.");
+        });
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            ChunkResults<long[]> results = rsrt.start(4);
+
+            for(int i = 0; i < 4; i++) {
+                int chunk = i;
+                RuntimeException failure = assertThrows(RuntimeException.class, () -> results.get(chunk));
+                assertTrue(failure.getCause() instanceof IllegalStateException, "chunk " + chunk + " failed with " + failure.getCause());
+            }
+            assertTrue(completed.await(5, TimeUnit.SECONDS), "the run was not completed");
+        });
+    }
+
+    @Test
+    public void resultsCannotBeSplit() {
+        RangeSumResultTest rsrt = new RangeSumResultTest(0, 10000, 8);
+        assertThrows(IllegalArgumentException.class, () -> rsrt.setSchedule(Schedule.SPLITTABLE));
+    }
+
+    @Test
+    public void failedChunkIsThrownToConsumer() {
+        ChunkResults<String> results = new ChunkResults<>(2);
+        results.fail(1, new IllegalStateException());
+        results.publish(0, "first");
+
+        assertTrue(results.get(0).equals("first"), "the first result was lost");
+        assertThrows(RuntimeException.class, () -> results.get(1));
+    }
+}
@@ -0,0 +1,34 @@
+package parallel;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class LatchLoopTest extends ParallelForFarmTask {
+
+    public CountDownLatch awaited;
+    public CountDownLatch released;
+    public volatile boolean timedOut;
+
+    public LatchLoopTest(int rangeStart, int rangeEnd, int noOfChunks, CountDownLatch awaited, CountDownLatch released) {
+        super(rangeStart, rangeEnd, noOfChunks);
+        this.awaited = awaited;
+        this.released = released;
+        timedOut = false;
+    }
+
+    @Override
+    public void operation(int rangeStart, int rangeEnd) {
+        if(released != null) {
+            released.countDown();
+        }
+        if(awaited != null) {
+            try {
+                if(!awaited.await(1, TimeUnit.SECONDS)) {
+                    timedOut = true;
+                }
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package parallel;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LineSumTest extends MappedFileFarmTask {
+
+    public AtomicLong sum = new AtomicLong(0);
+    public AtomicLong lines = new AtomicLong(0);
+
+    public LineSumTest(Path file, int noOfChunks) {
+        super(file, (byte)'\n', noOfChunks);
+    }
+
+    @Override
+    protected void operation(ByteBuffer chunk, long chunkStart) {
+        long chunkSum = 0;
+        long chunkLines = 0;
+        long value = 0;
+        while(chunk.hasRemaining()) {
+            byte b = chunk.get();
+            if(b == '\n') {
+                chunkSum += value;
+                chunkLines++;
+                value = 0;
+            } else {
+                value = value * 10 + (b - '0');
+            }
+        }
+
+        sum.addAndGet(chunkSum);
+        lines.addAndGet(chunkLines);
+    }
+}
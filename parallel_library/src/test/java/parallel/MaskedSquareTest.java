@@ -0,0 +1,32 @@
+package parallel;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+public class MaskedSquareTest extends IndexSetFarmTask {
+
+    public int[] output;
+    public List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<>());
+
+    public MaskedSquareTest(int[] output, boolean[] mask, int rangeStart, int rangeEnd, int noOfChunks) {
+        super(mask, rangeStart, rangeEnd, noOfChunks);
+        this.output = output;
+    }
+
+    public MaskedSquareTest(int[] output, BitSet indices, int noOfChunks) {
+        super(indices, noOfChunks);
+        this.output = output;
+    }
+
+    @Override
+    protected void operation(int[] indices, int positionStart, int positionEnd) {
+        chunkSizes.add(positionEnd - positionStart);
+
+        for(int p = positionStart; p < positionEnd; p++) {
+            int i = indices[p];
+            output[i] = i * i;
+        }
+    }
+}
@@ -1,8 +1,25 @@
 package parallel;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
 
+import parallel.threadallocation.CpuQuota;
+import parallel.threadallocation.TaskThread;
+import parallel.threadallocation.ThreadAllocator;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static java.time.Duration.ofSeconds;
@@ -42,9 +59,651 @@ public class ParallelExecutorTest {
         assertTrue(singleInt == 25);
     }
 
+    @Test
+    public void smallLoopRunsSequentially() {
+        Thread[] runningThreads = new Thread[32];
+        ThreadRecordingTest trt = new ThreadRecordingTest(runningThreads, 0, 32, 4);
+        trt.setSequentialThreshold(64);
+
+        ParallelExecutor.executeParallel(trt, 4);
+
+        for(int i = 0; i < 32; i++) {
+            assertTrue(runningThreads[i] == Thread.currentThread(), "iteration " + i + " was not run on the calling thread");
+        }
+    }
+
+    @Test
+    public void largeLoopRunsInParallel() {
+        Thread[] runningThreads = new Thread[128];
+        ThreadRecordingTest trt = new ThreadRecordingTest(runningThreads, 0, 128, 4);
+        trt.setSequentialThreshold(64);
+
+        ParallelExecutor.executeParallel(trt, 4);
+
+        for(int i = 0; i < 128; i++) {
+            assertTrue(runningThreads[i] != null && runningThreads[i] != Thread.currentThread(), "iteration " + i + " was not run on the ThreadAllocator");
+        }
+    }
+
+    @Test
+    public void cheapLoopRunsSequentiallyOnceCalibrated() {
+        int[] manyInts = new int[1000];
+        ParallelForTest pft = new ParallelForTest(manyInts, 0, 1000, 10);
+        pft.setSequentialCostThreshold(Long.MAX_VALUE);
+        IterationCostModel.reset(ParallelForTest.class);
+
+        //the first run has no measurements so it cannot be estimated
+        assertFalse(pft.shouldRunSequentially());
+        ParallelExecutor.executeParallel(pft, 4);
+        assertTrue(pft.shouldRunSequentially());
+    }
+
+    @Test
+    public void autoTunedLoopConverges() {
+        AutoTuner.reset(ParallelForTest.class);
+
+        int runs = 0;
+        while(!AutoTuner.getTuner(ParallelForTest.class, ParallelExecutor.AUTO, ParallelExecutor.AUTO, 1000).isConverged() && runs < AutoTuner.MAX_RUNS_TO_CONVERGE) {
+            int[] manyInts = new int[1000];
+            ParallelForTest pft = new ParallelForTest(manyInts, 0, 1000, ParallelExecutor.AUTO);
+
+            ParallelExecutor.executeParallel(pft, ParallelExecutor.AUTO);
+
+            for(int i = 0; i < 1000; i++) {
+                assertTrue(manyInts[i] == i, "error at i=" + i + " manyInts[i]=" + manyInts[i]);
+            }
+            runs++;
+        }
+
+        assertTrue(AutoTuner.getTuner(ParallelForTest.class, ParallelExecutor.AUTO, ParallelExecutor.AUTO, 1000).isConverged(), "tuner did not converge after " + runs + " runs");
+    }
+
+    @Test
+    public void convergedTunerRetunesForDifferentLoopSize() {
+        AutoTuner tuner = new AutoTuner("Loop", 4, 2, true, true, 4, 1000);
+        for(int runs = 0; runs < AutoTuner.MAX_RUNS_TO_CONVERGE && !tuner.isConverged(); runs++) {
+            tuner.beginTrial(1000).complete();
+        }
+        assertTrue(tuner.isConverged());
+
+        tuner.beginTrial(3000).complete();
+        assertTrue(tuner.isConverged());
+
+        AutoTuner.Trial trial = tuner.beginTrial(100000);
+        assertFalse(tuner.isConverged());
+        assertTrue(trial.getNoOfChunks() == tuner.getBestNoOfChunks() && trial.getNoOfThreads() == tuner.getBestNoOfThreads());
+    }
+
+    @Test
+    public void tuningProfileRestoresSettings() throws IOException {
+        Path profileFile = Files.createTempDirectory("tuning").resolve("profile.properties");
+        TuningProfile.setProfilePath(profileFile.toString());
+        AutoTuner.reset(ParallelForTest.class);
+
+        for(int runs = 0; runs < AutoTuner.MAX_RUNS_TO_CONVERGE && !AutoTuner.getTuner(ParallelForTest.class, ParallelExecutor.AUTO, ParallelExecutor.AUTO, 1000).isConverged(); runs++) {
+            ParallelExecutor.executeParallel(new ParallelForTest(new int[1000], 0, 1000, ParallelExecutor.AUTO), ParallelExecutor.AUTO);
+        }
+        AutoTuner tuned = AutoTuner.getTuner(ParallelForTest.class, ParallelExecutor.AUTO, ParallelExecutor.AUTO, 1000);
+        assertTrue(Files.exists(profileFile));
+
+        //a new run of the program reads the profile again
+        TuningProfile.setProfilePath(profileFile.toString());
+        AutoTuner.reset(ParallelForTest.class);
+        AutoTuner restored = AutoTuner.getTuner(ParallelForTest.class, ParallelExecutor.AUTO, ParallelExecutor.AUTO, 1200);
+
+        assertTrue(restored.isConverged());
+        assertTrue(restored.getBestNoOfChunks() == tuned.getBestNoOfChunks());
+        assertTrue(restored.getBestNoOfThreads() == tuned.getBestNoOfThreads());
+
+        //a restored tuner tunes again once the loop has grown well past the size it was tuned for
+        restored.beginTrial(100000).complete();
+        assertFalse(restored.isConverged());
+
+        //entries are not used for very different loop sizes
+        AutoTuner.reset(ParallelForTest.class);
+        assertFalse(AutoTuner.getTuner(ParallelForTest.class, ParallelExecutor.AUTO, ParallelExecutor.AUTO, 100000).isConverged());
+
+        AutoTuner.reset(ParallelForTest.class);
+        TuningProfile.setProfilePath(null);
+    }
+
+    @Test
+    public void regionKeepsChunksOnTheSameThreads() {
+        Thread[] runningThreads = new Thread[1000];
+        ThreadRecordingTest trt = new ThreadRecordingTest(runningThreads, 0, 1000, 4);
+
+        ParallelRegion region = ParallelExecutor.openRegion(trt, 4);
+        region.iterate();
+        Thread[] firstThreads = runningThreads.clone();
+
+        for(int iteration = 0; iteration < 200; iteration++) {
+            Arrays.fill(runningThreads, null);
+            region.iterate();
+
+            for(int i = 0; i < 1000; i++) {
+                assertTrue(runningThreads[i] == firstThreads[i], "iteration " + i + " moved thread on region iteration " + iteration);
+            }
+        }
+
+        region.close();
+        assertTrue(firstThreads[0] == Thread.currentThread());
+    }
+
+    @Test
+    public void regionTeamRunsOnThreadAllocator() {
+        Thread[] runningThreads = new Thread[1000];
+        ThreadRecordingTest trt = new ThreadRecordingTest(runningThreads, 0, 1000, 4);
+
+        ParallelRegion region = new ParallelRegion(trt, 2);
+        region.iterate();
+        region.close();
+
+        assertTrue(region.getNoOfThreads() == 2);
+        assertTrue(runningThreads[999] instanceof TaskThread, "the region's chunk ran on " + runningThreads[999]);
+    }
+
+    @Test
+    public void affinityKeepsChunksOnTheSameThreads() {
+        Thread[] runningThreads = new Thread[1000];
+        ThreadRecordingTest trt = new ThreadRecordingTest(runningThreads, 0, 1000, 4);
+        trt.setSchedule(Schedule.AFFINITY);
+        trt.chunkDelayMillis = 5;
+        ParallelExecutor.executeParallel(trt, 4);
+        Thread[] firstThreads = runningThreads.clone();
+
+        for(int run = 0; run < 20; run++) {
+            trt = new ThreadRecordingTest(runningThreads, 0, 1000, 4);
+            trt.setSchedule(Schedule.AFFINITY);
+            trt.chunkDelayMillis = 5;
+            ParallelExecutor.executeParallel(trt, 4);
+
+            for(int i = 0; i < 1000; i++) {
+                assertTrue(runningThreads[i] == firstThreads[i], "iteration " + i + " moved thread on run " + run);
+            }
+        }
+    }
+
+    @Test
+    public void splittableLoopSharesTheSlowChunk() throws IOException {
+        Thread[] runningThreads = new Thread[400];
+        ThreadRecordingTest trt = new ThreadRecordingTest(runningThreads, 0, 400, 4);
+        trt.setSchedule(Schedule.SPLITTABLE);
+        trt.slowIterationsEnd = 100;
+
+        //the allocator is given its own CPU quota so that the loop runs on four threads on any machine
+        ThreadAllocator ta = new ThreadAllocator(4, new CpuQuota(Files.createTempDirectory("cgroup"), 4));
+        trt.allocateTasks(ta);
+        ta.waitUntilComplete(trt);
+        ta.shutdown();
+
+        for(int i = 0; i < 400; i++) {
+            assertTrue(runningThreads[i] != null, "iteration " + i + " was not run");
+        }
+
+        //the first chunk holds every slow iteration so the other threads should have split it between them
+        Set<Thread> slowThreads = new HashSet<>(Arrays.asList(runningThreads).subList(0, 100));
+        assertTrue(slowThreads.size() > 1, "the slow chunk was only run on one thread");
+    }
+
+    @Test
+    public void iterationCostEvensOutTriangularChunks() {
+        Thread[] runningThreads = new Thread[1000];
+        ThreadRecordingTest trt = new ThreadRecordingTest(runningThreads, 0, 1000, 4);
+        trt.setSequentialThreshold(0);
+        trt.setIterationCost(i -> i + 1);
+        ParallelExecutor.executeParallel(trt, 4);
+
+        //iteration i does i + 1 units of work, as in a loop over j <= i
+        long totalCost = 1000L * 1001 / 2;
+        assertTrue(trt.chunks.size() == 4, "the loop was not split into four chunks");
+        for(int[] chunk:trt.chunks) {
+            long chunkCost = 0;
+            for(int i = chunk[0]; i < chunk[1]; i++) {
+                chunkCost += i + 1;
+            }
+            assertTrue(Math.abs(chunkCost - totalCost / 4) < totalCost / 100, "chunk " + chunk[0] + " to " + chunk[1] + " is unbalanced");
+        }
+    }
+
+    @Test
+    public void scratchArraysAreReusedAcrossChunks() {
+        int[] values = new int[1000];
+        for(int i = 0; i < 1000; i++) {
+            values[i] = i;
+        }
+
+        ScratchTest st = new ScratchTest(values, new int[1000], 0, 1000, 16);
+        st.setSequentialThreshold(0);
+        for(int run = 0; run < 10; run++) {
+            st.reversed = new int[1000];
+            ParallelExecutor.executeParallel(st, 4);
+
+            //each chunk of 62 values, or 70 for the last chunk, is reversed
+            for(int chunk = 0; chunk < 16; chunk++) {
+                int start = chunk * 62;
+                int end = (chunk == 15) ? 1000 : start + 62;
+                for(int i = start; i < end; i++) {
+                    assertTrue(st.reversed[i] == start + end - 1 - i, "error at i=" + i + " on run " + run);
+                }
+            }
+        }
+
+        //a thread only replaces its scratch array when it first runs the longer last chunk
+        assertTrue(st.scratchArrays.size() <= st.runningThreads.size() * 2, "a scratch array was allocated for each chunk");
+    }
+
+    @Test
+    public void bufferChunksAreAlignedToRecordsAndCacheLines() {
+        //records of an int id and a long value
+        ByteBuffer buffer = ByteBuffer.allocateDirect(10000 * 12);
+        long expected = 0;
+        for(int i = 0; i < 10000; i++) {
+            buffer.putInt(i);
+            buffer.putLong(i * 7L);
+            expected += i * 7L;
+        }
+        buffer.flip();
+
+        RecordSumTest rst = new RecordSumTest(buffer, 7);
+        rst.setSequentialThreshold(0);
+        ParallelExecutor.executeParallel(rst, 4);
+
+        assertTrue(rst.recordsRead.get() == 10000, "not every record was read");
+        assertTrue(rst.sum.get() == expected, "the records were summed incorrectly");
+        assertTrue(rst.firstRecords.size() == 7, "the records were not split into seven chunks");
+        for(int firstRecord:rst.firstRecords) {
+            assertTrue(firstRecord * 12 % ParallelBufferFarmTask.CACHE_LINE_SIZE == 0, "the chunk at record " + firstRecord + " does not start on a cache line");
+        }
+    }
+
+    @Test
+    public void mappedFileChunksEndOnLines() throws IOException {
+        Path file = Files.createTempFile("lines", ".txt");
+        StringBuilder lines = new StringBuilder();
+        long expected = 0;
+        for(int i = 0; i < 100000; i++) {
+            lines.append(i * 13).append('\n');
+            expected += i * 13;
+        }
+        Files.write(file, lines.toString().getBytes(StandardCharsets.US_ASCII));
+
+        try {
+            LineSumTest lst = new LineSumTest(file, 9);
+            ParallelExecutor.executeParallel(lst, 4);
+
+            //a line split between two chunks would be read as two numbers
+            assertTrue(lst.lines.get() == 100000, "read " + lst.lines.get() + " lines");
+            assertTrue(lst.sum.get() == expected, "the lines were summed incorrectly");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void farmRunsAfterShutdown() {
+        int[] manyInts = new int[1000];
+        ParallelForTest pft = new ParallelForTest(manyInts, 0, 1000, 10);
+        ParallelExecutor.executeParallel(new ParallelForTest(new int[1000], 0, 1000, 10), 4);
+        ParallelExecutor.shutdownNow();
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            ParallelExecutor.executeParallel(pft, 4);
+        });
+
+        for(int i = 0; i < 1000; i++) {
+            assertTrue(manyInts[i] == i, "error at i=" + i + " manyInts[i]=" + manyInts[i]);
+        }
+    }
 
     @AfterAll
     public static void performShutdown() {
         ParallelExecutor.shutdownNow();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void doacrossLoopMatchesSequential() {
+        int distance = 3;
+        long[] expected = new long[10000];
+        long[] values = new long[10000];
+        for(int i = 0; i <= distance; i++) {
+            expected[i] = i;
+            values[i] = i;
+        }
+        for(int i = distance + 1; i < expected.length; i++) {
+            expected[i] = expected[i - distance] * 3 + expected[i - distance - 1] + i;
+        }
+
+        RecurrenceTest rt = new RecurrenceTest(values, distance + 1, values.length, 4, distance);
+        rt.setSequentialThreshold(0);
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            ParallelExecutor.executeParallel(rt, 4);
+        });
+
+        assertTrue(Arrays.equals(expected, values));
+    }
+
+    @Test
+    public void doacrossLoopRunsWithinBusyFarm() {
+        int distance = 3;
+        //one section for each thread the pool can have, so that every main thread is running a section
+        int noOfSections = CpuQuota.getDefault().clamp(2);
+        long[] expected = new long[10000];
+        long[][] values = new long[noOfSections][10000];
+        for(int i = 0; i <= distance; i++) {
+            expected[i] = i;
+            for(int s = 0; s < noOfSections; s++) {
+                values[s][i] = i;
+            }
+        }
+        for(int i = distance + 1; i < expected.length; i++) {
+            expected[i] = expected[i - distance] * 3 + expected[i - distance - 1] + i;
+        }
+        CountDownLatch started = new CountDownLatch(noOfSections);
+        ParallelExecutor.setPoolSize(noOfSections);
+
+        //the doacross workers of each section can then only be given its sub thread
+        Runnable[] sections = new Runnable[noOfSections];
+        for(int s = 0; s < noOfSections; s++) {
+            long[] sectionValues = values[s];
+            sections[s] = () -> {
+                started.countDown();
+                try {
+                    started.await();
+                } catch(InterruptedException e) {
+                    e.printStackTrace();
+                }
+                RecurrenceTest rt = new RecurrenceTest(sectionValues, distance + 1, sectionValues.length, 4, distance);
+                rt.setSequentialThreshold(0);
+                ParallelExecutor.executeParallel(rt, 4);
+            };
+        }
+
+        try {
+            assertTimeoutPreemptively(ofSeconds(10), () -> {
+                ParallelExecutor.executeSections(noOfSections, sections);
+            });
+        } finally {
+            ParallelExecutor.setPoolSize(ParallelExecutor.AUTO);
+        }
+
+        for(int s = 0; s < noOfSections; s++) {
+            assertTrue(Arrays.equals(expected, values[s]), "error in section " + s);
+        }
+    }
+
+    @Test
+    public void doacrossLoopKeepsWithinConcurrencyLimit() throws IOException {
+        int distance = 3;
+        long[] expected = new long[100000];
+        long[] values = new long[100000];
+        for(int i = 0; i <= distance; i++) {
+            expected[i] = i;
+            values[i] = i;
+        }
+        for(int i = distance + 1; i < expected.length; i++) {
+            expected[i] = expected[i - distance] * 3 + expected[i - distance - 1] + i;
+        }
+
+        //the allocator has more threads than the farm may use, so workers beyond the limit would never start
+        ThreadAllocator ta = new ThreadAllocator(8, new CpuQuota(Files.createTempDirectory("cgroup"), 8));
+        RecurrenceTest rt = new RecurrenceTest(values, distance + 1, values.length, 10, distance);
+        rt.setConcurrencyLimit(4);
+        rt.prepareExecution(4);
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            rt.allocateTasks(ta);
+            ta.waitUntilComplete(rt);
+        });
+        ta.shutdown();
+
+        assertTrue(Arrays.equals(expected, values));
+    }
+
+    @Test
+    public void wavefrontMatchesSequential() {
+        long[][] expected = new long[300][200];
+        long[][] table = new long[300][200];
+        for(int i = 0; i < 300; i++) {
+            expected[i][0] = table[i][0] = i;
+        }
+        for(int j = 0; j < 200; j++) {
+            expected[0][j] = table[0][j] = j;
+        }
+        for(int i = 1; i < 300; i++) {
+            for(int j = 1; j < 200; j++) {
+                expected[i][j] = (expected[i-1][j] + expected[i][j-1] + expected[i-1][j-1]) % 1000003;
+            }
+        }
+
+        WavefrontTest wt = new WavefrontTest(table, 7);
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            ParallelExecutor.executeParallel(wt, 4);
+        });
+
+        for(int i = 0; i < 300; i++) {
+            assertTrue(Arrays.equals(expected[i], table[i]), "error in row " + i);
+        }
+    }
+
+    @Test
+    public void sectionsRunEveryBlock() {
+        int[] squares = new int[100];
+        int[] cubes = new int[100];
+        int[] total = new int[1];
+
+        ParallelExecutor.executeSections(ParallelExecutor.AUTO,
+            () -> {
+                for(int i = 0; i < 100; i++) squares[i] = i * i;
+            },
+            () -> {
+                for(int i = 0; i < 100; i++) cubes[i] = i * i * i;
+            },
+            () -> total[0] = 42);
+
+        for(int i = 0; i < 100; i++) {
+            assertTrue(squares[i] == i * i && cubes[i] == i * i * i, "error at i=" + i);
+        }
+        assertTrue(total[0] == 42);
+    }
+
+    @Test
+    public void failedSectionIsThrownToCaller() {
+        int[] ran = new int[1];
+
+        assertThrows(IllegalStateException.class, () -> ParallelExecutor.executeSections(2,
+            () -> {
+                throw new IllegalStateException("section failed");
+            },
+            () -> ran[0] = 1));
+        assertTrue(ran[0] == 1);
+    }
+
+    @Test
+    public void failedChunkIsThrownAndKeepsItsThread() {
+        Thread[] runningThreads = new Thread[1000];
+        ThreadRecordingTest trt = new ThreadRecordingTest(runningThreads, 0, 1000, 4);
+        trt.failAt = 999;
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            assertThrows(IllegalStateException.class, () -> ParallelExecutor.executeParallel(trt, 4));
+        });
+        Thread failedThread = runningThreads[999];
+
+        ThreadRecordingTest next = new ThreadRecordingTest(runningThreads, 0, 1000, 4);
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            ParallelExecutor.executeParallel(next, 4);
+        });
+
+        assertTrue(failedThread.isAlive(), "the thread of the failed chunk was stopped");
+        for(int i = 0; i < 1000; i++) {
+            assertTrue(runningThreads[i] != null, "error at i=" + i);
+        }
+    }
+
+    @Test
+    public void failureIsThrownAsItIsWhetherOrNotRunInParallel() {
+        Thread[] runningThreads = new Thread[1000];
+        ThreadRecordingTest inline = new ThreadRecordingTest(runningThreads, 0, 1000, 1);
+        inline.failAt = 500;
+        ThreadRecordingTest parallel = new ThreadRecordingTest(runningThreads, 0, 1000, 4);
+        parallel.setSequentialThreshold(0);
+        parallel.failAt = 500;
+
+        IllegalStateException inlineFailure = assertThrows(IllegalStateException.class, () -> ParallelExecutor.executeParallel(inline, 4));
+        IllegalStateException parallelFailure = assertThrows(IllegalStateException.class, () -> ParallelExecutor.executeParallel(parallel, 4));
+        assertTrue(inlineFailure.getMessage().equals(parallelFailure.getMessage()));
+    }
+
+    @Test
+    public void poolShrinksWhileNestedFarmsRun() {
+        int[] ones = new int[500];
+        Arrays.fill(ones, 1);
+        int[][] sums = new int[4][500];
+        CountDownLatch started = new CountDownLatch(4);
+        ParallelExecutor.setPoolSize(4);
+
+        Runnable[] sections = new Runnable[4];
+        for(int s = 0; s < 4; s++) {
+            int[] sum = sums[s];
+            sections[s] = () -> {
+                started.countDown();
+                for(int run = 0; run < 20; run++) {
+                    ParallelExecutor.executeParallel(new SumTest(ones, ones, sum, 0, 500, 5), 2);
+                }
+            };
+        }
+        Thread resizer = new Thread(() -> {
+            try {
+                started.await();
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+            ParallelExecutor.setPoolSize(2);
+        });
+
+        try {
+            assertTimeoutPreemptively(ofSeconds(20), () -> {
+                resizer.start();
+                ParallelExecutor.executeSections(4, sections);
+                resizer.join();
+            });
+        } finally {
+            ParallelExecutor.setPoolSize(ParallelExecutor.AUTO);
+        }
+
+        for(int s = 0; s < 4; s++) {
+            for(int i = 0; i < 500; i++) {
+                assertTrue(sums[s][i] == 2, "error in section " + s + " at i=" + i);
+            }
+        }
+    }
+
+    @Test
+    public void invokeAllRunsEveryFarm() {
+        int[] ones = new int[500];
+        Arrays.fill(ones, 1);
+        int[] firstSum = new int[500];
+        int[] secondSum = new int[500];
+
+        ParallelExecutor.invokeAll(new SumTest(ones, ones, firstSum, 0, 500, 5), new SumTest(ones, firstSum.clone(), secondSum, 0, 500, 5));
+
+        for(int i = 0; i < 500; i++) {
+            assertTrue(firstSum[i] == 2 && secondSum[i] == 1, "error at i=" + i);
+        }
+    }
+
+    @Test
+    public void maskedLoopIsSplitBySetIndices() {
+        //every set flag is in the last tenth of the range, so splitting the range itself would give one chunk all the work
+        boolean[] mask = new boolean[1000];
+        for(int i = 900; i < 1000; i++) {
+            mask[i] = i % 2 == 0;
+        }
+        int[] output = new int[1000];
+        MaskedSquareTest mst = new MaskedSquareTest(output, mask, 0, 1000, 5);
+        mst.setSequentialThreshold(0);
+        mst.setSequentialCostThreshold(0);
+
+        ParallelExecutor.executeParallel(mst, 4);
+
+        for(int i = 0; i < 1000; i++) {
+            assertTrue(output[i] == (mask[i] ? i * i : 0), "error at i=" + i);
+        }
+        assertTrue(mst.chunkSizes.size() == 5);
+        for(int chunkSize:mst.chunkSizes) {
+            assertTrue(chunkSize == 10, "chunk of " + chunkSize + " indices");
+        }
+    }
+
+    @Test
+    public void bitSetLoopRunsEverySetIndex() {
+        BitSet indices = new BitSet();
+        indices.set(3);
+        indices.set(100, 120);
+        indices.set(999);
+        int[] output = new int[1000];
+
+        ParallelExecutor.executeParallel(new MaskedSquareTest(output, indices, 4), 4);
+
+        for(int i = 0; i < 1000; i++) {
+            assertTrue(output[i] == (indices.get(i) ? i * i : 0), "error at i=" + i);
+        }
+    }
+
+    @Test
+    public void divideAndConquerSolvesWholeProblem() {
+        int[] values = new int[100000];
+        long expected = 0;
+        for(int i = 0; i < values.length; i++) {
+            values[i] = i % 97;
+            expected += values[i];
+        }
+        RangeSumDivideTest rsdt = new RangeSumDivideTest(values, 100);
+        rsdt.setSequentialCostThreshold(0);
+
+        ParallelExecutor.executeParallel(rsdt, 4);
+
+        assertTrue(rsdt.getResult() == expected, "sum of " + rsdt.getResult());
+    }
+
+    @Test
+    public void divideAndConquerSubproblemsAreStolen() throws IOException {
+        int[] values = new int[6400];
+        Arrays.fill(values, 1);
+        RangeSumDivideTest rsdt = new RangeSumDivideTest(values, 100);
+        rsdt.setSequentialCostThreshold(0);
+        rsdt.baseDelayMillis = 2;
+
+        ThreadAllocator ta = new ThreadAllocator(4, new CpuQuota(Files.createTempDirectory("cgroup"), 4));
+        rsdt.prepareExecution(4);
+        rsdt.allocateTasks(ta);
+        ta.waitUntilComplete(rsdt);
+        rsdt.completeExecution();
+        ta.shutdown();
+
+        assertTrue(rsdt.getResult() == 6400, "sum of " + rsdt.getResult());
+        assertTrue(rsdt.baseThreads.size() > 1, "every subproblem was solved on one thread");
+    }
+
+    @Test
+    public void divideAndConquerBelowSequentialSizeStaysOnCaller() {
+        int[] values = new int[1000];
+        Arrays.fill(values, 1);
+        RangeSumDivideTest rsdt = new RangeSumDivideTest(values, 10);
+        rsdt.setSequentialSize(1001);
+
+        ParallelExecutor.executeParallel(rsdt, 4);
+
+        assertTrue(rsdt.getResult() == 1000);
+        assertTrue(rsdt.baseThreads.size() == 1 && rsdt.baseThreads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void failedSubproblemIsThrownToCaller() {
+        int[] values = new int[10000];
+        RangeSumDivideTest rsdt = new RangeSumDivideTest(values, 10);
+        rsdt.setSequentialCostThreshold(0);
+        rsdt.failAt = 7777;
+
+        assertThrows(IllegalStateException.class, () -> ParallelExecutor.executeParallel(rsdt, 4));
+    }
+}
@@ -0,0 +1,77 @@
+package parallel;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ParallelScanTest {
+    @Test
+    public void intScanMatchesSequential() {
+        int[] values = new int[10007];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = i % 13 - 6;
+        }
+
+        int[] expected = new int[values.length];
+        expected[0] = values[0];
+        for(int i = 1; i < values.length; i++) {
+            expected[i] = expected[i-1] + values[i];
+        }
+
+        int[] result = new int[values.length];
+        ParallelScan.inclusiveScan(values, result, 0, values.length, (a, b) -> a + b, 7, 4);
+
+        assertArrayEquals(expected, result);
+    }
+
+    @Test
+    public void seededScanContinuesFromPreviousElement() {
+        long[] values = new long[5000];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        values[0] = 100;
+
+        long[] expected = values.clone();
+        for(int i = 1; i < expected.length; i++) {
+            expected[i] = expected[i-1] + expected[i];
+        }
+
+        //in place, as in the loop values[i] = values[i-1] + values[i]
+        ParallelScan.inclusiveScan(values, values, 1, values.length, values[0], (a, b) -> a + b, ParallelExecutor.AUTO, 4);
+
+        assertArrayEquals(expected, values);
+    }
+
+    @Test
+    public void doubleScanWithMaxOperator() {
+        double[] values = new double[3001];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = Math.sin(i) * i;
+        }
+
+        double[] expected = new double[values.length];
+        expected[0] = values[0];
+        for(int i = 1; i < values.length; i++) {
+            expected[i] = Math.max(expected[i-1], values[i]);
+        }
+
+        double[] result = new double[values.length];
+        ParallelScan.inclusiveScan(values, result, 0, values.length, Math::max, 5, 3);
+
+        assertArrayEquals(expected, result);
+    }
+
+    @Test
+    public void emptyAndSingleElementRanges() {
+        int[] values = new int[]{4, 5, 6};
+        int[] result = new int[3];
+
+        ParallelScan.inclusiveScan(values, result, 2, 2, (a, b) -> a + b, 4, 4);
+        assertArrayEquals(new int[]{0, 0, 0}, result);
+
+        ParallelScan.inclusiveScan(values, result, 1, 2, 10, (a, b) -> a + b, 4, 4);
+        assertEquals(15, result[1]);
+    }
+}
@@ -0,0 +1,69 @@
+package parallel;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class RangeSumDivideTest extends DivideAndConquerTask<int[], Long> {
+
+    public int[] values;
+    public int baseSize;
+    public int failAt;
+    public long baseDelayMillis;
+    public Set<Thread> baseThreads = ConcurrentHashMap.newKeySet();
+
+    public RangeSumDivideTest(int[] values, int baseSize) {
+        super(new int[] {0, values.length});
+        this.values = values;
+        this.baseSize = baseSize;
+        failAt = -1;
+        baseDelayMillis = 0;
+    }
+
+    @Override
+    protected List<int[]> split(int[] range) {
+        int middle = (range[0] + range[1]) >>> 1;
+        return Arrays.asList(new int[] {range[0], middle}, new int[] {middle, range[1]});
+    }
+
+    @Override
+    protected boolean isBase(int[] range) {
+        return range[1] - range[0] <= baseSize;
+    }
+
+    @Override
+    protected Long solveBase(int[] range) {
+        baseThreads.add(Thread.currentThread());
+        if(baseDelayMillis > 0) {
+            try {
+                Thread.sleep(baseDelayMillis);
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        long sum = 0;
+        for(int i = range[0]; i < range[1]; i++) {
+            if(i == failAt) {
+                throw new IllegalStateException("failed at " + i);
+            }
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    protected Long combine(int[] range, List<Long> results) {
+        long sum = 0;
+        for(long result:results) {
+            sum += result;
+        }
+        return sum;
+    }
+
+    @Override
+    protected int size(int[] range) {
+        return range[1] - range[0];
+    }
+}
@@ -0,0 +1,37 @@
+package parallel;
+
+import java.util.concurrent.CountDownLatch;
+
+public class RangeSumResultTest extends ParallelForResultFarmTask<long[]> {
+
+    public long chunkDelayMillis = 0;
+    public CountDownLatch laterChunksReleased = null;
+
+    public RangeSumResultTest(int rangeStart, int rangeEnd, int noOfChunks) {
+        super(rangeStart, rangeEnd, noOfChunks);
+    }
+
+    @Override
+    protected long[] chunkOperation(int rangeStart, int rangeEnd) {
+        if(rangeStart == 0 && chunkDelayMillis > 0) {
+            try {
+                Thread.sleep(chunkDelayMillis);
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+        if(rangeStart != 0 && laterChunksReleased != null) {
+            try {
+                laterChunksReleased.await();
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        long sum = 0;
+        for(int i = rangeStart; i < rangeEnd; i++) {
+            sum += i;
+        }
+        return new long[]{rangeStart, rangeEnd, sum};
+    }
+}
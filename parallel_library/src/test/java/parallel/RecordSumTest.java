@@ -0,0 +1,36 @@
+package parallel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RecordSumTest extends ParallelBufferFarmTask {
+
+    public AtomicLong sum = new AtomicLong(0);
+    public AtomicLong recordsRead = new AtomicLong(0);
+    public List<Integer> firstRecords = Collections.synchronizedList(new ArrayList<>());
+
+    public RecordSumTest(ByteBuffer buffer, int noOfChunks) {
+        super(buffer, 12, noOfChunks);
+    }
+
+    @Override
+    protected void operation(ByteBuffer records, int firstRecord) {
+        firstRecords.add(firstRecord);
+
+        long chunkSum = 0;
+        for(int i = 0; records.remaining() > 0; i++) {
+            int id = records.getInt();
+            long value = records.getLong();
+            if(id != firstRecord + i) {
+                throw new IllegalStateException("record " + (firstRecord + i) + " has id " + id);
+            }
+            chunkSum += value;
+        }
+
+        sum.addAndGet(chunkSum);
+        recordsRead.addAndGet(records.position() / getRecordSize());
+    }
+}
@@ -0,0 +1,23 @@
+package parallel;
+
+public class RecurrenceTest extends DoacrossFarmTask {
+
+    public long[] values;
+
+    public RecurrenceTest(long[] values, int rangeStart, int rangeEnd, int noOfChunks, int distance) {
+        super(rangeStart, rangeEnd, noOfChunks, distance);
+        this.values = values;
+    }
+
+    @Override
+    public void operation(int rangeStart, int rangeEnd) {
+        for(int i = rangeStart; i < rangeEnd; i++) {
+            awaitDependence(i);
+            try {
+                values[i] = values[i - getDistance()] * 3 + values[i - getDistance() - 1] + i;
+            } finally {
+                postIteration(i);
+            }
+        }
+    }
+}
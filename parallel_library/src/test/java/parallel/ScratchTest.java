@@ -0,0 +1,33 @@
+package parallel;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+public class ScratchTest extends ParallelForFarmTask {
+
+    public int[] values;
+    public int[] reversed;
+    public Set<Object> scratchArrays = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    public Set<Object> runningThreads = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    public ScratchTest(int[] values, int[] reversed, int rangeStart, int rangeEnd, int noOfChunks) {
+        super(rangeStart, rangeEnd, noOfChunks);
+        this.values = values;
+        this.reversed = reversed;
+    }
+
+    @Override
+    public void operation(int rangeStart, int rangeEnd) {
+        int[] scratch = getScratchInts(rangeEnd - rangeStart);
+        scratchArrays.add(scratch);
+        runningThreads.add(Thread.currentThread());
+
+        for(int i = rangeStart; i < rangeEnd; i++) {
+            scratch[rangeEnd - 1 - i] = values[i];
+        }
+        for(int i = rangeStart; i < rangeEnd; i++) {
+            reversed[i] = scratch[i - rangeStart];
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package parallel;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public class SquareStreamTest extends StreamingFarmTask<Integer, Long> {
+
+    public SquareStreamTest(int capacity, int batchSize, boolean ordered, Consumer<? super Long> sink) {
+        super(capacity, batchSize, ordered, sink);
+    }
+
+    @Override
+    protected void operation(List<Integer> batch, List<Long> results) {
+        for(int item:batch) {
+            results.add((long)item * item);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static java.time.Duration.ofSeconds;
+
+public class StreamingFarmTaskTest {
+    @Test
+    public void orderedStreamKeepsSubmissionOrder() {
+        List<Long> results = new ArrayList<>();
+        SquareStreamTest sst = new SquareStreamTest(16, 8, true, results::add);
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            sst.start(4);
+            for(int i = 0; i < 10000; i++) {
+                sst.submit(i);
+            }
+            sst.close();
+            sst.awaitTermination();
+        });
+
+        assertTrue(results.size() == 10000, "got " + results.size() + " results");
+        for(int i = 0; i < 10000; i++) {
+            assertTrue(results.get(i) == (long)i * i, "error at i=" + i);
+        }
+    }
+
+    @Test
+    public void unorderedStreamProcessesEveryItem() {
+        List<Long> results = new ArrayList<>();
+        SquareStreamTest sst = new SquareStreamTest(16, 8, false, results::add);
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            sst.start(4);
+            for(int i = 0; i < 10000; i++) {
+                sst.submit(i);
+            }
+            sst.close();
+            sst.awaitTermination();
+        });
+
+        long sum = 0;
+        for(long result:results) {
+            sum += result;
+        }
+        assertTrue(results.size() == 10000, "got " + results.size() + " results");
+        assertTrue(sum == 9999L * 10000 * 19999 / 6, "the results were summed incorrectly");
+    }
+
+    @Test
+    public void fullChannelRejectsOffers() {
+        SquareStreamTest sst = new SquareStreamTest(4, 2, false, result -> {});
+
+        //without any workers nothing is taken off the channel
+        for(int i = 0; i < 4; i++) {
+            assertTrue(sst.offer(i), "item " + i + " was rejected");
+        }
+        assertFalse(sst.offer(4), "an item was accepted by a full channel");
+    }
+
+    @Test
+    public void streamCannotBeExecutedAsFarm() {
+        SquareStreamTest sst = new SquareStreamTest(4, 2, false, result -> {});
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            assertThrows(IllegalStateException.class, () -> ParallelExecutor.executeParallel(sst, 2));
+        });
+    }
+}
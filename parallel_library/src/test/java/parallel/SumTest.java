@@ -0,0 +1,22 @@
+package parallel;
+
+public class SumTest extends ParallelForFarmTask {
+
+    public int[] first;
+    public int[] second;
+    public int[] sum;
+
+    public SumTest(int[] first, int[] second, int[] sum, int rangeStart, int rangeEnd, int noOfChunks) {
+        super(rangeStart, rangeEnd, noOfChunks);
+        this.first = first;
+        this.second = second;
+        this.sum = sum;
+    }
+
+    @Override
+    public void operation(int rangeStart, int rangeEnd) {
+        for(int i = rangeStart; i < rangeEnd; i++) {
+            sum[i] = first[i] + second[i];
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package parallel;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static java.time.Duration.ofSeconds;
+
+public class TaskGraphTest {
+    @Test
+    public void successorsSeeTheResultsOfTheirPredecessors() {
+        int[] first = new int[1000];
+        int[] second = new int[1000];
+        int[] sum = new int[1000];
+
+        TaskGraph graph = new TaskGraph();
+        TaskGraph.Node fillFirst = graph.addTask(new ParallelForTest(first, 0, 1000, 10), 4);
+        TaskGraph.Node fillSecond = graph.addTask(new ParallelForTest(second, 0, 1000, 10), 4);
+        graph.addTask(new SumTest(first, second, sum, 0, 1000, 10), 4, fillFirst, fillSecond);
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            graph.execute();
+        });
+
+        for(int i = 0; i < 1000; i++) {
+            assertTrue(sum[i] == 2*i, "error at i=" + i + " sum[i]=" + sum[i]);
+        }
+    }
+
+    @Test
+    public void graphCanBeExecutedAgain() {
+        int[] values = new int[1000];
+        int[] doubled = new int[1000];
+
+        TaskGraph graph = new TaskGraph();
+        TaskGraph.Node fill = graph.addTask(new ParallelForTest(values, 0, 1000, 10), 4);
+        graph.addTask(new SumTest(values, values, doubled, 0, 1000, 10), 4, fill);
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            graph.execute();
+            doubled[5] = -1;
+            graph.execute();
+        });
+
+        assertTrue(doubled[5] == 10);
+    }
+
+    @Test
+    public void independentFarmStartsWhileAnotherWaitsForThreads() {
+        CountDownLatch otherStarted = new CountDownLatch(1);
+        //every chunk of the first farm waits for the second farm, and only one of them can run at a time
+        LatchLoopTest waiting = new LatchLoopTest(0, 40, 40, otherStarted, null);
+        LatchLoopTest other = new LatchLoopTest(0, 1, 1, null, otherStarted);
+
+        TaskGraph graph = new TaskGraph();
+        graph.addTask(waiting, 1);
+        graph.addTask(other, 1);
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            graph.execute();
+        });
+
+        assertFalse(waiting.timedOut, "the second farm was not started until the first had been given threads");
+    }
+
+    @Test
+    public void cancelledFarmStopsItsSuccessors() {
+        boolean[] cancelOnRun = {true};
+        ParallelForFarmTask cancelling = new ParallelForFarmTask(0, 100, 4) {
+            @Override
+            public void operation(int rangeStart, int rangeEnd) {
+                if(cancelOnRun[0]) {
+                    cancel();
+                }
+            }
+        };
+        int[] values = new int[100];
+
+        TaskGraph graph = new TaskGraph();
+        TaskGraph.Node first = graph.addTask(cancelling, 4);
+        graph.addTask(new ParallelForTest(values, 0, 100, 4), 4, first);
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            assertThrows(CancellationException.class, () -> graph.execute());
+        });
+        assertTrue(values[5] == 0, "the successor of a cancelled farm was started");
+
+        //the cancellation is cleared when the graph is executed again
+        cancelOnRun[0] = false;
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            graph.execute();
+        });
+        assertTrue(values[5] == 5);
+    }
+
+    @Test
+    public void farmCannotBeAddedTwice() {
+        ParallelForTest pft = new ParallelForTest(new int[10], 0, 10, 2);
+        TaskGraph graph = new TaskGraph();
+        graph.addTask(pft);
+
+        assertThrows(IllegalArgumentException.class, () -> graph.addTask(pft));
+    }
+}
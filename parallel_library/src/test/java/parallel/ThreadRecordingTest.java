@@ -0,0 +1,47 @@
+package parallel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ThreadRecordingTest extends ParallelForFarmTask {
+
+    public Thread[] runningThreads;
+    public long chunkDelayMillis = 0;
+    public int slowIterationsEnd = 0;
+    public int failAt = -1;
+    public List<int[]> chunks = Collections.synchronizedList(new ArrayList<>());
+
+    public ThreadRecordingTest(Thread[] runningThreads, int rangeStart, int rangeEnd, int noOfChunks) {
+        super(rangeStart, rangeEnd, noOfChunks);
+        this.runningThreads = runningThreads;
+    }
+
+    @Override
+    public void operation(int rangeStart, int rangeEnd) {
+        chunks.add(new int[]{rangeStart, rangeEnd});
+
+        for(int i = rangeStart; i < rangeEnd; i++) {
+            runningThreads[i] = Thread.currentThread();
+            if(i == failAt) {
+                throw new IllegalStateException("chunk failed");
+            }
+
+            if(i < slowIterationsEnd) {
+                try {
+                    Thread.sleep(1);
+                } catch(InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        if(chunkDelayMillis > 0) {
+            try {
+                Thread.sleep(chunkDelayMillis);
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package parallel;
+
+public class WavefrontTest extends WavefrontFarmTask {
+
+    public long[][] table;
+
+    public WavefrontTest(long[][] table, int noOfTiles) {
+        super(1, table.length, 1, table[0].length, noOfTiles, noOfTiles);
+        this.table = table;
+    }
+
+    @Override
+    public void operation(int rowStart, int rowEnd, int columnStart, int columnEnd) {
+        for(int i = rowStart; i < rowEnd; i++) {
+            for(int j = columnStart; j < columnEnd; j++) {
+                table[i][j] = (table[i-1][j] + table[i][j-1] + table[i-1][j-1]) % 1000003;
+            }
+        }
+    }
+}
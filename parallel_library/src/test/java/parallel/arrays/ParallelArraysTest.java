@@ -0,0 +1,81 @@
+package parallel.arrays;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelArraysTest {
+    @Test
+    public void fillSetsOnlyTheRange() {
+        double[] values = new double[1000];
+
+        ParallelArrays.fill(values, 100, 900, 2.5, 4, 4);
+
+        for(int i = 0; i < values.length; i++) {
+            assertTrue(values[i] == ((i >= 100 && i < 900) ? 2.5 : 0), "error at i=" + i);
+        }
+    }
+
+    @Test
+    public void setAllUsesTheIndex() {
+        long[] values = new long[1000];
+        String[] names = new String[1000];
+
+        ParallelArrays.setAll(values, 0, values.length, i -> (long)i * i, 5, 4);
+        ParallelArrays.setAll(names, 0, names.length, Integer::toString, 5, 4);
+
+        for(int i = 0; i < values.length; i++) {
+            assertTrue(values[i] == (long)i * i && names[i].equals(Integer.toString(i)), "error at i=" + i);
+        }
+    }
+
+    @Test
+    public void copyHandlesOverlappingRanges() {
+        int[] values = new int[1000];
+        ParallelArrays.setAll(values, 0, values.length, i -> i, 4, 4);
+        int[] expected = values.clone();
+        System.arraycopy(expected, 0, expected, 10, 900);
+        int[] copy = new int[1000];
+
+        ParallelArrays.copy(values, 0, copy, 0, values.length, 4, 4);
+        ParallelArrays.copy(values, 0, values, 10, 900, 4, 4);
+
+        assertArrayEquals(expected, values);
+        for(int i = 0; i < copy.length; i++) {
+            assertTrue(copy[i] == i, "error at i=" + i);
+        }
+    }
+
+    @Test
+    public void mapAppliesToEachElement() {
+        int[] values = new int[1000];
+        ParallelArrays.setAll(values, 0, values.length, i -> i, 4, 4);
+        Integer[] boxed = new Integer[1000];
+        Arrays.setAll(boxed, i -> i);
+        String[] names = new String[1000];
+
+        ParallelArrays.map(values, values, 0, values.length, value -> value * 3, 4, 4);
+        ParallelArrays.map(boxed, names, 0, boxed.length, value -> "n" + value, 4, 4);
+
+        for(int i = 0; i < values.length; i++) {
+            assertTrue(values[i] == i * 3 && names[i].equals("n" + i), "error at i=" + i);
+        }
+    }
+
+    @Test
+    public void failedKernelIsThrownToCaller() {
+        int[] values = new int[1000];
+
+        assertThrows(IllegalStateException.class, () -> ParallelArrays.setAll(values, 0, values.length, i -> {
+            if(i == 700) {
+                throw new IllegalStateException("element failed");
+            }
+            return i;
+        }, 4, 4));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> ParallelArrays.fill(values, 0, 1001, 1, 4, 4));
+    }
+}
@@ -0,0 +1,113 @@
+package parallel.arrays;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelSortTest {
+    @Test
+    public void mergeSortMatchesArraysSort() {
+        Random random = new Random(7);
+        int[] values = new int[10007];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(1000) - 500;
+        }
+        int[] expected = values.clone();
+        Arrays.sort(expected);
+
+        ParallelSort.mergeSort(values, 0, values.length, 7, 4);
+
+        assertArrayEquals(expected, values);
+    }
+
+    @Test
+    public void sampleSortMatchesArraysSort() {
+        Random random = new Random(11);
+        long[] values = new long[10007];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong();
+        }
+        long[] expected = values.clone();
+        Arrays.sort(expected);
+
+        ParallelSort.sampleSort(values, 0, values.length, 5, 4);
+
+        assertArrayEquals(expected, values);
+    }
+
+    @Test
+    public void doublesAreOrderedLikeArraysSort() {
+        Random random = new Random(13);
+        double[] values = new double[3000];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = (i % 100 == 0) ? Double.NaN : (i % 7 == 0) ? -0.0 : random.nextGaussian();
+        }
+        double[] expected = values.clone();
+        Arrays.sort(expected);
+        double[] sampleSorted = values.clone();
+
+        ParallelSort.mergeSort(values, 0, values.length, 6, 4);
+        ParallelSort.sampleSort(sampleSorted, 0, sampleSorted.length, 6, 4);
+
+        assertArrayEquals(expected, values);
+        assertArrayEquals(expected, sampleSorted);
+    }
+
+    @Test
+    public void onlyTheRangeIsSorted() {
+        int[] values = new int[2000];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = values.length - i;
+        }
+        int[] expected = values.clone();
+        Arrays.sort(expected, 500, 1500);
+
+        ParallelSort.mergeSort(values.clone(), 0, 0, 4, 4);
+        int[] sampleSorted = values.clone();
+        ParallelSort.mergeSort(values, 500, 1500, 3, 4);
+        ParallelSort.sampleSort(sampleSorted, 500, 1500, 3, 4);
+
+        assertArrayEquals(expected, values);
+        assertArrayEquals(expected, sampleSorted);
+    }
+
+    @Test
+    public void equalObjectsKeepTheirOrder() {
+        Random random = new Random(17);
+        int[][] values = new int[5000][];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = new int[]{random.nextInt(20), i};
+        }
+        Comparator<int[]> byKey = Comparator.comparingInt(value -> value[0]);
+        int[][] sampleSorted = values.clone();
+
+        ParallelSort.mergeSort(values, 0, values.length, byKey, 8, 4);
+        ParallelSort.sampleSort(sampleSorted, 0, sampleSorted.length, byKey, 8, 4);
+
+        for(int[][] sorted:new int[][][]{values, sampleSorted}) {
+            for(int i = 1; i < sorted.length; i++) {
+                assertTrue(sorted[i - 1][0] < sorted[i][0] || (sorted[i - 1][0] == sorted[i][0] && sorted[i - 1][1] < sorted[i][1]),
+                    "elements " + (i - 1) + " and " + i + " are out of order");
+            }
+        }
+    }
+
+    @Test
+    public void comparableObjectsAreSorted() {
+        String[] values = new String[1000];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = Integer.toString(i * 7919 % 1000);
+        }
+        String[] expected = values.clone();
+        Arrays.sort(expected);
+
+        ParallelSort.sampleSort(values, 0, values.length, 4, 4);
+
+        assertArrayEquals(expected, values);
+    }
+}
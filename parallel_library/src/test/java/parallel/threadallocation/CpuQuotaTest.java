@@ -0,0 +1,96 @@
+package parallel.threadallocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+public class CpuQuotaTest {
+
+    private static void writeFile(Path file, String contents) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, Collections.singletonList(contents), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void noCgroupFiles() throws IOException {
+        Path root = Files.createTempDirectory("cgroup");
+        CpuQuota quota = new CpuQuota(root, 8);
+
+        assertEquals(8, quota.getDefaultThreads());
+        assertEquals(8, quota.getMaxThreads());
+    }
+
+    @Test
+    public void cgroupV2Quota() throws IOException {
+        Path root = Files.createTempDirectory("cgroup");
+        writeFile(root.resolve("cpu.max"), "250000 100000");
+        CpuQuota quota = new CpuQuota(root, 16);
+
+        assertEquals(2, quota.getDefaultThreads());
+        assertEquals(3, quota.getMaxThreads());
+        assertEquals(3, quota.clamp(12));
+        assertEquals(1, quota.clamp(1));
+    }
+
+    @Test
+    public void cgroupV2Unlimited() throws IOException {
+        Path root = Files.createTempDirectory("cgroup");
+        writeFile(root.resolve("cpu.max"), "max 100000");
+        writeFile(root.resolve("cpuset.cpus.effective"), "0-3,8,10-11");
+        CpuQuota quota = new CpuQuota(root, 16);
+
+        assertEquals(7, quota.getDefaultThreads());
+        assertEquals(7, quota.getMaxThreads());
+    }
+
+    @Test
+    public void cgroupV1Quota() throws IOException {
+        Path root = Files.createTempDirectory("cgroup");
+        writeFile(root.resolve("cpu,cpuacct").resolve("cpu.cfs_quota_us"), "400000");
+        writeFile(root.resolve("cpu,cpuacct").resolve("cpu.cfs_period_us"), "100000");
+        writeFile(root.resolve("cpuset").resolve("cpuset.cpus"), "0-5");
+        CpuQuota quota = new CpuQuota(root, 16);
+
+        assertEquals(4, quota.getDefaultThreads());
+        assertEquals(4, quota.getMaxThreads());
+    }
+
+    @Test
+    public void cgroupV1Unlimited() throws IOException {
+        Path root = Files.createTempDirectory("cgroup");
+        writeFile(root.resolve("cpu").resolve("cpu.cfs_quota_us"), "-1");
+        writeFile(root.resolve("cpu").resolve("cpu.cfs_period_us"), "100000");
+        CpuQuota quota = new CpuQuota(root, 6);
+
+        assertEquals(6, quota.getDefaultThreads());
+    }
+
+    @Test
+    public void smallQuotaKeepsOneThread() throws IOException {
+        Path root = Files.createTempDirectory("cgroup");
+        writeFile(root.resolve("cpu.max"), "50000 100000");
+        CpuQuota quota = new CpuQuota(root, 4);
+
+        assertEquals(1, quota.getDefaultThreads());
+        assertEquals(1, quota.getMaxThreads());
+    }
+
+    @Test
+    public void allocatorClampsThreads() throws IOException {
+        Path root = Files.createTempDirectory("cgroup");
+        writeFile(root.resolve("cpu.max"), "200000 100000");
+        ThreadAllocator ta = new ThreadAllocator(8, new CpuQuota(root, 16));
+
+        assertEquals(2, ta.getNoOfThreads());
+        ta.setNoOfThreadsImmediately(6);
+        assertEquals(2, ta.getNoOfThreads());
+
+        ta.shutdown();
+    }
+}
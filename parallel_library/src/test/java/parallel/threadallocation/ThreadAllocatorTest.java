@@ -0,0 +1,356 @@
+package parallel.threadallocation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import parallel.FarmTask;
+import parallel.Priority;
+import parallel.RejectedTaskException;
+
+public class ThreadAllocatorTest {
+
+    /**
+     * A single task farm that holds its thread until it is released and records the thread it ran on.
+     */
+    private static class GateTask extends FarmTask {
+        static AtomicInteger noOfStarts = new AtomicInteger();
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        volatile Thread ranOn;
+        volatile int startOrder;
+
+        @Override
+        protected void operation(Object[] inputValues) {
+            ranOn = Thread.currentThread();
+            startOrder = noOfStarts.getAndIncrement();
+            started.countDown();
+            try {
+                released.await();
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        protected void allocateTasks(ThreadAllocator ta) {
+            ta.execute(this);
+        }
+
+        @Override
+        protected Object[] readInputData() {
+            return new Object[0];
+        }
+    }
+
+    /**
+     * A farm of short tasks that records the most of its tasks that were running at once.
+     */
+    private static class ConcurrencyTask extends FarmTask {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        int noOfTasks;
+
+        ConcurrencyTask(int noOfTasks) {
+            this.noOfTasks = noOfTasks;
+        }
+
+        @Override
+        protected void operation(Object[] inputValues) {
+            int nowRunning = running.incrementAndGet();
+            maxRunning.accumulateAndGet(nowRunning, Math::max);
+            try {
+                Thread.sleep(20);
+            } catch(InterruptedException e) {
+                e.printStackTrace();
+            }
+            running.decrementAndGet();
+            completed.incrementAndGet();
+        }
+
+        @Override
+        protected void allocateTasks(ThreadAllocator ta) {
+            for(int i = 0; i < noOfTasks; i++) {
+                dataInputUsed = false;
+                ta.execute(this);
+                waitForDataInputUsed();
+            }
+        }
+
+        @Override
+        protected Object[] readInputData() {
+            return new Object[0];
+        }
+    }
+
+    /**
+     * A farm that executes all of its tasks without waiting for each to be given a thread and counts the tasks that run.
+     */
+    private static class BurstTask extends FarmTask {
+        AtomicInteger ran = new AtomicInteger();
+        int noOfTasks;
+
+        BurstTask(int noOfTasks) {
+            this.noOfTasks = noOfTasks;
+        }
+
+        @Override
+        protected void operation(Object[] inputValues) {
+            ran.incrementAndGet();
+        }
+
+        @Override
+        protected void allocateTasks(ThreadAllocator ta) {
+            for(int i = 0; i < noOfTasks; i++) {
+                ta.execute(this);
+            }
+        }
+
+        @Override
+        protected Object[] readInputData() {
+            return new Object[0];
+        }
+    }
+
+    /**
+     * A single task farm whose task executes the tasks of a nested farm without waiting for them.
+     */
+    private static class NestingTask extends FarmTask {
+        ThreadAllocator ta;
+        ConcurrencyTask nested;
+        boolean cancelFirst;
+
+        NestingTask(ThreadAllocator ta, ConcurrencyTask nested, boolean cancelFirst) {
+            this.ta = ta;
+            this.nested = nested;
+            this.cancelFirst = cancelFirst;
+        }
+
+        @Override
+        protected void operation(Object[] inputValues) {
+            if(cancelFirst) {
+                cancel();
+            }
+            nested.allocateTasks(ta);
+        }
+
+        @Override
+        protected void allocateTasks(ThreadAllocator ta) {
+            ta.execute(this);
+        }
+
+        @Override
+        protected Object[] readInputData() {
+            return new Object[0];
+        }
+    }
+
+    /**
+     * Fills the only thread with a running task and the queue of two with waiting tasks.
+     */
+    private static ThreadAllocator fillAllocator(OverflowPolicy policy, GateTask running, GateTask... waiting) throws IOException, InterruptedException {
+        ThreadAllocator ta = new ThreadAllocator(1, new CpuQuota(Files.createTempDirectory("cgroup"), 1), 2, policy);
+        ta.execute(running);
+        running.started.await();
+        for(GateTask task:waiting) {
+            ta.execute(task);
+        }
+
+        return ta;
+    }
+
+    private static void drain(ThreadAllocator ta, GateTask... tasks) {
+        for(GateTask task:tasks) {
+            task.released.countDown();
+        }
+        for(GateTask task:tasks) {
+            ta.waitUntilComplete(task);
+        }
+        ta.shutdown();
+    }
+
+    @Test
+    public void fullQueueRejects() throws IOException, InterruptedException {
+        GateTask running = new GateTask();
+        GateTask waiting = new GateTask();
+        GateTask waiting2 = new GateTask();
+        GateTask rejected = new GateTask();
+        ThreadAllocator ta = fillAllocator(OverflowPolicy.REJECT, running, waiting, waiting2);
+
+        assertThrows(RejectedTaskException.class, () -> ta.execute(rejected));
+        assertEquals(null, rejected.ranOn);
+
+        //the rejected task is not left outstanding in its group
+        ta.waitUntilComplete(rejected);
+        drain(ta, running, waiting, waiting2);
+        assertEquals(running.ranOn, waiting2.ranOn);
+    }
+
+    @Test
+    public void rejectionCancelsFarmAndWaitsForItsTasks() throws IOException, InterruptedException {
+        GateTask running = new GateTask();
+        ThreadAllocator ta = fillAllocator(OverflowPolicy.REJECT, running);
+        //the first two tasks fill the queue behind the running task and the third is rejected
+        BurstTask burst = new BurstTask(3);
+        RuntimeException[] thrown = new RuntimeException[1];
+        boolean[] completedWhenThrown = new boolean[1];
+        Thread allocator = new Thread(() -> {
+            try {
+                burst.allocateTasks(ta);
+            } catch(RuntimeException e) {
+                thrown[0] = e;
+                completedWhenThrown[0] = ta.getTaskGroup(burst).completed();
+            }
+        });
+        allocator.start();
+
+        while(!burst.isCancelled() && allocator.isAlive()) {
+            Thread.sleep(1);
+        }
+        running.released.countDown();
+        allocator.join(10000);
+
+        assertTrue(thrown[0] instanceof RejectedTaskException, "the burst was not rejected: " + thrown[0]);
+        assertTrue(completedWhenThrown[0], "the rejection was thrown while the farm's tasks were outstanding");
+        //the queued tasks were skipped as the farm had been cancelled
+        assertEquals(0, burst.ran.get());
+        ta.waitUntilComplete(running);
+        ta.shutdown();
+    }
+
+    @Test
+    public void fullQueueRunsOnCaller() throws IOException, InterruptedException {
+        GateTask running = new GateTask();
+        GateTask waiting = new GateTask();
+        GateTask waiting2 = new GateTask();
+        GateTask overflow = new GateTask();
+        ThreadAllocator ta = fillAllocator(OverflowPolicy.CALLER_RUNS, running, waiting, waiting2);
+
+        overflow.released.countDown();
+        ta.execute(overflow);
+        assertEquals(Thread.currentThread(), overflow.ranOn);
+
+        ta.waitUntilComplete(overflow);
+        drain(ta, running, waiting, waiting2);
+    }
+
+    @Test
+    public void queueCapacityIsRoundedUp() throws IOException {
+        ThreadAllocator ta = new ThreadAllocator(1, new CpuQuota(Files.createTempDirectory("cgroup"), 1), 5, OverflowPolicy.BLOCK);
+        assertEquals(8, ta.getQueueCapacity());
+        ta.shutdown();
+    }
+
+    @Test
+    public void higherPriorityTasksOvertakeQueuedTasks() throws IOException, InterruptedException {
+        GateTask running = new GateTask();
+        GateTask low = new GateTask();
+        GateTask normal = new GateTask();
+        GateTask high = new GateTask();
+        low.setPriority(Priority.LOW);
+        high.setPriority(Priority.HIGH);
+        ThreadAllocator ta = fillAllocator(OverflowPolicy.BLOCK, running, low, normal, high);
+
+        drain(ta, running, low, normal, high);
+        assertTrue(high.startOrder < normal.startOrder);
+        assertTrue(normal.startOrder < low.startOrder);
+    }
+
+    @Test
+    public void concurrencyLimitCapsRunningTasks() throws IOException {
+        ThreadAllocator ta = new ThreadAllocator(4, new CpuQuota(Files.createTempDirectory("cgroup"), 4));
+        ConcurrencyTask limited = new ConcurrencyTask(8);
+        limited.setConcurrencyLimit(2);
+        ConcurrencyTask unlimited = new ConcurrencyTask(8);
+
+        limited.allocateTasks(ta);
+        ta.waitUntilComplete(limited);
+        unlimited.allocateTasks(ta);
+        ta.waitUntilComplete(unlimited);
+        ta.shutdown();
+
+        assertEquals(2, limited.maxRunning.get());
+        assertTrue(unlimited.maxRunning.get() > 2);
+    }
+
+    @Test
+    public void parentWaitsForNestedFarm() throws IOException {
+        ThreadAllocator ta = new ThreadAllocator(2, new CpuQuota(Files.createTempDirectory("cgroup"), 2));
+        ConcurrencyTask nested = new ConcurrencyTask(4);
+        NestingTask parent = new NestingTask(ta, nested, false);
+
+        parent.allocateTasks(ta);
+        ta.waitUntilComplete(parent);
+
+        assertEquals(4, nested.completed.get());
+        assertEquals(5, ta.getTaskGroup(parent).getSubtreeCompletedTasks());
+        assertEquals(4, ta.getTaskGroup(nested).getSubtreeCompletedTasks());
+        ta.shutdown();
+    }
+
+    @Test
+    public void cancellingParentSkipsNestedTasks() throws IOException {
+        ThreadAllocator ta = new ThreadAllocator(2, new CpuQuota(Files.createTempDirectory("cgroup"), 2));
+        ConcurrencyTask nested = new ConcurrencyTask(4);
+        NestingTask parent = new NestingTask(ta, nested, true);
+
+        parent.allocateTasks(ta);
+        ta.waitUntilComplete(parent);
+
+        assertEquals(0, nested.completed.get());
+        assertTrue(ta.getTaskGroup(parent).completed());
+        ta.shutdown();
+    }
+
+    @Test
+    public void inlineAllocatorRunsTasksOnCaller() {
+        ThreadAllocator ta = ThreadAllocator.createInline();
+        GateTask gate = new GateTask();
+        gate.released.countDown();
+        ConcurrencyTask tasks = new ConcurrencyTask(3);
+
+        gate.allocateTasks(ta);
+        tasks.allocateTasks(ta);
+        ta.waitUntilComplete(tasks);
+
+        assertTrue(gate.ranOn == Thread.currentThread());
+        assertEquals(3, tasks.completed.get());
+        assertEquals(1, tasks.maxRunning.get());
+    }
+
+    @Test
+    public void reducingThreadsLetsRunningTasksFinish() throws IOException, InterruptedException {
+        ThreadAllocator ta = new ThreadAllocator(4, new CpuQuota(Files.createTempDirectory("cgroup"), 4));
+        GateTask[] running = new GateTask[3];
+        for(int i = 0; i < running.length; i++) {
+            running[i] = new GateTask();
+            ta.execute(running[i]);
+            running[i].started.await();
+        }
+
+        //returns straight away even though three of the threads are busy
+        ta.reduceNoOfThreads(2);
+        assertEquals(2, ta.getNoOfThreads());
+
+        for(GateTask task:running) {
+            task.released.countDown();
+            ta.waitUntilComplete(task);
+        }
+
+        ConcurrencyTask afterwards = new ConcurrencyTask(4);
+        afterwards.allocateTasks(ta);
+        ta.waitUntilComplete(afterwards);
+        assertEquals(4, afterwards.completed.get());
+        assertTrue(afterwards.maxRunning.get() <= 2);
+        ta.shutdown();
+    }
+}
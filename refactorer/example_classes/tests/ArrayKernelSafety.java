@@ -0,0 +1,57 @@
+public class ArrayKernelSafety {
+    public void fill(int[] values, int n, int value) {
+        for(int i = 0; i < n; i++) {
+            values[i] = value;
+        }
+    }
+
+    public void squares(long[] squares, int n) {
+        for(int i = 0; i < n; i++) {
+            squares[i] = (long)i * i;
+        }
+    }
+
+    public void shiftedCopy(double[] src, double[] dst, int start, int n) {
+        for(int i = start; i < n; i++) {
+            dst[i + 2] = src[i - 1];
+        }
+    }
+
+    public void doubled(int[] in, int[] out, int n) {
+        for(int i = 0; i < n; i++) {
+            out[i] = in[i] * 2 + 1;
+        }
+    }
+
+    public void shiftWithinArray(int[] values, int n) {
+        for(int i = 1; i < n; i++) {
+            values[i] = values[i - 1];
+        }
+    }
+
+    public void floats(float[] values, int n) {
+        for(int i = 0; i < n; i++) {
+            values[i] = 1.0f;
+        }
+    }
+
+    public void capturedVariableChanges(int[] values, int n) {
+        int scale = 1;
+        for(int i = 0; i < n; i++) {
+            values[i] = i * scale;
+        }
+        scale++;
+    }
+
+    public void stepsByTwo(int[] values, int n) {
+        for(int i = 0; i < n; i += 2) {
+            values[i] = 0;
+        }
+    }
+
+    public void copyFromOne(int[] src, int[] dst, int n) {
+        for(int i = 1; i < n; i++) {
+            dst[i] = src[i - 1];
+        }
+    }
+}
@@ -0,0 +1,31 @@
+public class DependenceDistance {
+    public void constant(int[] values, int n) {
+        for(int i = 3; i < n; i++) {
+            values[i] = values[i - 3] + 1;
+        }
+    }
+
+    public void notConstant(int[] values, int n) {
+        for(int i = 0; i < n; i++) {
+            values[2 * i] = values[i] + 1;
+        }
+    }
+
+    public void notDivisible(int[] values, int n) {
+        for(int i = 0; i < n; i++) {
+            values[2 * i] = values[2 * i + 1] + 1;
+        }
+    }
+
+    public void mixed(int[] values, int n) {
+        for(int i = 4; i < n; i++) {
+            values[2 * i] = values[2 * i - 8] + values[2 * i - 6] + values[2 * i + 1];
+        }
+    }
+
+    public void mixedWithNotConstant(int[] values, int n) {
+        for(int i = 2; i < n; i++) {
+            values[i] = values[i - 2] + values[2 * i];
+        }
+    }
+}
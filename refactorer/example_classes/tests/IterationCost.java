@@ -0,0 +1,33 @@
+public class IterationCost {
+    public void lowerTriangle(int[][] m, int n) {
+        for(int i = 0; i < n; i++) {
+            for(int j = 0; j <= i; j++) {
+                m[i][j] = i + j;
+            }
+        }
+    }
+
+    public void upperTriangleCountingDown(int[][] m, int n) {
+        for(int i = 0; i < n; i++) {
+            for(int j = n - 1; j > i; j--) {
+                m[i][j] = i - j;
+            }
+        }
+    }
+
+    public void rectangle(int[][] m, int n) {
+        for(int i = 0; i < n; i++) {
+            for(int j = 0; j < n; j++) {
+                m[i][j] = 0;
+            }
+        }
+    }
+
+    public void boundFromMethodCall(int[][] m, int n) {
+        for(int i = 0; i < n; i++) {
+            for(int j = 0; j < Math.min(i, n); j++) {
+                m[i][j] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+public class MaskedNameClash {
+    private int[] indices;
+
+    public void masked(boolean[] active, int[] values, int indexPosition, int n) {
+        for(int i = 0; i < n; i++) {
+            if(active[i]) {
+                values[i] = indices[i] + indexPosition;
+            }
+        }
+    }
+}
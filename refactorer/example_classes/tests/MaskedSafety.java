@@ -0,0 +1,53 @@
+public class MaskedSafety {
+    public void masked(boolean[] active, int[] values, int n) {
+        for(int i = 0; i < n; i++) {
+            if(active[i]) {
+                values[i] = values[i] * 2;
+            }
+        }
+    }
+
+    public void maskWrittenInLoop(boolean[] active, int[] values, int n) {
+        for(int i = 0; i < n; i++) {
+            if(active[i]) {
+                values[i] = 0;
+                active[i] = false;
+            }
+        }
+    }
+
+    public void elseBranch(boolean[] active, int[] values, int n) {
+        for(int i = 0; i < n; i++) {
+            if(active[i]) {
+                values[i] = 1;
+            } else {
+                values[i] = 0;
+            }
+        }
+    }
+
+    public void boxedFlags(Boolean[] active, int[] values, int n) {
+        for(int i = 0; i < n; i++) {
+            if(active[i]) {
+                values[i] = 1;
+            }
+        }
+    }
+
+    public void offsetFlag(boolean[] active, int[] values, int n) {
+        for(int i = 0; i < n - 1; i++) {
+            if(active[i + 1]) {
+                values[i] = 1;
+            }
+        }
+    }
+
+    public void statementBeforeGuard(boolean[] active, int[] values, int n) {
+        for(int i = 0; i < n; i++) {
+            values[i] = 0;
+            if(active[i]) {
+                values[i] = 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+public class ScanSafety {
+    public void prefixSum(int[] in, int[] out, int n) {
+        for(int i = 1; i < n; i++) {
+            out[i] = out[i-1] + in[i];
+        }
+    }
+
+    public void runningMax(long[] values, int start, int end) {
+        for(int i = start; i < end; i++) {
+            values[i] = Math.max(values[i], values[i-1]);
+        }
+    }
+
+    public void inPlaceProduct(double[] values, int n) {
+        for(int i = 1; i < n; i++) {
+            values[i] *= values[i-1];
+        }
+    }
+
+    public void skipsAnElement(int[] in, int[] out, int n) {
+        for(int i = 2; i < n; i++) {
+            out[i] = out[i-2] + in[i];
+        }
+    }
+
+    public void subtracts(int[] in, int[] out, int n) {
+        for(int i = 1; i < n; i++) {
+            out[i] = out[i-1] - in[i];
+        }
+    }
+
+    public void floats(float[] in, float[] out, int n) {
+        for(int i = 1; i < n; i++) {
+            out[i] = out[i-1] + in[i];
+        }
+    }
+}
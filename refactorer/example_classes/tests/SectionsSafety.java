@@ -0,0 +1,37 @@
+public class SectionsSafety {
+    public void independent(int[] a, int[] b) {
+        a[0] = 1;
+        b[0] = 2;
+    }
+
+    public void aliased(int[] a) {
+        int[] b = a;
+        a[0] = 1;
+        b[0] = 2;
+    }
+
+    public void aliasedWithinSections(int[][] grid) {
+        {
+            int[] row = grid[0];
+            row[0] = 1;
+        }
+        {
+            int[] row = grid[0];
+            row[0] = 2;
+        }
+    }
+
+    public void sleeps(int[] a) throws InterruptedException {
+        a[0] = 1;
+        Thread.sleep(1);
+    }
+
+    public void sleepCaught(int[] a) {
+        a[0] = 1;
+        try {
+            Thread.sleep(1);
+        } catch(InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class SortSafety {
+    public void sortInts(int[] values) {
+        Arrays.sort(values);
+    }
+
+    public void sortRange(double[] values, int from, int to) {
+        Arrays.sort(values, from, to);
+    }
+
+    public void sortWithComparator(String[] words) {
+        Arrays.sort(words, Comparator.reverseOrder());
+    }
+
+    public void sortFloats(float[] values) {
+        Arrays.sort(values);
+    }
+
+    public void sortUncomparable(Object[] values) {
+        Arrays.sort(values);
+    }
+
+    public void sortCopy(int[] values) {
+        Arrays.sort(values.clone());
+    }
+}
@@ -0,0 +1,35 @@
+public class WavefrontSafety {
+    public void wavefront(int[][] t, int n) {
+        for(int i = 1; i < n; i++) {
+            for(int j = 1; j < n; j++) {
+                t[i][j] = t[i-1][j] + t[i][j-1];
+            }
+        }
+    }
+
+    public void incrementedRowAbove(int[][] t, int[][] x, int n) {
+        for(int i = 1; i < n; i++) {
+            for(int j = 1; j < n; j++) {
+                x[i][j] = t[i-1][j] + x[i][j-1];
+                t[i][j]++;
+            }
+        }
+    }
+
+    public void incrementedRowBelow(int[][] t, int n) {
+        for(int i = 1; i < n - 1; i++) {
+            for(int j = 1; j < n - 1; j++) {
+                t[i][j] = t[i-1][j] + t[i][j+1];
+                t[i+1][j]++;
+            }
+        }
+    }
+
+    public void independentRows(int[][] t, int n) {
+        for(int i = 0; i < n; i++) {
+            for(int j = 1; j < n; j++) {
+                t[i][j] = t[i][j-1] + 1;
+            }
+        }
+    }
+}
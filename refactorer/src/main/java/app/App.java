@@ -22,6 +22,7 @@ import com.github.javaparser.ast.stmt.BlockStmt;
 import com.github.javaparser.ast.stmt.ExpressionStmt;
 import com.github.javaparser.ast.stmt.ForStmt;
 import com.github.javaparser.ast.stmt.ReturnStmt;
+import com.github.javaparser.ast.stmt.Statement;
 import com.github.javaparser.printer.lexicalpreservation.LexicalPreservingPrinter;
 import com.github.javaparser.symbolsolver.JavaSymbolSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
@@ -35,8 +36,14 @@ import discovery.CodeNavigation;
 import discovery.ForLocator;
 import discovery.ForLoopSharedDataDetector;
 import discovery.ForManager;
+import safety.ArrayKernelDetector;
+import safety.MaskedLoopDetector;
 import safety.SafetyChecks;
+import safety.ScanLoopDetector;
+import safety.SectionsDetector;
+import safety.SortCallDetector;
 import safety.UnrefactorableException;
+import safety.WavefrontDetector;
 
 /**
  * Main application class
@@ -70,6 +77,21 @@ public class App {
 			System.out.println("ERROR: Some of the files entered do not exist");
         }
 
+        if(argumentHandler.shouldRefactorSections()) {
+            if(refactorSections()) {
+                writeToFile(args[0], userFileCu);
+                if(argumentHandler.getMainMethodFile() != null) rewriteMainFile(argumentHandler.getMainMethodFile());
+            }
+            return;
+        }
+        if(argumentHandler.shouldRefactorSort()) {
+            if(refactorSort()) {
+                writeToFile(args[0], userFileCu);
+                if(argumentHandler.getMainMethodFile() != null) rewriteMainFile(argumentHandler.getMainMethodFile());
+            }
+            return;
+        }
+
         int lineNumber = getLineNumber();
         int columnNumber = getColumnNumber(lineNumber);
 
@@ -84,15 +106,37 @@ public class App {
 
         DataVariable[] sharedData = sharedDataList.toArray(new DataVariable[sharedDataList.size()]);
 
+        SafetyChecks sChecks = new SafetyChecks(refactoringFor, sdd);
         try {
-            SafetyChecks sChecks = new SafetyChecks(refactoringFor, sdd);
             sChecks.performSafetyChecks();
-            sChecks.displayWarnings();
         } catch(UnrefactorableException e) {
             System.out.println("ERROR: " + e.getMessage());
             return;
         }
 
+        ScanLoopDetector scanDetector = new ScanLoopDetector(refactoringFor, sdd.getForInitIdentifier());
+        if(scanDetector.isScan()) {
+            //the warnings are about the dependence between iterations that the scan deals with
+            refactorScanLoop(refactoringFor, scanDetector, sharedData, sdd.getForInitIdentifier(), forColumn);
+
+            writeToFile(args[0], userFileCu);
+            if(argumentHandler.getMainMethodFile() != null) rewriteMainFile(argumentHandler.getMainMethodFile());
+            return;
+        }
+
+        sChecks.displayWarnings();
+
+        ArrayKernelDetector kernelDetector = new ArrayKernelDetector(refactoringFor, sdd.getForInitIdentifier());
+        if(kernelDetector.isKernel()) {
+            refactorArrayKernel(refactoringFor, kernelDetector, sharedData, sdd.getForInitIdentifier(), forColumn);
+
+            writeToFile(args[0], userFileCu);
+            if(argumentHandler.getMainMethodFile() != null) rewriteMainFile(argumentHandler.getMainMethodFile());
+            return;
+        }
+
+        int dependenceDistance = sChecks.getDependenceDistance();
+
         String className = getClosureName();
 
         CodeGenerator cg = new CodeGenerator(className,
@@ -100,14 +144,31 @@ public class App {
                                 sharedData,
                                 sdd.getForInitIdentifier());
 
+        WavefrontDetector wavefrontDetector = new WavefrontDetector(refactoringFor, sdd.getForInitIdentifier());
+
+        if(wavefrontDetector.isWavefront()) {
+            System.out.println("Rows depend on the rows before them, the loop nest will be run as a wavefront of tiles.");
+            cg.setWavefrontInnerLoop(wavefrontDetector.getInnerLoop(), wavefrontDetector.getInnerIdentifier());
+        } else if(dependenceDistance > 1) {
+            //iterations one apart cannot overlap so there is nothing to gain from a doacross loop
+            System.out.println("Iterations depend on the iteration " + dependenceDistance + " before them, the loop will be run as a doacross pipeline.");
+            cg.setDependenceDistance(dependenceDistance);
+        } else {
+            MaskedLoopDetector maskDetector = new MaskedLoopDetector(refactoringFor, sdd.getForInitIdentifier());
+            if(maskDetector.isMasked()) {
+                System.out.println("The loop body is guarded by " + maskDetector.getMaskArray() + ", the loop will be split over the indices whose flag is set.");
+                cg.setIndexSetMask(maskDetector.getMaskArray(), maskDetector.getGuardedBody());
+            }
+        }
+
         CompilationUnit cu = cg.generateParallelForClass();
 
         LexicalPreservingPrinter.setup(userFileCu);
 
         userFileCu.addImport("parallel.*");
 
-        int noOfChunks = getAboveZeroNumber("How many chunks should the for loop be split into? ");
-        int noOfThreads = getAboveZeroNumber("How many threads should the parallel program run on? ");
+        int noOfChunks = getAboveZeroNumber("How many chunks should the for loop be split into (0 to tune at runtime)? ");
+        int noOfThreads = getAboveZeroNumber("How many threads should the parallel program run on (0 to tune at runtime)? ");
         
         BlockStmt replacementBlock = cg.generateReplacementCode(noOfChunks, noOfThreads, sharedDataList);
 
@@ -124,6 +185,139 @@ public class App {
         if(argumentHandler.getMainMethodFile() != null) rewriteMainFile(argumentHandler.getMainMethodFile());
     }
 
+    private static void refactorScanLoop(ForStmt refactoringFor, ScanLoopDetector scanDetector, DataVariable[] sharedData, String forInitIdentifier, int forColumn) {
+        System.out.println("The loop is a prefix scan, it will be replaced with a call to ParallelScan.");
+        if(scanDetector.isRoundingSensitive()) {
+            System.out.println("WARNING: the parallel scan adds up floating point values in a different order to the loop, results may differ by rounding.");
+        }
+
+        CodeGenerator cg = new CodeGenerator(null, refactoringFor, sharedData, forInitIdentifier);
+
+        LexicalPreservingPrinter.setup(userFileCu);
+
+        userFileCu.addImport("parallel.*");
+
+        int noOfChunks = getAboveZeroNumber("How many chunks should the scan be split into (0 for one per thread)? ");
+        int noOfThreads = getAboveZeroNumber("How many threads should the parallel program run on (0 for the default)? ");
+
+        BlockStmt replacementBlock = cg.generateScanReplacementCode(scanDetector, noOfChunks, noOfThreads);
+
+        String lexCorrectReplaceString = correctIndenting(replacementBlock.toString(), forColumn);
+
+        refactoringFor.replace(new ExpressionStmt(new NameExpr(lexCorrectReplaceString)));
+    }
+
+    private static void refactorArrayKernel(ForStmt refactoringFor, ArrayKernelDetector kernelDetector, DataVariable[] sharedData, String forInitIdentifier, int forColumn) {
+        System.out.println("The loop is an array " + kernelDetector.getKernel().toString().toLowerCase() + ", it will be replaced with a call to ParallelArrays.");
+
+        CodeGenerator cg = new CodeGenerator(null, refactoringFor, sharedData, forInitIdentifier);
+
+        LexicalPreservingPrinter.setup(userFileCu);
+
+        userFileCu.addImport("parallel.*");
+        userFileCu.addImport("parallel.arrays.*");
+
+        int noOfChunks = getAboveZeroNumber("How many chunks should the for loop be split into (0 to tune at runtime)? ");
+        int noOfThreads = getAboveZeroNumber("How many threads should the parallel program run on (0 to tune at runtime)? ");
+
+        BlockStmt replacementBlock = cg.generateArrayKernelReplacementCode(kernelDetector, noOfChunks, noOfThreads);
+
+        String lexCorrectReplaceString = correctIndenting(replacementBlock.toString(), forColumn);
+
+        refactoringFor.replace(new ExpressionStmt(new NameExpr(lexCorrectReplaceString)));
+    }
+
+    /**
+     * Replaces the call to Arrays.sort at a line chosen by the user with a parallel sort.
+     * @return True if the call was replaced.
+     */
+    private static boolean refactorSort() {
+        Statement sortStatement = getStatementByLine("Choose the statement that sorts the array (line): ");
+
+        SortCallDetector sortDetector = new SortCallDetector(sortStatement);
+        if(!sortDetector.isSortCall()) {
+            System.out.println("ERROR: The statement is not a call to Arrays.sort on an int, long, double or object array.");
+            return false;
+        }
+        System.out.println("The sort will be replaced with a parallel " + (sortDetector.isObjectSort() ? "merge" : "sample") + " sort.");
+
+        CodeGenerator cg = new CodeGenerator(null, null, new DataVariable[0], null);
+
+        LexicalPreservingPrinter.setup(userFileCu);
+
+        userFileCu.addImport("parallel.*");
+        userFileCu.addImport("parallel.arrays.*");
+
+        int noOfChunks = getAboveZeroNumber("How many parts should the array be split into (0 for one per thread)? ");
+        int noOfThreads = getAboveZeroNumber("How many threads should the parallel program run on (0 for the default)? ");
+
+        BlockStmt replacementBlock = cg.generateSortReplacementCode(sortDetector, noOfChunks, noOfThreads);
+
+        String lexCorrectReplaceString = correctIndenting(replacementBlock.toString(), sortStatement.getBegin().get().column);
+
+        sortStatement.replace(new ExpressionStmt(new NameExpr(lexCorrectReplaceString)));
+
+        return true;
+    }
+
+    /**
+     * Replaces the independent statements starting at a line chosen by the user with parallel sections.
+     * @return True if the statements were replaced.
+     */
+    private static boolean refactorSections() {
+        Statement firstStatement = getStatementByLine("Choose first statement of the sections (line): ");
+
+        SectionsDetector sectionsDetector = new SectionsDetector(firstStatement);
+        if(!sectionsDetector.isSections()) {
+            System.out.println("ERROR: The statement is not followed by a statement that is independent of it.");
+            return false;
+        }
+
+        List<Statement> sections = sectionsDetector.getSections();
+        System.out.println("The " + sections.size() + " statements from line " + firstStatement.getBegin().get().line + " will be run as parallel sections.");
+        sectionsDetector.displayWarnings();
+
+        CodeGenerator cg = new CodeGenerator(null, null, new DataVariable[0], null);
+
+        LexicalPreservingPrinter.setup(userFileCu);
+
+        userFileCu.addImport("parallel.*");
+
+        int noOfThreads = getAboveZeroNumber("How many sections should run at once (0 for the default number of threads)? ");
+
+        BlockStmt replacementBlock = cg.generateSectionsReplacementCode(sectionsDetector, noOfThreads);
+
+        String lexCorrectReplaceString = correctIndenting(replacementBlock.toString(), firstStatement.getBegin().get().column);
+
+        for(int i = 1; i < sections.size(); i++) {
+            sections.get(i).remove();
+        }
+        firstStatement.replace(new ExpressionStmt(new NameExpr(lexCorrectReplaceString)));
+
+        return true;
+    }
+
+    private static Statement getStatementByLine(String promptText) {
+        Scanner in = new Scanner(System.in);
+
+        while(true) {
+            System.out.print(promptText);
+            try {
+                int lineNumber = in.nextInt();
+                for(Statement statement:userFileCu.findAll(Statement.class)) {
+                    if(statement.getBegin().isPresent() && statement.getBegin().get().line == lineNumber &&
+                        statement.getParentNode().isPresent() && statement.getParentNode().get() instanceof BlockStmt) {
+                        return statement;
+                    }
+                }
+                throw new Exception();
+            } catch(Exception e) {
+                System.out.println("Enter the line of a statement within a block");
+                in.nextLine();
+            }
+        }
+    }
+
     private static void rewriteMainFile(String filename) {
         FileInputStream in;
 		try {
@@ -238,7 +432,7 @@ public class App {
 
                 break;
             } catch(NumberFormatException e) {
-                System.out.println("Please enter a valid integer above 0");
+                System.out.println("Please enter a valid integer of 0 or above");
             }
         }
 
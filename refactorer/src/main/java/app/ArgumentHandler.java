@@ -11,6 +11,8 @@ public class ArgumentHandler {
     private String srcDir = null;
     private String mainMethodFile = null;
     private String[] libPaths = null;
+    private boolean refactorSections = false;
+    private boolean refactorSort = false;
 
     private boolean runProgram;
 
@@ -47,6 +49,12 @@ public class ArgumentHandler {
                 i++;
                 i += getLibPaths(args, i);
                 break;
+            case "--sections":
+                refactorSections = true;
+                break;
+            case "--sort":
+                refactorSort = true;
+                break;
             }
         }
     }
@@ -67,6 +75,14 @@ public class ArgumentHandler {
         return libPaths;
     }
 
+    public boolean shouldRefactorSections() {
+        return refactorSections;
+    }
+
+    public boolean shouldRefactorSort() {
+        return refactorSort;
+    }
+
     public boolean shouldContinueProgram() {
         return runProgram;
     }
@@ -102,5 +118,7 @@ public class ArgumentHandler {
         System.out.println("--srcdir <source directory> Set the path to the root source director of this java project.");
         System.out.println("--mainfile <path to main file> Set the path to the class with this project's main method.\n When provided, the exit points in the program will have shutdowns to the ParallelExecutor added.");
         System.out.println("--libs [<path to library>] Give a list of libraries that are used in the project. This is required for the safety checker to accurately identify symbols in the program.");
+        System.out.println("--sections Refactor independent statements that follow each other into parallel sections instead of a for loop.");
+        System.out.println("--sort Refactor a call to Arrays.sort into a parallel sort instead of a for loop.");
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package codegeneration;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Modifier;
@@ -11,11 +13,14 @@ import com.github.javaparser.ast.body.ConstructorDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.Parameter;
 import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.ArrayAccessExpr;
 import com.github.javaparser.ast.expr.AssignExpr;
 import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.EnclosedExpr;
 import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.FieldAccessExpr;
 import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.LambdaExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
@@ -25,9 +30,19 @@ import com.github.javaparser.ast.expr.VariableDeclarationExpr;
 import com.github.javaparser.ast.stmt.BlockStmt;
 import com.github.javaparser.ast.stmt.ExpressionStmt;
 import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
 import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.TryStmt;
+import com.github.javaparser.ast.type.ArrayType;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.PrimitiveType;
+import com.github.javaparser.ast.type.UnknownType;
+
+import discovery.CodeNavigation;
+import safety.ArrayKernelDetector;
+import safety.ScanLoopDetector;
+import safety.SectionsDetector;
+import safety.SortCallDetector;
 
 /**
  * Used to generate the parallel code equivalent of the given sequential program
@@ -40,6 +55,16 @@ public class CodeGenerator {
     private DataVariable[] dataVariable;
     private String className;
     private String forInitIdentifier;
+    private int dependenceDistance;
+    private ForStmt innerLoopStatement;
+    private String innerForInitIdentifier;
+    private Expression maskArray;
+    private Statement guardedBody;
+    private String maskName;
+    private String indicesName;
+    private String positionStartName;
+    private String positionEndName;
+    private String positionName;
 
     /**
      * Prepares the CodeGenerator with the required data for generating parallel code.
@@ -53,6 +78,50 @@ public class CodeGenerator {
         this.loopStatement = loopStatement;
         this.dataVariable = dataVariable;
         this.forInitIdentifier = forInitIdentifier;
+        dependenceDistance = 0;
+        innerLoopStatement = null;
+        innerForInitIdentifier = null;
+        maskArray = null;
+        guardedBody = null;
+    }
+
+    /**
+     * Sets the distance of the loop carried dependence, causing a doacross loop to be generated
+     * where each iteration waits for the iteration that distance before it.
+     * @param dependenceDistance The number of iterations between dependent iterations, or 0 for a loop without dependences.
+     */
+    public void setDependenceDistance(int dependenceDistance) {
+        this.dependenceDistance = dependenceDistance;
+    }
+
+    /**
+     * Sets the inner loop of a loop nest to be run as a wavefront, where the rows of the outer loop and
+     * the columns of the inner loop are split into tiles.
+     * @param innerLoopStatement The inner loop of the nest, which must be the only statement in the outer loop.
+     * @param innerForInitIdentifier The identifier of the inner loop's iterator.
+     */
+    public void setWavefrontInnerLoop(ForStmt innerLoopStatement, String innerForInitIdentifier) {
+        this.innerLoopStatement = innerLoopStatement;
+        this.innerForInitIdentifier = innerForInitIdentifier;
+    }
+
+    /**
+     * Sets the boolean array that guards the whole loop body, causing a loop over the indices whose flag is set to be generated
+     * so that the set indices rather than the range are split between the chunks.
+     * @param maskArray The boolean array indexed by the loop's iterator.
+     * @param guardedBody The statement run for the iterations whose flag is set.
+     */
+    public void setIndexSetMask(Expression maskArray, Statement guardedBody) {
+        this.maskArray = maskArray;
+        this.guardedBody = guardedBody;
+
+        //the body is copied into the generated class, so its names must not be hidden by the class's own
+        Set<String> usedNames = getUsedNames();
+        maskName = getUnusedName("indexMask", usedNames);
+        indicesName = getUnusedName("indices", usedNames);
+        positionStartName = getUnusedName("positionStart", usedNames);
+        positionEndName = getUnusedName("positionEnd", usedNames);
+        positionName = getUnusedName("indexPosition", usedNames);
     }
 
 	/**
@@ -62,7 +131,15 @@ public class CodeGenerator {
     public CompilationUnit generateParallelForClass() {
         CompilationUnit cu = new CompilationUnit();
         ClassOrInterfaceDeclaration cl = cu.addClass(className, Modifier.PRIVATE,  Modifier.STATIC);
-        cl.addExtendedType("ParallelForFarmTask");
+        if(innerLoopStatement != null) {
+            cl.addExtendedType("WavefrontFarmTask");
+        } else if(dependenceDistance > 0) {
+            cl.addExtendedType("DoacrossFarmTask");
+        } else if(maskArray != null) {
+            cl.addExtendedType("IndexSetFarmTask");
+        } else {
+            cl.addExtendedType("ParallelForFarmTask");
+        }
         //cl.addField("int", "field", Modifier.PUBLIC);
         addDataVariableAsFields(cl);
         generateConstructor(cl);
@@ -84,11 +161,18 @@ public class CodeGenerator {
     private NodeList<Parameter> generateConstructorParameters() {
         NodeList<Parameter> allParams = new NodeList<>();
 
+        if(maskArray != null) {
+            allParams.add(new Parameter(new ArrayType(new PrimitiveType(PrimitiveType.Primitive.BOOLEAN)), maskName));
+        }
         //DataVariable rangeStart = new DataVariable(, dataIdent)
         Parameter rangeStart = new Parameter(new PrimitiveType(PrimitiveType.Primitive.INT), "rangeStart");
         allParams.add(rangeStart);
         Parameter rangeEnd = new Parameter(new PrimitiveType(PrimitiveType.Primitive.INT), "rangeEnd");
         allParams.add(rangeEnd);
+        if(innerLoopStatement != null) {
+            allParams.add(new Parameter(new PrimitiveType(PrimitiveType.Primitive.INT), "columnStart"));
+            allParams.add(new Parameter(new PrimitiveType(PrimitiveType.Primitive.INT), "columnEnd"));
+        }
         Parameter noOfChunks = new Parameter(new PrimitiveType(PrimitiveType.Primitive.INT), "noOfChunks");
         allParams.add(noOfChunks);
 
@@ -111,14 +195,26 @@ public class CodeGenerator {
     private BlockStmt generateConstructorBody() {
         NodeList<Statement> statements = new NodeList<>();
 
+        NodeList<Expression> superArguments = new NodeList<>();
+        if(maskArray != null) {
+            superArguments.add(new NameExpr(maskName));
+        }
+        superArguments.add(new NameExpr("rangeStart"));
+        superArguments.add(new NameExpr("rangeEnd"));
+        if(innerLoopStatement != null) {
+            //the rows and columns are split into the same number of tiles
+            superArguments.add(new NameExpr("columnStart"));
+            superArguments.add(new NameExpr("columnEnd"));
+            superArguments.add(new NameExpr("noOfChunks"));
+        }
+        superArguments.add(new NameExpr("noOfChunks"));
+        if(innerLoopStatement == null && dependenceDistance > 0) {
+            superArguments.add(new IntegerLiteralExpr(dependenceDistance));
+        }
+
         statements.add(
             new ExpressionStmt(
-                new MethodCallExpr(
-                    "super",
-                    new NameExpr("rangeStart"),
-                    new NameExpr("rangeEnd"),
-                    new NameExpr("noOfChunks")
-                )
+                new MethodCallExpr(null, "super", superArguments)
             )
         );
 
@@ -126,23 +222,196 @@ public class CodeGenerator {
             statements.add(new ExpressionStmt(data.getConstructorAssignment()));
         }
 
+        //the chunks of a masked loop are split over the set indices, which the cost of an iteration cannot be given in terms of
+        if(innerLoopStatement == null && dependenceDistance == 0 && maskArray == null) {
+            Expression iterationCost = generateIterationCost();
+            if(iterationCost != null) {
+                //i -> Math.max(1, cost) so that the outer loop's own work is counted
+                NodeList<Expression> maxArguments = new NodeList<>();
+                maxArguments.add(new IntegerLiteralExpr(1));
+                maxArguments.add(iterationCost);
+                LambdaExpr costFunction = new LambdaExpr(
+                    encapsulateInNodeList(new Parameter(new UnknownType(), forInitIdentifier)),
+                    new ExpressionStmt(new MethodCallExpr(new NameExpr("Math"), "max", maxArguments)),
+                    false);
+                statements.add(new ExpressionStmt(new MethodCallExpr("setIterationCost", costFunction)));
+            }
+        }
+
         BlockStmt block = new BlockStmt(statements);
 
         return block;
     }
 
+    /**
+     * Generates the number of iterations run by the inner loops of an outer iteration, for loop nests where the
+     * bounds of an inner loop depend on the outer loop's iterator such as for(int j = 0; j {@literal <} i; j++).
+     * @return The sum of the inner loops' iteration counts in terms of the outer iterator, or null if no inner loop's bounds depend on it.
+     */
+    private Expression generateIterationCost() {
+        Expression iterationCost = null;
+        for(ForStmt innerLoop:loopStatement.getBody().findAll(ForStmt.class)) {
+            Expression iterationCount = generateIterationCount(innerLoop);
+            if(iterationCount == null) continue;
+
+            if(iterationCost == null) {
+                iterationCost = iterationCount;
+            } else {
+                iterationCost = new BinaryExpr(iterationCost, iterationCount, BinaryExpr.Operator.PLUS);
+            }
+        }
+
+        return iterationCost;
+    }
+
+    /**
+     * Generates the number of iterations of an inner loop that counts up or down by one between bounds made of the
+     * outer iterator and the variables given to the parallel loop.
+     * @return The iteration count or null if the loop is not of that form or its bounds do not use the outer iterator.
+     */
+    private Expression generateIterationCount(ForStmt innerLoop) {
+        if(innerLoop.getInitialization().size() != 1 ||
+            !innerLoop.getInitialization().get(0).isVariableDeclarationExpr() ||
+            innerLoop.getInitialization().get(0).asVariableDeclarationExpr().getVariables().size() != 1) {
+            return null;
+        }
+        VariableDeclarator iteratorDecl = innerLoop.getInitialization().get(0).asVariableDeclarationExpr().getVariable(0);
+        String identifier = iteratorDecl.getNameAsString();
+        if(!iteratorDecl.getInitializer().isPresent()) {
+            return null;
+        }
+        Expression first = iteratorDecl.getInitializer().get();
+
+        if(!innerLoop.getCompare().isPresent() || !innerLoop.getCompare().get().isBinaryExpr()) {
+            return null;
+        }
+        BinaryExpr compareExpr = innerLoop.getCompare().get().asBinaryExpr();
+        Expression bound;
+        BinaryExpr.Operator operator = compareExpr.getOperator();
+        if(isIdentifier(compareExpr.getLeft(), identifier)) {
+            bound = compareExpr.getRight();
+        } else if(isIdentifier(compareExpr.getRight(), identifier)) {
+            //n > j is the same as j < n
+            bound = compareExpr.getLeft();
+            operator = getFlippedOperator(operator);
+        } else {
+            return null;
+        }
+
+        if(innerLoop.getUpdate().size() != 1 || !innerLoop.getUpdate().get(0).isUnaryExpr() ||
+            !isIdentifier(innerLoop.getUpdate().get(0).asUnaryExpr().getExpression(), identifier)) {
+            return null;
+        }
+        UnaryExpr.Operator update = innerLoop.getUpdate().get(0).asUnaryExpr().getOperator();
+        boolean increasing = update == UnaryExpr.Operator.POSTFIX_INCREMENT || update == UnaryExpr.Operator.PREFIX_INCREMENT;
+        boolean decreasing = update == UnaryExpr.Operator.POSTFIX_DECREMENT || update == UnaryExpr.Operator.PREFIX_DECREMENT;
+
+        if(!isCostBound(first) || !isCostBound(bound) || (!usesForInitIdentifier(first) && !usesForInitIdentifier(bound))) {
+            return null;
+        }
+
+        Expression iterationCount;
+        if(increasing && (operator == BinaryExpr.Operator.LESS || operator == BinaryExpr.Operator.LESS_EQUALS)) {
+            iterationCount = new BinaryExpr(new EnclosedExpr(bound.clone()), new EnclosedExpr(first.clone()), BinaryExpr.Operator.MINUS);
+        } else if(decreasing && (operator == BinaryExpr.Operator.GREATER || operator == BinaryExpr.Operator.GREATER_EQUALS)) {
+            iterationCount = new BinaryExpr(new EnclosedExpr(first.clone()), new EnclosedExpr(bound.clone()), BinaryExpr.Operator.MINUS);
+        } else {
+            return null;
+        }
+
+        if(operator == BinaryExpr.Operator.LESS_EQUALS || operator == BinaryExpr.Operator.GREATER_EQUALS) {
+            iterationCount = new BinaryExpr(iterationCount, new IntegerLiteralExpr(1), BinaryExpr.Operator.PLUS);
+        }
+
+        return new EnclosedExpr(iterationCount);
+    }
+
+    /**
+     * Checks that a bound of an inner loop can be worked out from the outer iterator alone before the loop is run,
+     * so it can only use the outer iterator and the variables given to the parallel loop, without side effects.
+     */
+    private boolean isCostBound(Expression expr) {
+        if(!expr.findAll(MethodCallExpr.class).isEmpty() ||
+            !expr.findAll(AssignExpr.class).isEmpty() ||
+            !expr.findAll(ObjectCreationExpr.class).isEmpty()) {
+            return false;
+        }
+        for(UnaryExpr unaryExpr:expr.findAll(UnaryExpr.class)) {
+            if(unaryExpr.getOperator().isPostfix() || unaryExpr.getOperator() == UnaryExpr.Operator.PREFIX_INCREMENT ||
+                unaryExpr.getOperator() == UnaryExpr.Operator.PREFIX_DECREMENT) {
+                return false;
+            }
+        }
+
+        for(NameExpr nameExpr:expr.findAll(NameExpr.class)) {
+            if(nameExpr.getNameAsString().equals(forInitIdentifier)) continue;
+
+            boolean isData = false;
+            for(DataVariable data:dataVariable) {
+                if(data.getName().equals(nameExpr.getNameAsString())) {
+                    isData = true;
+                }
+            }
+            if(!isData) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean usesForInitIdentifier(Expression expr) {
+        for(NameExpr nameExpr:expr.findAll(NameExpr.class)) {
+            if(nameExpr.getNameAsString().equals(forInitIdentifier)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isIdentifier(Expression expr, String identifier) {
+        return expr.isNameExpr() && expr.asNameExpr().getNameAsString().equals(identifier);
+    }
+
+    private static BinaryExpr.Operator getFlippedOperator(BinaryExpr.Operator operator) {
+        switch(operator) {
+        case LESS:
+            return BinaryExpr.Operator.GREATER;
+        case LESS_EQUALS:
+            return BinaryExpr.Operator.GREATER_EQUALS;
+        case GREATER:
+            return BinaryExpr.Operator.LESS;
+        case GREATER_EQUALS:
+            return BinaryExpr.Operator.LESS_EQUALS;
+        default:
+            return operator;
+        }
+    }
+
     private void generateOperationMethod(ClassOrInterfaceDeclaration cl) {
         MethodDeclaration operationMethod = cl.addMethod("operation", Modifier.PUBLIC);
         operationMethod.addAndGetAnnotation("Override");
+        if(maskArray != null) {
+            operationMethod.addParameter("int[]", indicesName);
+            operationMethod.addParameter("int", positionStartName);
+            operationMethod.addParameter("int", positionEndName);
+            generateOperationIndexLoop(operationMethod);
+            return;
+        }
         operationMethod.addParameter("int", "rangeStart");
         operationMethod.addParameter("int", "rangeEnd");
+        if(innerLoopStatement != null) {
+            operationMethod.addParameter("int", "columnStart");
+            operationMethod.addParameter("int", "columnEnd");
+        }
         generateOperationForLoop(operationMethod);
     }
 
     /**
      * Generates the code that is to replace the loop in the user's code.
-     * @param noOfChunks	The number of chunks that the loop is to be split into when parallelised
-     * @param noOfThreads	The number of threads that the parallel loop is going to be run on.
+     * @param noOfChunks	The number of chunks that the loop is to be split into when parallelised, 0 to have it tuned at runtime.
+     * @param noOfThreads	The number of threads that the parallel loop is going to be run on, 0 to have it tuned at runtime.
      * @param sharedDataList	A list of variables that are created outside the parallelised loop but need to be used within.
      * @return An AST representation of the code that replaces the loop to be parallelised.
      */
@@ -156,9 +425,16 @@ public class CodeGenerator {
     
     private ExpressionStmt generateMethodCall(int noOfChunks, int noOfThreads, List<DataVariable> sharedDataList) {
         NodeList<Expression> arguments = new NodeList<>();
-        arguments.add(getRangeStart());
-        arguments.add(getRangeEnd());
-        arguments.add(new IntegerLiteralExpr(noOfChunks));
+        if(maskArray != null) {
+            arguments.add(maskArray.clone());
+        }
+        arguments.add(getRangeStart(loopStatement));
+        arguments.add(getRangeEnd(loopStatement, forInitIdentifier));
+        if(innerLoopStatement != null) {
+            arguments.add(getRangeStart(innerLoopStatement));
+            arguments.add(getRangeEnd(innerLoopStatement, innerForInitIdentifier));
+        }
+        arguments.add(generateCountArgument(noOfChunks));
         for(int i = 0; i < sharedDataList.size(); i++) {
             arguments.add(new NameExpr(sharedDataList.get(i).getName()));
         }
@@ -175,7 +451,7 @@ public class CodeGenerator {
                             new ClassOrInterfaceType(null, className), 
                             arguments
                         ),
-                        new IntegerLiteralExpr(noOfThreads)
+                        generateCountArgument(noOfThreads)
                     )
                 )
             )
@@ -184,6 +460,266 @@ public class CodeGenerator {
         return statement;
     }
 
+    /**
+     * Generates the code that replaces a prefix scan loop with a call to ParallelScan.
+     * The element before the start of the loop is used as the seed of the scan, so the call is only made when the loop has iterations.
+     * @param scan The detected scan loop, which must be the loop given to this CodeGenerator.
+     * @param noOfChunks	The number of chunks that the scan is to be split into, 0 for one per thread.
+     * @param noOfThreads	The number of threads that the scan is going to be run on, 0 for the default.
+     * @return An AST representation of the code that replaces the loop.
+     */
+    public BlockStmt generateScanReplacementCode(ScanLoopDetector scan, int noOfChunks, int noOfThreads) {
+        Expression rangeStart = getRangeStart(loopStatement);
+        Expression seedIndex;
+        if(rangeStart.isIntegerLiteralExpr()) {
+            seedIndex = new IntegerLiteralExpr(rangeStart.asIntegerLiteralExpr().asInt() - 1);
+        } else {
+            seedIndex = new BinaryExpr(rangeStart.clone(), new IntegerLiteralExpr(1), BinaryExpr.Operator.MINUS);
+        }
+
+        NodeList<Expression> arguments = new NodeList<>();
+        arguments.add(scan.getValuesArray().clone());
+        arguments.add(scan.getResultArray().clone());
+        arguments.add(rangeStart.clone());
+        arguments.add(getRangeEnd(loopStatement, forInitIdentifier).clone());
+        arguments.add(new ArrayAccessExpr(scan.getResultArray().clone(), seedIndex));
+        arguments.add(generateScanOperator(scan));
+        arguments.add(generateCountArgument(noOfChunks));
+        arguments.add(generateCountArgument(noOfThreads));
+
+        //the seed is only read when the loop would have run, as it is before the start of the loop
+        return encapsulateInBlockStmt(new IfStmt(
+            new BinaryExpr(rangeStart.clone(), getRangeEnd(loopStatement, forInitIdentifier).clone(), BinaryExpr.Operator.LESS),
+            encapsulateInBlockStmt(new ExpressionStmt(
+                new MethodCallExpr(new NameExpr("ParallelScan"), "inclusiveScan", arguments))),
+            null));
+    }
+
+    /**
+     * Generates the code that replaces independent statements with a call to ParallelExecutor.executeSections,
+     * where each statement becomes the body of a lambda.
+     * @param sections The detector that found the statements.
+     * @param noOfThreads The most sections to run at once, 0 for the default.
+     * @return The code to replace the first statement with, once the other statements have been removed.
+     */
+    public BlockStmt generateSectionsReplacementCode(SectionsDetector sections, int noOfThreads) {
+        NodeList<Expression> arguments = new NodeList<>();
+        arguments.add(generateCountArgument(noOfThreads));
+        for(Statement section:sections.getSections()) {
+            Statement body = section.isBlockStmt() ? section.clone() : encapsulateInBlockStmt(section.clone());
+            arguments.add(new LambdaExpr(new NodeList<>(), body, true));
+        }
+
+        return encapsulateInBlockStmt(new ExpressionStmt(
+            new MethodCallExpr(new NameExpr("ParallelExecutor"), "executeSections", arguments)));
+    }
+
+    /**
+     * Generates the code that replaces a loop with a call to one of the ParallelArrays kernels.
+     * The call is only made when the loop has iterations, as the kernels do not take a range that ends before it starts.
+     * @param kernel The detected kernel loop, which must be the loop given to this CodeGenerator.
+     * @param noOfChunks	The number of chunks that the kernel is to be split into, 0 to have it tuned at runtime.
+     * @param noOfThreads	The number of threads that the kernel is going to be run on, 0 to have it tuned at runtime.
+     * @return An AST representation of the code that replaces the loop.
+     */
+    public BlockStmt generateArrayKernelReplacementCode(ArrayKernelDetector kernel, int noOfChunks, int noOfThreads) {
+        Expression rangeStart = getRangeStart(loopStatement);
+        Expression rangeEnd = getRangeEnd(loopStatement, forInitIdentifier);
+
+        NodeList<Expression> arguments = new NodeList<>();
+        String kernelMethod;
+        switch(kernel.getKernel()) {
+        case FILL:
+            kernelMethod = "fill";
+            arguments.add(kernel.getTargetArray().clone());
+            arguments.add(rangeStart.clone());
+            arguments.add(rangeEnd.clone());
+            arguments.add(kernel.getValue().clone());
+            break;
+        case SET_ALL:
+            kernelMethod = "setAll";
+            arguments.add(kernel.getTargetArray().clone());
+            arguments.add(rangeStart.clone());
+            arguments.add(rangeEnd.clone());
+            arguments.add(new LambdaExpr(encapsulateInNodeList(new Parameter(new UnknownType(), forInitIdentifier)),
+                new ExpressionStmt(kernel.getValue().clone()), false));
+            break;
+        case COPY:
+            kernelMethod = "copy";
+            arguments.add(kernel.getSourceArray().clone());
+            arguments.add(generateOffsetIndex(rangeStart, kernel.getSourceOffset()));
+            arguments.add(kernel.getTargetArray().clone());
+            arguments.add(generateOffsetIndex(rangeStart, kernel.getTargetOffset()));
+            arguments.add(new BinaryExpr(encloseIfCompound(rangeEnd), encloseIfCompound(rangeStart), BinaryExpr.Operator.MINUS));
+            break;
+        default:
+            kernelMethod = "map";
+            arguments.add(kernel.getSourceArray().clone());
+            arguments.add(kernel.getTargetArray().clone());
+            arguments.add(rangeStart.clone());
+            arguments.add(rangeEnd.clone());
+            arguments.add(generateMapFunction(kernel));
+            break;
+        }
+        arguments.add(generateCountArgument(noOfChunks));
+        arguments.add(generateCountArgument(noOfThreads));
+
+        return encapsulateInBlockStmt(new IfStmt(
+            new BinaryExpr(rangeStart.clone(), rangeEnd.clone(), BinaryExpr.Operator.LESS),
+            encapsulateInBlockStmt(new ExpressionStmt(
+                new MethodCallExpr(new NameExpr("ParallelArrays"), kernelMethod, arguments))),
+            null));
+    }
+
+    /**
+     * Generates a lambda from the expression of a map, where each read of the source array at the iterator is replaced by the lambda's parameter.
+     */
+    private LambdaExpr generateMapFunction(ArrayKernelDetector kernel) {
+        String element = getUnusedName("element", getUsedNames());
+
+        Expression body = kernel.getValue().clone();
+        String sourceArray = kernel.getSourceArray().toString();
+        if(isSourceElement(body, sourceArray)) {
+            body = new NameExpr(element);
+        } else {
+            for(ArrayAccessExpr access:body.findAll(ArrayAccessExpr.class)) {
+                if(isSourceElement(access, sourceArray)) {
+                    access.replace(new NameExpr(element));
+                }
+            }
+        }
+
+        return new LambdaExpr(encapsulateInNodeList(new Parameter(new UnknownType(), element)), new ExpressionStmt(body), false);
+    }
+
+    private boolean isSourceElement(Expression expr, String sourceArray) {
+        return expr.isArrayAccessExpr() && expr.asArrayAccessExpr().getName().toString().equals(sourceArray) &&
+            isIdentifier(expr.asArrayAccessExpr().getIndex(), forInitIdentifier);
+    }
+
+    /**
+     * Generates the index that is offset from the start of the loop by a fixed distance.
+     */
+    private Expression generateOffsetIndex(Expression rangeStart, long offset) {
+        if(offset == 0) {
+            return rangeStart.clone();
+        }
+        if(rangeStart.isIntegerLiteralExpr()) {
+            return new IntegerLiteralExpr((int)(rangeStart.asIntegerLiteralExpr().asInt() + offset));
+        }
+
+        Expression start = encloseIfCompound(rangeStart);
+        if(offset < 0) {
+            return new BinaryExpr(start, new IntegerLiteralExpr((int)-offset), BinaryExpr.Operator.MINUS);
+        }
+        return new BinaryExpr(start, new IntegerLiteralExpr((int)offset), BinaryExpr.Operator.PLUS);
+    }
+
+    /**
+     * Copies an expression to be used as an operand, putting it in brackets unless it is a single name or literal.
+     */
+    private static Expression encloseIfCompound(Expression expr) {
+        if(expr.isNameExpr() || expr.isFieldAccessExpr() || expr.isLiteralExpr()) {
+            return expr.clone();
+        }
+
+        return new EnclosedExpr(expr.clone());
+    }
+
+    /**
+     * Generates the code that replaces a call to Arrays.sort with a call to ParallelSort, using a sample sort for
+     * primitives, which moves each element once, and a merge sort for objects, which splits the work evenly however many are equal.
+     * @param sort The detected sort call.
+     * @param noOfChunks	The number of runs or buckets that the array is to be split into, 0 for one per thread.
+     * @param noOfThreads	The number of threads that the sort is going to be run on, 0 for the default.
+     * @return An AST representation of the code that replaces the call.
+     */
+    public BlockStmt generateSortReplacementCode(SortCallDetector sort, int noOfChunks, int noOfThreads) {
+        NodeList<Expression> arguments = new NodeList<>();
+        arguments.add(sort.getArray().clone());
+        if(sort.getRangeStart() != null) {
+            arguments.add(sort.getRangeStart().clone());
+            arguments.add(sort.getRangeEnd().clone());
+        } else {
+            arguments.add(new IntegerLiteralExpr(0));
+            arguments.add(new FieldAccessExpr(sort.getArray().clone(), "length"));
+        }
+        if(sort.getComparator() != null) {
+            arguments.add(sort.getComparator().clone());
+        }
+        arguments.add(generateCountArgument(noOfChunks));
+        arguments.add(generateCountArgument(noOfThreads));
+
+        return encapsulateInBlockStmt(new ExpressionStmt(
+            new MethodCallExpr(new NameExpr("ParallelSort"), sort.isObjectSort() ? "mergeSort" : "sampleSort", arguments)));
+    }
+
+    /**
+     * Gets every name used in the user's class, so that generated names can be chosen that do not clash with them.
+     */
+    private Set<String> getUsedNames() {
+        Set<String> usedNames = new HashSet<>();
+        Node searchNode = CodeNavigation.getParentOfTypeFromNode(ClassOrInterfaceDeclaration.class, loopStatement);
+        if(searchNode == null) {
+            searchNode = loopStatement;
+        }
+        for(SimpleName name:searchNode.findAll(SimpleName.class)) {
+            usedNames.add(name.getIdentifier());
+        }
+
+        return usedNames;
+    }
+
+    /**
+     * Gets the given name, numbered if it is needed so that it is not one of the used names.
+     */
+    private static String getUnusedName(String name, Set<String> usedNames) {
+        String unusedName = name;
+        for(int i = 1; usedNames.contains(unusedName); i++) {
+            unusedName = name + i;
+        }
+
+        return unusedName;
+    }
+
+    /**
+     * Generates a lambda for the operator of a scan, naming its parameters so they do not clash with any names in the user's class.
+     */
+    private LambdaExpr generateScanOperator(ScanLoopDetector scan) {
+        Set<String> usedNames = getUsedNames();
+
+        String left = "scanned";
+        String right = "next";
+        for(int i = 1; usedNames.contains(left) || usedNames.contains(right); i++) {
+            left = "scanned" + i;
+            right = "next" + i;
+        }
+
+        Expression body;
+        if(scan.getOperator() != null) {
+            body = new BinaryExpr(new NameExpr(left), new NameExpr(right), scan.getOperator());
+        } else {
+            body = new MethodCallExpr(new NameExpr("Math"), scan.getMathMethod(), new NodeList<>(new NameExpr(left), new NameExpr(right)));
+        }
+
+        NodeList<Parameter> parameters = new NodeList<>();
+        parameters.add(new Parameter(new UnknownType(), left));
+        parameters.add(new Parameter(new UnknownType(), right));
+
+        return new LambdaExpr(parameters, new ExpressionStmt(body), true);
+    }
+
+    /**
+     * Generates the argument for a number of chunks or threads, using the library's automatic tuning when the number is 0.
+     */
+    private Expression generateCountArgument(int count) {
+        if(count == 0) {
+            return new FieldAccessExpr(new NameExpr("ParallelExecutor"), "AUTO");
+        }
+
+        return new IntegerLiteralExpr(count);
+    }
+
     private NodeList<Statement> generateFinishingAssignments(List<DataVariable> sharedDataList) {
         NodeList<Statement> allAssignments = new NodeList<>();
 
@@ -202,7 +738,7 @@ public class CodeGenerator {
         return allAssignments;
     }
 
-    private Expression getRangeStart() {
+    private Expression getRangeStart(ForStmt loopStatement) {
         NodeList<Expression> allInitExprs = loopStatement.getInitialization();
         if(allInitExprs.get(0).isVariableDeclarationExpr()) {
             return allInitExprs.get(0).asVariableDeclarationExpr().getVariable(0).getInitializer().get();
@@ -211,7 +747,7 @@ public class CodeGenerator {
         throw new RuntimeException("For loop initialiser not valid");
         //return null;
     }
-    private Expression getRangeEnd() {
+    private Expression getRangeEnd(ForStmt loopStatement, String forInitIdentifier) {
         BinaryExpr compareExpr = loopStatement.getCompare().get().asBinaryExpr();
         
         //TODO: maybe allow for <= and >= by adding a +1 to rangeEnd
@@ -230,27 +766,83 @@ public class CodeGenerator {
     }
 
     private void generateOperationForLoop(MethodDeclaration operationMethod) {
+        Statement body;
+        if(innerLoopStatement != null) {
+            body = encapsulateInBlockStmt(generateRangeForLoop(innerForInitIdentifier, "columnStart", "columnEnd", innerLoopStatement.getBody()));
+        } else if(dependenceDistance > 0) {
+            body = generateDoacrossBody();
+        } else {
+            body = loopStatement.getBody();
+        }
+
+        operationMethod.setBody(encapsulateInBlockStmt(generateRangeForLoop(forInitIdentifier, "rangeStart", "rangeEnd", body)));
+    }
+
+    /**
+     * Generates a loop over the chunk's positions in the set indices, where each position gives the iterator the value of
+     * the index at it and runs the body that was guarded by the mask.
+     */
+    private void generateOperationIndexLoop(MethodDeclaration operationMethod) {
+        NodeList<Statement> statements = new NodeList<>();
+        //int i = indices[indexPosition]
+        statements.add(new ExpressionStmt(new VariableDeclarationExpr(
+            new VariableDeclarator(new PrimitiveType(PrimitiveType.Primitive.INT),
+                                    forInitIdentifier,
+                                    new ArrayAccessExpr(new NameExpr(indicesName), new NameExpr(positionName))))));
+        if(guardedBody.isBlockStmt()) {
+            statements.addAll(guardedBody.asBlockStmt().getStatements());
+        } else {
+            statements.add(guardedBody);
+        }
+
+        operationMethod.setBody(encapsulateInBlockStmt(generateRangeForLoop(positionName, positionStartName, positionEndName, new BlockStmt(statements))));
+    }
+
+    private ForStmt generateRangeForLoop(String identifier, String rangeStartName, String rangeEndName, Statement body) {
         ForStmt forLoop = new ForStmt();
         //int i = rangeStart
         VariableDeclarationExpr iteratorDecl = new VariableDeclarationExpr(
                                         new VariableDeclarator(new PrimitiveType(PrimitiveType.Primitive.INT), 
-                                                                forInitIdentifier, 
-                                                                new NameExpr("rangeStart")));
+                                                                identifier, 
+                                                                new NameExpr(rangeStartName)));
         forLoop.setInitialization(encapsulateInNodeList((Expression)iteratorDecl));
 
         //i < rangeEnd
-        BinaryExpr exitExpr = new BinaryExpr(new NameExpr(forInitIdentifier), 
-                                                new NameExpr("rangeEnd"), 
+        BinaryExpr exitExpr = new BinaryExpr(new NameExpr(identifier), 
+                                                new NameExpr(rangeEndName), 
                                                 BinaryExpr.Operator.LESS);
         forLoop.setCompare(exitExpr);
 
         //i++
-        UnaryExpr update = new UnaryExpr(new NameExpr(forInitIdentifier), UnaryExpr.Operator.POSTFIX_INCREMENT);
+        UnaryExpr update = new UnaryExpr(new NameExpr(identifier), UnaryExpr.Operator.POSTFIX_INCREMENT);
         forLoop.setUpdate(encapsulateInNodeList((Expression)update));
         
-        forLoop.setBody(loopStatement.getBody());
+        forLoop.setBody(body);
 
-        operationMethod.setBody(encapsulateInBlockStmt(forLoop));
+        return forLoop;
+    }
+
+    /**
+     * Wraps the loop body so that it waits for the iteration it depends on and posts its own iteration when finished,
+     * even when the body is left early with a continue statement.
+     */
+    private BlockStmt generateDoacrossBody() {
+        Statement loopBody = loopStatement.getBody();
+        BlockStmt tryBlock;
+        if(loopBody.isBlockStmt()) {
+            tryBlock = loopBody.asBlockStmt();
+        } else {
+            tryBlock = encapsulateInBlockStmt(loopBody);
+        }
+
+        BlockStmt finallyBlock = encapsulateInBlockStmt(
+            new ExpressionStmt(new MethodCallExpr("postIteration", new NameExpr(forInitIdentifier))));
+
+        NodeList<Statement> statements = new NodeList<>();
+        statements.add(new ExpressionStmt(new MethodCallExpr("awaitDependence", new NameExpr(forInitIdentifier))));
+        statements.add(new TryStmt(tryBlock, new NodeList<>(), finallyBlock));
+
+        return new BlockStmt(statements);
     }
 
     private <N extends Node> NodeList<N> encapsulateInNodeList(N node) {
@@ -0,0 +1,356 @@
+package safety;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.ArrayAccessExpr;
+import com.github.javaparser.ast.expr.ArrayCreationExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.resolution.types.ResolvedType;
+
+import discovery.CodeNavigation;
+
+/**
+ * Checks if a for loop is one of the array loops that ParallelArrays has a kernel for:
+ * a fill of the form a[i] = value, a copy of the form dest[i + c] = src[i + d], a map of the form
+ * result[i] = f(values[i]) or the general form a[i] = f(i) that is run with setAll.
+ * The arrays must hold int, long, double or objects. The function of a map or setAll becomes a lambda, so it can
+ * only use the local variables of the method that are never assigned after they are declared.
+ * @author michaellynch
+ *
+ */
+public class ArrayKernelDetector {
+
+    /**
+     * The kernels that a loop can be replaced with.
+     */
+    public enum Kernel {
+        FILL, SET_ALL, COPY, MAP
+    }
+
+    private ForStmt forLoop;
+    private String forInitIdentifier;
+
+    private Kernel kernel;
+    private Expression targetArray;
+    private Expression sourceArray;
+    private long targetOffset;
+    private long sourceOffset;
+    private Expression value;
+
+    /**
+     * Checks the given for loop.
+     * @param forLoop The for loop to check.
+     * @param forInitIdentifier The identifier of the loop's iterator.
+     */
+    public ArrayKernelDetector(ForStmt forLoop, String forInitIdentifier) {
+        this.forLoop = forLoop;
+        this.forInitIdentifier = forInitIdentifier;
+        kernel = null;
+        sourceArray = null;
+        targetOffset = 0;
+        sourceOffset = 0;
+        detectKernel();
+    }
+
+    /**
+     * @return True if the loop can be replaced with an array kernel.
+     */
+    public boolean isKernel() {
+        return kernel != null;
+    }
+
+    /**
+     * @return The kernel that the loop can be replaced with, or null if there is not one.
+     */
+    public Kernel getKernel() {
+        return kernel;
+    }
+
+    /**
+     * @return The array that the loop writes to.
+     */
+    public Expression getTargetArray() {
+        return targetArray;
+    }
+
+    /**
+     * @return The array that a copy or map reads from, or null for a fill or setAll.
+     */
+    public Expression getSourceArray() {
+        return sourceArray;
+    }
+
+    /**
+     * @return The distance from the iterator of the index written to by a copy.
+     */
+    public long getTargetOffset() {
+        return targetOffset;
+    }
+
+    /**
+     * @return The distance from the iterator of the index read by a copy.
+     */
+    public long getSourceOffset() {
+        return sourceOffset;
+    }
+
+    /**
+     * @return The value of a fill, or the expression computing each element of a setAll or map where a map's
+     * reads of the source array are still of the form values[i].
+     */
+    public Expression getValue() {
+        return value;
+    }
+
+    private void detectKernel() {
+        if(!DetectorHelper.isIncrementedByOne(forLoop, forInitIdentifier)) {
+            return;
+        }
+
+        Statement body = forLoop.getBody();
+        if(body.isBlockStmt()) {
+            if(body.asBlockStmt().getStatements().size() != 1) {
+                return;
+            }
+            body = body.asBlockStmt().getStatement(0);
+        }
+        if(!body.isExpressionStmt() || !body.asExpressionStmt().getExpression().isAssignExpr()) {
+            return;
+        }
+
+        AssignExpr assignExpr = body.asExpressionStmt().getExpression().asAssignExpr();
+        if(assignExpr.getOperator() != AssignExpr.Operator.ASSIGN || !assignExpr.getTarget().isArrayAccessExpr()) {
+            return;
+        }
+        ArrayAccessExpr target = assignExpr.getTarget().asArrayAccessExpr();
+        Long offset = getIteratorOffset(target);
+        if(offset == null || !hasSideEffectFreeValue(assignExpr.getValue())) {
+            return;
+        }
+        targetArray = target.getName();
+        targetOffset = offset;
+        value = DetectorHelper.unwrap(assignExpr.getValue());
+
+        ResolvedType elementType = getElementType(target);
+        if(elementType == null) {
+            return;
+        }
+
+        if(value.isArrayAccessExpr() && isCopy(value.asArrayAccessExpr(), elementType)) {
+            kernel = Kernel.COPY;
+            return;
+        }
+        //every other kernel writes to a[i] and must not read the array it writes to anywhere but a[i]
+        if(targetOffset != 0 || readsTargetArray()) {
+            return;
+        }
+
+        if(!usesIterator(value) && value.findAll(MethodCallExpr.class).isEmpty() &&
+            value.findAll(ObjectCreationExpr.class).isEmpty() && value.findAll(ArrayCreationExpr.class).isEmpty()) {
+            kernel = Kernel.FILL;
+            return;
+        }
+
+        if(!isLambdaSafe(value)) {
+            return;
+        }
+        kernel = isMap(elementType) ? Kernel.MAP : Kernel.SET_ALL;
+    }
+
+    /**
+     * A copy reads the element of another array at a fixed distance from the iterator, where both arrays hold the same type.
+     * The source cannot be the target, as a loop copying forward within an array repeats elements rather than moving them.
+     */
+    private boolean isCopy(ArrayAccessExpr source, ResolvedType elementType) {
+        Long offset = getIteratorOffset(source);
+        if(offset == null || isSameArray(source.getName(), targetArray)) {
+            return false;
+        }
+
+        ResolvedType sourceType = getElementType(source);
+        if(sourceType == null || sourceType.isPrimitive() != elementType.isPrimitive() ||
+            (elementType.isPrimitive() && !sourceType.describe().equals(elementType.describe()))) {
+            return false;
+        }
+
+        sourceArray = source.getName();
+        sourceOffset = offset;
+        return true;
+    }
+
+    /**
+     * A map only uses the iterator to read one array at the iterator, which holds the same primitive type as the target
+     * or objects if the target holds objects.
+     */
+    private boolean isMap(ResolvedType elementType) {
+        ArrayAccessExpr valuesAccess = null;
+        for(NameExpr nameExpr:value.findAll(NameExpr.class)) {
+            if(!nameExpr.getNameAsString().equals(forInitIdentifier)) continue;
+
+            if(!nameExpr.getParentNode().isPresent() || !(nameExpr.getParentNode().get() instanceof ArrayAccessExpr)) {
+                return false;
+            }
+            ArrayAccessExpr access = (ArrayAccessExpr)nameExpr.getParentNode().get();
+            if(access.getIndex() != nameExpr || !isSimpleArray(access.getName()) ||
+                (valuesAccess != null && !isSameArray(valuesAccess.getName(), access.getName()))) {
+                return false;
+            }
+            valuesAccess = access;
+        }
+        if(valuesAccess == null) {
+            return false;
+        }
+
+        ResolvedType valuesType = getElementType(valuesAccess);
+        if(valuesType == null || valuesType.isPrimitive() != elementType.isPrimitive() ||
+            (elementType.isPrimitive() && !valuesType.describe().equals(elementType.describe()))) {
+            return false;
+        }
+
+        sourceArray = valuesAccess.getName();
+        return true;
+    }
+
+    /**
+     * Gets the offset c of an array access of the form array[i + c] where the array does not change with the iterator.
+     * @return The offset or null if the access is not of that form.
+     */
+    private Long getIteratorOffset(ArrayAccessExpr aaExpr) {
+        if(!isSimpleArray(aaExpr.getName())) {
+            return null;
+        }
+
+        try {
+            SimplifiedEquation index = SimplifiedEquation.createSimplifiedEquation(aaExpr.getIndex(), forInitIdentifier);
+            if(index.getITotal() != 1) {
+                return null;
+            }
+            return index.getNTotal();
+        } catch(NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks that an array is a variable or field that can be passed to a kernel in place of the loop.
+     */
+    private boolean isSimpleArray(Expression arrayExpr) {
+        if(!arrayExpr.isNameExpr() && !arrayExpr.isFieldAccessExpr()) {
+            return false;
+        }
+        if(!arrayExpr.findAll(MethodCallExpr.class).isEmpty()) {
+            return false;
+        }
+
+        return !usesIterator(arrayExpr);
+    }
+
+    private boolean isSameArray(Expression first, Expression second) {
+        return first.toString().equals(second.toString());
+    }
+
+    private boolean readsTargetArray() {
+        for(ArrayAccessExpr access:value.findAll(ArrayAccessExpr.class)) {
+            if(isSameArray(access.getName(), targetArray)) {
+                //result[i] = f(result[i]) maps the array in place
+                Long offset = getIteratorOffset(access);
+                if(offset == null || offset != 0) {
+                    return true;
+                }
+            }
+        }
+        for(NameExpr nameExpr:value.findAll(NameExpr.class)) {
+            if(isSameArray(nameExpr, targetArray) && !(nameExpr.getParentNode().orElse(null) instanceof ArrayAccessExpr)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean hasSideEffectFreeValue(Expression expr) {
+        if(!expr.findAll(AssignExpr.class).isEmpty() || !expr.findAll(LambdaExpr.class).isEmpty()) {
+            return false;
+        }
+        for(UnaryExpr unaryExpr:expr.findAll(UnaryExpr.class)) {
+            if(DetectorHelper.isIncrementOrDecrement(unaryExpr)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean usesIterator(Expression expr) {
+        for(NameExpr nameExpr:expr.findAll(NameExpr.class)) {
+            if(nameExpr.getNameAsString().equals(forInitIdentifier)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks that every local variable the expression uses is never assigned in the method, so it can be used in a lambda.
+     */
+    private boolean isLambdaSafe(Expression expr) {
+        Node method = CodeNavigation.getParentOfTypeFromNode(MethodDeclaration.class, forLoop);
+        Node searchNode = (method != null) ? method : forLoop;
+
+        Set<String> assignedNames = new HashSet<>();
+        for(AssignExpr assignExpr:searchNode.findAll(AssignExpr.class)) {
+            if(assignExpr.getTarget().isNameExpr()) {
+                assignedNames.add(assignExpr.getTarget().asNameExpr().getNameAsString());
+            }
+        }
+        for(UnaryExpr unaryExpr:searchNode.findAll(UnaryExpr.class)) {
+            if(DetectorHelper.isIncrementOrDecrement(unaryExpr) && unaryExpr.getExpression().isNameExpr()) {
+                assignedNames.add(unaryExpr.getExpression().asNameExpr().getNameAsString());
+            }
+        }
+        //the iterator becomes the lambda's parameter
+        assignedNames.remove(forInitIdentifier);
+
+        for(NameExpr nameExpr:expr.findAll(NameExpr.class)) {
+            if(assignedNames.contains(nameExpr.getNameAsString())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the type of an element of an array, which must be int, long, double or an object.
+     * @return The type or null if it cannot be worked out or has no kernel.
+     */
+    private ResolvedType getElementType(ArrayAccessExpr access) {
+        try {
+            ResolvedType elementType = access.calculateResolvedType();
+            if(elementType.isPrimitive()) {
+                String primitive = elementType.describe();
+                if(!primitive.equals("int") && !primitive.equals("long") && !primitive.equals("double")) {
+                    return null;
+                }
+            } else if(!elementType.isReferenceType() && !elementType.isArray()) {
+                return null;
+            }
+
+            return elementType;
+        } catch(RuntimeException e) {
+            return null;
+        }
+    }
+}
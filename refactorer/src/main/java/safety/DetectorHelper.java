@@ -0,0 +1,53 @@
+package safety;
+
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.stmt.ForStmt;
+
+/**
+ * A helper class for the checks that the detectors of loop and statement shapes have in common.
+ * @author michaellynch
+ *
+ */
+class DetectorHelper {
+
+    /**
+     * Checks that the only update of a for loop adds one to its iterator.
+     * @param forLoop The for loop to check.
+     * @param forInitIdentifier The identifier of the loop's iterator.
+     * @return True if the loop is updated with i++ or ++i.
+     */
+    static boolean isIncrementedByOne(ForStmt forLoop, String forInitIdentifier) {
+        if(forLoop.getUpdate().size() != 1 || !forLoop.getUpdate().get(0).isUnaryExpr()) {
+            return false;
+        }
+
+        UnaryExpr update = forLoop.getUpdate().get(0).asUnaryExpr();
+        return (update.getOperator() == UnaryExpr.Operator.POSTFIX_INCREMENT || update.getOperator() == UnaryExpr.Operator.PREFIX_INCREMENT) &&
+            update.getExpression().isNameExpr() &&
+            update.getExpression().asNameExpr().getNameAsString().equals(forInitIdentifier);
+    }
+
+    /**
+     * @param unaryExpr The unary expression to check.
+     * @return True if the expression writes to its operand with ++ or --.
+     */
+    static boolean isIncrementOrDecrement(UnaryExpr unaryExpr) {
+        UnaryExpr.Operator operator = unaryExpr.getOperator();
+        return operator == UnaryExpr.Operator.POSTFIX_INCREMENT || operator == UnaryExpr.Operator.PREFIX_INCREMENT ||
+            operator == UnaryExpr.Operator.POSTFIX_DECREMENT || operator == UnaryExpr.Operator.PREFIX_DECREMENT;
+    }
+
+    /**
+     * Removes the brackets around an expression.
+     * @param expr The expression to unwrap.
+     * @return Example ((a + b)) {@literal ->} a + b.
+     */
+    static Expression unwrap(Expression expr) {
+        while(expr.isEnclosedExpr()) {
+            expr = expr.asEnclosedExpr().getInner();
+        }
+
+        return expr;
+    }
+}
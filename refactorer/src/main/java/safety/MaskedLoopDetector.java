@@ -0,0 +1,144 @@
+package safety;
+
+import com.github.javaparser.ast.expr.ArrayAccessExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.resolution.types.ResolvedType;
+
+/**
+ * Checks if the whole body of a for loop is guarded by a flag in a boolean array, of the form
+ * for(...) { if(mask[i]) { ... } }, so that the loop can be run over the indices whose flag is set.
+ * Splitting such a loop by its range gives chunks with very different amounts of work when the set flags are
+ * bunched together, whereas splitting the set indices gives every chunk the same number of them.
+ * The mask is read before the loop is run, so it cannot be written to by the loop.
+ * @author michaellynch
+ *
+ */
+public class MaskedLoopDetector {
+
+    private ForStmt forLoop;
+    private String forInitIdentifier;
+
+    private Expression maskArray;
+    private Statement guardedBody;
+    private boolean masked;
+
+    /**
+     * Checks the given for loop.
+     * @param forLoop The for loop to check.
+     * @param forInitIdentifier The identifier of the loop's iterator.
+     */
+    public MaskedLoopDetector(ForStmt forLoop, String forInitIdentifier) {
+        this.forLoop = forLoop;
+        this.forInitIdentifier = forInitIdentifier;
+        maskArray = null;
+        guardedBody = null;
+        masked = detectMask();
+    }
+
+    /**
+     * @return True if the loop body is guarded by a flag of a boolean array indexed by the iterator.
+     */
+    public boolean isMasked() {
+        return masked;
+    }
+
+    /**
+     * @return The boolean array whose flags guard the loop body.
+     */
+    public Expression getMaskArray() {
+        return maskArray;
+    }
+
+    /**
+     * @return The statement run for the iterations whose flag is set.
+     */
+    public Statement getGuardedBody() {
+        return guardedBody;
+    }
+
+    private boolean detectMask() {
+        if(!DetectorHelper.isIncrementedByOne(forLoop, forInitIdentifier)) {
+            return false;
+        }
+
+        Statement body = forLoop.getBody();
+        if(body.isBlockStmt()) {
+            if(body.asBlockStmt().getStatements().size() != 1) {
+                return false;
+            }
+            body = body.asBlockStmt().getStatement(0);
+        }
+        if(!body.isIfStmt()) {
+            return false;
+        }
+
+        IfStmt ifStmt = body.asIfStmt();
+        if(ifStmt.getElseStmt().isPresent()) {
+            return false;
+        }
+
+        Expression condition = DetectorHelper.unwrap(ifStmt.getCondition());
+        if(!condition.isArrayAccessExpr() || !isIteratorAccess(condition.asArrayAccessExpr())) {
+            return false;
+        }
+        maskArray = condition.asArrayAccessExpr().getName();
+        guardedBody = ifStmt.getThenStmt();
+
+        return !isMaskWritten() && isBooleanArray(condition);
+    }
+
+    /**
+     * Checks that an array access is of the form array[i] where the array can be worked out before the loop is run.
+     */
+    private boolean isIteratorAccess(ArrayAccessExpr aaExpr) {
+        Expression index = DetectorHelper.unwrap(aaExpr.getIndex());
+        if(!index.isNameExpr() || !index.asNameExpr().getNameAsString().equals(forInitIdentifier)) {
+            return false;
+        }
+
+        Expression arrayExpr = aaExpr.getName();
+        if(!arrayExpr.isNameExpr() && !arrayExpr.isFieldAccessExpr()) {
+            return false;
+        }
+        if(!arrayExpr.findAll(MethodCallExpr.class).isEmpty()) {
+            return false;
+        }
+        for(NameExpr nameExpr:arrayExpr.findAll(NameExpr.class)) {
+            if(nameExpr.getNameAsString().equals(forInitIdentifier)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isMaskWritten() {
+        for(AssignExpr assignExpr:forLoop.getBody().findAll(AssignExpr.class)) {
+            Expression target = assignExpr.getTarget();
+            if(target.toString().equals(maskArray.toString()) ||
+                (target.isArrayAccessExpr() && target.asArrayAccessExpr().getName().toString().equals(maskArray.toString()))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks that the mask holds primitive flags, as an array of Boolean could not be given to the parallel loop.
+     */
+    private boolean isBooleanArray(Expression maskAccess) {
+        try {
+            ResolvedType flagType = maskAccess.calculateResolvedType();
+            return flagType.isPrimitive() && flagType.describe().equals("boolean");
+        } catch(RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -41,6 +41,8 @@ public class SafetyChecks {
 
     private WarningManager warningManager;
 
+    private int dependenceDistance;
+
     /**
      * Creates a SafetyChecks object prepared for checking the safety of the given for loop.
      * @param forLoop The for loop to check for safety.
@@ -50,6 +52,7 @@ public class SafetyChecks {
         this.forLoop = forLoop;
         this.sdd = sdd;
         warningManager = new WarningManager();
+        dependenceDistance = 0;
     }
 
     /**
@@ -61,6 +64,7 @@ public class SafetyChecks {
         checkSharedDataAssignment(forLoop, sdd, ".");
         writeOnlyArrayAccessMap = new HashMap<>();
         checkSharedArrayAccess(forLoop, sdd, writeOnlyArrayAccessMap, false, ".");
+        dependenceDistance = calculateDependenceDistance(writeOnlyArrayAccessMap);
         checkMultiAccessArraySafety(writeOnlyArrayAccessMap);
         checkForNonConstantCompare();
 
@@ -269,6 +273,46 @@ public class SafetyChecks {
         return foundMultiAccessConflict;
     }
 
+    /**
+     * Gets the distance of the loop carried dependences found by the safety checks.
+     * A loop with a constant distance can be run as a doacross loop, where each iteration waits on the iteration that distance before it.
+     * @return The smallest number of iterations between an array write and another access of the same array,
+     * 0 if no iterations depend on each other or -1 if the distance of a dependence is not constant.
+     */
+    public int getDependenceDistance() {
+        return dependenceDistance;
+    }
+
+    private int calculateDependenceDistance(Map<String, List<ArrayAccessExpr>> writeOnlyArrayAccessMap) {
+        int distance = 0;
+
+        for(ArrayAccessExpr aaExpr:forLoop.findAll(ArrayAccessExpr.class)) {
+            String aaName = getArrayAccessIdentifier(aaExpr);
+            if(!writeOnlyArrayAccessMap.containsKey(aaName)) continue;
+
+            for(ArrayAccessExpr writeAaExpr:writeOnlyArrayAccessMap.get(aaName)) {
+                if(aaExpr.getIndex().toString().equals(writeAaExpr.getIndex().toString())) continue;
+
+                long accessDistance;
+                try {
+                    SimplifiedEquation accessEval = SimplifiedEquation.createSimplifiedEquation(aaExpr.getIndex(), sdd.getForInitIdentifier());
+                    SimplifiedEquation writeEval = SimplifiedEquation.createSimplifiedEquation(writeAaExpr.getIndex(), sdd.getForInitIdentifier());
+                    accessDistance = accessEval.getIterationDistance(writeEval);
+                } catch(NumberFormatException n) {
+                    return -1;
+                }
+
+                if(accessDistance < 0 || accessDistance > Integer.MAX_VALUE) {
+                    return -1;
+                } else if(accessDistance > 0 && (distance == 0 || accessDistance < distance)) {
+                    distance = (int)accessDistance;
+                }
+            }
+        }
+
+        return distance;
+    }
+
     private boolean indexEquivalent(Expression i1, Expression i2) {
         if(i1.toString().equals(i2.toString())) return true;
 
@@ -0,0 +1,229 @@
+package safety;
+
+import com.github.javaparser.ast.expr.ArrayAccessExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.resolution.types.ResolvedType;
+
+/**
+ * Checks if a for loop is an inclusive prefix scan of the form out[i] = out[i-1] op in[i], which
+ * cannot be run as a parallel for loop but can be replaced with a parallel scan.
+ * The operator must be one of +, *, &amp;, |, ^, Math.max or Math.min over int, long or double arrays.
+ * @author michaellynch
+ *
+ */
+public class ScanLoopDetector {
+
+    private ForStmt forLoop;
+    private String forInitIdentifier;
+
+    private Expression resultArray;
+    private Expression valuesArray;
+    private BinaryExpr.Operator operator;
+    private String mathMethod;
+    private String elementType;
+    private boolean scan;
+
+    /**
+     * Checks the given for loop.
+     * @param forLoop The for loop to check.
+     * @param forInitIdentifier The identifier of the loop's iterator.
+     */
+    public ScanLoopDetector(ForStmt forLoop, String forInitIdentifier) {
+        this.forLoop = forLoop;
+        this.forInitIdentifier = forInitIdentifier;
+        operator = null;
+        mathMethod = null;
+        scan = detectScan();
+    }
+
+    /**
+     * @return True if the loop is a prefix scan.
+     */
+    public boolean isScan() {
+        return scan;
+    }
+
+    /**
+     * @return The array that the scan is written to.
+     */
+    public Expression getResultArray() {
+        return resultArray;
+    }
+
+    /**
+     * @return The array of values being scanned, which may be the result array.
+     */
+    public Expression getValuesArray() {
+        return valuesArray;
+    }
+
+    /**
+     * @return The binary operator of the scan or null if the scan uses a Math method.
+     */
+    public BinaryExpr.Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return The name of the Math method of the scan, max or min, or null if the scan uses a binary operator.
+     */
+    public String getMathMethod() {
+        return mathMethod;
+    }
+
+    /**
+     * Checks if the scan adds or multiplies floating point values, for which the parallel scan groups the
+     * operations differently to the loop and the results may differ by rounding.
+     * @return True if the results of the scan may be rounded differently.
+     */
+    public boolean isRoundingSensitive() {
+        return elementType.equals("double") && operator != null;
+    }
+
+    private boolean detectScan() {
+        if(!DetectorHelper.isIncrementedByOne(forLoop, forInitIdentifier)) {
+            return false;
+        }
+
+        Statement body = forLoop.getBody();
+        if(body.isBlockStmt()) {
+            if(body.asBlockStmt().getStatements().size() != 1) {
+                return false;
+            }
+            body = body.asBlockStmt().getStatement(0);
+        }
+        if(!body.isExpressionStmt() || !body.asExpressionStmt().getExpression().isAssignExpr()) {
+            return false;
+        }
+
+        AssignExpr assignExpr = body.asExpressionStmt().getExpression().asAssignExpr();
+        if(!assignExpr.getTarget().isArrayAccessExpr() || !isOffsetAccess(assignExpr.getTarget().asArrayAccessExpr(), 0)) {
+            return false;
+        }
+        resultArray = assignExpr.getTarget().asArrayAccessExpr().getName();
+
+        Expression previous;
+        Expression current;
+        if(assignExpr.getOperator() == AssignExpr.Operator.ASSIGN) {
+            Expression value = DetectorHelper.unwrap(assignExpr.getValue());
+            if(value.isBinaryExpr() && isScanOperator(value.asBinaryExpr().getOperator())) {
+                operator = value.asBinaryExpr().getOperator();
+                previous = DetectorHelper.unwrap(value.asBinaryExpr().getLeft());
+                current = DetectorHelper.unwrap(value.asBinaryExpr().getRight());
+            } else if(isMathMaxOrMin(value)) {
+                mathMethod = value.asMethodCallExpr().getNameAsString();
+                previous = DetectorHelper.unwrap(value.asMethodCallExpr().getArgument(0));
+                current = DetectorHelper.unwrap(value.asMethodCallExpr().getArgument(1));
+            } else {
+                return false;
+            }
+        } else {
+            //a[i] op= a[i-1] scans the array in place
+            operator = getBinaryOperator(assignExpr.getOperator());
+            if(operator == null) {
+                return false;
+            }
+            previous = DetectorHelper.unwrap(assignExpr.getValue());
+            current = assignExpr.getTarget();
+        }
+
+        //every supported operator is commutative so the previous element may be on either side
+        if(!isPreviousResult(previous)) {
+            Expression swap = previous;
+            previous = current;
+            current = swap;
+        }
+        if(!isPreviousResult(previous) || !current.isArrayAccessExpr() || !isOffsetAccess(current.asArrayAccessExpr(), 0)) {
+            return false;
+        }
+        valuesArray = current.asArrayAccessExpr().getName();
+
+        return hasScannableTypes(assignExpr.getTarget(), current);
+    }
+
+    private boolean isPreviousResult(Expression expr) {
+        return expr.isArrayAccessExpr() &&
+            expr.asArrayAccessExpr().getName().toString().equals(resultArray.toString()) &&
+            isOffsetAccess(expr.asArrayAccessExpr(), -1);
+    }
+
+    /**
+     * Checks that an array access is of the form array[i + offset] where the array does not change with the iterator.
+     */
+    private boolean isOffsetAccess(ArrayAccessExpr aaExpr, long offset) {
+        Expression arrayExpr = aaExpr.getName();
+        if(!arrayExpr.findAll(MethodCallExpr.class).isEmpty()) {
+            return false;
+        }
+        for(NameExpr nameExpr:arrayExpr.findAll(NameExpr.class)) {
+            if(nameExpr.getNameAsString().equals(forInitIdentifier)) {
+                return false;
+            }
+        }
+
+        try {
+            SimplifiedEquation index = SimplifiedEquation.createSimplifiedEquation(aaExpr.getIndex(), forInitIdentifier);
+            return index.getITotal() == 1 && index.getNTotal() == offset;
+        } catch(NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private boolean hasScannableTypes(Expression resultAccess, Expression valuesAccess) {
+        try {
+            ResolvedType resultType = resultAccess.calculateResolvedType();
+            ResolvedType valuesType = valuesAccess.calculateResolvedType();
+            if(!resultType.isPrimitive() || !resultType.describe().equals(valuesType.describe())) {
+                return false;
+            }
+
+            elementType = resultType.describe();
+            return elementType.equals("int") || elementType.equals("long") || elementType.equals("double");
+        } catch(RuntimeException e) {
+            return false;
+        }
+    }
+
+    private boolean isMathMaxOrMin(Expression expr) {
+        if(!expr.isMethodCallExpr()) {
+            return false;
+        }
+
+        MethodCallExpr callExpr = expr.asMethodCallExpr();
+        return callExpr.getScope().isPresent() &&
+            callExpr.getScope().get().toString().equals("Math") &&
+            (callExpr.getNameAsString().equals("max") || callExpr.getNameAsString().equals("min")) &&
+            callExpr.getArguments().size() == 2;
+    }
+
+    private static boolean isScanOperator(BinaryExpr.Operator op) {
+        return op == BinaryExpr.Operator.PLUS ||
+            op == BinaryExpr.Operator.MULTIPLY ||
+            op == BinaryExpr.Operator.BINARY_AND ||
+            op == BinaryExpr.Operator.BINARY_OR ||
+            op == BinaryExpr.Operator.XOR;
+    }
+
+    private static BinaryExpr.Operator getBinaryOperator(AssignExpr.Operator op) {
+        switch(op) {
+        case PLUS:
+            return BinaryExpr.Operator.PLUS;
+        case MULTIPLY:
+            return BinaryExpr.Operator.MULTIPLY;
+        case BINARY_AND:
+            return BinaryExpr.Operator.BINARY_AND;
+        case BINARY_OR:
+            return BinaryExpr.Operator.BINARY_OR;
+        case XOR:
+            return BinaryExpr.Operator.XOR;
+        default:
+            return null;
+        }
+    }
+}
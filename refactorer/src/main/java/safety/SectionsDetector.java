@@ -0,0 +1,514 @@
+package safety;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.BreakStmt;
+import com.github.javaparser.ast.stmt.CatchClause;
+import com.github.javaparser.ast.stmt.ContinueStmt;
+import com.github.javaparser.ast.stmt.DoStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.ForeachStmt;
+import com.github.javaparser.ast.stmt.LocalClassDeclarationStmt;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.SwitchStmt;
+import com.github.javaparser.ast.stmt.ThrowStmt;
+import com.github.javaparser.ast.stmt.TryStmt;
+import com.github.javaparser.ast.stmt.WhileStmt;
+import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.resolution.types.ResolvedReferenceType;
+import com.github.javaparser.resolution.types.ResolvedType;
+
+import discovery.CodeNavigation;
+
+/**
+ * Checks if a statement and the statements that follow it in the same block are independent of each other,
+ * so that they can be run as parallel sections.
+ * Each statement becomes the body of a lambda, so it cannot declare a variable used after it, return, throw,
+ * jump out of itself, call a method that may throw a checked exception out of it or use a local variable that is
+ * assigned anywhere in the method.
+ * Two statements are independent if neither writes to a variable, array or field that the other reads or writes.
+ * Arrays are compared by name only, so two statements writing to different elements of the same array are not independent.
+ * Names that are set to refer to the same array or object, such as b after int[] b = a, are compared as one name.
+ * @author michaellynch
+ *
+ */
+public class SectionsDetector {
+
+    private Statement firstStatement;
+    private List<Statement> sections;
+    private Set<String> reassignedNames;
+    private Map<String, Set<String>> aliasGroups;
+
+    private WarningManager warningManager;
+
+    /**
+     * Checks the statements starting at the given statement.
+     * @param firstStatement The first statement of the sections, which must be directly within a block.
+     */
+    public SectionsDetector(Statement firstStatement) {
+        this.firstStatement = firstStatement;
+        sections = new ArrayList<>();
+        warningManager = new WarningManager();
+        detectSections();
+    }
+
+    /**
+     * @return True if there are at least two independent statements to run as sections.
+     */
+    public boolean isSections() {
+        return sections.size() >= 2;
+    }
+
+    /**
+     * @return The longest run of independent statements from the first statement, in the order they appear in the block.
+     */
+    public List<Statement> getSections() {
+        return sections;
+    }
+
+    public void displayWarnings() {
+        System.out.println("Safety Warnings");
+
+        warningManager.printWarnings();
+
+        System.out.println("Safety Warnings Complete");
+    }
+
+    private void detectSections() {
+        if(!firstStatement.getParentNode().isPresent() || !(firstStatement.getParentNode().get() instanceof BlockStmt)) {
+            return;
+        }
+        List<Statement> blockStatements = ((BlockStmt)firstStatement.getParentNode().get()).getStatements();
+
+        //the statements are compared by identity as equal statements can appear more than once in a block
+        int firstIndex = -1;
+        for(int i = 0; i < blockStatements.size(); i++) {
+            if(blockStatements.get(i) == firstStatement) {
+                firstIndex = i;
+                break;
+            }
+        }
+
+        Node method = CodeNavigation.getParentOfTypeFromNode(MethodDeclaration.class, firstStatement);
+        reassignedNames = getAssignedNames(method != null ? method : firstStatement.getParentNode().get());
+        aliasGroups = getAliasGroups(method != null ? method : firstStatement.getParentNode().get());
+
+        List<Set<String>> sectionReads = new ArrayList<>();
+        List<Set<String>> sectionWrites = new ArrayList<>();
+        for(int i = firstIndex; i < blockStatements.size(); i++) {
+            Statement statement = blockStatements.get(i);
+            if(!canBeSection(statement)) break;
+
+            Set<String> reads = getAliasedNames(getUsedNames(statement), statement);
+            Set<String> writes = getWrittenNames(statement);
+            if(writes == null || !isIndependent(reads, writes, sectionReads, sectionWrites)) break;
+
+            sections.add(statement);
+            sectionReads.add(reads);
+            sectionWrites.add(writes);
+        }
+
+        if(isSections()) {
+            for(Statement section:sections) {
+                for(MethodCallExpr methodCall:section.findAll(MethodCallExpr.class)) {
+                    warningManager.storeWarning("The method '" + methodCall + "' may use data that another section writes to, check that it does not.", methodCall);
+                    if(getSpecifiedExceptions(methodCall) == null) {
+                        warningManager.storeWarning("The method '" + methodCall + "' cannot be analysed, check that it does not throw a checked exception.", methodCall);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isIndependent(Set<String> reads, Set<String> writes, List<Set<String>> sectionReads, List<Set<String>> sectionWrites) {
+        for(int i = 0; i < sectionReads.size(); i++) {
+            for(String name:writes) {
+                if(sectionReads.get(i).contains(name) || sectionWrites.get(i).contains(name)) {
+                    return false;
+                }
+            }
+            for(String name:sectionWrites.get(i)) {
+                if(reads.contains(name)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private boolean canBeSection(Statement statement) {
+        //a variable declared directly in the block would go out of scope once it is moved into a lambda
+        if(statement.isExpressionStmt() && statement.asExpressionStmt().getExpression().isVariableDeclarationExpr()) {
+            return false;
+        }
+        if(statement.isLabeledStmt() || statement.isExplicitConstructorInvocationStmt() ||
+            statement instanceof LocalClassDeclarationStmt) {
+            return false;
+        }
+
+        if(!statement.findAll(ReturnStmt.class).isEmpty() || !statement.findAll(ThrowStmt.class).isEmpty()) {
+            return false;
+        }
+        if(mayThrowCheckedException(statement)) {
+            return false;
+        }
+        for(BreakStmt breakStmt:statement.findAll(BreakStmt.class)) {
+            if(breakStmt.getLabel().isPresent() || !isWithinLoop(breakStmt, statement, true)) {
+                return false;
+            }
+        }
+        for(ContinueStmt continueStmt:statement.findAll(ContinueStmt.class)) {
+            if(continueStmt.getLabel().isPresent() || !isWithinLoop(continueStmt, statement, false)) {
+                return false;
+            }
+        }
+
+        //a lambda can only use the local variables of the method that are never assigned after they are declared
+        for(String name:getReadNames(statement)) {
+            if(reassignedNames.contains(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that a break or continue jumps to a loop, or for a break a switch, inside the statement.
+     */
+    private boolean isWithinLoop(Node jump, Statement statement, boolean includeSwitch) {
+        Node node = jump;
+        while(node != statement && node.getParentNode().isPresent()) {
+            node = node.getParentNode().get();
+            if(node instanceof ForStmt || node instanceof ForeachStmt || node instanceof WhileStmt || node instanceof DoStmt ||
+                (includeSwitch && node instanceof SwitchStmt)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if a method or constructor called in the statement throws a checked exception that is not caught within it,
+     * which the lambda the statement becomes could not throw. A call that cannot be resolved is warned about instead.
+     */
+    private boolean mayThrowCheckedException(Statement statement) {
+        List<Expression> calls = new ArrayList<>();
+        calls.addAll(statement.findAll(MethodCallExpr.class));
+        calls.addAll(statement.findAll(ObjectCreationExpr.class));
+
+        for(Expression call:calls) {
+            if(isWithinLambdaOrClass(call, statement)) continue;
+
+            List<ResolvedType> exceptions = getSpecifiedExceptions(call);
+            if(exceptions == null) continue;
+
+            for(ResolvedType exception:exceptions) {
+                if(isChecked(exception) && !isCaught(exception, call, statement)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The exceptions the called method or constructor declares, or null if it cannot be resolved.
+     */
+    private List<ResolvedType> getSpecifiedExceptions(Expression call) {
+        try {
+            if(call.isMethodCallExpr()) {
+                return call.asMethodCallExpr().resolve().getSpecifiedExceptions();
+            }
+            return call.asObjectCreationExpr().resolve().getSpecifiedExceptions();
+        } catch(RuntimeException e) {
+            return null;
+        }
+    }
+
+    private boolean isChecked(ResolvedType exception) {
+        if(!exception.isReferenceType()) {
+            return true;
+        }
+
+        try {
+            ResolvedReferenceType exceptionType = exception.asReferenceType();
+            List<String> names = new ArrayList<>();
+            names.add(exceptionType.getQualifiedName());
+            for(ResolvedReferenceType ancestor:exceptionType.getAllAncestors()) {
+                names.add(ancestor.getQualifiedName());
+            }
+
+            return !names.contains("java.lang.RuntimeException") && !names.contains("java.lang.Error");
+        } catch(RuntimeException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Checks if an exception thrown by the call is caught by a try statement within the statement.
+     */
+    private boolean isCaught(ResolvedType exception, Expression call, Statement statement) {
+        Node child = call;
+        while(child != statement && child.getParentNode().isPresent()) {
+            Node node = child.getParentNode().get();
+            if(node instanceof TryStmt && ((TryStmt)node).getTryBlock() == child) {
+                for(CatchClause catchClause:((TryStmt)node).getCatchClauses()) {
+                    if(catches(catchClause, exception)) {
+                        return true;
+                    }
+                }
+            }
+            child = node;
+        }
+
+        return false;
+    }
+
+    private boolean catches(CatchClause catchClause, ResolvedType exception) {
+        Type catchType = catchClause.getParameter().getType();
+        List<Type> caughtTypes = catchType.isUnionType() ? new ArrayList<>(catchType.asUnionType().getElements()) : Collections.singletonList(catchType);
+
+        for(Type caughtType:caughtTypes) {
+            try {
+                if(caughtType.resolve().isAssignableBy(exception)) {
+                    return true;
+                }
+            } catch(RuntimeException e) {
+                //a type that cannot be resolved is not taken to catch the exception
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if a call is in a lambda or class body within the statement, whose exceptions do not leave the statement.
+     */
+    private boolean isWithinLambdaOrClass(Node call, Statement statement) {
+        Node node = call;
+        while(node != statement && node.getParentNode().isPresent()) {
+            node = node.getParentNode().get();
+            if(node instanceof LambdaExpr || node instanceof BodyDeclaration) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Groups the variables and fields that are set to refer to the same array or object within the node,
+     * such as a and b after int[] b = a, or row and grid after int[] row = grid[i].
+     * @return The group of each name that has an alias, shared by every name in the group.
+     */
+    private Map<String, Set<String>> getAliasGroups(Node node) {
+        Map<String, Set<String>> groups = new HashMap<>();
+        for(VariableDeclarator declarator:node.findAll(VariableDeclarator.class)) {
+            if(declarator.getType().isPrimitiveType() || !declarator.getInitializer().isPresent()) continue;
+
+            for(String name:getReferencedNames(declarator.getInitializer().get())) {
+                addAlias(groups, declarator.getNameAsString(), name);
+            }
+        }
+        for(AssignExpr assignExpr:node.findAll(AssignExpr.class)) {
+            if(assignExpr.getOperator() != AssignExpr.Operator.ASSIGN || isPrimitive(assignExpr.getValue())) continue;
+
+            String target = getWrittenName(assignExpr.getTarget());
+            if(target == null) continue;
+            for(String name:getReferencedNames(assignExpr.getValue())) {
+                addAlias(groups, target, name);
+            }
+        }
+
+        return groups;
+    }
+
+    private boolean isPrimitive(Expression expr) {
+        try {
+            return expr.calculateResolvedType().isPrimitive();
+        } catch(RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the names of the variables, arrays and fields that the value of an expression may refer into rather than copy.
+     */
+    private Set<String> getReferencedNames(Expression value) {
+        Set<String> names = new HashSet<>();
+        if(value.isConditionalExpr()) {
+            names.addAll(getReferencedNames(value.asConditionalExpr().getThenExpr()));
+            names.addAll(getReferencedNames(value.asConditionalExpr().getElseExpr()));
+        } else if(value.isCastExpr()) {
+            names.addAll(getReferencedNames(value.asCastExpr().getExpression()));
+        } else if(value.isAssignExpr()) {
+            names.addAll(getReferencedNames(value.asAssignExpr().getValue()));
+        } else {
+            String name = getWrittenName(value);
+            if(name != null) {
+                names.add(name);
+            }
+        }
+
+        return names;
+    }
+
+    private void addAlias(Map<String, Set<String>> groups, String name, String otherName) {
+        Set<String> group = groups.computeIfAbsent(name, n -> new HashSet<>(Collections.singleton(n)));
+        Set<String> otherGroup = groups.computeIfAbsent(otherName, n -> new HashSet<>(Collections.singleton(n)));
+        if(group == otherGroup) return;
+
+        group.addAll(otherGroup);
+        for(String member:otherGroup) {
+            groups.put(member, group);
+        }
+    }
+
+    /**
+     * Adds the aliases of the names used by a statement, leaves out those declared within it and replaces each of the
+     * rest with one name for its group, so that a write through an alias is compared with a use of the name it aliases.
+     */
+    private Set<String> getAliasedNames(Set<String> names, Statement statement) {
+        Set<String> aliasedNames = new HashSet<>();
+        for(String name:names) {
+            aliasedNames.addAll(aliasGroups.getOrDefault(name, Collections.singleton(name)));
+        }
+        aliasedNames.removeAll(getDeclaredNames(statement));
+
+        Set<String> groupNames = new HashSet<>();
+        for(String name:aliasedNames) {
+            groupNames.add(Collections.min(aliasGroups.getOrDefault(name, Collections.singleton(name))));
+        }
+
+        return groupNames;
+    }
+
+    /**
+     * Gets the names of the variables that are assigned to directly, rather than through an array or field, within the node.
+     */
+    private Set<String> getAssignedNames(Node node) {
+        Set<String> names = new HashSet<>();
+        for(AssignExpr assignExpr:node.findAll(AssignExpr.class)) {
+            if(assignExpr.getTarget().isNameExpr()) {
+                names.add(assignExpr.getTarget().asNameExpr().getNameAsString());
+            }
+        }
+        for(UnaryExpr unaryExpr:node.findAll(UnaryExpr.class)) {
+            if(DetectorHelper.isIncrementOrDecrement(unaryExpr) && unaryExpr.getExpression().isNameExpr()) {
+                names.add(unaryExpr.getExpression().asNameExpr().getNameAsString());
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Gets the names of the variables declared outside the statement that it uses, along with the fields it uses through this.
+     */
+    private Set<String> getReadNames(Statement statement) {
+        Set<String> names = getUsedNames(statement);
+        names.removeAll(getDeclaredNames(statement));
+        return names;
+    }
+
+    /**
+     * Gets the names of the variables the statement uses, including those declared within it, along with the fields it uses through this.
+     */
+    private Set<String> getUsedNames(Statement statement) {
+        Set<String> names = new HashSet<>();
+        for(NameExpr nameExpr:statement.findAll(NameExpr.class)) {
+            names.add(nameExpr.getNameAsString());
+        }
+        for(FieldAccessExpr fieldAccess:statement.findAll(FieldAccessExpr.class)) {
+            if(fieldAccess.getScope().isThisExpr()) {
+                names.add(fieldAccess.getNameAsString());
+            }
+        }
+
+        return names;
+    }
+
+    private Set<String> getDeclaredNames(Statement statement) {
+        Set<String> names = new HashSet<>();
+        for(VariableDeclarator declarator:statement.findAll(VariableDeclarator.class)) {
+            names.add(declarator.getNameAsString());
+        }
+        for(Parameter parameter:statement.findAll(Parameter.class)) {
+            names.add(parameter.getNameAsString());
+        }
+
+        return names;
+    }
+
+    /**
+     * Gets the names of the variables, arrays and fields declared outside the statement that it writes to, with each alias group given by one name.
+     * @return The names or null if the statement writes to something that cannot be named.
+     */
+    private Set<String> getWrittenNames(Statement statement) {
+        List<Expression> targets = new ArrayList<>();
+        for(AssignExpr assignExpr:statement.findAll(AssignExpr.class)) {
+            targets.add(assignExpr.getTarget());
+        }
+        for(UnaryExpr unaryExpr:statement.findAll(UnaryExpr.class)) {
+            if(DetectorHelper.isIncrementOrDecrement(unaryExpr)) {
+                targets.add(unaryExpr.getExpression());
+            }
+        }
+
+        Set<String> names = new HashSet<>();
+        for(Expression target:targets) {
+            String name = getWrittenName(target);
+            if(name == null) {
+                return null;
+            }
+            names.add(name);
+        }
+
+        return getAliasedNames(names, statement);
+    }
+
+    private String getWrittenName(Expression target) {
+        if(target.isNameExpr()) {
+            return target.asNameExpr().getNameAsString();
+        }
+        if(target.isArrayAccessExpr()) {
+            return getWrittenName(target.asArrayAccessExpr().getName());
+        }
+        if(target.isFieldAccessExpr()) {
+            FieldAccessExpr fieldAccess = target.asFieldAccessExpr();
+            if(fieldAccess.getScope().isThisExpr()) {
+                return fieldAccess.getNameAsString();
+            }
+            return getWrittenName(fieldAccess.getScope());
+        }
+        if(target.isEnclosedExpr()) {
+            return getWrittenName(target.asEnclosedExpr().getInner());
+        }
+
+        return null;
+    }
+}
@@ -126,6 +126,24 @@ public final class SimplifiedEquation {
         throw new NumberFormatException();
     }
 
+    /**
+     * Works out how many iterations apart two accesses using this index and the given index reach the same element.
+     * @param e The index equation of the other access.
+     * @return The number of iterations between the accesses, 0 if they never reach the same element or -1 if the distance is not constant.
+     */
+    public long getIterationDistance(SimplifiedEquation e) {
+        if(iTotal != e.iTotal || iTotal == 0) {
+            return (equals(e)) ? 0 : -1;
+        }
+
+        long offset = nTotal - e.nTotal;
+        if(offset % iTotal != 0) {
+            return 0;
+        }
+
+        return Math.abs(offset / iTotal);
+    }
+
     @Override
     public boolean equals(Object e) {
         if(e instanceof SimplifiedEquation) {
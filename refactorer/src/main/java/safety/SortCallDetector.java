@@ -0,0 +1,149 @@
+package safety;
+
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.resolution.types.ResolvedReferenceType;
+import com.github.javaparser.resolution.types.ResolvedType;
+
+/**
+ * Checks if a statement is a call to Arrays.sort or Arrays.parallelSort that ParallelSort can replace, which sorts
+ * a whole int, long, double or object array or a range of one, with or without a comparator.
+ * @author michaellynch
+ *
+ */
+public class SortCallDetector {
+
+    private Statement statement;
+
+    private Expression array;
+    private Expression rangeStart;
+    private Expression rangeEnd;
+    private Expression comparator;
+    private boolean objectSort;
+    private boolean sortCall;
+
+    /**
+     * Checks the given statement.
+     * @param statement The statement to check.
+     */
+    public SortCallDetector(Statement statement) {
+        this.statement = statement;
+        rangeStart = null;
+        rangeEnd = null;
+        comparator = null;
+        sortCall = detectSortCall();
+    }
+
+    /**
+     * @return True if the statement is a sort that can be replaced with a parallel sort.
+     */
+    public boolean isSortCall() {
+        return sortCall;
+    }
+
+    /**
+     * @return The array being sorted.
+     */
+    public Expression getArray() {
+        return array;
+    }
+
+    /**
+     * @return The first index sorted, or null if the whole array is sorted.
+     */
+    public Expression getRangeStart() {
+        return rangeStart;
+    }
+
+    /**
+     * @return The end of the indexes sorted, or null if the whole array is sorted.
+     */
+    public Expression getRangeEnd() {
+        return rangeEnd;
+    }
+
+    /**
+     * @return The comparator that orders the elements, or null if they are sorted in their natural order.
+     */
+    public Expression getComparator() {
+        return comparator;
+    }
+
+    /**
+     * @return True if the array holds objects rather than primitives.
+     */
+    public boolean isObjectSort() {
+        return objectSort;
+    }
+
+    private boolean detectSortCall() {
+        if(!statement.isExpressionStmt() || !statement.asExpressionStmt().getExpression().isMethodCallExpr()) {
+            return false;
+        }
+
+        MethodCallExpr call = statement.asExpressionStmt().getExpression().asMethodCallExpr();
+        if(!call.getScope().isPresent() || !(call.getScope().get().toString().equals("Arrays") || call.getScope().get().toString().equals("java.util.Arrays")) ||
+            !(call.getNameAsString().equals("sort") || call.getNameAsString().equals("parallelSort"))) {
+            return false;
+        }
+
+        int noOfArguments = call.getArguments().size();
+        if(noOfArguments < 1 || noOfArguments > 4) {
+            return false;
+        }
+        array = call.getArgument(0);
+        if(noOfArguments >= 3) {
+            rangeStart = call.getArgument(1);
+            rangeEnd = call.getArgument(2);
+        }
+        if(noOfArguments == 2 || noOfArguments == 4) {
+            comparator = call.getArgument(noOfArguments - 1);
+        }
+
+        //the length of a whole array is read from the array again, so it must be a variable or field
+        if(rangeStart == null && !array.isNameExpr() && !array.isFieldAccessExpr()) {
+            return false;
+        }
+
+        return hasSortableType();
+    }
+
+    private boolean hasSortableType() {
+        try {
+            ResolvedType arrayType = array.calculateResolvedType();
+            if(!arrayType.isArray()) {
+                return false;
+            }
+
+            ResolvedType elementType = arrayType.asArrayType().getComponentType();
+            if(elementType.isPrimitive()) {
+                String primitive = elementType.describe();
+                objectSort = false;
+                return comparator == null && (primitive.equals("int") || primitive.equals("long") || primitive.equals("double"));
+            }
+
+            objectSort = true;
+            if(comparator == null) {
+                //ParallelSort can only sort in the natural order when the elements are known to be Comparable
+                return elementType.isReferenceType() && isComparable(elementType.asReferenceType());
+            }
+            return elementType.isReferenceType() || elementType.isArray();
+        } catch(RuntimeException e) {
+            return false;
+        }
+    }
+
+    private boolean isComparable(ResolvedReferenceType elementType) {
+        if(elementType.getQualifiedName().equals("java.lang.Comparable")) {
+            return true;
+        }
+        for(ResolvedReferenceType ancestor:elementType.getAllAncestors()) {
+            if(ancestor.getQualifiedName().equals("java.lang.Comparable")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
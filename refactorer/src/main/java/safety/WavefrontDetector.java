@@ -0,0 +1,225 @@
+package safety;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.javaparser.ast.expr.ArrayAccessExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.Statement;
+
+/**
+ * Checks if a nest of two for loops can be run as a wavefront, where element [i][j] of a 2D array
+ * depends on elements above and to the left of it such as [i-1][j] and [i][j-1].
+ * Neither loop can be run in parallel on its own, but the anti-diagonals of the nest can.
+ * @author michaellynch
+ *
+ */
+public class WavefrontDetector {
+
+    private ForStmt outerLoop;
+    private String outerIdentifier;
+    private ForStmt innerLoop;
+    private String innerIdentifier;
+    private boolean wavefront;
+
+    /**
+     * Checks the loop nest starting at the given for loop.
+     * @param outerLoop The outer for loop of the nest, iterating over the rows.
+     * @param outerIdentifier The identifier of the outer loop's iterator.
+     */
+    public WavefrontDetector(ForStmt outerLoop, String outerIdentifier) {
+        this.outerLoop = outerLoop;
+        this.outerIdentifier = outerIdentifier;
+        innerLoop = null;
+        innerIdentifier = null;
+        wavefront = detectWavefront();
+    }
+
+    /**
+     * @return True if the loop nest has dependences between rows that a wavefront can run in parallel.
+     */
+    public boolean isWavefront() {
+        return wavefront;
+    }
+
+    /**
+     * @return The inner for loop of the nest, iterating over the columns, or null if there is not one.
+     */
+    public ForStmt getInnerLoop() {
+        return innerLoop;
+    }
+
+    public String getInnerIdentifier() {
+        return innerIdentifier;
+    }
+
+    private boolean detectWavefront() {
+        innerLoop = getOnlyForStatement(outerLoop.getBody());
+        if(innerLoop == null || !isRectangularInnerLoop()) {
+            return false;
+        }
+
+        //every write must be to [i + a][j + b] of a 2D array
+        Map<String, List<long[]>> writeOffsets = new HashMap<>();
+        for(Expression target:getWriteTargets()) {
+            if(!target.isArrayAccessExpr()) continue;
+
+            long[] offsets = getOffsets(target.asArrayAccessExpr());
+            if(offsets == null) {
+                return false;
+            }
+
+            String arrayName = getArrayName(target.asArrayAccessExpr());
+            if(!writeOffsets.containsKey(arrayName)) {
+                writeOffsets.put(arrayName, new ArrayList<>());
+            }
+            writeOffsets.get(arrayName).add(offsets);
+        }
+
+        boolean foundRowDependence = false;
+        for(ArrayAccessExpr aaExpr:innerLoop.getBody().findAll(ArrayAccessExpr.class)) {
+            if(!aaExpr.getName().isArrayAccessExpr()) continue;
+
+            String arrayName = getArrayName(aaExpr);
+            if(!writeOffsets.containsKey(arrayName)) continue;
+
+            long[] accessOffsets = getOffsets(aaExpr);
+            if(accessOffsets == null) {
+                return false;
+            }
+
+            for(long[] offsets:writeOffsets.get(arrayName)) {
+                long rowDistance = accessOffsets[0] - offsets[0];
+                long columnDistance = accessOffsets[1] - offsets[1];
+
+                //a dependence between an element and one above and to the right of it would need a
+                //tile on the same anti-diagonal to finish first
+                if((rowDistance < 0 && columnDistance > 0) || (rowDistance > 0 && columnDistance < 0)) {
+                    return false;
+                }
+                if(rowDistance != 0) {
+                    foundRowDependence = true;
+                }
+            }
+        }
+
+        //without a dependence between rows the outer loop can be run as an ordinary parallel for loop
+        return foundRowDependence;
+    }
+
+    /**
+     * Gets the expressions written to in the inner loop, by assignment or by an increment or decrement.
+     */
+    private List<Expression> getWriteTargets() {
+        List<Expression> targets = new ArrayList<>();
+        for(AssignExpr assignExpr:innerLoop.getBody().findAll(AssignExpr.class)) {
+            targets.add(assignExpr.getTarget());
+        }
+        for(UnaryExpr unaryExpr:innerLoop.getBody().findAll(UnaryExpr.class)) {
+            if(DetectorHelper.isIncrementOrDecrement(unaryExpr)) {
+                targets.add(unaryExpr.getExpression());
+            }
+        }
+
+        return targets;
+    }
+
+    private ForStmt getOnlyForStatement(Statement body) {
+        if(body.isBlockStmt()) {
+            BlockStmt block = body.asBlockStmt();
+            if(block.getStatements().size() != 1) {
+                return null;
+            }
+            body = block.getStatement(0);
+        }
+
+        if(body.isForStmt()) {
+            return body.asForStmt();
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks that the inner loop is of the form for(int j = start; j {@literal <} end; j++) where start and end do not change with the outer loop.
+     */
+    private boolean isRectangularInnerLoop() {
+        if(innerLoop.getInitialization().size() != 1 ||
+            !innerLoop.getInitialization().get(0).isVariableDeclarationExpr() ||
+            innerLoop.getInitialization().get(0).asVariableDeclarationExpr().getVariables().size() != 1) {
+            return false;
+        }
+        innerIdentifier = innerLoop.getInitialization().get(0).asVariableDeclarationExpr().getVariable(0).getNameAsString();
+
+        if(!innerLoop.getCompare().isPresent() || !innerLoop.getCompare().get().isBinaryExpr()) {
+            return false;
+        }
+        BinaryExpr compareExpr = innerLoop.getCompare().get().asBinaryExpr();
+        if(compareExpr.getOperator() != BinaryExpr.Operator.LESS ||
+            !compareExpr.getLeft().isNameExpr() ||
+            !compareExpr.getLeft().asNameExpr().getNameAsString().equals(innerIdentifier)) {
+            return false;
+        }
+
+        if(innerLoop.getUpdate().size() != 1 || !innerLoop.getUpdate().get(0).isUnaryExpr()) {
+            return false;
+        }
+        UnaryExpr update = innerLoop.getUpdate().get(0).asUnaryExpr();
+        if((update.getOperator() != UnaryExpr.Operator.POSTFIX_INCREMENT && update.getOperator() != UnaryExpr.Operator.PREFIX_INCREMENT) ||
+            !update.getExpression().isNameExpr() ||
+            !update.getExpression().asNameExpr().getNameAsString().equals(innerIdentifier)) {
+            return false;
+        }
+
+        return !usesOuterIdentifier(innerLoop.getInitialization().get(0)) && !usesOuterIdentifier(compareExpr.getRight());
+    }
+
+    private boolean usesOuterIdentifier(Expression expr) {
+        for(NameExpr nameExpr:expr.findAll(NameExpr.class)) {
+            if(nameExpr.getNameAsString().equals(outerIdentifier)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the constant offsets of a 2D array access from [i][j].
+     * @return The row and column offsets or null if the access is not of the form [i + a][j + b].
+     */
+    private long[] getOffsets(ArrayAccessExpr aaExpr) {
+        if(!aaExpr.getName().isArrayAccessExpr() || aaExpr.getName().asArrayAccessExpr().getName().isArrayAccessExpr()) {
+            return null;
+        }
+
+        try {
+            SimplifiedEquation row = SimplifiedEquation.createSimplifiedEquation(aaExpr.getName().asArrayAccessExpr().getIndex(), outerIdentifier);
+            SimplifiedEquation column = SimplifiedEquation.createSimplifiedEquation(aaExpr.getIndex(), innerIdentifier);
+            if(row.getITotal() != 1 || column.getITotal() != 1) {
+                return null;
+            }
+
+            return new long[]{row.getNTotal(), column.getNTotal()};
+        } catch(NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String getArrayName(ArrayAccessExpr aaExpr) {
+        Expression arrayExpr = aaExpr.getName();
+        if(arrayExpr.isArrayAccessExpr()) {
+            arrayExpr = arrayExpr.asArrayAccessExpr().getName();
+        }
+
+        return arrayExpr.toString();
+    }
+}
@@ -0,0 +1,237 @@
+package codegeneration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.type.ArrayType;
+import com.github.javaparser.ast.type.PrimitiveType;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import discovery.ForLocator;
+import discovery.ForManager;
+import safety.ArrayKernelDetector;
+import safety.MaskedLoopDetector;
+import safety.ScanLoopDetector;
+import safety.SortCallDetector;
+
+public class CodeGeneratorTest {
+    static ForManager scanFm;
+    static ForManager costFm;
+    static DataVariable[] costData;
+    static ForManager maskedFm;
+    static ForManager kernelFm;
+    static CompilationUnit sortCu;
+
+    @BeforeAll
+    public static void setup() throws FileNotFoundException {
+        JavaSymbolSolver jss = new JavaSymbolSolver(new ReflectionTypeSolver());
+        JavaParser.getStaticConfiguration().setSymbolResolver(jss);
+
+        scanFm = getForManager("ScanSafety");
+        costFm = getForManager("IterationCost");
+        maskedFm = getForManager("MaskedSafety");
+        kernelFm = getForManager("ArrayKernelSafety");
+        sortCu = JavaParser.parse(new FileInputStream("example_classes/tests/SortSafety.java"));
+        costData = new DataVariable[] {
+            new DataVariable(new ArrayType(new ArrayType(PrimitiveType.intType())), "m"),
+            new DataVariable(PrimitiveType.intType(), "n")
+        };
+    }
+
+    static ForManager getForManager(String className) throws FileNotFoundException {
+        FileInputStream in = new FileInputStream("example_classes/tests/" + className + ".java");
+        CompilationUnit cu = JavaParser.parse(in);
+
+        return new ForLocator(cu.getClassByName(className).get()).getForManager();
+    }
+
+    @Test
+    public void scanIsSeededWithElementBeforeLiteralStart() {
+        ForStmt forLoop = scanFm.getForLoopByLineAndColumn(3, 9);
+        CodeGenerator cg = new CodeGenerator(null, forLoop, new DataVariable[0], "i");
+
+        String code = cg.generateScanReplacementCode(new ScanLoopDetector(forLoop, "i"), 0, 0).toString();
+
+        assertTrue(code.contains("if (1 < n)"), code);
+        assertTrue(code.contains("ParallelScan.inclusiveScan(in, out, 1, n, out[0], "), code);
+    }
+
+    @Test
+    public void scanIsSeededWithElementBeforeVariableStart() {
+        ForStmt forLoop = scanFm.getForLoopByLineAndColumn(9, 9);
+        CodeGenerator cg = new CodeGenerator(null, forLoop, new DataVariable[0], "i");
+
+        String code = cg.generateScanReplacementCode(new ScanLoopDetector(forLoop, "i"), 0, 0).toString();
+
+        assertTrue(code.contains("if (start < end)"), code);
+        assertTrue(code.contains("ParallelScan.inclusiveScan(values, values, start, end, values[start - 1], "), code);
+        assertTrue(code.contains("Math.max("), code);
+    }
+
+    private String generateCostLoopClass(int line) {
+        return new CodeGenerator("Loop", costFm.getForLoopByLineAndColumn(line, 9), costData, "i").generateParallelForClass().toString();
+    }
+
+    @Test
+    public void triangularLoopIsGivenItsIterationCost() {
+        String code = generateCostLoopClass(3);
+
+        assertTrue(code.contains("setIterationCost(i -> Math.max(1, ((i) - (0) + 1)));"), code);
+    }
+
+    @Test
+    public void decreasingInnerLoopIsGivenItsIterationCost() {
+        String code = generateCostLoopClass(11);
+
+        assertTrue(code.contains("setIterationCost(i -> Math.max(1, ((n - 1) - (i))));"), code);
+    }
+
+    @Test
+    public void rectangularLoopHasNoIterationCost() {
+        assertFalse(generateCostLoopClass(19).contains("setIterationCost"));
+    }
+
+    @Test
+    public void boundWithMethodCallHasNoIterationCost() {
+        assertFalse(generateCostLoopClass(27).contains("setIterationCost"));
+    }
+
+    @Test
+    public void doacrossLoopHasNoIterationCost() {
+        CodeGenerator cg = new CodeGenerator("Loop", costFm.getForLoopByLineAndColumn(3, 9), costData, "i");
+        cg.setDependenceDistance(1);
+
+        String code = cg.generateParallelForClass().toString();
+
+        assertTrue(code.contains("extends DoacrossFarmTask"), code);
+        assertFalse(code.contains("setIterationCost"), code);
+    }
+
+    @Test
+    public void doacrossBodyWaitsOnItsDependenceAndAlwaysPostsItsIteration() throws FileNotFoundException {
+        ForStmt forLoop = getForManager("DependenceDistance").getForLoopByLineAndColumn(3, 9);
+        DataVariable[] data = { new DataVariable(new ArrayType(PrimitiveType.intType()), "values") };
+        CodeGenerator cg = new CodeGenerator("Loop", forLoop, data, "i");
+        cg.setDependenceDistance(3);
+
+        String code = cg.generateParallelForClass().toString();
+        int await = code.indexOf("awaitDependence(i);");
+        int tryStart = code.indexOf("try {");
+        int body = code.indexOf("values[i] = values[i - 3] + 1;");
+        int finallyStart = code.indexOf("} finally {");
+        int post = code.indexOf("postIteration(i);");
+
+        assertTrue(code.contains("extends DoacrossFarmTask"), code);
+        assertTrue(code.contains("super(rangeStart, rangeEnd, noOfChunks, 3);"), code);
+        assertTrue(await >= 0 && await < tryStart && tryStart < body && body < finallyStart && finallyStart < post, code);
+    }
+
+    @Test
+    public void maskIsReadBeforeTheLoopAndNotInIt() {
+        ForStmt forLoop = maskedFm.getForLoopByLineAndColumn(3, 9);
+        MaskedLoopDetector mld = new MaskedLoopDetector(forLoop, "i");
+        DataVariable[] data = { new DataVariable(new ArrayType(PrimitiveType.intType()), "values") };
+        CodeGenerator cg = new CodeGenerator("Loop", forLoop, data, "i");
+        cg.setIndexSetMask(mld.getMaskArray(), mld.getGuardedBody());
+
+        String loopClass = cg.generateParallelForClass().toString();
+        String replacement = cg.generateReplacementCode(0, 0, Arrays.asList(data)).toString();
+
+        assertTrue(loopClass.contains("extends IndexSetFarmTask"), loopClass);
+        assertTrue(loopClass.contains("super(indexMask, rangeStart, rangeEnd, noOfChunks);"), loopClass);
+        assertTrue(loopClass.contains("int i = indices[indexPosition];"), loopClass);
+        assertFalse(loopClass.contains("active"), loopClass);
+        assertFalse(loopClass.contains("if ("), loopClass);
+        assertFalse(loopClass.contains("setIterationCost"), loopClass);
+        assertTrue(replacement.contains("new Loop(active, 0, n, ParallelExecutor.AUTO, values)"), replacement);
+    }
+
+    @Test
+    public void indexSetNamesDoNotHideUserNames() throws FileNotFoundException {
+        ForStmt forLoop = getForManager("MaskedNameClash").getForLoopByLineAndColumn(5, 9);
+        MaskedLoopDetector mld = new MaskedLoopDetector(forLoop, "i");
+        DataVariable[] data = {
+            new DataVariable(new ArrayType(PrimitiveType.intType()), "values"),
+            new DataVariable(new ArrayType(PrimitiveType.intType()), "indices"),
+            new DataVariable(PrimitiveType.intType(), "indexPosition")
+        };
+        CodeGenerator cg = new CodeGenerator("Loop", forLoop, data, "i");
+        cg.setIndexSetMask(mld.getMaskArray(), mld.getGuardedBody());
+
+        String loopClass = cg.generateParallelForClass().toString();
+
+        assertTrue(loopClass.contains("int i = indices1[indexPosition1];"), loopClass);
+        assertTrue(loopClass.contains("values[i] = indices[i] + indexPosition;"), loopClass);
+    }
+
+    static String generateKernelCode(int line) {
+        ForStmt forLoop = kernelFm.getForLoopByLineAndColumn(line, 9);
+        CodeGenerator cg = new CodeGenerator(null, forLoop, new DataVariable[0], "i");
+
+        return cg.generateArrayKernelReplacementCode(new ArrayKernelDetector(forLoop, "i"), 0, 4).toString();
+    }
+
+    @Test
+    public void copyOffsetsAreAddedToStart() {
+        String code = generateKernelCode(15);
+
+        assertTrue(code.contains("if (start < n)"), code);
+        assertTrue(code.contains("ParallelArrays.copy(src, start - 1, dst, start + 2, n - start, ParallelExecutor.AUTO, 4);"), code);
+    }
+
+    @Test
+    public void copyOffsetsAreFoldedIntoLiteralStart() {
+        String code = generateKernelCode(53);
+
+        assertTrue(code.contains("ParallelArrays.copy(src, 0, dst, 1, n - 1, ParallelExecutor.AUTO, 4);"), code);
+    }
+
+    @Test
+    public void fillAndSetAllKeepTheLoopRange() {
+        String fill = generateKernelCode(3);
+        String setAll = generateKernelCode(9);
+
+        assertTrue(fill.contains("ParallelArrays.fill(values, 0, n, value, ParallelExecutor.AUTO, 4);"), fill);
+        assertTrue(setAll.contains("ParallelArrays.setAll(squares, 0, n, i -> (long) i * i, ParallelExecutor.AUTO, 4);"), setAll);
+    }
+
+    @Test
+    public void mapReadsElementInsteadOfSourceArray() {
+        String code = generateKernelCode(21);
+
+        assertTrue(code.contains("ParallelArrays.map(in, out, 0, n, element -> element * 2 + 1, ParallelExecutor.AUTO, 4);"), code);
+    }
+
+    static String generateSortCode(String methodName) {
+        Statement sortStatement = sortCu.getClassByName("SortSafety").get().getMethodsByName(methodName).get(0).getBody().get().getStatement(0);
+        CodeGenerator cg = new CodeGenerator(null, null, new DataVariable[0], null);
+
+        return cg.generateSortReplacementCode(new SortCallDetector(sortStatement), 0, 0).toString();
+    }
+
+    @Test
+    public void wholeArraySortRunsToItsLength() {
+        String code = generateSortCode("sortInts");
+
+        assertTrue(code.contains("ParallelSort.sampleSort(values, 0, values.length, ParallelExecutor.AUTO, ParallelExecutor.AUTO);"), code);
+    }
+
+    @Test
+    public void objectSortKeepsComparator() {
+        String code = generateSortCode("sortWithComparator");
+
+        assertTrue(code.contains("ParallelSort.mergeSort(words, 0, words.length, Comparator.reverseOrder(), ParallelExecutor.AUTO, ParallelExecutor.AUTO);"), code);
+    }
+}
@@ -0,0 +1,91 @@
+package safety;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import discovery.ForLocator;
+import discovery.ForManager;
+
+public class ArrayKernelDetectorTest {
+    static ForManager fm;
+
+    @BeforeAll
+    public static void setup() throws FileNotFoundException {
+        JavaSymbolSolver jss = new JavaSymbolSolver(new ReflectionTypeSolver());
+        JavaParser.getStaticConfiguration().setSymbolResolver(jss);
+
+        FileInputStream in = new FileInputStream("example_classes/tests/ArrayKernelSafety.java");
+        CompilationUnit cu = JavaParser.parse(in);
+
+        fm = new ForLocator(cu.getClassByName("ArrayKernelSafety").get()).getForManager();
+    }
+
+    @Test
+    public void fill() {
+        ArrayKernelDetector akd = new ArrayKernelDetector(fm.getForLoopByLineAndColumn(3, 9), "i");
+
+        assertTrue(akd.getKernel() == ArrayKernelDetector.Kernel.FILL);
+        assertTrue(akd.getTargetArray().toString().equals("values"));
+        assertTrue(akd.getValue().toString().equals("value"));
+    }
+
+    @Test
+    public void setAll() {
+        ArrayKernelDetector akd = new ArrayKernelDetector(fm.getForLoopByLineAndColumn(9, 9), "i");
+
+        assertTrue(akd.getKernel() == ArrayKernelDetector.Kernel.SET_ALL);
+        assertTrue(akd.getSourceArray() == null);
+    }
+
+    @Test
+    public void copyWithOffsets() {
+        ArrayKernelDetector akd = new ArrayKernelDetector(fm.getForLoopByLineAndColumn(15, 9), "i");
+
+        assertTrue(akd.getKernel() == ArrayKernelDetector.Kernel.COPY);
+        assertTrue(akd.getSourceArray().toString().equals("src"));
+        assertTrue(akd.getTargetArray().toString().equals("dst"));
+        assertTrue(akd.getSourceOffset() == -1);
+        assertTrue(akd.getTargetOffset() == 2);
+    }
+
+    @Test
+    public void map() {
+        ArrayKernelDetector akd = new ArrayKernelDetector(fm.getForLoopByLineAndColumn(21, 9), "i");
+
+        assertTrue(akd.getKernel() == ArrayKernelDetector.Kernel.MAP);
+        assertTrue(akd.getSourceArray().toString().equals("in"));
+        assertTrue(akd.getTargetArray().toString().equals("out"));
+    }
+
+    @Test
+    public void copyWithinArrayIsNotKernel() {
+        //copying forward within an array repeats the first element rather than moving the elements
+        assertFalse(new ArrayKernelDetector(fm.getForLoopByLineAndColumn(27, 9), "i").isKernel());
+    }
+
+    @Test
+    public void floatArrayIsNotKernel() {
+        assertFalse(new ArrayKernelDetector(fm.getForLoopByLineAndColumn(33, 9), "i").isKernel());
+    }
+
+    @Test
+    public void changingVariableIsNotCapturedInLambda() {
+        assertFalse(new ArrayKernelDetector(fm.getForLoopByLineAndColumn(40, 9), "i").isKernel());
+    }
+
+    @Test
+    public void loopNotIncrementedByOneIsNotKernel() {
+        assertFalse(new ArrayKernelDetector(fm.getForLoopByLineAndColumn(47, 9), "i").isKernel());
+    }
+}
@@ -0,0 +1,69 @@
+package safety;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import discovery.ForLocator;
+import discovery.ForLoopSharedDataDetector;
+import discovery.ForManager;
+
+public class DependenceDistanceTest {
+    static ForManager fm;
+
+    @BeforeAll
+    public static void setup() throws FileNotFoundException {
+        JavaSymbolSolver jss = new JavaSymbolSolver(new ReflectionTypeSolver());
+        JavaParser.getStaticConfiguration().setSymbolResolver(jss);
+
+        FileInputStream in = new FileInputStream("example_classes/tests/DependenceDistance.java");
+        CompilationUnit cu = JavaParser.parse(in);
+
+        fm = new ForLocator(cu.getClassByName("DependenceDistance").get()).getForManager();
+    }
+
+    static int getDependenceDistance(int line) throws UnrefactorableException {
+        ForStmt forLoop = fm.getForLoopByLineAndColumn(line, 9);
+        SafetyChecks sc = new SafetyChecks(forLoop, new ForLoopSharedDataDetector(forLoop));
+        sc.performSafetyChecks();
+
+        return sc.getDependenceDistance();
+    }
+
+    @Test
+    public void constantDistance() throws UnrefactorableException {
+        assertTrue(getDependenceDistance(3) == 3);
+    }
+
+    @Test
+    public void distanceThatIsNotConstant() throws UnrefactorableException {
+        //values[2 * i] and values[i] meet at a distance that grows with i
+        assertTrue(getDependenceDistance(9) == -1);
+    }
+
+    @Test
+    public void offsetNotDivisibleByStride() throws UnrefactorableException {
+        //values[2 * i] only writes the even elements and values[2 * i + 1] only reads the odd ones
+        assertTrue(getDependenceDistance(15) == 0);
+    }
+
+    @Test
+    public void smallestOfMixedDistances() throws UnrefactorableException {
+        assertTrue(getDependenceDistance(21) == 3);
+    }
+
+    @Test
+    public void mixedDistancesWithOneNotConstant() throws UnrefactorableException {
+        assertTrue(getDependenceDistance(27) == -1);
+    }
+}
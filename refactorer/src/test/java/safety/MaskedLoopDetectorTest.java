@@ -0,0 +1,68 @@
+package safety;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import discovery.ForLocator;
+import discovery.ForManager;
+
+public class MaskedLoopDetectorTest {
+    static ForManager fm;
+
+    @BeforeAll
+    public static void setup() throws FileNotFoundException {
+        JavaSymbolSolver jss = new JavaSymbolSolver(new ReflectionTypeSolver());
+        JavaParser.getStaticConfiguration().setSymbolResolver(jss);
+
+        FileInputStream in = new FileInputStream("example_classes/tests/MaskedSafety.java");
+        CompilationUnit cu = JavaParser.parse(in);
+
+        fm = new ForLocator(cu.getClassByName("MaskedSafety").get()).getForManager();
+    }
+
+    @Test
+    public void bodyGuardedByFlag() {
+        MaskedLoopDetector mld = new MaskedLoopDetector(fm.getForLoopByLineAndColumn(3, 9), "i");
+
+        assertTrue(mld.isMasked());
+        assertTrue(mld.getMaskArray().toString().equals("active"));
+        assertTrue(mld.getGuardedBody().isBlockStmt());
+    }
+
+    @Test
+    public void maskWrittenInLoopIsNotHoisted() {
+        //the mask is read into the set indices before the loop runs, so a write to it in the loop would be missed
+        assertFalse(new MaskedLoopDetector(fm.getForLoopByLineAndColumn(11, 9), "i").isMasked());
+    }
+
+    @Test
+    public void elseBranchIsNotMasked() {
+        assertFalse(new MaskedLoopDetector(fm.getForLoopByLineAndColumn(20, 9), "i").isMasked());
+    }
+
+    @Test
+    public void boxedFlagsAreNotMasked() {
+        assertFalse(new MaskedLoopDetector(fm.getForLoopByLineAndColumn(30, 9), "i").isMasked());
+    }
+
+    @Test
+    public void flagOfAnotherIterationIsNotMasked() {
+        assertFalse(new MaskedLoopDetector(fm.getForLoopByLineAndColumn(38, 9), "i").isMasked());
+    }
+
+    @Test
+    public void statementOutsideGuardIsNotMasked() {
+        assertFalse(new MaskedLoopDetector(fm.getForLoopByLineAndColumn(46, 9), "i").isMasked());
+    }
+}
@@ -0,0 +1,78 @@
+package safety;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import discovery.ForLocator;
+import discovery.ForManager;
+
+public class ScanLoopDetectorTest {
+    static ForManager fm;
+
+    @BeforeAll
+    public static void setup() throws FileNotFoundException {
+        JavaSymbolSolver jss = new JavaSymbolSolver(new ReflectionTypeSolver());
+        JavaParser.getStaticConfiguration().setSymbolResolver(jss);
+
+        FileInputStream in = new FileInputStream("example_classes/tests/ScanSafety.java");
+        CompilationUnit cu = JavaParser.parse(in);
+
+        fm = new ForLocator(cu.getClassByName("ScanSafety").get()).getForManager();
+    }
+
+    @Test
+    public void prefixSum() {
+        ScanLoopDetector sld = new ScanLoopDetector(fm.getForLoopByLineAndColumn(3, 9), "i");
+
+        assertTrue(sld.isScan());
+        assertTrue(sld.getResultArray().toString().equals("out"));
+        assertTrue(sld.getValuesArray().toString().equals("in"));
+        assertTrue(sld.getOperator() == BinaryExpr.Operator.PLUS);
+        assertFalse(sld.isRoundingSensitive());
+    }
+
+    @Test
+    public void runningMaxWithPreviousElementSecond() {
+        ScanLoopDetector sld = new ScanLoopDetector(fm.getForLoopByLineAndColumn(9, 9), "i");
+
+        assertTrue(sld.isScan());
+        assertTrue(sld.getMathMethod().equals("max"));
+        assertTrue(sld.getValuesArray().toString().equals("values"));
+    }
+
+    @Test
+    public void inPlaceFloatingPointProduct() {
+        ScanLoopDetector sld = new ScanLoopDetector(fm.getForLoopByLineAndColumn(15, 9), "i");
+
+        assertTrue(sld.isScan());
+        assertTrue(sld.getOperator() == BinaryExpr.Operator.MULTIPLY);
+        assertTrue(sld.isRoundingSensitive());
+    }
+
+    @Test
+    public void dependenceOnTwoElementsBeforeIsNotAScan() {
+        assertFalse(new ScanLoopDetector(fm.getForLoopByLineAndColumn(21, 9), "i").isScan());
+    }
+
+    @Test
+    public void subtractionIsNotAScan() {
+        assertFalse(new ScanLoopDetector(fm.getForLoopByLineAndColumn(27, 9), "i").isScan());
+    }
+
+    @Test
+    public void floatArraysAreNotScanned() {
+        assertFalse(new ScanLoopDetector(fm.getForLoopByLineAndColumn(33, 9), "i").isScan());
+    }
+}
@@ -0,0 +1,75 @@
+package safety;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class SectionsDetectorTest {
+    static CompilationUnit cu;
+
+    @BeforeAll
+    public static void setup() throws FileNotFoundException {
+        JavaSymbolSolver jss = new JavaSymbolSolver(new ReflectionTypeSolver());
+        JavaParser.getStaticConfiguration().setSymbolResolver(jss);
+
+        FileInputStream in = new FileInputStream("example_classes/tests/SectionsSafety.java");
+        cu = JavaParser.parse(in);
+    }
+
+    static Statement getStatementByLineAndColumn(CompilationUnit cu, int line, int column) {
+        for(Statement statement:cu.findAll(Statement.class)) {
+            if(statement.getBegin().isPresent() && statement.getBegin().get().line == line && statement.getBegin().get().column == column) {
+                return statement;
+            }
+        }
+
+        return null;
+    }
+
+    @Test
+    public void independentArrays() {
+        SectionsDetector sd = new SectionsDetector(getStatementByLineAndColumn(cu, 3, 9));
+
+        assertTrue(sd.isSections());
+        assertTrue(sd.getSections().size() == 2);
+    }
+
+    @Test
+    public void aliasedArraysAreNotIndependent() {
+        SectionsDetector sd = new SectionsDetector(getStatementByLineAndColumn(cu, 9, 9));
+
+        assertFalse(sd.isSections());
+    }
+
+    @Test
+    public void aliasesDeclaredWithinSectionsAreNotIndependent() {
+        SectionsDetector sd = new SectionsDetector(getStatementByLineAndColumn(cu, 14, 9));
+
+        assertFalse(sd.isSections());
+    }
+
+    @Test
+    public void checkedExceptionCannotBeThrownFromSection() {
+        SectionsDetector sd = new SectionsDetector(getStatementByLineAndColumn(cu, 25, 9));
+
+        assertFalse(sd.isSections());
+    }
+
+    @Test
+    public void caughtCheckedException() {
+        SectionsDetector sd = new SectionsDetector(getStatementByLineAndColumn(cu, 30, 9));
+
+        assertTrue(sd.isSections());
+    }
+}
@@ -0,0 +1,76 @@
+package safety;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class SortCallDetectorTest {
+    static CompilationUnit cu;
+
+    @BeforeAll
+    public static void setup() throws FileNotFoundException {
+        JavaSymbolSolver jss = new JavaSymbolSolver(new ReflectionTypeSolver());
+        JavaParser.getStaticConfiguration().setSymbolResolver(jss);
+
+        FileInputStream in = new FileInputStream("example_classes/tests/SortSafety.java");
+        cu = JavaParser.parse(in);
+    }
+
+    static Statement getSortStatement(String methodName) {
+        return cu.getClassByName("SortSafety").get().getMethodsByName(methodName).get(0).getBody().get().getStatement(0);
+    }
+
+    @Test
+    public void wholePrimitiveArray() {
+        SortCallDetector scd = new SortCallDetector(getSortStatement("sortInts"));
+
+        assertTrue(scd.isSortCall());
+        assertFalse(scd.isObjectSort());
+        assertTrue(scd.getRangeStart() == null);
+    }
+
+    @Test
+    public void rangeOfPrimitiveArray() {
+        SortCallDetector scd = new SortCallDetector(getSortStatement("sortRange"));
+
+        assertTrue(scd.isSortCall());
+        assertTrue(scd.getRangeStart().toString().equals("from"));
+        assertTrue(scd.getRangeEnd().toString().equals("to"));
+    }
+
+    @Test
+    public void objectArrayWithComparator() {
+        SortCallDetector scd = new SortCallDetector(getSortStatement("sortWithComparator"));
+
+        assertTrue(scd.isSortCall());
+        assertTrue(scd.isObjectSort());
+        assertTrue(scd.getComparator() != null);
+    }
+
+    @Test
+    public void floatArrayIsNotSortCall() {
+        assertFalse(new SortCallDetector(getSortStatement("sortFloats")).isSortCall());
+    }
+
+    @Test
+    public void elementsNotKnownToBeComparableIsNotSortCall() {
+        assertFalse(new SortCallDetector(getSortStatement("sortUncomparable")).isSortCall());
+    }
+
+    @Test
+    public void wholeArrayThatIsNotVariableIsNotSortCall() {
+        //the length of the array is read from it again, so sorting values.clone() would sort a different array
+        assertFalse(new SortCallDetector(getSortStatement("sortCopy")).isSortCall());
+    }
+}
@@ -0,0 +1,58 @@
+package safety;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import discovery.ForLocator;
+import discovery.ForManager;
+
+public class WavefrontDetectorTest {
+    static ForManager fm;
+
+    @BeforeAll
+    public static void setup() throws FileNotFoundException {
+        FileInputStream in = new FileInputStream("example_classes/tests/WavefrontSafety.java");
+        CompilationUnit cu = JavaParser.parse(in);
+
+        fm = new ForLocator(cu.getClassByName("WavefrontSafety").get()).getForManager();
+    }
+
+    @Test
+    public void dependenceOnRowAboveAndColumnLeft() {
+        WavefrontDetector wd = new WavefrontDetector(fm.getForLoopByLineAndColumn(3, 9), "i");
+
+        assertTrue(wd.isWavefront());
+    }
+
+    @Test
+    public void incrementIsAWrite() {
+        //t is only written by t[i][j]++, so the row dependence through t[i-1][j] is only seen if the increment counts as a write
+        WavefrontDetector wd = new WavefrontDetector(fm.getForLoopByLineAndColumn(11, 9), "i");
+
+        assertTrue(wd.isWavefront());
+    }
+
+    @Test
+    public void incrementOfRowBelowIsUnsafe() {
+        //t[i][j+1] is read before the iteration to its upper right has incremented it
+        WavefrontDetector wd = new WavefrontDetector(fm.getForLoopByLineAndColumn(20, 9), "i");
+
+        assertFalse(wd.isWavefront());
+    }
+
+    @Test
+    public void independentRowsAreNotAWavefront() {
+        WavefrontDetector wd = new WavefrontDetector(fm.getForLoopByLineAndColumn(29, 9), "i");
+
+        assertFalse(wd.isWavefront());
+    }
+}